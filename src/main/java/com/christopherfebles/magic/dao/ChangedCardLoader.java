@@ -0,0 +1,214 @@
+package com.christopherfebles.magic.dao;
+
+import static com.christopherfebles.magic.dao.MagicDAOConstants.DATABASE_QUERY_LOG_MSG;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Holds something built from the whole catalog, such as an index, and keeps it up to date with the cards MagicCardDAO reports as changed.<br>
+ * <br>
+ * Nothing is loaded until the first call to {@link #getLoaded()}. Cards reported as changed are loaded by id on the next call, and applied to what
+ * is already loaded by {@link #loadChanges(Object, List)}. Once more than {@value #MAX_CHANGED_CARDS} cards change at once, or are held beside the
+ * full load, everything is loaded again instead. A change reported while loading is loaded on the following call.<br>
+ * <br>
+ * Subclasses are not annotated for component scanning. To use one, declare it in the Spring configuration.
+ *
+ * @param <T>
+ *            What is loaded, which must not change once returned by {@link #loadAll()} or {@link #loadChanges(Object, List)}
+ * @author Christopher Febles
+ *
+ */
+public abstract class ChangedCardLoader<T> implements MagicCardChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ChangedCardLoader.class );
+
+    public static final int MAX_CHANGED_CARDS = 1000;
+
+    /**
+     * The number of ids bound to each In list by {@link #queryByIds(NamedParameterJdbcTemplate, String, List, RowCallbackHandler)}
+     */
+    private static final int LOAD_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final Object reloadLock = new Object();
+    private final Set<Integer> changedMultiverseIds = Collections.newSetFromMap( new ConcurrentHashMap<Integer, Boolean>() );
+    private volatile T loaded;
+    private volatile boolean rebuildNeeded = true;
+
+    /**
+     * @param dataSource
+     *            The database holding the catalog
+     */
+    protected ChangedCardLoader( DataSource dataSource ) {
+        streamingJdbcTemplate = new JdbcTemplate( dataSource );
+        // MySQL streams rows one at a time, instead of reading the whole result, only for this fetch size
+        streamingJdbcTemplate.setFetchSize( Integer.MIN_VALUE );
+
+        namedParameterJdbcTemplate = new NamedParameterJdbcTemplate( dataSource );
+    }
+
+    @Override
+    public void cardsChanged( Collection<Integer> multiverseIds ) {
+        changedMultiverseIds.addAll( multiverseIds );
+    }
+
+    @Override
+    public void ownedCardsChanged( Collection<Integer> multiverseIds ) {
+        // Owned counts are not loaded, unless a subclass says otherwise
+    }
+
+    /**
+     * Discard everything loaded, and load it again from the database on the next call to {@link #getLoaded()}.
+     */
+    public void rebuild() {
+        rebuildNeeded = true;
+    }
+
+    /**
+     * Get what is loaded, loading everything or the changed cards first if needed.
+     *
+     * @return What is loaded, or null if it could not be loaded
+     */
+    protected final T getLoaded() {
+
+        if ( rebuildNeeded || !changedMultiverseIds.isEmpty() || this.isRefreshNeeded() ) {
+            synchronized ( reloadLock ) {
+                try {
+                    if ( rebuildNeeded ) {
+                        this.reload();
+                    }
+
+                    if ( !changedMultiverseIds.isEmpty() ) {
+                        List<Integer> changed = new ArrayList<>( changedMultiverseIds );
+                        changedMultiverseIds.removeAll( changed );
+
+                        T updated = changed.size() > MAX_CHANGED_CARDS ? null : this.loadChanges( loaded, changed );
+                        if ( updated == null || this.countHeldChanges( updated ) > MAX_CHANGED_CARDS ) {
+                            this.reload();
+                        } else {
+                            loaded = updated;
+                        }
+                    }
+
+                    if ( this.isRefreshNeeded() ) {
+                        loaded = this.refresh( loaded );
+                    }
+                } catch ( DataAccessException e ) {
+                    LOG.error( "Unexpected error when accessing database.", e );
+                    rebuildNeeded = true;
+                    return null;
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+    private void reload() {
+
+        // Clear the changes before loading, so that a change made during the load is loaded afterwards
+        rebuildNeeded = false;
+        changedMultiverseIds.clear();
+        loaded = this.loadAll();
+    }
+
+    /**
+     * Load everything from the database. Called while no other load is running.
+     *
+     * @return What was loaded
+     */
+    protected abstract T loadAll();
+
+    /**
+     * Load the given cards from the database again, and apply them to what is already loaded. Called while no other load is running.
+     *
+     * @param current
+     *            What is already loaded
+     * @param multiverseIds
+     *            The cards that were added, updated or removed, no more than {@value #MAX_CHANGED_CARDS}
+     * @return A new copy of what is loaded, with the changes applied
+     */
+    protected abstract T loadChanges( T current, List<Integer> multiverseIds );
+
+    /**
+     * @param current
+     *            What is loaded
+     * @return The number of changed cards held beside the full load, rather than merged into it. Zero unless overridden.
+     */
+    protected int countHeldChanges( T current ) {
+        return 0;
+    }
+
+    /**
+     * @return True if something other than the cards has changed, and must be loaded by {@link #refresh(Object)}. False unless overridden.
+     */
+    protected boolean isRefreshNeeded() {
+        return false;
+    }
+
+    /**
+     * Load whatever {@link #isRefreshNeeded()} reported as changed. Called while no other load is running.
+     *
+     * @param current
+     *            What is loaded
+     * @return A new copy of what is loaded, or the same one if nothing was loaded
+     */
+    protected T refresh( T current ) {
+        return current;
+    }
+
+    /**
+     * @return A JdbcTemplate that streams query results one row at a time, to load the whole catalog without holding every row at once
+     */
+    protected final JdbcTemplate getStreamingJdbcTemplate() {
+        return streamingJdbcTemplate;
+    }
+
+    /**
+     * Run the given query for the given cards, binding at most {@value #LOAD_CHUNK_SIZE} ids at a time, so that no In list grows too long.
+     *
+     * @see #queryByIds(NamedParameterJdbcTemplate, String, List, RowCallbackHandler)
+     */
+    protected final void queryByIds( String query, List<Integer> multiverseIds, RowCallbackHandler handler ) {
+        queryByIds( namedParameterJdbcTemplate, query, multiverseIds, handler );
+    }
+
+    /**
+     * Run the given query for the given cards, binding at most {@value #LOAD_CHUNK_SIZE} ids at a time, so that no In list grows too long.
+     *
+     * @param jdbcTemplate
+     *            The database to query
+     * @param query
+     *            A query with an In list bound to :multiverseIds
+     * @param multiverseIds
+     *            The cards to query
+     * @param handler
+     *            Called with every row returned
+     */
+    public static void queryByIds( NamedParameterJdbcTemplate jdbcTemplate, String query, List<Integer> multiverseIds, RowCallbackHandler handler ) {
+
+        for ( int start = 0; start < multiverseIds.size(); start += LOAD_CHUNK_SIZE ) {
+            List<Integer> chunk = multiverseIds.subList( start, Math.min( start + LOAD_CHUNK_SIZE, multiverseIds.size() ) );
+
+            LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+            jdbcTemplate.query( query, new MapSqlParameterSource( "multiverseIds", chunk ), handler );
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.christopherfebles.magic.dao;
+
+import java.util.Collection;
+
+/**
+ * Notified by {@link MagicCardDAO} after cards or owned counts are written to the database.<br>
+ * <br>
+ * Any Spring bean implementing this interface is registered with the MagicCardDAO automatically. Listeners are called on the writing thread, after
+ * the write has been committed, so they should do as little work as possible (such as marking a cache as stale).
+ *
+ * @author Christopher Febles
+ *
+ */
+public interface MagicCardChangeListener {
+
+    /**
+     * Called after cards have been added to, updated in, or removed from the database
+     *
+     * @param multiverseIds
+     *            The ids of the cards written
+     */
+    void cardsChanged( Collection<Integer> multiverseIds );
+
+    /**
+     * Called after the owned counts of cards have been changed
+     *
+     * @param multiverseIds
+     *            The ids of the cards whose owned count was written
+     */
+    void ownedCardsChanged( Collection<Integer> multiverseIds );
+
+}
@@ -1,7 +1,10 @@
 package com.christopherfebles.magic.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import com.christopherfebles.magic.dao.result.MultiverseIdSet;
 import com.christopherfebles.magic.model.MagicCard;
 
 /**
@@ -99,6 +102,29 @@ public interface MagicCardDAO {
      */
     int updateOwnedCardCount( Integer multiverseId, Integer newCardCount );
 
+    /**
+     * Atomically add the given amount to the number of copies owned of the given card. Insert a new row if necessary, and delete the row if the count
+     * drops to zero or below.
+     * 
+     * @param multiverseId
+     *            The card owned
+     * @param delta
+     *            The number of copies to add, or a negative number to remove copies
+     * @return True if successful, false otherwise
+     */
+    boolean adjustOwnedCardCount( Integer multiverseId, int delta );
+
+    /**
+     * Atomically adjust the number of copies owned of each of the given cards in a single transaction. Rows are inserted or deleted as necessary.
+     * 
+     * @see #adjustOwnedCardCount(Integer, int)
+     * 
+     * @param deltas
+     *            A map of multiverse id to the number of copies to add, or a negative number to remove copies
+     * @return True if every adjustment was committed, false otherwise
+     */
+    boolean adjustOwnedCardCounts( Map<Integer, Integer> deltas );
+
     /*********** Manage Cards in Database ***********/
 
     /**
@@ -124,6 +150,35 @@ public interface MagicCardDAO {
      */
     boolean saveCardToDatabase( MagicCard card );
 
+    /**
+     * Save the given cards to the database in batches.<br>
+     * <br>
+     * Cards are written in chunks, each chunk in its own transaction, with the All_Cards and Card_Types rows sent as JDBC batches. If a chunk fails, every
+     * card in that chunk is reported as unsuccessful, and the remaining chunks are still saved.<br>
+     * <br>
+     * Results are per chunk, not per card: the driver may send a whole batch as one statement, and then reports no row count for any single card.
+     * Every card in a chunk that was committed is reported as saved, and every card in a chunk that was rolled back as unsuccessful, including any
+     * card that alone would have saved.
+     * 
+     * @param cards
+     *            A collection of fully populated MagicCards
+     * @return A map of multiverse id to true if the chunk holding that card was saved, false otherwise, in the iteration order of the given
+     *         collection
+     */
+    Map<Integer, Boolean> addCardsToDatabase( Collection<MagicCard> cards );
+
+    /**
+     * Save the given cards to the database in batches.
+     * 
+     * @see #addCardsToDatabase(Collection)
+     * 
+     * @param cards
+     *            A collection of fully populated MagicCards
+     * @return A map of multiverse id to true if the chunk holding that card was saved, false otherwise, in the iteration order of the given
+     *         collection
+     */
+    Map<Integer, Boolean> saveCardsToDatabase( Collection<MagicCard> cards );
+
     /**
      * Load a card from the database with the given ID
      * 
@@ -133,6 +188,16 @@ public interface MagicCardDAO {
      */
     MagicCard getCardFromDatabaseById( Integer multiverseId );
 
+    /**
+     * Load the cards with the given IDs from the database, using one query per few hundred IDs instead of one per card
+     * 
+     * @param multiverseIds
+     *            Non-null ID values. Duplicates are loaded once.
+     * @return A map of multiverse id to MagicCard, in the iteration order of the given collection, without the IDs that were not found, or null if
+     *         an error occurred
+     */
+    Map<Integer, MagicCard> getCardsFromDatabaseByIds( Collection<Integer> multiverseIds );
+
     /**
      * Check if the card with the given ID is stored in the database
      * 
@@ -165,6 +230,16 @@ public interface MagicCardDAO {
      */
     List<Integer> getAllMultiverseIds();
 
+    /**
+     * Load all the Multiverse IDs stored in the database as a compact set, reading them from the database one row at a time.<br>
+     * <br>
+     * Use this instead of {@link #getAllMultiverseIds()} to check many ids, or to compare the catalog with another set of ids, such as with
+     * {@link MultiverseIdSet#missingInRange(int, int)}.
+     * 
+     * @return The current ids in the database, or null if an error occurs.
+     */
+    MultiverseIdSet getMultiverseIdSet();
+
     /**
      * Load the card image specified by the given multiverse id
      * 
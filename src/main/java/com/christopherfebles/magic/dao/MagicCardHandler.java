@@ -0,0 +1,22 @@
+package com.christopherfebles.magic.dao;
+
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * Receives search results one card at a time, so that a search of any size can be processed without holding every result in memory.
+ *
+ * @see SearchDAO#streamAllWithSearchParameters(java.util.List, MagicCardHandler)
+ * @author Christopher Febles
+ *
+ */
+public interface MagicCardHandler {
+
+    /**
+     * Called once for each search result, in search order
+     *
+     * @param card
+     *            The next search result
+     */
+    void processCard( MagicCard card );
+
+}
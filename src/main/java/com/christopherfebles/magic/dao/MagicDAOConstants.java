@@ -20,6 +20,10 @@ public final class MagicDAOConstants {
     public static final String CARD_TYPE_TABLE = " MagicDB.Card_Types t ";
     public static final String CARD_TYPE_TABLE_NO_ALIAS = " MagicDB.Card_Types ";
 
+    public static final String CARD_TEXT_PREFIX = "ct.";
+    public static final String CARD_TEXT_TABLE = " MagicDB.Card_Text ct ";
+    public static final String CARD_TEXT_TABLE_NO_ALIAS = " MagicDB.Card_Text ";
+
     public static final String CARD_SELECT_COLUMNS = ALL_CARDS_PREFIX + "multiverse_id, " +
                                                      ALL_CARDS_PREFIX + "name, " + 
                                                      ALL_CARDS_PREFIX + "cost, " + 
@@ -0,0 +1,272 @@
+package com.christopherfebles.magic.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.lang3.Validate;
+
+import com.christopherfebles.magic.dao.exception.SearchFailedException;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * Browse the results of a search one card at a time, forwards and backwards, loading them from a SearchDAO in chunks.<br>
+ * <br>
+ * Use this instead of calling {@link SearchDAO#getNextWithSearchParameters(int, List)} for each card, which runs a query per card, each skipping
+ * over every card before it. A cursor runs one query per chunk, using {@link SearchDAO#getPageAfterTokenWithSearchParameters(String, int, List)}
+ * so that each chunk costs the same however far into the results it is. When a chunk is first reached, the chunk after it is loaded in the
+ * background on the given Executor.<br>
+ * <br>
+ * The most recently used chunks are kept, so moving back and forth near the current card does not query again. Moving further back reloads
+ * earlier chunks from the token recorded when they were first loaded.<br>
+ * <br>
+ * A cursor is meant for a single user, and is not thread safe. Cards changed after a chunk was loaded are not seen until it is loaded again.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class SearchCursor implements ListIterator<MagicCard> {
+
+    /**
+     * The current chunk, the one before it and the one after it
+     */
+    private static final int CACHED_CHUNKS = 3;
+
+    private final SearchDAO searchDAO;
+    private final List<SearchParameter> searchParams;
+    private final int chunkSize;
+    private final Executor executor;
+
+    /**
+     * The page token to load each chunk reached so far. Null loads the first chunk.
+     */
+    private final List<String> chunkTokens = new ArrayList<>();
+    private boolean lastChunkFound;
+
+    private final Map<Integer, List<MagicCard>> chunks = new LinkedHashMap<Integer, List<MagicCard>>( CACHED_CHUNKS + 1, 0.75f, true ) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<Integer, List<MagicCard>> eldest ) {
+            return size() > CACHED_CHUNKS;
+        }
+    };
+
+    private int prefetchChunk = -1;
+    private FutureTask<SearchPage> prefetch;
+
+    /**
+     * The position between cards, as in {@link ListIterator}. Zero is before the first card.
+     */
+    private int position;
+
+    /**
+     * Create a new cursor before the first result of the given search. Nothing is loaded until the first card is requested.
+     *
+     * @param searchDAO
+     *            The DAO to search
+     * @param searchParams
+     *            The parameters for this search
+     * @param chunkSize
+     *            The number of cards to load in each query
+     * @param executor
+     *            Runs the queries loading the next chunk in the background
+     */
+    public SearchCursor( SearchDAO searchDAO, List<SearchParameter> searchParams, int chunkSize, Executor executor ) {
+
+        Validate.notNull( searchDAO, "searchDAO cannot be null." );
+        Validate.notNull( searchParams, "searchParams cannot be null." );
+        Validate.isTrue( chunkSize > 0, "chunkSize must be positive." );
+        Validate.notNull( executor, "executor cannot be null." );
+
+        this.searchDAO = searchDAO;
+        this.searchParams = new ArrayList<>( searchParams );
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+
+        chunkTokens.add( null );
+    }
+
+    /**
+     * @throws SearchFailedException
+     *             If the next chunk could not be loaded
+     */
+    @Override
+    public boolean hasNext() {
+        List<MagicCard> chunk = this.getChunk( position / chunkSize );
+        return chunk != null && position % chunkSize < chunk.size();
+    }
+
+    /**
+     * @throws SearchFailedException
+     *             If the next chunk could not be loaded
+     */
+    @Override
+    public MagicCard next() {
+
+        if ( !this.hasNext() ) {
+            throw new NoSuchElementException();
+        }
+
+        MagicCard retVal = this.getChunk( position / chunkSize ).get( position % chunkSize );
+        position++;
+
+        return retVal;
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return position > 0;
+    }
+
+    /**
+     * @throws SearchFailedException
+     *             If an earlier chunk had to be loaded again, and could not be
+     */
+    @Override
+    public MagicCard previous() {
+
+        if ( !this.hasPrevious() ) {
+            throw new NoSuchElementException();
+        }
+
+        position--;
+        List<MagicCard> chunk = this.getChunk( position / chunkSize );
+        if ( chunk == null || position % chunkSize >= chunk.size() ) {
+            // The results have shrunk since this chunk was first loaded
+            position++;
+            throw new NoSuchElementException();
+        }
+
+        return chunk.get( position % chunkSize );
+    }
+
+    @Override
+    public int nextIndex() {
+        return position;
+    }
+
+    @Override
+    public int previousIndex() {
+        return position - 1;
+    }
+
+    /**
+     * Search results cannot be changed through a cursor.
+     *
+     * @throws UnsupportedOperationException
+     *             Always
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException( "Search results cannot be changed through a cursor." );
+    }
+
+    /**
+     * Search results cannot be changed through a cursor.
+     *
+     * @throws UnsupportedOperationException
+     *             Always
+     */
+    @Override
+    public void set( MagicCard card ) {
+        throw new UnsupportedOperationException( "Search results cannot be changed through a cursor." );
+    }
+
+    /**
+     * Search results cannot be changed through a cursor.
+     *
+     * @throws UnsupportedOperationException
+     *             Always
+     */
+    @Override
+    public void add( MagicCard card ) {
+        throw new UnsupportedOperationException( "Search results cannot be changed through a cursor." );
+    }
+
+    /**
+     * Get the given chunk, loading it if it is not cached, and start loading the chunk after it.
+     *
+     * @param chunkNumber
+     *            The chunk to get, starting from zero
+     * @return The cards in the chunk, or null if the results end before it
+     */
+    private List<MagicCard> getChunk( int chunkNumber ) {
+
+        List<MagicCard> retVal = chunks.get( chunkNumber );
+        if ( retVal != null ) {
+            return retVal;
+        }
+
+        if ( chunkNumber >= chunkTokens.size() ) {
+            // Every chunk before this one has been loaded, and the last of them had no next page
+            return null;
+        }
+
+        SearchPage page;
+        if ( chunkNumber == prefetchChunk ) {
+            page = this.awaitPrefetch();
+        } else {
+            page = searchDAO.getPageAfterTokenWithSearchParameters( chunkTokens.get( chunkNumber ), chunkSize, searchParams );
+        }
+        if ( page == null ) {
+            throw new SearchFailedException( "Unable to load cards " + chunkNumber * chunkSize + " to " + ( ( chunkNumber + 1 ) * chunkSize - 1 ) );
+        }
+
+        retVal = page.getCards();
+        chunks.put( chunkNumber, retVal );
+
+        if ( chunkNumber == chunkTokens.size() - 1 && !lastChunkFound ) {
+            // The first time this chunk was loaded, so record how to load the next
+            if ( page.hasNextPage() ) {
+                chunkTokens.add( page.getNextPageToken() );
+            } else {
+                lastChunkFound = true;
+            }
+        }
+
+        if ( chunkNumber + 1 < chunkTokens.size() && !chunks.containsKey( chunkNumber + 1 ) && prefetchChunk != chunkNumber + 1 ) {
+            this.startPrefetch( chunkNumber + 1 );
+        }
+
+        return retVal;
+    }
+
+    private void startPrefetch( int chunkNumber ) {
+
+        final String pageToken = chunkTokens.get( chunkNumber );
+        prefetchChunk = chunkNumber;
+        prefetch = new FutureTask<>( new Callable<SearchPage>() {
+            @Override
+            public SearchPage call() {
+                return searchDAO.getPageAfterTokenWithSearchParameters( pageToken, chunkSize, searchParams );
+            }
+        } );
+        executor.execute( prefetch );
+    }
+
+    private SearchPage awaitPrefetch() {
+
+        try {
+            return prefetch.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SearchFailedException( "Interrupted while loading the next cards.", e );
+        } catch ( ExecutionException e ) {
+            throw new SearchFailedException( "Unable to load the next cards.", e.getCause() );
+        } finally {
+            prefetchChunk = -1;
+            prefetch = null;
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.christopherfebles.magic.dao;
 import java.util.List;
 
 import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.result.FacetedSearchResult;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.dao.result.SearchResult;
 import com.christopherfebles.magic.model.MagicCard;
 
 /**
@@ -34,6 +37,23 @@ public interface SearchDAO {
      */
     List<MagicCard> getAllWithSearchParameters( List<SearchParameter> searchParams );
 
+    /**
+     * Pass every result of the given search to the given handler, one card at a time, in the same order as
+     * {@link #getAllWithSearchParameters(List)}.<br>
+     * <br>
+     * Cards are read from the database as they are handled, instead of being loaded into a List first, so memory use does not grow with the number of
+     * results. Results are in name order, so this also serves {@link #getAllByNameWithSearchParameters(List)}.<br>
+     * <br>
+     * The database connection is held until every card has been handled. The handler must not use the same connection, for example by searching
+     * again inside the same transaction.
+     * @param searchParams
+     *            The search parameters to use for this search
+     * @param handler
+     *            Called with each search result
+     * @return The number of cards handled, or -1 if an error occurred
+     */
+    int streamAllWithSearchParameters( List<SearchParameter> searchParams, MagicCardHandler handler );
+
     /**
      * Load a MagicCard from the database with the given search parameters
      * 
@@ -42,6 +62,7 @@ public interface SearchDAO {
      * @param searchParams
      *            The search parameters to use for this search
      * @return A single MagicCard
+     * @see SearchCursor
      */
     MagicCard getNextWithSearchParameters( int pointer, List<SearchParameter> searchParams );
 
@@ -72,6 +93,73 @@ public interface SearchDAO {
      */
     List<MagicCard> getPageWithSearchParametersAndPageSize( int pageNumber, int pageSize, List<SearchParameter> searchParams );
 
+    /**
+     * Load the page of results following the given continuation token.<br>
+     * <br>
+     * Unlike {@link #getPageWithSearchParametersAndPageSize(int, int, List)}, the database seeks directly to the last card of the previous page,
+     * so every page costs the same regardless of how deep into the results it is.
+     *
+     * @param pageToken
+     *            The token from {@link SearchPage#getNextPageToken()}, or null to load the first page
+     * @param pageSize
+     *            The size of the page in number of MagicCard
+     * @param searchParams
+     *            The parameters for this search. These must match the search that produced pageToken.
+     * @return The requested page, or null if an error occurred
+     * @throws IllegalArgumentException
+     *             If pageToken was not produced by this method
+     */
+    SearchPage getPageAfterTokenWithSearchParameters( String pageToken, int pageSize, List<SearchParameter> searchParams );
+
+    /**
+     * Load the given page, together with the total number of results, in a single database interaction.<br>
+     * <br>
+     * Use this instead of calling both {@link #getPageWithSearchParametersAndPageSize(int, int, List)} and
+     * {@link #numberOfResultsWithSearchParameters(List)}, which runs the search twice.
+     *
+     * @param pageNumber
+     *            The number of page to load, starting from one
+     * @param pageSize
+     *            The size of the page in number of MagicCard
+     * @param searchParams
+     *            The parameters for this search
+     * @return The requested page and the total number of cards, or null if an error occurred
+     */
+    SearchResult getSearchResultWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams );
+
+    /**
+     * Load the given page and the total number of results, together with the number of matching cards for each color, type, subtype, expansion,
+     * rarity and language.<br>
+     * <br>
+     * Every facet is counted by a single aggregate query, instead of a call to {@link #numberOfResultsWithSearchParameters(List)} for each value.
+     *
+     * @param pageNumber
+     *            The number of page to load, starting from one
+     * @param pageSize
+     *            The size of the page in number of MagicCard
+     * @param searchParams
+     *            The parameters for this search
+     * @return The requested page, the total number of cards and the facet counts across all pages, or null if an error occurred
+     */
+    FacetedSearchResult getFacetedSearchResultWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams );
+
+    /**
+     * Load the given page, ordered by how well each card matches the full-text search parameters, then by name.<br>
+     * <br>
+     * Full-text parameters ({@link com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName#TEXT TEXT} and
+     * {@link com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName#FLAVOR_TEXT FLAVOR_TEXT}) use MySQL boolean mode syntax. Without
+     * any, this is the same as {@link #getPageWithSearchParametersAndPageSize(int, int, List)}.
+     *
+     * @param pageNumber
+     *            The number of page to load, starting from one
+     * @param pageSize
+     *            The size of the page in number of MagicCard
+     * @param searchParams
+     *            The parameters for this search
+     * @return A list of results, best match first, or null if an error occurred
+     */
+    List<MagicCard> getPageByRelevanceWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams );
+
     /** Group searches by Name **/
 
     /**
@@ -118,6 +206,22 @@ public interface SearchDAO {
      */
     List<MagicCard> getPageByNameWithSearchParametersAndPageSize( int pageNumber, int pageSize, List<SearchParameter> searchParams );
 
+    /**
+     * Load the given page, grouped by Name, together with the total number of unique names, in a single database interaction.<br>
+     * <br>
+     * Use this instead of calling both {@link #getPageByNameWithSearchParametersAndPageSize(int, int, List)} and
+     * {@link #numberOfUniqueNamesWithSearchParameters(List)}, which runs the search twice.
+     *
+     * @param pageNumber
+     *            The number of page to load, starting from one
+     * @param pageSize
+     *            The size of the page (MagicCard names)
+     * @param searchParams
+     *            The parameters for this search
+     * @return The requested page and the total number of unique names, or null if an error occurred
+     */
+    SearchResult getSearchResultByNameWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams );
+
     /**
      * Get the number of unique names returned for the given search, grouped by MagicCard name
      * 
@@ -0,0 +1,33 @@
+package com.christopherfebles.magic.dao.exception;
+
+/**
+ * Thrown when search results cannot be loaded, where returning null is not possible.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class SearchFailedException extends RuntimeException {
+
+    /**
+     * Generated Serial ID
+     */
+    private static final long serialVersionUID = -3127731526145349017L;
+
+    /**
+     * Default constructor
+     *
+     * @param message   The exception's detail message.
+     */
+    public SearchFailedException( String message ) {
+        super( message );
+    }
+
+    /**
+     * @param message   The exception's detail message.
+     * @param cause     The reason the search failed.
+     */
+    public SearchFailedException( String message, Throwable cause ) {
+        super( message, cause );
+    }
+
+}
@@ -0,0 +1,472 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+import com.christopherfebles.magic.dao.ExpansionDAO;
+import com.christopherfebles.magic.dao.MagicCardHandler;
+import com.christopherfebles.magic.dao.SearchDAO;
+import com.christopherfebles.magic.dao.SubTypeDAO;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.result.FacetedSearchResult;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.dao.result.SearchResult;
+import com.christopherfebles.magic.enums.SubType;
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * Optional asynchronous access to a SearchDAO, SubTypeDAO and ExpansionDAO, so that the independent queries behind a single page can run at the
+ * same time.<br>
+ * <br>
+ * Each method runs the DAO method of the same name on an Executor, and returns a ListenableFuture of its result. Every query method of the three
+ * DAOs is covered; {@link SearchDAO#numberOfResultsPerPage()} runs no query, so call it directly. As with the DAO methods, a database error
+ * completes the future with null (or -1 for counts). Any other exception fails the future.<br>
+ * <br>
+ * At most {@code maxConcurrentQueries} queries run at once, however large the Executor is, so a burst of requests cannot take every connection in
+ * the pool. All three DAOs share a single limit, as they share a single DataSource; use a separate instance for each DataSource. Queries over the
+ * limit wait in a queue here, in the order they were requested, and are only handed to the Executor once a running query finishes. Neither the
+ * caller nor the Executor's threads ever block waiting for a turn.<br>
+ * <br>
+ * Queries still waiting when {@link #close()} is called, or requested after it, are cancelled. If the Executor rejects a query, it is treated as
+ * shut down: every waiting query is cancelled, and so fails with a CancellationException, rather than the rejection being thrown.<br>
+ * <br>
+ * This class is not a Spring component. To use it, declare it as a bean wrapping the DAO beans, with {@code destroy-method="close"} if it creates
+ * its own threads.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class AsyncMagicDAO {
+
+    private final SearchDAO searchDAO;
+    private final SubTypeDAO subTypeDAO;
+    private final ExpansionDAO expansionDAO;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final Semaphore queryPermits;
+    private final Queue<ListenableFutureTask<?>> waitingQueries = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * Run queries on the given Executor, at most {@code maxConcurrentQueries} at a time.
+     *
+     * @param searchDAO
+     *            Runs the search methods
+     * @param subTypeDAO
+     *            Runs the subtype methods
+     * @param expansionDAO
+     *            Runs the expansion methods
+     * @param executor
+     *            Runs each query. It is not shut down by {@link #close()}.
+     * @param maxConcurrentQueries
+     *            The most queries that may run at once
+     */
+    public AsyncMagicDAO( SearchDAO searchDAO, SubTypeDAO subTypeDAO, ExpansionDAO expansionDAO, Executor executor, int maxConcurrentQueries ) {
+        this( searchDAO, subTypeDAO, expansionDAO, executor, null, maxConcurrentQueries );
+    }
+
+    /**
+     * Run queries on a new pool of {@code maxConcurrentQueries} daemon threads, which is shut down by {@link #close()}.
+     *
+     * @param searchDAO
+     *            Runs the search methods
+     * @param subTypeDAO
+     *            Runs the subtype methods
+     * @param expansionDAO
+     *            Runs the expansion methods
+     * @param maxConcurrentQueries
+     *            The most queries that may run at once
+     */
+    public AsyncMagicDAO( SearchDAO searchDAO, SubTypeDAO subTypeDAO, ExpansionDAO expansionDAO, int maxConcurrentQueries ) {
+        this( searchDAO, subTypeDAO, expansionDAO, null, newQueryPool( maxConcurrentQueries ), maxConcurrentQueries );
+    }
+
+    private AsyncMagicDAO( SearchDAO searchDAO, SubTypeDAO subTypeDAO, ExpansionDAO expansionDAO, Executor executor, ExecutorService ownedExecutor,
+            int maxConcurrentQueries ) {
+
+        Validate.notNull( searchDAO, "searchDAO cannot be null." );
+        Validate.notNull( subTypeDAO, "subTypeDAO cannot be null." );
+        Validate.notNull( expansionDAO, "expansionDAO cannot be null." );
+        Validate.isTrue( executor != null || ownedExecutor != null, "executor cannot be null." );
+        Validate.isTrue( maxConcurrentQueries > 0, "maxConcurrentQueries must be positive." );
+
+        this.searchDAO = searchDAO;
+        this.subTypeDAO = subTypeDAO;
+        this.expansionDAO = expansionDAO;
+        this.executor = ownedExecutor != null ? ownedExecutor : executor;
+        this.ownedExecutor = ownedExecutor;
+        this.queryPermits = new Semaphore( maxConcurrentQueries );
+    }
+
+    private static ExecutorService newQueryPool( int maxConcurrentQueries ) {
+
+        Validate.isTrue( maxConcurrentQueries > 0, "maxConcurrentQueries must be positive." );
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool( maxConcurrentQueries, new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable runnable ) {
+                Thread thread = new Thread( runnable, "AsyncMagicDAO-query-" + threadNumber.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Cancel every waiting query, and stop the threads created by this instance, if any. Queries already started are allowed to finish. Queries
+     * requested after this are cancelled.
+     */
+    public void close() {
+        closed = true;
+        this.cancelWaitingQueries();
+        if ( ownedExecutor != null ) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * @see SearchDAO#getPageWithSearchParameters(int, List)
+     */
+    public ListenableFuture<List<MagicCard>> getPageWithSearchParameters( final int pageNumber, List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> call() {
+                return searchDAO.getPageWithSearchParameters( pageNumber, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getAllWithSearchParameters(List)
+     */
+    public ListenableFuture<List<MagicCard>> getAllWithSearchParameters( List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> call() {
+                return searchDAO.getAllWithSearchParameters( params );
+            }
+        } );
+    }
+
+    /**
+     * The handler is called on the Executor's thread, and must be safe to call from there.
+     *
+     * @see SearchDAO#streamAllWithSearchParameters(List, MagicCardHandler)
+     */
+    public ListenableFuture<Integer> streamAllWithSearchParameters( List<SearchParameter> searchParams, final MagicCardHandler handler ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return searchDAO.streamAllWithSearchParameters( params, handler );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getNextWithSearchParameters(int, List)
+     */
+    public ListenableFuture<MagicCard> getNextWithSearchParameters( final int pointer, List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<MagicCard>() {
+            @Override
+            public MagicCard call() {
+                return searchDAO.getNextWithSearchParameters( pointer, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getPageWithSearchParametersAndPageSize(int, int, List)
+     */
+    public ListenableFuture<List<MagicCard>> getPageWithSearchParametersAndPageSize( final int pageNumber, final int pageSize,
+            List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> call() {
+                return searchDAO.getPageWithSearchParametersAndPageSize( pageNumber, pageSize, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getPageAfterTokenWithSearchParameters(String, int, List)
+     */
+    public ListenableFuture<SearchPage> getPageAfterTokenWithSearchParameters( final String pageToken, final int pageSize,
+            List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<SearchPage>() {
+            @Override
+            public SearchPage call() {
+                return searchDAO.getPageAfterTokenWithSearchParameters( pageToken, pageSize, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getSearchResultWithSearchParameters(int, int, List)
+     */
+    public ListenableFuture<SearchResult> getSearchResultWithSearchParameters( final int pageNumber, final int pageSize,
+            List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<SearchResult>() {
+            @Override
+            public SearchResult call() {
+                return searchDAO.getSearchResultWithSearchParameters( pageNumber, pageSize, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getFacetedSearchResultWithSearchParameters(int, int, List)
+     */
+    public ListenableFuture<FacetedSearchResult> getFacetedSearchResultWithSearchParameters( final int pageNumber, final int pageSize,
+            List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<FacetedSearchResult>() {
+            @Override
+            public FacetedSearchResult call() {
+                return searchDAO.getFacetedSearchResultWithSearchParameters( pageNumber, pageSize, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getPageByRelevanceWithSearchParameters(int, int, List)
+     */
+    public ListenableFuture<List<MagicCard>> getPageByRelevanceWithSearchParameters( final int pageNumber, final int pageSize,
+            List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> call() {
+                return searchDAO.getPageByRelevanceWithSearchParameters( pageNumber, pageSize, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getPageByNameWithSearchParameters(int, List)
+     */
+    public ListenableFuture<List<MagicCard>> getPageByNameWithSearchParameters( final int pageNumber, List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> call() {
+                return searchDAO.getPageByNameWithSearchParameters( pageNumber, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getAllByNameWithSearchParameters(List)
+     */
+    public ListenableFuture<List<MagicCard>> getAllByNameWithSearchParameters( List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> call() {
+                return searchDAO.getAllByNameWithSearchParameters( params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getNextByNameWithSearchParameters(int, List)
+     */
+    public ListenableFuture<MagicCard> getNextByNameWithSearchParameters( final int pointer, List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<MagicCard>() {
+            @Override
+            public MagicCard call() {
+                return searchDAO.getNextByNameWithSearchParameters( pointer, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getPageByNameWithSearchParametersAndPageSize(int, int, List)
+     */
+    public ListenableFuture<List<MagicCard>> getPageByNameWithSearchParametersAndPageSize( final int pageNumber, final int pageSize,
+            List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> call() {
+                return searchDAO.getPageByNameWithSearchParametersAndPageSize( pageNumber, pageSize, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#getSearchResultByNameWithSearchParameters(int, int, List)
+     */
+    public ListenableFuture<SearchResult> getSearchResultByNameWithSearchParameters( final int pageNumber, final int pageSize,
+            List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<SearchResult>() {
+            @Override
+            public SearchResult call() {
+                return searchDAO.getSearchResultByNameWithSearchParameters( pageNumber, pageSize, params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#numberOfResultsWithSearchParameters(List)
+     */
+    public ListenableFuture<Integer> numberOfResultsWithSearchParameters( List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return searchDAO.numberOfResultsWithSearchParameters( params );
+            }
+        } );
+    }
+
+    /**
+     * @see SearchDAO#numberOfUniqueNamesWithSearchParameters(List)
+     */
+    public ListenableFuture<Integer> numberOfUniqueNamesWithSearchParameters( List<SearchParameter> searchParams ) {
+
+        final List<SearchParameter> params = new ArrayList<>( searchParams );
+        return this.submit( new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return searchDAO.numberOfUniqueNamesWithSearchParameters( params );
+            }
+        } );
+    }
+
+    /**
+     * @see SubTypeDAO#getAllSubTypes()
+     */
+    public ListenableFuture<List<SubType>> getAllSubTypes() {
+        return this.submit( new Callable<List<SubType>>() {
+            @Override
+            public List<SubType> call() {
+                return subTypeDAO.getAllSubTypes();
+            }
+        } );
+    }
+
+    /**
+     * @see SubTypeDAO#getSubTypesAndFrequency()
+     */
+    public ListenableFuture<Map<SubType, Integer>> getSubTypesAndFrequency() {
+        return this.submit( new Callable<Map<SubType, Integer>>() {
+            @Override
+            public Map<SubType, Integer> call() {
+                return subTypeDAO.getSubTypesAndFrequency();
+            }
+        } );
+    }
+
+    /**
+     * @see ExpansionDAO#getAllExpansions()
+     */
+    public ListenableFuture<List<String>> getAllExpansions() {
+        return this.submit( new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                return expansionDAO.getAllExpansions();
+            }
+        } );
+    }
+
+    /**
+     * Queue the given query, and start it on the Executor if a permit is free
+     */
+    private <T> ListenableFuture<T> submit( Callable<T> query ) {
+
+        ListenableFutureTask<T> retVal = new ListenableFutureTask<>( query );
+        waitingQueries.add( retVal );
+        if ( closed ) {
+            // Closed before or while this was queued
+            this.cancelWaitingQueries();
+        } else {
+            this.startWaitingQueries();
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Hand waiting queries to the Executor while permits are free. Called after every query is queued and after every query finishes, so a query
+     * is never left waiting while a permit is free: either the thread queuing it sees the permit, or the thread releasing the permit sees it.
+     */
+    private void startWaitingQueries() {
+
+        while ( !closed && !waitingQueries.isEmpty() && queryPermits.tryAcquire() ) {
+
+            final ListenableFutureTask<?> query = waitingQueries.poll();
+            if ( query == null ) {
+                // Another thread started it first
+                queryPermits.release();
+                continue;
+            }
+
+            try {
+                executor.execute( new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            query.run();
+                        } finally {
+                            queryPermits.release();
+                            AsyncMagicDAO.this.startWaitingQueries();
+                        }
+                    }
+                } );
+            } catch ( RejectedExecutionException e ) {
+                // This may be a worker thread, or the caller of another query, so fail every waiting query instead of throwing
+                queryPermits.release();
+                query.cancel( false );
+                this.cancelWaitingQueries();
+                return;
+            }
+        }
+    }
+
+    private void cancelWaitingQueries() {
+        for ( ListenableFutureTask<?> query = waitingQueries.poll(); query != null; query = waitingQueries.poll() ) {
+            query.cancel( false );
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import com.christopherfebles.magic.dao.MagicCardChangeListener;
+import com.christopherfebles.magic.dao.MagicCardDAO;
+import com.christopherfebles.magic.dao.result.MultiverseIdSet;
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * Optional read-through cache of cards by multiverse id, in front of another MagicCardDAO.<br>
+ * <br>
+ * {@link #getCardFromDatabaseById(Integer)} loads each card from the wrapped DAO once, and then answers from memory until the card is written or
+ * the cache is full. Once full, the least recently read card is dropped. Cards that do not exist are not cached.<br>
+ * <br>
+ * MagicCard is mutable, so the cache holds its own copy of each card, and every read returns a new copy. Callers may modify the returned card
+ * without affecting the cache.<br>
+ * <br>
+ * Cards written through this DAO are dropped from the cache. As a MagicCardChangeListener, cards written directly through MagicCardDAOImpl are
+ * dropped too. All other methods are passed through to the wrapped DAO.<br>
+ * <br>
+ * This class is not a Spring component. To use it, declare it as the primary MagicCardDAO bean, wrapping the MagicCardDAOImpl bean.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class CachingMagicCardDAO implements MagicCardDAO, MagicCardChangeListener {
+
+    private final MagicCardDAO delegate;
+
+    private final Map<Integer, MagicCard> cards;
+
+    /**
+     * Incremented whenever a card is dropped, so a card read from the database during a write is not cached
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Cache cards read from the given DAO
+     *
+     * @param delegate
+     *            The DAO to read cards from
+     * @param maxCards
+     *            The number of cards to keep
+     */
+    public CachingMagicCardDAO( MagicCardDAO delegate, final int maxCards ) {
+
+        Validate.notNull( delegate, "delegate cannot be null." );
+        Validate.isTrue( maxCards > 0, "maxCards must be positive." );
+
+        this.delegate = delegate;
+        this.cards = new LinkedHashMap<Integer, MagicCard>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Integer, MagicCard> eldest ) {
+                return size() > maxCards;
+            }
+        };
+    }
+
+    /**
+     * @return The number of cards read from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of cards read from the wrapped DAO
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of cards currently cached
+     */
+    public int size() {
+        synchronized ( cards ) {
+            return cards.size();
+        }
+    }
+
+    /**
+     * Drop every cached card. Hit and miss counts are kept.
+     */
+    public void clear() {
+        synchronized ( cards ) {
+            invalidations.incrementAndGet();
+            cards.clear();
+        }
+    }
+
+    @Override
+    public void cardsChanged( Collection<Integer> multiverseIds ) {
+        this.invalidate( multiverseIds );
+    }
+
+    @Override
+    public void ownedCardsChanged( Collection<Integer> multiverseIds ) {
+        // Owned counts are not part of a MagicCard
+    }
+
+    private void invalidate( Collection<Integer> multiverseIds ) {
+        synchronized ( cards ) {
+            invalidations.incrementAndGet();
+            for ( Integer multiverseId : multiverseIds ) {
+                cards.remove( multiverseId );
+            }
+        }
+    }
+
+    private void invalidateCards( Collection<MagicCard> writtenCards ) {
+
+        if ( writtenCards == null ) {
+            return;
+        }
+
+        synchronized ( cards ) {
+            invalidations.incrementAndGet();
+            for ( MagicCard card : writtenCards ) {
+                if ( card != null ) {
+                    cards.remove( card.getMultiverseId() );
+                }
+            }
+        }
+    }
+
+    /*********** Cached methods ***********/
+
+    @Override
+    public MagicCard getCardFromDatabaseById( Integer multiverseId ) {
+
+        Validate.notNull( multiverseId, "multiverseId cannot be null." );
+
+        long invalidationsBefore;
+        synchronized ( cards ) {
+            MagicCard cached = cards.get( multiverseId );
+            if ( cached != null ) {
+                hits.incrementAndGet();
+                return new MagicCard( cached );
+            }
+            invalidationsBefore = invalidations.get();
+        }
+        misses.incrementAndGet();
+
+        MagicCard retVal = delegate.getCardFromDatabaseById( multiverseId );
+        if ( retVal != null ) {
+            MagicCard cached = new MagicCard( retVal );
+            synchronized ( cards ) {
+                if ( invalidations.get() == invalidationsBefore ) {
+                    cards.put( multiverseId, cached );
+                }
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Cards that are not cached are loaded from the wrapped DAO together, and cached.
+     */
+    @Override
+    public Map<Integer, MagicCard> getCardsFromDatabaseByIds( Collection<Integer> multiverseIds ) {
+
+        Validate.notNull( multiverseIds, "multiverseIds cannot be null." );
+
+        Map<Integer, MagicCard> found = new HashMap<>();
+        List<Integer> missingIds = new ArrayList<>();
+        long invalidationsBefore;
+        synchronized ( cards ) {
+            for ( Integer multiverseId : multiverseIds ) {
+                MagicCard cached = cards.get( multiverseId );
+                if ( cached != null ) {
+                    found.put( multiverseId, cached );
+                } else {
+                    missingIds.add( multiverseId );
+                }
+            }
+            invalidationsBefore = invalidations.get();
+        }
+        hits.addAndGet( multiverseIds.size() - missingIds.size() );
+        misses.addAndGet( missingIds.size() );
+
+        if ( !missingIds.isEmpty() ) {
+            Map<Integer, MagicCard> loaded = delegate.getCardsFromDatabaseByIds( missingIds );
+            if ( loaded == null ) {
+                return null;
+            }
+
+            synchronized ( cards ) {
+                boolean cacheable = invalidations.get() == invalidationsBefore;
+                for ( Map.Entry<Integer, MagicCard> card : loaded.entrySet() ) {
+                    MagicCard copy = new MagicCard( card.getValue() );
+                    found.put( card.getKey(), copy );
+                    if ( cacheable ) {
+                        cards.put( card.getKey(), copy );
+                    }
+                }
+            }
+        }
+
+        Map<Integer, MagicCard> retVal = new LinkedHashMap<>();
+        for ( Integer multiverseId : multiverseIds ) {
+            MagicCard card = found.get( multiverseId );
+            if ( card != null && !retVal.containsKey( multiverseId ) ) {
+                retVal.put( multiverseId, new MagicCard( card ) );
+            }
+        }
+
+        return retVal;
+    }
+
+    @Override
+    public boolean isCardInDatabase( Integer multiverseId ) {
+
+        synchronized ( cards ) {
+            if ( cards.containsKey( multiverseId ) ) {
+                return true;
+            }
+        }
+
+        return delegate.isCardInDatabase( multiverseId );
+    }
+
+    @Override
+    public boolean addCardToDatabase( MagicCard card ) {
+        try {
+            return delegate.addCardToDatabase( card );
+        } finally {
+            this.invalidateCards( Collections.singleton( card ) );
+        }
+    }
+
+    @Override
+    public boolean saveCardToDatabase( MagicCard card ) {
+        try {
+            return delegate.saveCardToDatabase( card );
+        } finally {
+            this.invalidateCards( Collections.singleton( card ) );
+        }
+    }
+
+    @Override
+    public Map<Integer, Boolean> addCardsToDatabase( Collection<MagicCard> cardsToAdd ) {
+        try {
+            return delegate.addCardsToDatabase( cardsToAdd );
+        } finally {
+            this.invalidateCards( cardsToAdd );
+        }
+    }
+
+    @Override
+    public Map<Integer, Boolean> saveCardsToDatabase( Collection<MagicCard> cardsToSave ) {
+        try {
+            return delegate.saveCardsToDatabase( cardsToSave );
+        } finally {
+            this.invalidateCards( cardsToSave );
+        }
+    }
+
+    @Override
+    public boolean removeCardFromDatabaseById( Integer multiverseId ) {
+        try {
+            return delegate.removeCardFromDatabaseById( multiverseId );
+        } finally {
+            this.invalidate( Collections.singleton( multiverseId ) );
+        }
+    }
+
+    /*********** Pass-through methods ***********/
+
+    @Override
+    public int numberOfCardsOwned() {
+        return delegate.numberOfCardsOwned();
+    }
+
+    @Override
+    public int numberOfOwnedCard( Integer multiverseId ) {
+        return delegate.numberOfOwnedCard( multiverseId );
+    }
+
+    @Override
+    public List<MagicCard> getOwnedCards() {
+        return delegate.getOwnedCards();
+    }
+
+    @Override
+    public boolean isCardOwned( Integer multiverseId ) {
+        return delegate.isCardOwned( multiverseId );
+    }
+
+    @Override
+    public boolean removeOwnedCardById( Integer multiverseId ) {
+        return delegate.removeOwnedCardById( multiverseId );
+    }
+
+    @Override
+    public boolean incrementOwnedCard( Integer multiverseId ) {
+        return delegate.incrementOwnedCard( multiverseId );
+    }
+
+    @Override
+    public boolean addOwnedCard( Integer multiverseId ) {
+        return delegate.addOwnedCard( multiverseId );
+    }
+
+    @Override
+    public boolean decrementOwnedCard( Integer multiverseId ) {
+        return delegate.decrementOwnedCard( multiverseId );
+    }
+
+    @Override
+    public int updateOwnedCardCount( Integer multiverseId, Integer newCardCount ) {
+        return delegate.updateOwnedCardCount( multiverseId, newCardCount );
+    }
+
+    @Override
+    public boolean adjustOwnedCardCount( Integer multiverseId, int delta ) {
+        return delegate.adjustOwnedCardCount( multiverseId, delta );
+    }
+
+    @Override
+    public boolean adjustOwnedCardCounts( Map<Integer, Integer> deltas ) {
+        return delegate.adjustOwnedCardCounts( deltas );
+    }
+
+    @Override
+    public int numberOfCardsInDatabase() {
+        return delegate.numberOfCardsInDatabase();
+    }
+
+    @Override
+    public int getHighestMultiverseId() {
+        return delegate.getHighestMultiverseId();
+    }
+
+    @Override
+    public List<Integer> getAllMultiverseIds() {
+        return delegate.getAllMultiverseIds();
+    }
+
+    @Override
+    public MultiverseIdSet getMultiverseIdSet() {
+        return delegate.getMultiverseIdSet();
+    }
+
+    @Override
+    public byte[] getCardImageById( Integer multiverseId ) {
+        return delegate.getCardImageById( multiverseId );
+    }
+
+}
@@ -0,0 +1,406 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import com.christopherfebles.magic.dao.MagicCardHandler;
+import com.christopherfebles.magic.dao.SearchDAO;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.result.FacetedSearchResult;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.dao.result.SearchResult;
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * Optional cache of paged search results and counts in front of another SearchDAO.<br>
+ * <br>
+ * Results are keyed by the method, the page requested and the field, value and AND/OR of each SearchParameter, in order. An entry is used only while
+ * {@link MagicCardDAOImpl#getCatalogVersion()} is unchanged since it was loaded, and for at most {@code timeToLiveMillis}. Once full, the least
+ * recently used entry is dropped. Errors are not cached.<br>
+ * <br>
+ * Only paged searches and counts are cached. Searches for all results, single cards and streams are passed to the wrapped DAO every time.<br>
+ * <br>
+ * MagicCard is mutable, so the cache holds its own copy of each result, and every search returns a new copy. Callers may modify the returned
+ * cards without affecting the cache. Facet counts cannot be modified, so they are shared.<br>
+ * <br>
+ * This class is not annotated for component scanning. To use it, declare it in the Spring configuration with primary="true".
+ *
+ * @author Christopher Febles
+ *
+ */
+public class CachingSearchDAO implements SearchDAO {
+
+    private final SearchDAO delegate;
+    private final MagicCardDAOImpl cardDAO;
+    private final long timeToLiveMillis;
+
+    private final Map<String, CacheEntry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Cache the results of the given DAO
+     *
+     * @param delegate
+     *            The DAO to load results from
+     * @param cardDAO
+     *            The DAO all writes are made through, whose catalog version invalidates the cache
+     * @param maxEntries
+     *            The number of results to keep
+     * @param timeToLiveMillis
+     *            The longest time, in milliseconds, a result is kept
+     */
+    public CachingSearchDAO( SearchDAO delegate, MagicCardDAOImpl cardDAO, final int maxEntries, long timeToLiveMillis ) {
+
+        Validate.notNull( delegate, "delegate cannot be null." );
+        Validate.notNull( cardDAO, "cardDAO cannot be null." );
+        Validate.isTrue( maxEntries > 0, "maxEntries must be positive." );
+        Validate.isTrue( timeToLiveMillis > 0, "timeToLiveMillis must be positive." );
+
+        this.delegate = delegate;
+        this.cardDAO = cardDAO;
+        this.timeToLiveMillis = timeToLiveMillis;
+
+        this.entries = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CacheEntry> eldest ) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The number of searches answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of searches passed to the wrapped DAO because they were not cached, or were out of date
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The fraction of cacheable searches answered from the cache, or zero before the first search
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return The number of results currently cached, including any that are out of date
+     */
+    public int size() {
+        synchronized ( entries ) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Drop every cached result. Hit and miss counts are kept.
+     */
+    public void clear() {
+        synchronized ( entries ) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public List<MagicCard> getPageWithSearchParameters( final int pageNumber, final List<SearchParameter> searchParams ) {
+        return this.load( "page", pageNumber + "", searchParams, new Search<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> run() {
+                return delegate.getPageWithSearchParameters( pageNumber, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public List<MagicCard> getAllWithSearchParameters( List<SearchParameter> searchParams ) {
+        return delegate.getAllWithSearchParameters( searchParams );
+    }
+
+    @Override
+    public int streamAllWithSearchParameters( List<SearchParameter> searchParams, MagicCardHandler handler ) {
+        return delegate.streamAllWithSearchParameters( searchParams, handler );
+    }
+
+    @Override
+    public MagicCard getNextWithSearchParameters( int pointer, List<SearchParameter> searchParams ) {
+        return delegate.getNextWithSearchParameters( pointer, searchParams );
+    }
+
+    @Override
+    public int numberOfResultsWithSearchParameters( final List<SearchParameter> searchParams ) {
+        Integer retVal = this.load( "count", "", searchParams, new Search<Integer>() {
+            @Override
+            public Integer run() {
+                int count = delegate.numberOfResultsWithSearchParameters( searchParams );
+                return count < 0 ? null : count;
+            }
+        } );
+        return retVal == null ? -1 : retVal;
+    }
+
+    @Override
+    public int numberOfResultsPerPage() {
+        return delegate.numberOfResultsPerPage();
+    }
+
+    @Override
+    public List<MagicCard> getPageWithSearchParametersAndPageSize( final int pageNumber, final int pageSize,
+            final List<SearchParameter> searchParams ) {
+
+        if ( pageNumber < 0 ) {
+            return delegate.getPageWithSearchParametersAndPageSize( pageNumber, pageSize, searchParams );
+        }
+
+        return this.load( "sizedPage", pageNumber + "," + pageSize, searchParams, new Search<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> run() {
+                return delegate.getPageWithSearchParametersAndPageSize( pageNumber, pageSize, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public SearchPage getPageAfterTokenWithSearchParameters( final String pageToken, final int pageSize, final List<SearchParameter> searchParams ) {
+        return this.load( "pageAfterToken", pageToken + "," + pageSize, searchParams, new Search<SearchPage>() {
+            @Override
+            public SearchPage run() {
+                return delegate.getPageAfterTokenWithSearchParameters( pageToken, pageSize, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public SearchResult getSearchResultWithSearchParameters( final int pageNumber, final int pageSize, final List<SearchParameter> searchParams ) {
+        return this.load( "searchResult", pageNumber + "," + pageSize, searchParams, new Search<SearchResult>() {
+            @Override
+            public SearchResult run() {
+                return delegate.getSearchResultWithSearchParameters( pageNumber, pageSize, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public FacetedSearchResult getFacetedSearchResultWithSearchParameters( final int pageNumber, final int pageSize,
+            final List<SearchParameter> searchParams ) {
+        return this.load( "facetedSearchResult", pageNumber + "," + pageSize, searchParams, new Search<FacetedSearchResult>() {
+            @Override
+            public FacetedSearchResult run() {
+                return delegate.getFacetedSearchResultWithSearchParameters( pageNumber, pageSize, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public List<MagicCard> getPageByRelevanceWithSearchParameters( final int pageNumber, final int pageSize,
+            final List<SearchParameter> searchParams ) {
+        return this.load( "pageByRelevance", pageNumber + "," + pageSize, searchParams, new Search<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> run() {
+                return delegate.getPageByRelevanceWithSearchParameters( pageNumber, pageSize, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public List<MagicCard> getPageByNameWithSearchParameters( final int pageNumber, final List<SearchParameter> searchParams ) {
+        return this.load( "pageByName", pageNumber + "", searchParams, new Search<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> run() {
+                return delegate.getPageByNameWithSearchParameters( pageNumber, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public List<MagicCard> getAllByNameWithSearchParameters( List<SearchParameter> searchParams ) {
+        return delegate.getAllByNameWithSearchParameters( searchParams );
+    }
+
+    @Override
+    public MagicCard getNextByNameWithSearchParameters( int pointer, List<SearchParameter> searchParams ) {
+        return delegate.getNextByNameWithSearchParameters( pointer, searchParams );
+    }
+
+    @Override
+    public List<MagicCard> getPageByNameWithSearchParametersAndPageSize( final int pageNumber, final int pageSize,
+            final List<SearchParameter> searchParams ) {
+
+        if ( pageNumber < 0 ) {
+            return delegate.getPageByNameWithSearchParametersAndPageSize( pageNumber, pageSize, searchParams );
+        }
+
+        return this.load( "sizedPageByName", pageNumber + "," + pageSize, searchParams, new Search<List<MagicCard>>() {
+            @Override
+            public List<MagicCard> run() {
+                return delegate.getPageByNameWithSearchParametersAndPageSize( pageNumber, pageSize, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public SearchResult getSearchResultByNameWithSearchParameters( final int pageNumber, final int pageSize,
+            final List<SearchParameter> searchParams ) {
+        return this.load( "searchResultByName", pageNumber + "," + pageSize, searchParams, new Search<SearchResult>() {
+            @Override
+            public SearchResult run() {
+                return delegate.getSearchResultByNameWithSearchParameters( pageNumber, pageSize, searchParams );
+            }
+        } );
+    }
+
+    @Override
+    public int numberOfUniqueNamesWithSearchParameters( final List<SearchParameter> searchParams ) {
+        Integer retVal = this.load( "uniqueNameCount", "", searchParams, new Search<Integer>() {
+            @Override
+            public Integer run() {
+                int count = delegate.numberOfUniqueNamesWithSearchParameters( searchParams );
+                return count < 0 ? null : count;
+            }
+        } );
+        return retVal == null ? -1 : retVal;
+    }
+
+    /**
+     * Return the cached result of the given search, or run it and cache the result if it is not null
+     */
+    private <T> T load( String method, String pageSpec, List<SearchParameter> searchParams, Search<T> search ) {
+
+        String key = getCacheKey( method, pageSpec, searchParams );
+        long version = cardDAO.getCatalogVersion();
+        long now = System.currentTimeMillis();
+
+        CacheEntry entry;
+        synchronized ( entries ) {
+            entry = entries.get( key );
+        }
+        if ( entry != null && entry.version == version && entry.expires > now ) {
+            hits.incrementAndGet();
+            @SuppressWarnings( "unchecked" )
+            T retVal = (T) copyResult( entry.value );
+            return retVal;
+        }
+        misses.incrementAndGet();
+
+        // The version is read before searching, so a write during the search leaves this entry out of date
+        T retVal = search.run();
+        if ( retVal != null ) {
+            CacheEntry newEntry = new CacheEntry( copyResult( retVal ), version, now + timeToLiveMillis );
+            synchronized ( entries ) {
+                entries.put( key, newEntry );
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Copy every card in a cached result, so that neither the caller that loaded it nor any later caller can change the cached cards
+     *
+     * @param result
+     *            A list of cards, SearchPage, SearchResult or count
+     * @return A copy of the result, or the same result if it cannot be modified
+     */
+    @SuppressWarnings( "unchecked" )
+    private static Object copyResult( Object result ) {
+
+        if ( result instanceof List ) {
+            return copyCards( (List<MagicCard>) result );
+        } else if ( result instanceof SearchPage ) {
+            SearchPage page = (SearchPage) result;
+            return new SearchPage( copyCards( page.getCards() ), page.getNextPageToken() );
+        } else if ( result instanceof FacetedSearchResult ) {
+            FacetedSearchResult searchResult = (FacetedSearchResult) result;
+            return new FacetedSearchResult( copyCards( searchResult.getCards() ), searchResult.getTotalResults(), searchResult.getPageNumber(),
+                    searchResult.getPageSize(), searchResult.getFacets() );
+        } else if ( result instanceof SearchResult ) {
+            SearchResult searchResult = (SearchResult) result;
+            return new SearchResult( copyCards( searchResult.getCards() ), searchResult.getTotalResults(), searchResult.getPageNumber(),
+                    searchResult.getPageSize() );
+        }
+
+        // Counts are immutable
+        return result;
+    }
+
+    private static List<MagicCard> copyCards( List<MagicCard> cards ) {
+
+        List<MagicCard> retVal = new ArrayList<>( cards.size() );
+        for ( MagicCard card : cards ) {
+            retVal.add( new MagicCard( card ) );
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Build the cache key from the values of each parameter, as SearchParameters are mutable and their generated parameter names are unique.<br>
+     * <br>
+     * And binds tighter than Or, so the parameters are grouped into And-terms, each starting at an Or parameter. The parameters of each term are
+     * sorted, so that reordering them shares one entry, and the operator of the first parameter is left out, as the search never uses it.
+     */
+    private static String getCacheKey( String method, String pageSpec, List<SearchParameter> searchParams ) {
+
+        StringBuilder retVal = new StringBuilder( method ).append( '(' ).append( pageSpec ).append( ')' );
+        List<String> term = new ArrayList<>();
+        for ( SearchParameter param : searchParams ) {
+            if ( param.isOr() && !term.isEmpty() ) {
+                appendTerm( retVal, term );
+                retVal.append( " OR " );
+                term.clear();
+            }
+
+            String searchText = param.getSearchText();
+            term.add( param.getFieldName() + " " + ( searchText == null ? -1 : searchText.length() ) + ":" + searchText );
+        }
+        appendTerm( retVal, term );
+
+        return retVal.toString();
+    }
+
+    private static void appendTerm( StringBuilder key, List<String> term ) {
+
+        Collections.sort( term );
+        for ( String param : term ) {
+            key.append( '|' ).append( param );
+        }
+    }
+
+    /**
+     * A search to run on the wrapped DAO when its result is not cached
+     */
+    private interface Search<T> {
+        T run();
+    }
+
+    private static class CacheEntry {
+
+        private final Object value;
+        private final long version;
+        private final long expires;
+
+        private CacheEntry( Object value, long version, long expires ) {
+            this.value = value;
+            this.version = version;
+            this.expires = expires;
+        }
+    }
+}
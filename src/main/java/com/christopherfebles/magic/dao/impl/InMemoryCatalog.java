@@ -0,0 +1,596 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import com.christopherfebles.magic.dao.ChangedCardLoader;
+import com.christopherfebles.magic.dao.mapper.MagicCardRowMapper;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.dao.result.SearchFacets;
+import com.christopherfebles.magic.model.MagicCard;
+
+import static com.christopherfebles.magic.dao.MagicDAOConstants.*;
+
+/**
+ * An immutable snapshot of every card in the database, with a bitmap index for every searchable column.<br>
+ * <br>
+ * Cards are numbered by their position in search order (name, then multiverse id), so a bitmap of matching ordinals is already sorted. Each index
+ * maps a column value to the ordinals of the cards with that value, stored as a BitSet when dense and as a sorted array when sparse, whichever is
+ * smaller. Text values are compared ignoring case, as MySQL does.<br>
+ * <br>
+ * The indexed column values of each card are kept beside it, so a catalog with a few changed cards can be built from this one by loading only
+ * those cards.
+ *
+ * @see InMemorySearchDAO
+ * @author Christopher Febles
+ *
+ */
+final class InMemoryCatalog {
+
+    private static final Logger LOG = LoggerFactory.getLogger( InMemoryCatalog.class );
+
+
+    private static final String CARD_COLUMNS_QUERY = "Select " + CARD_SELECT_COLUMNS + ", " + ALL_CARDS_PREFIX + "color, " + ALL_CARDS_PREFIX
+            + "color_mask From " + ALL_CARDS_TABLE;
+    private static final String CARD_QUERY = CARD_COLUMNS_QUERY + " order by " + ALL_CARDS_PREFIX + "name, " + ALL_CARDS_PREFIX + "multiverse_id ";
+    private static final String CARDS_BY_ID_QUERY = CARD_COLUMNS_QUERY + " Where " + ALL_CARDS_PREFIX + "multiverse_id in (:multiverseIds) ";
+    private static final String CARD_TYPE_QUERY = "Select " + CARD_TYPE_PREFIX + "multiverse_id, " + CARD_TYPE_PREFIX + "type_name From " + CARD_TYPE_TABLE;
+    private static final String CARD_TYPES_BY_ID_QUERY = CARD_TYPE_QUERY + " Where " + CARD_TYPE_PREFIX + "multiverse_id in (:multiverseIds) ";
+    private static final String OWNED_CARD_QUERY = "Select " + MY_CARDS_PREFIX + "multiverse_id From " + MY_CARDS_TABLE;
+
+    /**
+     * Rarity cannot be searched, but is indexed for facet counts
+     */
+    private static final String RARITY_COLUMN = ALL_CARDS_PREFIX + "rarity";
+
+    /**
+     * The All_Cards columns indexed by text, with their table alias as in {@link FieldName#getColumnName()}
+     */
+    private static final String[] INDEXED_CARD_COLUMNS = { FieldName.NAME.getColumnName(), FieldName.COLOR.getColumnName(),
+            FieldName.EXPANSION.getColumnName(), FieldName.LANGUAGE.getColumnName(), RARITY_COLUMN };
+
+    private final MagicCard[] cards;
+    private final IndexedValues[] values;
+    private final Map<Integer, Integer> ordinalsById;
+    private final Map<String, NavigableMap<String, Postings>> textIndexes;
+    private final NavigableMap<Integer, Postings> colorMaskIndex;
+    private final BitSet ownedCards;
+
+    private InMemoryCatalog( MagicCard[] cards, IndexedValues[] values, Map<Integer, Integer> ordinalsById,
+            Map<String, NavigableMap<String, Postings>> textIndexes, NavigableMap<Integer, Postings> colorMaskIndex, BitSet ownedCards ) {
+        this.cards = cards;
+        this.values = values;
+        this.ordinalsById = ordinalsById;
+        this.textIndexes = textIndexes;
+        this.colorMaskIndex = colorMaskIndex;
+        this.ownedCards = ownedCards;
+    }
+
+    /**
+     * Load every card, type and owned card from the database.<br>
+     * <br>
+     * Run this inside a transaction to index a consistent snapshot.
+     *
+     * @param jdbcTemplate
+     *            The database to load from
+     * @return The indexed catalog
+     */
+    static InMemoryCatalog load( JdbcTemplate jdbcTemplate ) {
+
+        final List<MagicCard> cards = new ArrayList<>();
+        final List<IndexedValues> values = new ArrayList<>();
+        final Map<Integer, Integer> ordinalsById = new HashMap<>();
+
+        LOG.debug( DATABASE_QUERY_LOG_MSG, CARD_QUERY );
+        jdbcTemplate.query( CARD_QUERY, new RowCallbackHandler() {
+
+            private final MagicCardRowMapper rowMapper = new MagicCardRowMapper();
+
+            @Override
+            public void processRow( ResultSet resultSet ) throws SQLException {
+                ordinalsById.put( resultSet.getInt( "multiverse_id" ), cards.size() );
+                cards.add( rowMapper.mapRow( resultSet, cards.size() ) );
+                values.add( new IndexedValues( resultSet ) );
+            }
+        } );
+
+        LOG.debug( DATABASE_QUERY_LOG_MSG, CARD_TYPE_QUERY );
+        jdbcTemplate.query( CARD_TYPE_QUERY, new RowCallbackHandler() {
+            @Override
+            public void processRow( ResultSet resultSet ) throws SQLException {
+                Integer ordinal = ordinalsById.get( resultSet.getInt( "multiverse_id" ) );
+                if ( ordinal != null ) {
+                    values.get( ordinal ).typeNames.add( resultSet.getString( "type_name" ) );
+                }
+            }
+        } );
+
+        return build( cards, values, loadOwnedCards( jdbcTemplate ) );
+    }
+
+    /**
+     * Create a copy of this catalog with the given cards loaded again from the database, and every other card indexed from memory.<br>
+     * <br>
+     * Changed cards are merged into the search order of the unchanged ones, comparing names as {@link #getOrdinalAfter(int, String)} does. Run this
+     * inside a transaction to load a consistent snapshot of the changed cards.
+     *
+     * @param jdbcTemplate
+     *            The database to load from
+     * @param multiverseIds
+     *            The cards that were added, updated or removed
+     * @return A new catalog
+     */
+    InMemoryCatalog withChangedCards( JdbcTemplate jdbcTemplate, Collection<Integer> multiverseIds ) {
+
+        final List<MagicCard> changedCards = new ArrayList<>();
+        final List<IndexedValues> changedValues = new ArrayList<>();
+        final Map<Integer, IndexedValues> changedValuesById = new HashMap<>();
+        NamedParameterJdbcTemplate namedParameterJdbcTemplate = new NamedParameterJdbcTemplate( jdbcTemplate );
+
+        List<Integer> ids = new ArrayList<>( multiverseIds );
+        ChangedCardLoader.queryByIds( namedParameterJdbcTemplate, CARDS_BY_ID_QUERY, ids, new RowCallbackHandler() {
+
+            private final MagicCardRowMapper rowMapper = new MagicCardRowMapper();
+
+            @Override
+            public void processRow( ResultSet resultSet ) throws SQLException {
+                IndexedValues cardValues = new IndexedValues( resultSet );
+                changedValuesById.put( resultSet.getInt( "multiverse_id" ), cardValues );
+                changedCards.add( rowMapper.mapRow( resultSet, changedCards.size() ) );
+                changedValues.add( cardValues );
+            }
+        } );
+
+        ChangedCardLoader.queryByIds( namedParameterJdbcTemplate, CARD_TYPES_BY_ID_QUERY, ids, new RowCallbackHandler() {
+            @Override
+            public void processRow( ResultSet resultSet ) throws SQLException {
+                IndexedValues cardValues = changedValuesById.get( resultSet.getInt( "multiverse_id" ) );
+                if ( cardValues != null ) {
+                    cardValues.typeNames.add( resultSet.getString( "type_name" ) );
+                }
+            }
+        } );
+
+        // Put the changed cards in search order, then merge them with the unchanged cards, which are already in order
+        Integer[] changedOrder = new Integer[changedCards.size()];
+        for ( int x = 0; x < changedOrder.length; x++ ) {
+            changedOrder[x] = x;
+        }
+        Arrays.sort( changedOrder, new Comparator<Integer>() {
+            @Override
+            public int compare( Integer first, Integer second ) {
+                return compareSearchOrder( changedCards.get( first ), changedCards.get( second ) );
+            }
+        } );
+
+        Set<Integer> changedIds = new HashSet<>( multiverseIds );
+        List<MagicCard> mergedCards = new ArrayList<>( cards.length + changedCards.size() );
+        List<IndexedValues> mergedValues = new ArrayList<>( cards.length + changedCards.size() );
+        int next = 0;
+        for ( int ordinal = 0; ordinal < cards.length; ordinal++ ) {
+            if ( changedIds.contains( cards[ordinal].getMultiverseId() ) ) {
+                continue;
+            }
+            for ( ; next < changedOrder.length && compareSearchOrder( changedCards.get( changedOrder[next] ), cards[ordinal] ) < 0; next++ ) {
+                mergedCards.add( changedCards.get( changedOrder[next] ) );
+                mergedValues.add( changedValues.get( changedOrder[next] ) );
+            }
+            mergedCards.add( cards[ordinal] );
+            mergedValues.add( values[ordinal] );
+        }
+        for ( ; next < changedOrder.length; next++ ) {
+            mergedCards.add( changedCards.get( changedOrder[next] ) );
+            mergedValues.add( changedValues.get( changedOrder[next] ) );
+        }
+
+        // Owned cards are tracked separately, so the same ids are still owned
+        List<Integer> ownedIds = new ArrayList<>( ownedCards.cardinality() );
+        for ( int ordinal = ownedCards.nextSetBit( 0 ); ordinal >= 0; ordinal = ownedCards.nextSetBit( ordinal + 1 ) ) {
+            ownedIds.add( cards[ordinal].getMultiverseId() );
+        }
+
+        return build( mergedCards, mergedValues, ownedIds );
+    }
+
+    /**
+     * Index the given cards, which must be in search order.
+     */
+    private static InMemoryCatalog build( List<MagicCard> cards, List<IndexedValues> values, Collection<Integer> ownedIds ) {
+
+        Map<Integer, Integer> ordinalsById = new HashMap<>();
+        Map<String, NavigableMap<String, Postings>> textIndexes = new HashMap<>();
+        NavigableMap<Integer, Postings> colorMaskIndex = new TreeMap<>();
+
+        for ( String column : INDEXED_CARD_COLUMNS ) {
+            textIndexes.put( column, new TreeMap<String, Postings>( String.CASE_INSENSITIVE_ORDER ) );
+        }
+        NavigableMap<String, Postings> typeIndex = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        textIndexes.put( FieldName.TYPE.getColumnName(), typeIndex );
+
+        for ( int ordinal = 0; ordinal < cards.size(); ordinal++ ) {
+            ordinalsById.put( cards.get( ordinal ).getMultiverseId(), ordinal );
+
+            IndexedValues cardValues = values.get( ordinal );
+            for ( int x = 0; x < INDEXED_CARD_COLUMNS.length; x++ ) {
+                addToIndex( textIndexes.get( INDEXED_CARD_COLUMNS[x] ), cardValues.columnValues[x], ordinal );
+            }
+            addToIndex( colorMaskIndex, cardValues.colorMask, ordinal );
+            for ( String typeName : cardValues.typeNames ) {
+                addToIndex( typeIndex, typeName, ordinal );
+            }
+        }
+
+        int universe = cards.size();
+        for ( NavigableMap<String, Postings> index : textIndexes.values() ) {
+            compact( index, universe );
+        }
+        compact( colorMaskIndex, universe );
+
+        InMemoryCatalog catalog = new InMemoryCatalog( cards.toArray( new MagicCard[universe] ), values.toArray( new IndexedValues[universe] ),
+                ordinalsById, textIndexes, colorMaskIndex, new BitSet() );
+        return catalog.withOwnedCards( ownedIds );
+    }
+
+    /**
+     * Compare cards by name ignoring case, then by multiverse id
+     */
+    private static int compareSearchOrder( MagicCard first, MagicCard second ) {
+        int comparison = String.CASE_INSENSITIVE_ORDER.compare( first.getName(), second.getName() );
+        return comparison != 0 ? comparison : Integer.compare( first.getMultiverseId(), second.getMultiverseId() );
+    }
+
+    /**
+     * Load the ids of every owned card from the database
+     *
+     * @param jdbcTemplate
+     *            The database to load from
+     * @return The multiverse ids of every owned card
+     */
+    static List<Integer> loadOwnedCards( JdbcTemplate jdbcTemplate ) {
+        LOG.debug( DATABASE_QUERY_LOG_MSG, OWNED_CARD_QUERY );
+        return jdbcTemplate.queryForList( OWNED_CARD_QUERY, Integer.class );
+    }
+
+    /**
+     * Create a copy of this catalog with a different set of owned cards. Every other index is shared.
+     *
+     * @param ownedIds
+     *            The multiverse ids of every owned card
+     * @return A new catalog
+     */
+    InMemoryCatalog withOwnedCards( Collection<Integer> ownedIds ) {
+
+        BitSet owned = new BitSet( cards.length );
+        for ( Integer multiverseId : ownedIds ) {
+            Integer ordinal = ordinalsById.get( multiverseId );
+            if ( ordinal != null ) {
+                owned.set( ordinal );
+            }
+        }
+
+        return new InMemoryCatalog( cards, values, ordinalsById, textIndexes, colorMaskIndex, owned );
+    }
+
+    /**
+     * @return The number of cards in this catalog
+     */
+    int size() {
+        return cards.length;
+    }
+
+    /**
+     * @param ordinal
+     *            The position of the card in search order
+     * @return The card at the given position
+     */
+    MagicCard getCard( int ordinal ) {
+        return cards[ordinal];
+    }
+
+    /**
+     * @return True if the cards at the given positions have the same name, ignoring case, as MySQL groups them
+     */
+    boolean isSameName( int ordinal, int otherOrdinal ) {
+        return cards[ordinal].getName().equalsIgnoreCase( cards[otherOrdinal].getName() );
+    }
+
+    /**
+     * Find the position of the first card after the given sort key, as used by keyset pagination.
+     *
+     * @param multiverseId
+     *            The multiverse id of the last card seen
+     * @param name
+     *            The name of the last card seen
+     * @return The ordinal of the first card after the given card in search order, or {@link #size()} if there is none
+     */
+    int getOrdinalAfter( int multiverseId, String name ) {
+
+        Integer ordinal = ordinalsById.get( multiverseId );
+        if ( ordinal != null && cards[ordinal].getName().equals( name ) ) {
+            return ordinal + 1;
+        }
+
+        // The card has changed since the token was created, so search for where it would be
+        int low = 0;
+        int high = cards.length;
+        while ( low < high ) {
+            int middle = ( low + high ) >>> 1;
+            int comparison = String.CASE_INSENSITIVE_ORDER.compare( cards[middle].getName(), name );
+            if ( comparison < 0 || ( comparison == 0 && cards[middle].getMultiverseId() <= multiverseId ) ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Find every card matching the given search parameters.<br>
+     * <br>
+     * As in SQL, And takes precedence over Or, and the operator of the first parameter is ignored.
+     *
+     * @param searchParams
+     *            The parameters for this search
+     * @return The ordinals of every matching card
+     */
+    BitSet search( List<SearchParameter> searchParams ) {
+
+        BitSet matches = new BitSet( cards.length );
+        if ( searchParams.isEmpty() ) {
+            matches.set( 0, cards.length );
+            return matches;
+        }
+
+        // Each Or starts a new term of And conditions
+        BitSet term = null;
+        for ( SearchParameter parm : searchParams ) {
+            BitSet parameterMatches = this.match( parm );
+            if ( term == null ) {
+                term = parameterMatches;
+            } else if ( parm.isAnd() ) {
+                term.and( parameterMatches );
+            } else {
+                matches.or( term );
+                term = parameterMatches;
+            }
+        }
+        matches.or( term );
+
+        return matches;
+    }
+
+    /**
+     * Count the given cards by each color, type, subtype, expansion, rarity and language, by intersecting the given cards with each index.
+     *
+     * @param matches
+     *            The ordinals of the cards to count, as returned by {@link #search(List)}
+     * @return The facet counts of the given cards
+     */
+    SearchFacets countFacets( BitSet matches ) {
+
+        SearchFacets.Builder facets = new SearchFacets.Builder();
+
+        for ( Map.Entry<Integer, Postings> entry : colorMaskIndex.entrySet() ) {
+            facets.addColorMask( entry.getKey(), entry.getValue().countIn( matches ) );
+        }
+        for ( Map.Entry<String, Postings> entry : textIndexes.get( FieldName.TYPE.getColumnName() ).entrySet() ) {
+            facets.addTypeName( entry.getKey(), entry.getValue().countIn( matches ) );
+        }
+        for ( Map.Entry<String, Postings> entry : textIndexes.get( FieldName.EXPANSION.getColumnName() ).entrySet() ) {
+            facets.addExpansion( entry.getKey(), entry.getValue().countIn( matches ) );
+        }
+        for ( Map.Entry<String, Postings> entry : textIndexes.get( RARITY_COLUMN ).entrySet() ) {
+            facets.addRarity( entry.getKey(), entry.getValue().countIn( matches ) );
+        }
+        for ( Map.Entry<String, Postings> entry : textIndexes.get( FieldName.LANGUAGE.getColumnName() ).entrySet() ) {
+            facets.addLanguage( entry.getKey(), entry.getValue().countIn( matches ) );
+        }
+
+        return facets.build();
+    }
+
+    private BitSet match( SearchParameter parm ) {
+
+        FieldName fieldName = parm.getFieldName();
+        BitSet matches = new BitSet( cards.length );
+
+        if ( fieldName == FieldName.OWNED ) {
+            matches.or( ownedCards );
+        } else if ( fieldName.isColorMask() ) {
+            int mask = Integer.parseInt( parm.getSearchText() );
+            for ( Map.Entry<Integer, Postings> entry : colorMaskIndex.entrySet() ) {
+                if ( matchesColorMask( fieldName, entry.getKey(), mask ) ) {
+                    entry.getValue().addTo( matches );
+                }
+            }
+        } else {
+            matchLike( textIndexes.get( fieldName.getColumnName() ), parm.getSearchText(), matches );
+        }
+
+        return matches;
+    }
+
+    private static boolean matchesColorMask( FieldName fieldName, int cardMask, int mask ) {
+        switch ( fieldName ) {
+            case COLORS_EXACTLY:
+                return cardMask == mask;
+            case COLORS_INCLUDING:
+                return ( cardMask | mask ) == cardMask;
+            case COLORS_AT_MOST:
+                return ( cardMask & ~mask ) == 0;
+            default:
+                throw new IllegalArgumentException( fieldName + " is not a color mask field." );
+        }
+    }
+
+    /**
+     * Add the cards whose value matches the given LIKE pattern, as MySQL would, to matches.
+     */
+    private static void matchLike( NavigableMap<String, Postings> index, String pattern, BitSet matches ) {
+
+        // Translate the pattern to a regular expression, noting the literal prefix before the first wildcard
+        StringBuilder regex = new StringBuilder();
+        StringBuilder prefix = new StringBuilder();
+        boolean hasWildcard = false;
+        for ( int x = 0; x < pattern.length(); x++ ) {
+            char c = pattern.charAt( x );
+            if ( c == '\\' && x + 1 < pattern.length() ) {
+                c = pattern.charAt( ++x );
+            } else if ( c == '%' || c == '_' ) {
+                regex.append( c == '%' ? ".*" : "." );
+                hasWildcard = true;
+                continue;
+            }
+
+            regex.append( Pattern.quote( String.valueOf( c ) ) );
+            if ( !hasWildcard ) {
+                prefix.append( c );
+            }
+        }
+
+        if ( !hasWildcard ) {
+            Postings postings = index.get( prefix.toString() );
+            if ( postings != null ) {
+                postings.addTo( matches );
+            }
+            return;
+        }
+
+        // Only values starting with the prefix can match, and they are contiguous in the index
+        Pattern compiled = Pattern.compile( regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL );
+        for ( Map.Entry<String, Postings> entry : index.tailMap( prefix.toString(), true ).entrySet() ) {
+            if ( !entry.getKey().regionMatches( true, 0, prefix.toString(), 0, prefix.length() ) ) {
+                break;
+            }
+            if ( compiled.matcher( entry.getKey() ).matches() ) {
+                entry.getValue().addTo( matches );
+            }
+        }
+    }
+
+    private static <K> void addToIndex( Map<K, Postings> index, K value, int ordinal ) {
+
+        if ( value == null ) {
+            // Null never matches LIKE
+            return;
+        }
+
+        Postings postings = index.get( value );
+        if ( postings == null ) {
+            postings = new Postings();
+            index.put( value, postings );
+        }
+        postings.add( ordinal );
+    }
+
+    private static <K> void compact( Map<K, Postings> index, int universe ) {
+        for ( Postings postings : index.values() ) {
+            postings.compact( universe );
+        }
+    }
+
+    /**
+     * The values of one card in each indexed column, as read from the database
+     */
+    private static final class IndexedValues {
+
+        private final String[] columnValues = new String[INDEXED_CARD_COLUMNS.length];
+        private final int colorMask;
+        private final List<String> typeNames = new ArrayList<>( 2 );
+
+        private IndexedValues( ResultSet resultSet ) throws SQLException {
+            for ( int x = 0; x < INDEXED_CARD_COLUMNS.length; x++ ) {
+                // Result set columns are named without the table alias
+                columnValues[x] = resultSet.getString( INDEXED_CARD_COLUMNS[x].substring( ALL_CARDS_PREFIX.length() ) );
+            }
+            colorMask = resultSet.getInt( "color_mask" );
+        }
+    }
+
+    /**
+     * The ordinals of the cards with one column value.<br>
+     * <br>
+     * Built as a growing array, then converted by {@link #compact(int)} to whichever of a BitSet or a sorted array is smaller. Never modified after
+     * compacting.
+     */
+    private static final class Postings {
+
+        /**
+         * An array entry costs 32 bits, while a BitSet costs one bit for every card
+         */
+        private static final int BITS_PER_ORDINAL = Integer.SIZE;
+
+        private int[] ordinals = new int[4];
+        private int size;
+        private BitSet bits;
+
+        private void add( int ordinal ) {
+            if ( size == ordinals.length ) {
+                ordinals = Arrays.copyOf( ordinals, size * 2 );
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        private void compact( int universe ) {
+            if ( (long) size * BITS_PER_ORDINAL > universe ) {
+                bits = new BitSet( universe );
+                for ( int x = 0; x < size; x++ ) {
+                    bits.set( ordinals[x] );
+                }
+                ordinals = null;
+            } else {
+                ordinals = Arrays.copyOf( ordinals, size );
+                Arrays.sort( ordinals );
+            }
+        }
+
+        private int countIn( BitSet target ) {
+            if ( bits != null ) {
+                BitSet intersection = (BitSet) bits.clone();
+                intersection.and( target );
+                return intersection.cardinality();
+            }
+
+            int retVal = 0;
+            for ( int ordinal : ordinals ) {
+                if ( target.get( ordinal ) ) {
+                    retVal++;
+                }
+            }
+            return retVal;
+        }
+
+        private void addTo( BitSet target ) {
+            if ( bits != null ) {
+                target.or( bits );
+            } else {
+                for ( int ordinal : ordinals ) {
+                    target.set( ordinal );
+                }
+            }
+        }
+    }
+
+}
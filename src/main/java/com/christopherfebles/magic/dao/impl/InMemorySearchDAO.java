@@ -0,0 +1,475 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.christopherfebles.magic.dao.ChangedCardLoader;
+import com.christopherfebles.magic.dao.MagicCardHandler;
+import com.christopherfebles.magic.dao.SearchDAO;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.result.FacetedSearchResult;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.dao.result.SearchResult;
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * A SearchDAO that holds the whole catalog in memory and answers searches with bitmap operations instead of SQL.<br>
+ * <br>
+ * Every search returns the same results, in the same order, as {@link SearchDAOImpl}. The catalog is loaded from the database on the first search.
+ * Cards reported as changed by MagicCardDAO are loaded on the next search, and indexed in memory with the rest of the catalog; once more than
+ * {@value ChangedCardLoader#MAX_CHANGED_CARDS} cards change at once, the whole catalog is loaded again instead. Owned card changes only reload the list of owned
+ * cards.<br>
+ * <br>
+ * MagicCard is mutable, so every search returns new copies of the cards it holds. Callers may modify the returned cards without affecting later
+ * searches. Full-text searches are not indexed in memory, and are passed to SearchDAOImpl.<br>
+ * <br>
+ * Declare this class in the Spring configuration with primary="true", so that it is used in place of SearchDAOImpl.
+ *
+ * @see InMemoryCatalog
+ * @author Christopher Febles
+ *
+ */
+public class InMemorySearchDAO extends ChangedCardLoader<InMemoryCatalog> implements SearchDAO {
+
+    private static final Logger LOG = LoggerFactory.getLogger( InMemorySearchDAO.class );
+
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SearchDAOImpl databaseSearchDAO;
+
+    private volatile boolean ownedCardsStale = false;
+
+    /**
+     * Create a new in-memory search over the given database. Nothing is loaded until the first search.
+     *
+     * @param dataSource
+     *            The database holding the catalog
+     */
+    public InMemorySearchDAO( DataSource dataSource ) {
+        super( dataSource );
+
+        jdbcTemplate = new JdbcTemplate( dataSource );
+        transactionTemplate = new TransactionTemplate( new DataSourceTransactionManager( dataSource ) );
+
+        databaseSearchDAO = new SearchDAOImpl();
+        databaseSearchDAO.setDataSource( dataSource );
+    }
+
+    @Override
+    public void ownedCardsChanged( Collection<Integer> multiverseIds ) {
+        ownedCardsStale = true;
+    }
+
+    @Override
+    protected InMemoryCatalog loadAll() {
+
+        // Clear the flag before loading, so that a change made during the load is loaded afterwards
+        ownedCardsStale = false;
+        InMemoryCatalog retVal = transactionTemplate.execute( new TransactionCallback<InMemoryCatalog>() {
+            @Override
+            public InMemoryCatalog doInTransaction( TransactionStatus status ) {
+                return InMemoryCatalog.load( jdbcTemplate );
+            }
+        } );
+        LOG.info( "Loaded {} cards into memory.", retVal.size() );
+
+        return retVal;
+    }
+
+    @Override
+    protected InMemoryCatalog loadChanges( final InMemoryCatalog current, final List<Integer> multiverseIds ) {
+        return transactionTemplate.execute( new TransactionCallback<InMemoryCatalog>() {
+            @Override
+            public InMemoryCatalog doInTransaction( TransactionStatus status ) {
+                return current.withChangedCards( jdbcTemplate, multiverseIds );
+            }
+        } );
+    }
+
+    @Override
+    protected boolean isRefreshNeeded() {
+        return ownedCardsStale;
+    }
+
+    /**
+     * Load the owned cards again.
+     */
+    @Override
+    protected InMemoryCatalog refresh( InMemoryCatalog current ) {
+        ownedCardsStale = false;
+        return current.withOwnedCards( InMemoryCatalog.loadOwnedCards( jdbcTemplate ) );
+    }
+
+    @Override
+    public MagicCard getNextWithSearchParameters( int pointer, List<SearchParameter> searchParams ) {
+        List<MagicCard> searchResults = this.getPageWithSearchParametersAndPageSize( pointer, 1, searchParams );
+
+        MagicCard retVal = null;
+        if ( searchResults != null && !searchResults.isEmpty() ) {
+            retVal = searchResults.get( 0 );
+        }
+
+        return retVal;
+    }
+
+    @Override
+    public List<MagicCard> getPageWithSearchParameters( int pageNumber, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+
+        return this.getPageWithSearchParametersAndPageSize( pageNumber, DEFAULT_PAGE_SIZE, searchParams );
+    }
+
+    @Override
+    public List<MagicCard> getAllWithSearchParameters( List<SearchParameter> searchParams ) {
+        return this.getPageWithSearchParametersAndPageSize( -1, -1, searchParams );
+    }
+
+    @Override
+    public int streamAllWithSearchParameters( List<SearchParameter> searchParams, MagicCardHandler handler ) {
+
+        Validate.notNull( handler, "MagicCardHandler cannot be null." );
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.streamAllWithSearchParameters( searchParams, handler );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return -1;
+        }
+
+        // The cards are already in memory, so there is nothing to stream, but the handler still avoids collecting them into a List
+        BitSet matches = currentCatalog.search( searchParams );
+        for ( int ordinal = matches.nextSetBit( 0 ); ordinal >= 0; ordinal = matches.nextSetBit( ordinal + 1 ) ) {
+            handler.processCard( new MagicCard( currentCatalog.getCard( ordinal ) ) );
+        }
+
+        return matches.cardinality();
+    }
+
+    @Override
+    public List<MagicCard> getPageWithSearchParametersAndPageSize( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.getPageWithSearchParametersAndPageSize( pageNumber, pageSize, searchParams );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return null;
+        }
+
+        BitSet matches = currentCatalog.search( searchParams );
+        if ( pageNumber > 0 ) {
+            return getCards( currentCatalog, matches, skip( matches, 0, pageSize * ( pageNumber - 1 ) ), pageSize );
+        }
+
+        return getCards( currentCatalog, matches, matches.nextSetBit( 0 ), Integer.MAX_VALUE );
+    }
+
+    @Override
+    public SearchPage getPageAfterTokenWithSearchParameters( String pageToken, int pageSize, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.getPageAfterTokenWithSearchParameters( pageToken, pageSize, searchParams );
+        }
+
+        int start = 0;
+        String[] seekKey = null;
+        if ( pageToken != null ) {
+            seekKey = PageTokens.decode( pageToken );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return null;
+        }
+        if ( seekKey != null ) {
+            start = currentCatalog.getOrdinalAfter( Integer.parseInt( seekKey[0] ), seekKey[1] );
+        }
+
+        // Load one extra card to find out if there is another page
+        BitSet matches = currentCatalog.search( searchParams );
+        List<MagicCard> cards = getCards( currentCatalog, matches, matches.nextSetBit( start ), pageSize + 1 );
+
+        String nextPageToken = null;
+        if ( cards.size() > pageSize ) {
+            cards = new ArrayList<>( cards.subList( 0, pageSize ) );
+            nextPageToken = PageTokens.encode( cards.get( pageSize - 1 ) );
+        }
+
+        return new SearchPage( cards, nextPageToken );
+    }
+
+    @Override
+    public SearchResult getSearchResultWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.getSearchResultWithSearchParameters( pageNumber, pageSize, searchParams );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return null;
+        }
+
+        BitSet matches = currentCatalog.search( searchParams );
+        List<MagicCard> cards = getCards( currentCatalog, matches, skip( matches, 0, pageSize * ( pageNumber - 1 ) ), pageSize );
+
+        return new SearchResult( cards, matches.cardinality(), pageNumber, pageSize );
+    }
+
+    @Override
+    public FacetedSearchResult getFacetedSearchResultWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.getFacetedSearchResultWithSearchParameters( pageNumber, pageSize, searchParams );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return null;
+        }
+
+        BitSet matches = currentCatalog.search( searchParams );
+        List<MagicCard> cards = getCards( currentCatalog, matches, skip( matches, 0, pageSize * ( pageNumber - 1 ) ), pageSize );
+
+        return new FacetedSearchResult( cards, matches.cardinality(), pageNumber, pageSize, currentCatalog.countFacets( matches ) );
+    }
+
+    @Override
+    public List<MagicCard> getPageByRelevanceWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.getPageByRelevanceWithSearchParameters( pageNumber, pageSize, searchParams );
+        }
+
+        // Without full-text parameters, every card is equally relevant
+        return this.getPageWithSearchParametersAndPageSize( pageNumber, pageSize, searchParams );
+    }
+
+    @Override
+    public List<MagicCard> getPageByNameWithSearchParameters( int pageNumber, List<SearchParameter> searchParams ) {
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+
+        return this.getPageByNameWithSearchParametersAndPageSize( pageNumber, DEFAULT_PAGE_SIZE, searchParams );
+    }
+
+    @Override
+    public List<MagicCard> getAllByNameWithSearchParameters( List<SearchParameter> searchParams ) {
+        return this.getPageByNameWithSearchParametersAndPageSize( -1, -1, searchParams );
+    }
+
+    @Override
+    public MagicCard getNextByNameWithSearchParameters( int pointer, List<SearchParameter> searchParams ) {
+
+        List<MagicCard> searchResults = this.getPageByNameWithSearchParametersAndPageSize( pointer, 1, searchParams );
+
+        MagicCard retVal = null;
+        if ( searchResults != null && !searchResults.isEmpty() ) {
+            retVal = searchResults.get( 0 );
+        }
+
+        return retVal;
+    }
+
+    @Override
+    public List<MagicCard> getPageByNameWithSearchParametersAndPageSize( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.getPageByNameWithSearchParametersAndPageSize( pageNumber, pageSize, searchParams );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return null;
+        }
+
+        BitSet matches = currentCatalog.search( searchParams );
+        if ( pageNumber > 0 ) {
+            return getCardsByName( currentCatalog, matches, skipNames( currentCatalog, matches, pageSize * ( pageNumber - 1 ) ), pageSize );
+        }
+
+        // Every name is included, so there is nothing to page
+        return getCards( currentCatalog, matches, matches.nextSetBit( 0 ), Integer.MAX_VALUE );
+    }
+
+    @Override
+    public SearchResult getSearchResultByNameWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.getSearchResultByNameWithSearchParameters( pageNumber, pageSize, searchParams );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return null;
+        }
+
+        BitSet matches = currentCatalog.search( searchParams );
+        List<MagicCard> cards = getCardsByName( currentCatalog, matches, skipNames( currentCatalog, matches, pageSize * ( pageNumber - 1 ) ), pageSize );
+
+        return new SearchResult( cards, countNames( currentCatalog, matches ), pageNumber, pageSize );
+    }
+
+    @Override
+    public int numberOfUniqueNamesWithSearchParameters( List<SearchParameter> searchParams ) {
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.numberOfUniqueNamesWithSearchParameters( searchParams );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return -1;
+        }
+
+        return countNames( currentCatalog, currentCatalog.search( searchParams ) );
+    }
+
+    @Override
+    public int numberOfResultsWithSearchParameters( List<SearchParameter> searchParams ) {
+
+        if ( isFullTextSearch( searchParams ) ) {
+            return databaseSearchDAO.numberOfResultsWithSearchParameters( searchParams );
+        }
+
+        InMemoryCatalog currentCatalog = this.getLoaded();
+        if ( currentCatalog == null ) {
+            return -1;
+        }
+
+        return currentCatalog.search( searchParams ).cardinality();
+    }
+
+    @Override
+    public int numberOfResultsPerPage() {
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * @return True if any of the given parameters needs the database's full-text index
+     */
+    private static boolean isFullTextSearch( List<SearchParameter> searchParams ) {
+        for ( SearchParameter parm : searchParams ) {
+            if ( parm.getFieldName().isFullText() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The ordinal of the match after skipping the given number of matches from start, or -1 if there are not enough matches
+     */
+    private static int skip( BitSet matches, int start, int count ) {
+
+        int ordinal = matches.nextSetBit( start );
+        for ( int x = 0; x < count && ordinal >= 0; x++ ) {
+            ordinal = matches.nextSetBit( ordinal + 1 );
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * @return The ordinal of the first match after skipping the given number of names, or -1 if there are not enough names
+     */
+    private static int skipNames( InMemoryCatalog catalog, BitSet matches, int count ) {
+
+        int ordinal = matches.nextSetBit( 0 );
+        for ( int x = 0; x < count && ordinal >= 0; x++ ) {
+            ordinal = nextName( catalog, matches, ordinal );
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * @return The ordinal of the first match with a different name from the given match, or -1 if there is none
+     */
+    private static int nextName( InMemoryCatalog catalog, BitSet matches, int ordinal ) {
+
+        int next = matches.nextSetBit( ordinal + 1 );
+        while ( next >= 0 && catalog.isSameName( ordinal, next ) ) {
+            next = matches.nextSetBit( next + 1 );
+        }
+
+        return next;
+    }
+
+    private static int countNames( InMemoryCatalog catalog, BitSet matches ) {
+
+        int numNames = 0;
+        for ( int ordinal = matches.nextSetBit( 0 ); ordinal >= 0; ordinal = nextName( catalog, matches, ordinal ) ) {
+            numNames++;
+        }
+
+        return numNames;
+    }
+
+    /**
+     * Copy up to limit matching cards, starting at the given match
+     */
+    private static List<MagicCard> getCards( InMemoryCatalog catalog, BitSet matches, int start, int limit ) {
+
+        List<MagicCard> cards = new ArrayList<>();
+        for ( int ordinal = start; ordinal >= 0 && cards.size() < limit; ordinal = matches.nextSetBit( ordinal + 1 ) ) {
+            cards.add( new MagicCard( catalog.getCard( ordinal ) ) );
+        }
+
+        return cards;
+    }
+
+    /**
+     * Copy every matching card with the next limit names, starting at the given match
+     */
+    private static List<MagicCard> getCardsByName( InMemoryCatalog catalog, BitSet matches, int start, int limit ) {
+
+        List<MagicCard> cards = new ArrayList<>();
+        int numNames = 0;
+        int previous = -1;
+        for ( int ordinal = start; ordinal >= 0; ordinal = matches.nextSetBit( ordinal + 1 ) ) {
+            if ( previous < 0 || !catalog.isSameName( previous, ordinal ) ) {
+                if ( numNames == limit ) {
+                    break;
+                }
+                numNames++;
+            }
+            cards.add( new MagicCard( catalog.getCard( ordinal ) ) );
+            previous = ordinal;
+        }
+
+        return cards;
+    }
+}
@@ -0,0 +1,192 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A map of non-negative int keys to int values, held in two parallel int arrays instead of an Integer object per key and value.<br>
+ * <br>
+ * Keys are found by open addressing with linear probing. Removing a key shifts the rest of its probe run back, so lookups never need to skip
+ * deleted slots. Not thread safe.
+ *
+ * @author Christopher Febles
+ *
+ */
+final class IntIntHashMap {
+
+    /**
+     * Marks an empty slot. Multiverse ids are never negative.
+     */
+    private static final int EMPTY_KEY = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntIntHashMap() {
+        this( MIN_CAPACITY );
+    }
+
+    /**
+     * @param expectedSize
+     *            The number of keys to make room for before growing
+     */
+    IntIntHashMap( int expectedSize ) {
+        Validate.isTrue( expectedSize >= 0, "expectedSize cannot be negative." );
+        this.allocate( Math.max( MIN_CAPACITY, Integer.highestOneBit( Math.max( expectedSize, 1 ) * 2 - 1 ) << 1 ) );
+    }
+
+    /**
+     * @param key
+     *            Any key
+     * @return The value of the key, or zero if it is not in the map
+     */
+    int get( int key ) {
+        if ( key < 0 ) {
+            return 0;
+        }
+        int slot = this.findSlot( key );
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    boolean containsKey( int key ) {
+        return key >= 0 && keys[this.findSlot( key )] == key;
+    }
+
+    /**
+     * @param key
+     *            A non-negative key
+     * @param value
+     *            The new value of the key
+     */
+    void put( int key, int value ) {
+
+        Validate.isTrue( key >= 0, "key cannot be negative." );
+
+        int slot = this.findSlot( key );
+        if ( keys[slot] == key ) {
+            values[slot] = value;
+            return;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+
+        // Keep the table at most half full, so probe runs stay short
+        if ( size * 2 > keys.length ) {
+            this.resize( keys.length * 2 );
+        }
+    }
+
+    /**
+     * Add to the value of a key, which may become negative. The key is removed once its value returns to zero, so that adding the same amounts in any
+     * order leaves the same map.
+     *
+     * @param key
+     *            A non-negative key
+     * @param delta
+     *            The amount to add, which may be negative
+     * @return The new value, or zero if the key was removed
+     */
+    int add( int key, int delta ) {
+
+        long newValue = (long) this.get( key ) + delta;
+        if ( newValue == 0 ) {
+            this.remove( key );
+            return 0;
+        }
+
+        int retVal = (int) Math.max( Integer.MIN_VALUE, Math.min( newValue, Integer.MAX_VALUE ) );
+        this.put( key, retVal );
+        return retVal;
+    }
+
+    /**
+     * @param key
+     *            Any key
+     * @return True if the key was in the map
+     */
+    boolean remove( int key ) {
+
+        if ( key < 0 ) {
+            return false;
+        }
+
+        int slot = this.findSlot( key );
+        if ( keys[slot] != key ) {
+            return false;
+        }
+
+        // Move later keys in the same probe run back into the gap, so that none of them is cut off from its home slot
+        int mask = keys.length - 1;
+        int gap = slot;
+        for ( int next = ( gap + 1 ) & mask; keys[next] != EMPTY_KEY; next = ( next + 1 ) & mask ) {
+            int home = hash( keys[next] ) & mask;
+            if ( ( ( next - home ) & mask ) >= ( ( next - gap ) & mask ) ) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY_KEY;
+        values[gap] = 0;
+        size--;
+
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The slot holding the non-negative key, or the empty slot where it would be added
+     */
+    private int findSlot( int key ) {
+
+        int mask = keys.length - 1;
+        int slot = hash( key ) & mask;
+        while ( keys[slot] != EMPTY_KEY && keys[slot] != key ) {
+            slot = ( slot + 1 ) & mask;
+        }
+
+        return slot;
+    }
+
+    private void resize( int capacity ) {
+
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        this.allocate( capacity );
+
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+            if ( oldKeys[i] != EMPTY_KEY ) {
+                int slot = this.findSlot( oldKeys[i] );
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate( int capacity ) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill( keys, EMPTY_KEY );
+    }
+
+    /**
+     * Multiverse ids are mostly consecutive, so spread them across the table rather than filling one run of slots
+     */
+    private static int hash( int key ) {
+        int retVal = key * 0x9E3779B9;
+        return retVal ^ ( retVal >>> 16 );
+    }
+}
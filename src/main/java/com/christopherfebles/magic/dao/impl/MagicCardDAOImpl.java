@@ -1,9 +1,25 @@
 package com.christopherfebles.magic.dao.impl;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.sql.DataSource;
 
@@ -13,17 +29,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.rowset.ResultSetWrappingSqlRowSet;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.christopherfebles.magic.dao.MagicCardChangeListener;
 import com.christopherfebles.magic.dao.MagicCardDAO;
 import com.christopherfebles.magic.dao.exception.DuplicateRowException;
 import com.christopherfebles.magic.dao.mapper.MagicCardRowMapper;
+import com.christopherfebles.magic.dao.result.MultiverseIdSet;
 import com.christopherfebles.magic.enums.CardType;
 import com.christopherfebles.magic.enums.Language;
 import com.christopherfebles.magic.model.MagicCard;
@@ -45,11 +69,162 @@ public class MagicCardDAOImpl implements MagicCardDAO {
     private static final String NULL_MULTIVERSEID_ERROR_MESSAGE = "multiverseId cannot be null.";
     private static final String UNEXPECTED_ERROR_MESSAGE = "Unexpected error when accessing database.";
 
+    /**
+     * The number of cards written per transaction by {@link #addCardsToDatabase(Collection)}
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * The number of ids bound to each In list by {@link #getCardsFromDatabaseByIds(Collection)}
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final String INSERT_CARD_QUERY = "Insert Into "
+            + ALL_CARDS_TABLE_NO_ALIAS
+            + "(multiverse_id, name, cost, converted_cost, types, text, power, toughness, expansion, color, color_mask, flavor_text, rarity, image, artist, number, watermark, language ) "
+            + "Values(:id, :name, :cost, :convertedCost, :types, :text, :power, :toughness, :expansion, :color, :colorMask, :flavor, :rarity, :image, :artist, :number, :watermark, :language) "
+            + "On Duplicate Key Update multiverse_id=Values(multiverse_id), name=Values(name), cost=Values(cost), "
+            + "converted_cost=Values(converted_cost), types=Values(types), "
+            + "text=Values(text), power=Values(power), toughness=Values(toughness), "
+            + "expansion=Values(expansion), color=Values(color), color_mask=Values(color_mask), flavor_text=Values(flavor_text), "
+            + "rarity=Values(rarity), image=Values(image), artist=Values(artist), number=Values(number), watermark=Values(watermark), language=Values(language), touched_by_updater=now() ";
+
+    private static final String INSERT_CARD_TYPE_QUERY = "Insert Into " + CARD_TYPE_TABLE_NO_ALIAS + " ( multiverse_id, type_name ) "
+            + "Values( :multiverse_id, :type_name ) " + "On Duplicate Key Update multiverse_id=Values(multiverse_id), type_name=Values(type_name) ";
+
+    /**
+     * Add a (possibly negative) delta to the owned count in one statement. A negative delta for a card that is not owned inserts a non-positive row,
+     * which is then removed by {@link #DELETE_UNOWNED_CARDS_QUERY}.
+     */
+    private static final String ADJUST_OWNED_CARD_QUERY = "Insert Into " + MY_CARDS_TABLE_NO_ALIAS + " ( multiverse_id, count ) "
+            + "Values( :multiverse_id, :delta ) " + "On Duplicate Key Update count = count + Values(count) ";
+
+    private static final String DELETE_UNOWNED_CARDS_QUERY = "Delete From " + MY_CARDS_TABLE_NO_ALIAS + " Where multiverse_id in ( :ids ) And count <= 0";
+
+    private static final String OWNED_COUNT_QUERY = "Select count From " + MY_CARDS_TABLE_NO_ALIAS + " Where multiverse_id = :multiverse_id";
+    private static final String OWNED_COUNTS_BY_ID_QUERY = "Select multiverse_id, count From " + MY_CARDS_TABLE_NO_ALIAS + " Where multiverse_id in ( :ids )";
+
     private NamedParameterJdbcTemplate jdbcTemplate;
+    private JdbcTemplate streamingJdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate snapshotTransactionTemplate;
+
+    private final List<MagicCardChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Incremented after every write, before listeners are notified
+     */
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    /**
+     * Every multiverse id in All_Cards, so that {@link #isCardInDatabase(Integer)} does not query the database. Loaded on first use, and then kept
+     * up to date by this DAO's inserts and deletes. Ids at or above {@link MultiverseIdSet#MAX_BITMAP_ID} are kept in largeCardIds. Both are
+     * guarded by cardIdsLock, which is never held during a query, and null until loaded.
+     */
+    private final Object cardIdsLock = new Object();
+    private BitSet cardIds;
+    private Set<Integer> largeCardIds;
+
+    /**
+     * Not null while the ids are being loaded: the inserts and deletes made since the load started, to apply once it is done
+     */
+    private List<CardIdsChange> pendingCardIdsChanges;
+
+    /**
+     * Held by the one thread loading the card ids. Other callers query the database instead of waiting.
+     */
+    private final Lock cardIdsLoadLock = new ReentrantLock();
+
+    /**
+     * The count of every card in My_Cards, so that ownership checks do not query the database. Loaded once, on first use, and then kept up to date
+     * by this DAO's writes to My_Cards.<br>
+     * <br>
+     * Each write reads the change it actually made inside its transaction, and adds it here after committing. Additions give the same total in any
+     * order, so a count may briefly be negative, which is read as zero. ownedCountsLock guards the fields below, and is never held during a query.
+     * ownedCounts is null until loaded.
+     */
+    private final Object ownedCountsLock = new Object();
+    private IntIntHashMap ownedCounts;
+
+    /**
+     * The number of positive counts in ownedCounts
+     */
+    private int ownedCardCount;
+
+    /**
+     * Not null while the counts are being loaded: the changes of every write committed after the load's snapshot, to add once it is done
+     */
+    private List<Map<Integer, Integer>> pendingOwnedChanges;
+
+    /**
+     * Writes to My_Cards hold the read lock from their first statement until their change is added, so any number run at once. Loading the owned
+     * counts holds the write lock only while taking its snapshot and while installing the result, so that every write is either in the snapshot or
+     * added afterwards, never both.
+     */
+    private final ReadWriteLock ownedWriteBarrier = new ReentrantReadWriteLock();
+
+    /**
+     * Held by the one thread loading the owned counts. Other readers query the database instead of waiting.
+     */
+    private final Lock ownedCountsLoadLock = new ReentrantLock();
 
     @Autowired
     public void setDataSource( DataSource dataSource ) {
         jdbcTemplate = new NamedParameterJdbcTemplate( dataSource );
+        transactionTemplate = new TransactionTemplate( new DataSourceTransactionManager( dataSource ) );
+
+        // Every read in a repeatable read transaction sees the snapshot taken by its first read
+        snapshotTransactionTemplate = new TransactionTemplate( transactionTemplate.getTransactionManager() );
+        snapshotTransactionTemplate.setIsolationLevel( TransactionDefinition.ISOLATION_REPEATABLE_READ );
+        snapshotTransactionTemplate.setReadOnly( true );
+
+        // MySQL streams rows one at a time, instead of reading the whole result, only for this fetch size
+        streamingJdbcTemplate = new JdbcTemplate( dataSource );
+        streamingJdbcTemplate.setFetchSize( Integer.MIN_VALUE );
+    }
+
+    /**
+     * Register listeners to be notified after every write. Spring calls this with every MagicCardChangeListener bean.
+     * 
+     * @param listeners
+     *            The listeners to add
+     */
+    @Autowired( required = false )
+    public void addChangeListeners( List<MagicCardChangeListener> listeners ) {
+        changeListeners.addAll( listeners );
+    }
+
+    /**
+     * Stop notifying the given listener of writes
+     * 
+     * @param listener
+     *            The listener to remove
+     */
+    public void removeChangeListener( MagicCardChangeListener listener ) {
+        changeListeners.remove( listener );
+    }
+
+    /**
+     * The number of writes made through this DAO. Anything read from the database before the version last changed may be out of date.
+     * 
+     * @return A number that changes after every write
+     */
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    private void fireCardsChanged( Collection<Integer> multiverseIds ) {
+        catalogVersion.incrementAndGet();
+        for ( MagicCardChangeListener listener : changeListeners ) {
+            listener.cardsChanged( multiverseIds );
+        }
+    }
+
+    private void fireOwnedCardsChanged( Collection<Integer> multiverseIds ) {
+        catalogVersion.incrementAndGet();
+        for ( MagicCardChangeListener listener : changeListeners ) {
+            listener.ownedCardsChanged( multiverseIds );
+        }
     }
 
     @Override
@@ -57,10 +232,22 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         return this.numberOfOwnedCard( multiverseId ) > 0;
     }
 
+    /**
+     * Answered from memory, without querying the database, once every owned count has been loaded on the first call. Cards owned other than through
+     * this DAO are not seen.
+     */
     @Override
     public int numberOfOwnedCard( Integer multiverseId ) {
 
         Validate.notNull( multiverseId, NULL_MULTIVERSEID_ERROR_MESSAGE );
+
+        if ( this.loadOwnedCounts() ) {
+            synchronized ( ownedCountsLock ) {
+                return Math.max( 0, ownedCounts.get( multiverseId ) );
+            }
+        }
+
+        // The counts are being loaded by another thread, or could not be loaded, so check this card alone
         String query = "Select count from " + MY_CARDS_TABLE + " where multiverse_id = :id";
         LOG.trace( DATABASE_QUERY_LOG_MSG, query );
         SqlParameterSource paramSource = new MapSqlParameterSource( "id", multiverseId );
@@ -79,6 +266,144 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         return numCards;
     }
 
+    /**
+     * Read every owned count from the database, one row at a time, if they have not been loaded yet. Writes wait only while the snapshot is taken and
+     * while the result is installed, not while the rows are read.
+     *
+     * @return True if the counts are loaded, or false if another thread is loading them or they could not be loaded
+     */
+    private boolean loadOwnedCounts() {
+
+        synchronized ( ownedCountsLock ) {
+            if ( ownedCounts != null ) {
+                return true;
+            }
+        }
+        if ( !ownedCountsLoadLock.tryLock() ) {
+            return false;
+        }
+
+        try {
+            synchronized ( ownedCountsLock ) {
+                if ( ownedCounts != null ) {
+                    return true;
+                }
+            }
+
+            final String snapshotQuery = "Select 1 from " + MY_CARDS_TABLE + " limit 1";
+            final String query = "Select multiverse_id, count from " + MY_CARDS_TABLE;
+            final IntIntHashMap loadedCounts = new IntIntHashMap();
+            final List<Map<Integer, Integer>> pendingChanges = new ArrayList<>();
+            final boolean[] barrierHeld = { true };
+
+            // No write is in progress while the snapshot is taken, so each one either committed before it or will be added from pendingChanges
+            ownedWriteBarrier.writeLock().lock();
+            try {
+                snapshotTransactionTemplate.execute( new TransactionCallback<Void>() {
+                    @Override
+                    public Void doInTransaction( TransactionStatus status ) {
+
+                        // The first read takes the snapshot
+                        LOG.trace( DATABASE_QUERY_LOG_MSG, snapshotQuery );
+                        jdbcTemplate.getJdbcOperations().queryForList( snapshotQuery, Integer.class );
+
+                        synchronized ( ownedCountsLock ) {
+                            pendingOwnedChanges = pendingChanges;
+                        }
+                        ownedWriteBarrier.writeLock().unlock();
+                        barrierHeld[0] = false;
+
+                        LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+                        streamingJdbcTemplate.query( query, new RowCallbackHandler() {
+                            @Override
+                            public void processRow( ResultSet rs ) throws SQLException {
+                                if ( rs.getInt( 2 ) > 0 ) {
+                                    loadedCounts.put( rs.getInt( 1 ), rs.getInt( 2 ) );
+                                }
+                            }
+                        } );
+                        return null;
+                    }
+                } );
+            } catch ( DataAccessException e ) {
+                LOG.error( UNEXPECTED_ERROR_MESSAGE, e );
+                synchronized ( ownedCountsLock ) {
+                    pendingOwnedChanges = null;
+                }
+                return false;
+            } finally {
+                if ( barrierHeld[0] ) {
+                    ownedWriteBarrier.writeLock().unlock();
+                }
+            }
+
+            // Wait for writes still in progress, so that their changes are in pendingChanges, then install the counts
+            ownedWriteBarrier.writeLock().lock();
+            try {
+                synchronized ( ownedCountsLock ) {
+                    pendingOwnedChanges = null;
+                    ownedCounts = loadedCounts;
+                    ownedCardCount = loadedCounts.size();
+                    for ( Map<Integer, Integer> changes : pendingChanges ) {
+                        this.addOwnedChanges( changes );
+                    }
+                }
+            } finally {
+                ownedWriteBarrier.writeLock().unlock();
+            }
+            LOG.debug( "Loaded {} owned counts, and added {} writes made while loading.", loadedCounts.size(), pendingChanges.size() );
+
+            return true;
+        } finally {
+            ownedCountsLoadLock.unlock();
+        }
+    }
+
+    /**
+     * Record the changes of a committed write to My_Cards. Must be called holding the read lock of ownedWriteBarrier.
+     *
+     * @param changes
+     *            The change made to the count of each card
+     */
+    private void ownedCountsChanged( Map<Integer, Integer> changes ) {
+        synchronized ( ownedCountsLock ) {
+            if ( ownedCounts != null ) {
+                this.addOwnedChanges( changes );
+            } else if ( pendingOwnedChanges != null ) {
+                pendingOwnedChanges.add( changes );
+            }
+        }
+    }
+
+    /**
+     * Add the given changes to the loaded owned counts. Must be called holding ownedCountsLock.
+     */
+    private void addOwnedChanges( Map<Integer, Integer> changes ) {
+        for ( Map.Entry<Integer, Integer> change : changes.entrySet() ) {
+            if ( change.getValue() != 0 ) {
+                int oldCount = ownedCounts.get( change.getKey() );
+                int newCount = ownedCounts.add( change.getKey(), change.getValue() );
+                ownedCardCount += ( newCount > 0 ? 1 : 0 ) - ( oldCount > 0 ? 1 : 0 );
+            }
+        }
+    }
+
+    /**
+     * Read the owned count of the given card inside the current transaction.
+     *
+     * @param forUpdate
+     *            True to lock the row until the transaction ends
+     * @return The count, or zero if the card is not owned
+     */
+    private int selectOwnedCount( Integer multiverseId, boolean forUpdate ) {
+
+        String query = forUpdate ? OWNED_COUNT_QUERY + " For Update" : OWNED_COUNT_QUERY;
+        LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+        List<Integer> counts = jdbcTemplate.queryForList( query, new MapSqlParameterSource( "multiverse_id", multiverseId ), Integer.class );
+
+        return counts.isEmpty() ? 0 : counts.get( 0 );
+    }
+
     @Override
     public boolean addOwnedCard( Integer multiverseId ) {
         return this.incrementOwnedCard( multiverseId );
@@ -86,34 +411,150 @@ public class MagicCardDAOImpl implements MagicCardDAO {
 
     @Override
     public boolean incrementOwnedCard( Integer multiverseId ) {
+        return this.adjustOwnedCardCount( multiverseId, 1 );
+    }
+
+    @Override
+    public boolean decrementOwnedCard( Integer multiverseId ) {
+        return this.adjustOwnedCardCount( multiverseId, -1 );
+    }
+
+    @Override
+    public boolean adjustOwnedCardCount( final Integer multiverseId, final int delta ) {
 
         Validate.notNull( multiverseId, NULL_MULTIVERSEID_ERROR_MESSAGE );
-        int numOwned = this.numberOfOwnedCard( multiverseId );
 
-        numOwned++;
-        int rowsAffected = this.updateOwnedCardCount( multiverseId, numOwned );
-        return rowsAffected > 0;
+        if ( delta == 0 ) {
+            // Nothing to change
+            return true;
+        }
+
+        final Map<String, Object> namedParameters = new HashMap<>();
+        namedParameters.put( "multiverse_id", multiverseId );
+        namedParameters.put( "delta", delta );
+
+        final int[] change = new int[1];
+        boolean success;
+        ownedWriteBarrier.readLock().lock();
+        try {
+            if ( delta > 0 ) {
+                // Insert or add in a single statement
+                LOG.trace( DATABASE_QUERY_LOG_MSG, ADJUST_OWNED_CARD_QUERY );
+                success = jdbcTemplate.update( ADJUST_OWNED_CARD_QUERY, namedParameters ) > 0;
+                change[0] = success ? delta : 0;
+            } else {
+                // Subtract, then delete the row if no copies remain
+                success = transactionTemplate.execute( new TransactionCallback<Boolean>() {
+                    @Override
+                    public Boolean doInTransaction( TransactionStatus status ) {
+
+                        String query = "Update " + MY_CARDS_TABLE_NO_ALIAS + " Set count = count + :delta Where multiverse_id = :multiverse_id";
+                        LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+                        int rowsAffected = jdbcTemplate.update( query, namedParameters );
+
+                        if ( rowsAffected > 0 ) {
+                            // The row is locked by the update, so no other write can change it before the delete
+                            int newCount = MagicCardDAOImpl.this.selectOwnedCount( multiverseId, false );
+                            change[0] = Math.max( newCount, 0 ) - ( newCount - delta );
+
+                            LOG.trace( DATABASE_QUERY_LOG_MSG, DELETE_UNOWNED_CARDS_QUERY );
+                            jdbcTemplate.update( DELETE_UNOWNED_CARDS_QUERY, new MapSqlParameterSource( "ids", multiverseId ) );
+                        }
+
+                        return rowsAffected > 0;
+                    }
+                } );
+            }
+            this.ownedCountsChanged( Collections.singletonMap( multiverseId, change[0] ) );
+        } finally {
+            ownedWriteBarrier.readLock().unlock();
+        }
+        this.fireOwnedCardsChanged( Collections.singleton( multiverseId ) );
+
+        return success;
     }
 
     @Override
-    public boolean decrementOwnedCard( Integer multiverseId ) {
+    public boolean adjustOwnedCardCounts( Map<Integer, Integer> deltas ) {
 
-        Validate.notNull( multiverseId, NULL_MULTIVERSEID_ERROR_MESSAGE );
-        int numOwned = this.numberOfOwnedCard( multiverseId );
+        Validate.notNull( deltas, "deltas cannot be null." );
+        Validate.noNullElements( deltas.keySet(), NULL_MULTIVERSEID_ERROR_MESSAGE );
 
-        numOwned--;
-        int rowsAffected = this.updateOwnedCardCount( multiverseId, numOwned );
-        return rowsAffected > 0;
+        // Sort by id so that concurrent sessions lock My_Cards rows in the same order
+        final List<Map<String, Object>> adjustParameters = new ArrayList<>();
+        final List<Integer> removedIds = new ArrayList<>();
+        for ( Map.Entry<Integer, Integer> delta : new TreeMap<>( deltas ).entrySet() ) {
+            if ( delta.getValue() == null || delta.getValue() == 0 ) {
+                continue;
+            }
+
+            Map<String, Object> namedParameters = new HashMap<>();
+            namedParameters.put( "multiverse_id", delta.getKey() );
+            namedParameters.put( "delta", delta.getValue() );
+            adjustParameters.add( namedParameters );
+
+            if ( delta.getValue() < 0 ) {
+                removedIds.add( delta.getKey() );
+            }
+        }
+
+        if ( adjustParameters.isEmpty() ) {
+            return true;
+        }
+
+        final Map<Integer, Integer> changes = new HashMap<>();
+        ownedWriteBarrier.readLock().lock();
+        try {
+            transactionTemplate.execute( new TransactionCallback<Void>() {
+                @Override
+                public Void doInTransaction( TransactionStatus status ) {
+
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, ADJUST_OWNED_CARD_QUERY );
+                    batchUpdate( ADJUST_OWNED_CARD_QUERY, adjustParameters );
+
+                    for ( Map<String, Object> namedParameters : adjustParameters ) {
+                        changes.put( (Integer) namedParameters.get( "multiverse_id" ), (Integer) namedParameters.get( "delta" ) );
+                    }
+
+                    if ( !removedIds.isEmpty() ) {
+                        // Every row is locked by the adjustment, so read what is left of each before deleting those with no copies
+                        LOG.trace( DATABASE_QUERY_LOG_MSG, OWNED_COUNTS_BY_ID_QUERY );
+                        jdbcTemplate.query( OWNED_COUNTS_BY_ID_QUERY, new MapSqlParameterSource( "ids", removedIds ), new RowCallbackHandler() {
+                            @Override
+                            public void processRow( ResultSet rs ) throws SQLException {
+                                int newCount = rs.getInt( 2 );
+                                int delta = changes.get( rs.getInt( 1 ) );
+                                changes.put( rs.getInt( 1 ), Math.max( newCount, 0 ) - ( newCount - delta ) );
+                            }
+                        } );
+
+                        LOG.trace( DATABASE_QUERY_LOG_MSG, DELETE_UNOWNED_CARDS_QUERY );
+                        jdbcTemplate.update( DELETE_UNOWNED_CARDS_QUERY, new MapSqlParameterSource( "ids", removedIds ) );
+                    }
+
+                    return null;
+                }
+            } );
+            this.ownedCountsChanged( changes );
+        } catch ( DataAccessException e ) {
+            LOG.error( "Error adjusting owned counts for {} cards.", adjustParameters.size(), e );
+            return false;
+        } finally {
+            ownedWriteBarrier.readLock().unlock();
+        }
+        this.fireOwnedCardsChanged( deltas.keySet() );
+
+        return true;
     }
 
     @Override
-    public int updateOwnedCardCount( Integer multiverseId, Integer newCardCount ) {
+    public int updateOwnedCardCount( final Integer multiverseId, final Integer newCardCount ) {
 
         Validate.notNull( multiverseId, NULL_MULTIVERSEID_ERROR_MESSAGE );
 
         if ( newCardCount <= 0 ) {
             // Delete Row
-            boolean success = this.deleteCardByIdFromTable( multiverseId, MY_CARDS_TABLE_NO_ALIAS );
+            boolean success = this.removeOwnedCardById( multiverseId );
             if ( success ) {
                 return 1;
             } else {
@@ -121,28 +562,76 @@ public class MagicCardDAOImpl implements MagicCardDAO {
             }
         }
 
-        String query = "Insert Into " + MY_CARDS_TABLE_NO_ALIAS + " ( multiverse_id, count ) " + "Values( :multiverse_id, :count ) "
-                + "On Duplicate Key Update multiverse_id=Values(multiverse_id), count=Values(count) ";
-
-        LOG.trace( DATABASE_QUERY_LOG_MSG, query );
-
-        // Insert parameters
-        Map<String, Object> namedParameters = new HashMap<>();
+        final Map<String, Object> namedParameters = new HashMap<>();
         namedParameters.put( "multiverse_id", multiverseId );
         namedParameters.put( "count", newCardCount );
 
-        // Execute query
-        return jdbcTemplate.update( query, namedParameters );
+        final int[] change = new int[1];
+        int rowsAffected;
+        ownedWriteBarrier.readLock().lock();
+        try {
+            rowsAffected = transactionTemplate.execute( new TransactionCallback<Integer>() {
+                @Override
+                public Integer doInTransaction( TransactionStatus status ) {
+
+                    // Lock the row, or the gap where it would go, so the old count cannot change before it is replaced
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, OWNED_COUNT_QUERY );
+                    List<Integer> oldCount = jdbcTemplate.queryForList( OWNED_COUNT_QUERY + " For Update", namedParameters, Integer.class );
+
+                    String query;
+                    if ( oldCount.isEmpty() ) {
+                        query = "Insert Into " + MY_CARDS_TABLE_NO_ALIAS + " ( multiverse_id, count ) Values( :multiverse_id, :count )";
+                        change[0] = newCardCount;
+                    } else {
+                        query = "Update " + MY_CARDS_TABLE_NO_ALIAS + " Set count = :count Where multiverse_id = :multiverse_id";
+                        change[0] = newCardCount - oldCount.get( 0 );
+                    }
+
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+                    return jdbcTemplate.update( query, namedParameters );
+                }
+            } );
+            this.ownedCountsChanged( Collections.singletonMap( multiverseId, change[0] ) );
+        } finally {
+            ownedWriteBarrier.readLock().unlock();
+        }
+        this.fireOwnedCardsChanged( Collections.singleton( multiverseId ) );
+
+        return rowsAffected;
     }
 
     @Override
     public boolean removeCardFromDatabaseById( Integer multiverseId ) {
-        return this.deleteCardByIdFromTable( multiverseId, ALL_CARDS_TABLE_NO_ALIAS );
+        boolean success = this.deleteCardByIdFromTable( multiverseId, ALL_CARDS_TABLE_NO_ALIAS );
+        this.markCardIds( Collections.singleton( multiverseId ), false );
+        this.fireCardsChanged( Collections.singleton( multiverseId ) );
+
+        return success;
     }
 
     @Override
-    public boolean removeOwnedCardById( Integer multiverseId ) {
-        return this.deleteCardByIdFromTable( multiverseId, MY_CARDS_TABLE_NO_ALIAS );
+    public boolean removeOwnedCardById( final Integer multiverseId ) {
+
+        Validate.notNull( multiverseId, NULL_MULTIVERSEID_ERROR_MESSAGE );
+
+        final int[] change = new int[1];
+        boolean success;
+        ownedWriteBarrier.readLock().lock();
+        try {
+            success = transactionTemplate.execute( new TransactionCallback<Boolean>() {
+                @Override
+                public Boolean doInTransaction( TransactionStatus status ) {
+                    change[0] = -MagicCardDAOImpl.this.selectOwnedCount( multiverseId, true );
+                    return MagicCardDAOImpl.this.deleteCardByIdFromTable( multiverseId, MY_CARDS_TABLE_NO_ALIAS );
+                }
+            } );
+            this.ownedCountsChanged( Collections.singletonMap( multiverseId, change[0] ) );
+        } finally {
+            ownedWriteBarrier.readLock().unlock();
+        }
+        this.fireOwnedCardsChanged( Collections.singleton( multiverseId ) );
+
+        return success;
     }
 
     private boolean deleteCardByIdFromTable( Integer multiverseId, String table ) {
@@ -163,33 +652,139 @@ public class MagicCardDAOImpl implements MagicCardDAO {
     }
 
     @Override
-    public synchronized boolean addCardToDatabase( MagicCard card ) {
+    public Map<Integer, Boolean> saveCardsToDatabase( Collection<MagicCard> cards ) {
+        return this.addCardsToDatabase( cards );
+    }
+
+    /**
+     * Insert or update the given card and its types in a single transaction.<br>
+     * <br>
+     * The All_Cards write is a single-statement upsert (Insert ... On Duplicate Key Update), so concurrent saves of the same card cannot race between
+     * checking for the card and writing it. No JVM-wide lock is required, and writers on different cards proceed in parallel.
+     */
+    @Override
+    public boolean addCardToDatabase( final MagicCard card ) {
 
         Validate.notNull( card, "MagicCard cannot be null." );
 
-        String query = "";
-        // Not sure if I need to do this, because of On Duplicate Key in MySQL
-        if ( this.isCardInDatabase( card.getMultiverseId() ) ) {
-            // Update SQL
-            query = "Update " + ALL_CARDS_TABLE_NO_ALIAS + " Set " + "name = :name, " + "cost = :cost, " + "converted_cost = :convertedCost, "
-                    + "types = :types, " + "text = :text, " + "power = :power, " + "toughness = :toughness, " + "expansion = :expansion, " + "color = :color, "
-                    + "flavor_text = :flavor, " + "rarity = :rarity, " + "image = :image, " + "artist = :artist, " + "number = :number, "
-                    + "watermark = :watermark, " + "language = :language," + "touched_by_updater = now() " + "Where multiverse_id = :id";
-        } else {
-            // Insert SQL
-            query = "Insert Into "
-                    + ALL_CARDS_TABLE_NO_ALIAS
-                    + "(multiverse_id, name, cost, converted_cost, types, text, power, toughness, expansion, color, flavor_text, rarity, image, artist, number, watermark, language ) "
-                    + "Values(:id, :name, :cost, :convertedCost, :types, :text, :power, :toughness, :expansion, :color, :flavor, :rarity, :image, :artist, :number, :watermark, :language) "
-                    + "On Duplicate Key Update multiverse_id=Values(multiverse_id), name=Values(name), cost=Values(cost), "
-                    + "converted_cost=Values(converted_cost), types=Values(types), "
-                    + "text=Values(text), power=Values(power), toughness=Values(toughness), "
-                    + "expansion=Values(expansion), color=Values(color), flavor_text=Values(flavor_text), "
-                    + "rarity=Values(rarity), image=Values(image), artist=Values(artist), number=Values(number), watermark=Values(watermark), language=Values(language), touched_by_updater=now() ";
+        boolean success = transactionTemplate.execute( new TransactionCallback<Boolean>() {
+            @Override
+            public Boolean doInTransaction( TransactionStatus status ) {
+
+                LOG.trace( DATABASE_QUERY_LOG_MSG, INSERT_CARD_QUERY );
+                int rowsAffected = jdbcTemplate.update( INSERT_CARD_QUERY, getCardParameters( card ) );
+
+                // Update Types
+                LOG.trace( DATABASE_QUERY_LOG_MSG, INSERT_CARD_TYPE_QUERY );
+                batchUpdate( INSERT_CARD_TYPE_QUERY, getCardTypeParameters( card ) );
+
+                return rowsAffected > 0;
+            }
+        } );
+        if ( success ) {
+            this.markCardIds( Collections.singleton( card.getMultiverseId() ), true );
         }
-        LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+        this.fireCardsChanged( Collections.singleton( card.getMultiverseId() ) );
+
+        return success;
+    }
+
+    @Override
+    public Map<Integer, Boolean> addCardsToDatabase( Collection<MagicCard> cards ) {
+
+        Validate.notNull( cards, "MagicCard collection cannot be null." );
+        Validate.noNullElements( cards, "MagicCard collection cannot contain null elements." );
+
+        Map<Integer, Boolean> results = new LinkedHashMap<>();
+        List<MagicCard> cardList = new ArrayList<>( cards );
+
+        for ( int start = 0; start < cardList.size(); start += BATCH_SIZE ) {
+            List<MagicCard> chunk = cardList.subList( start, Math.min( start + BATCH_SIZE, cardList.size() ) );
+            results.putAll( this.addCardChunkToDatabase( chunk ) );
+        }
+
+        List<Integer> savedIds = new ArrayList<>();
+        for ( Map.Entry<Integer, Boolean> result : results.entrySet() ) {
+            if ( result.getValue() ) {
+                savedIds.add( result.getKey() );
+            }
+        }
+        this.markCardIds( savedIds, true );
+        this.fireCardsChanged( results.keySet() );
+
+        return results;
+    }
+
+    /**
+     * Save one chunk of cards to the database in a single transaction, batching both the All_Cards and Card_Types upserts.
+     * 
+     * @param chunk
+     *            The cards to save, no more than {@link #BATCH_SIZE} in length
+     * @return A map of multiverse id to whether the chunk was saved, in the order of the given chunk
+     */
+    private Map<Integer, Boolean> addCardChunkToDatabase( final List<MagicCard> chunk ) {
+
+        boolean success;
+        try {
+            // With rewriteBatchedStatements, each batch is sent as one statement and every row reports SUCCESS_NO_INFO, so there is no
+            // count to check for a single card. A row that fails throws, and rolls back the whole chunk.
+            transactionTemplate.execute( new TransactionCallback<Void>() {
+                @Override
+                public Void doInTransaction( TransactionStatus status ) {
+
+                    List<Map<String, Object>> cardParameters = new ArrayList<>();
+                    List<Map<String, Object>> typeParameters = new ArrayList<>();
+                    for ( MagicCard card : chunk ) {
+                        cardParameters.add( getCardParameters( card ) );
+                        typeParameters.addAll( getCardTypeParameters( card ) );
+                    }
+
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, INSERT_CARD_QUERY );
+                    batchUpdate( INSERT_CARD_QUERY, cardParameters );
+
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, INSERT_CARD_TYPE_QUERY );
+                    batchUpdate( INSERT_CARD_TYPE_QUERY, typeParameters );
+
+                    return null;
+                }
+            } );
+            success = true;
+        } catch ( DataAccessException e ) {
+            LOG.error( "Error saving batch of {} cards starting with multiverse_id {}", chunk.size(), chunk.get( 0 ).getMultiverseId(), e );
+            success = false;
+        }
+
+        Map<Integer, Boolean> results = new LinkedHashMap<>();
+        for ( MagicCard card : chunk ) {
+            results.put( card.getMultiverseId(), success );
+        }
+
+        return results;
+    }
+
+    private int[] batchUpdate( String query, List<Map<String, Object>> parameters ) {
+
+        if ( parameters.isEmpty() ) {
+            return new int[0];
+        }
+
+        SqlParameterSource[] batchParameters = new SqlParameterSource[parameters.size()];
+        for ( int x = 0; x < batchParameters.length; x++ ) {
+            batchParameters[x] = new MapSqlParameterSource( parameters.get( x ) );
+        }
+
+        return jdbcTemplate.batchUpdate( query, batchParameters );
+    }
+
+    /**
+     * Map the given card to the named parameters used by the All_Cards upsert query
+     * 
+     * @param card
+     *            A fully populated MagicCard
+     * @return The named parameters for this card
+     */
+    private Map<String, Object> getCardParameters( MagicCard card ) {
 
-        // Insert parameters
         Map<String, Object> namedParameters = new HashMap<>();
         namedParameters.put( "id", card.getMultiverseId() );
         namedParameters.put( "name", card.getName() );
@@ -201,6 +796,7 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         namedParameters.put( "toughness", card.getToughness() );
         namedParameters.put( "expansion", card.getExpansion() );
         namedParameters.put( "color", card.getColorsString() );
+        namedParameters.put( "colorMask", card.getColorMask() );
         namedParameters.put( "flavor", card.getFlavorText() );
         namedParameters.put( "rarity", card.getRarity() );
         namedParameters.put( "image", card.getCardImageArray() );
@@ -215,38 +811,32 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         }
         namedParameters.put( "language", langStr );
 
-        // Execute query
-        int rowsAffected = jdbcTemplate.update( query, namedParameters );
-
-        // Update Types
-        this.updateCardTypesInDatabase( card );
-
-        return rowsAffected > 0;
+        return namedParameters;
     }
 
-    private void updateCardTypesInDatabase( MagicCard card ) {
-
-        String query = "Insert Into " + CARD_TYPE_TABLE_NO_ALIAS + " ( multiverse_id, type_name ) " + "Values( :multiverse_id, :type_name ) "
-                + "On Duplicate Key Update multiverse_id=Values(multiverse_id), type_name=Values(type_name) ";
-        LOG.trace( DATABASE_QUERY_LOG_MSG, query );
-
-        Map<String, Object> namedParameters = new HashMap<>();
-        namedParameters.put( "multiverse_id", card.getMultiverseId() );
-
-        // Store each type in the database
-        for ( CardType type : card.getSuperTypes() ) {
-            namedParameters.put( "type_name", type.toString() );
-            jdbcTemplate.update( query, namedParameters );
-        }
-        for ( CardType type : card.getTypes() ) {
+    /**
+     * Map each SuperType, Type, and SubType of the given card to the named parameters used by the Card_Types insert query
+     * 
+     * @param card
+     *            A fully populated MagicCard
+     * @return One set of named parameters per type on this card
+     */
+    private List<Map<String, Object>> getCardTypeParameters( MagicCard card ) {
+
+        List<CardType> allTypes = new ArrayList<>();
+        allTypes.addAll( card.getSuperTypes() );
+        allTypes.addAll( card.getTypes() );
+        allTypes.addAll( card.getSubTypes() );
+
+        List<Map<String, Object>> typeParameters = new ArrayList<>();
+        for ( CardType type : allTypes ) {
+            Map<String, Object> namedParameters = new HashMap<>();
+            namedParameters.put( "multiverse_id", card.getMultiverseId() );
             namedParameters.put( "type_name", type.toString() );
-            jdbcTemplate.update( query, namedParameters );
-        }
-        for ( CardType type : card.getSubTypes() ) {
-            namedParameters.put( "type_name", type.toString() );
-            jdbcTemplate.update( query, namedParameters );
+            typeParameters.add( namedParameters );
         }
 
+        return typeParameters;
     }
 
     @Override
@@ -273,23 +863,67 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         return card;
     }
 
+    @Override
+    public Map<Integer, MagicCard> getCardsFromDatabaseByIds( Collection<Integer> multiverseIds ) {
+
+        Validate.notNull( multiverseIds, "multiverseIds cannot be null." );
+
+        // Remove duplicates, keeping the requested order
+        List<Integer> uniqueIds = new ArrayList<>( new LinkedHashSet<>( multiverseIds ) );
+        Validate.noNullElements( uniqueIds, NULL_MULTIVERSEID_ERROR_MESSAGE );
+
+        String query = "Select " + CARD_SELECT_COLUMNS + " From " + ALL_CARDS_TABLE + " Where multiverse_id In ( :ids )";
+        Map<Integer, MagicCard> cardsById = new HashMap<>();
+
+        try {
+            for ( int start = 0; start < uniqueIds.size(); start += MAX_IDS_PER_QUERY ) {
+                List<Integer> chunk = uniqueIds.subList( start, Math.min( start + MAX_IDS_PER_QUERY, uniqueIds.size() ) );
+                SqlParameterSource paramSource = new MapSqlParameterSource( "ids", chunk );
+
+                LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+                for ( MagicCard card : jdbcTemplate.query( query, paramSource, new MagicCardRowMapper() ) ) {
+                    cardsById.put( card.getMultiverseId(), card );
+                }
+            }
+        } catch ( DataAccessException e ) {
+            LOG.error( UNEXPECTED_ERROR_MESSAGE, e );
+            return null;
+        }
+
+        Map<Integer, MagicCard> retVal = new LinkedHashMap<>();
+        for ( Integer multiverseId : uniqueIds ) {
+            MagicCard card = cardsById.get( multiverseId );
+            if ( card != null ) {
+                retVal.put( multiverseId, card );
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Answered from memory, without querying the database, once every multiverse id has been loaded on the first call. Cards added or removed other
+     * than through this DAO are not seen.
+     */
     @Override
     public boolean isCardInDatabase( Integer multiverseId ) {
 
         Validate.notNull( multiverseId, NULL_MULTIVERSEID_ERROR_MESSAGE );
         Validate.isTrue( multiverseId >= 0, "multiverseId cannot be negative." );
 
+        if ( this.loadCardIds() ) {
+            synchronized ( cardIdsLock ) {
+                return multiverseId < MultiverseIdSet.MAX_BITMAP_ID ? cardIds.get( multiverseId ) : largeCardIds.contains( multiverseId );
+            }
+        }
+
+        // The ids are being loaded by another thread, or could not be loaded, so check this card alone
         String query = "Select 1 from " + ALL_CARDS_TABLE + " where multiverse_id = :id";
         SqlParameterSource paramSource = new MapSqlParameterSource( "id", multiverseId );
         boolean exists = false;
         try {
             LOG.trace( DATABASE_QUERY_LOG_MSG, query );
-            exists = jdbcTemplate.queryForObject( query, paramSource, Integer.class ) != null;
-        } catch ( IncorrectResultSizeDataAccessException e ) {
-            // If no result rows are returned, this exception is thrown
-            // No need to log the stack trace, as this is an expected condition.
-            LOG.trace( "No results returned for query: {} with id: {}", query, multiverseId );
-            exists = false;
+            exists = !jdbcTemplate.queryForList( query, paramSource, Integer.class ).isEmpty();
         } catch ( DataAccessException e ) {
             LOG.error( UNEXPECTED_ERROR_MESSAGE, e );
             exists = false;
@@ -298,8 +932,117 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         return exists;
     }
 
+    /**
+     * Read every multiverse id from the database, one row at a time, if they have not been loaded yet. Writes are not blocked while loading: the
+     * inserts and deletes made meanwhile are applied once the rows have been read. Each is already in the database, so applying one the rows
+     * already include changes nothing.
+     *
+     * @return True if the ids are loaded, or false if another thread is loading them or they could not be loaded
+     */
+    private boolean loadCardIds() {
+
+        synchronized ( cardIdsLock ) {
+            if ( cardIds != null ) {
+                return true;
+            }
+        }
+        if ( !cardIdsLoadLock.tryLock() ) {
+            return false;
+        }
+
+        try {
+            List<CardIdsChange> pendingChanges = new ArrayList<>();
+            synchronized ( cardIdsLock ) {
+                if ( cardIds != null ) {
+                    return true;
+                }
+                pendingCardIdsChanges = pendingChanges;
+            }
+
+            String query = "Select multiverse_id from " + ALL_CARDS_TABLE;
+            final BitSet loadedIds = new BitSet();
+            final Set<Integer> loadedLargeIds = new HashSet<>();
+            try {
+                LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+                streamingJdbcTemplate.query( query, new RowCallbackHandler() {
+                    @Override
+                    public void processRow( ResultSet rs ) throws SQLException {
+                        int multiverseId = rs.getInt( 1 );
+                        if ( multiverseId < MultiverseIdSet.MAX_BITMAP_ID ) {
+                            loadedIds.set( multiverseId );
+                        } else {
+                            loadedLargeIds.add( multiverseId );
+                        }
+                    }
+                } );
+            } catch ( DataAccessException e ) {
+                LOG.error( UNEXPECTED_ERROR_MESSAGE, e );
+                synchronized ( cardIdsLock ) {
+                    pendingCardIdsChanges = null;
+                }
+                return false;
+            }
+
+            synchronized ( cardIdsLock ) {
+                pendingCardIdsChanges = null;
+                for ( CardIdsChange change : pendingChanges ) {
+                    setCardIds( loadedIds, loadedLargeIds, change.multiverseIds, change.inDatabase );
+                }
+                cardIds = loadedIds;
+                largeCardIds = loadedLargeIds;
+            }
+            LOG.debug( "Loaded {} card ids, and applied {} writes made while loading.", loadedIds.cardinality() + loadedLargeIds.size(),
+                    pendingChanges.size() );
+
+            return true;
+        } finally {
+            cardIdsLoadLock.unlock();
+        }
+    }
+
+    /**
+     * Record that the given cards were inserted into or deleted from All_Cards, if the ids have been loaded or are being loaded
+     */
+    private void markCardIds( Collection<Integer> multiverseIds, boolean inDatabase ) {
+
+        synchronized ( cardIdsLock ) {
+            if ( cardIds != null ) {
+                setCardIds( cardIds, largeCardIds, multiverseIds, inDatabase );
+            } else if ( pendingCardIdsChanges != null ) {
+                pendingCardIdsChanges.add( new CardIdsChange( new ArrayList<>( multiverseIds ), inDatabase ) );
+            }
+            // Otherwise loaded from the database, including these writes, on first use
+        }
+    }
+
+    private static void setCardIds( BitSet ids, Set<Integer> largeIds, Collection<Integer> multiverseIds, boolean inDatabase ) {
+
+        for ( Integer multiverseId : multiverseIds ) {
+            if ( multiverseId == null || multiverseId < 0 ) {
+                continue;
+            }
+            if ( multiverseId < MultiverseIdSet.MAX_BITMAP_ID ) {
+                ids.set( multiverseId, inDatabase );
+            } else if ( inDatabase ) {
+                largeIds.add( multiverseId );
+            } else {
+                largeIds.remove( multiverseId );
+            }
+        }
+    }
+
+    /**
+     * Answered from memory once the owned counts have been loaded, as for {@link #numberOfOwnedCard(Integer)}
+     */
     @Override
     public int numberOfCardsOwned() {
+
+        if ( this.loadOwnedCounts() ) {
+            synchronized ( ownedCountsLock ) {
+                return ownedCardCount;
+            }
+        }
+
         return this.cardCount( MY_CARDS_TABLE );
     }
 
@@ -379,6 +1122,27 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         return retVal;
     }
 
+    @Override
+    public MultiverseIdSet getMultiverseIdSet() {
+
+        String query = "Select multiverse_id from " + ALL_CARDS_TABLE;
+        final MultiverseIdSet.Builder builder = new MultiverseIdSet.Builder();
+        try {
+            LOG.trace( DATABASE_QUERY_LOG_MSG, query );
+            streamingJdbcTemplate.query( query, new RowCallbackHandler() {
+                @Override
+                public void processRow( ResultSet rs ) throws SQLException {
+                    builder.add( rs.getInt( 1 ) );
+                }
+            } );
+        } catch ( DataAccessException e ) {
+            LOG.error( UNEXPECTED_ERROR_MESSAGE, e );
+            return null;
+        }
+
+        return builder.build();
+    }
+
     @Override
     public byte[] getCardImageById( Integer multiverseId ) {
 
@@ -405,4 +1169,17 @@ public class MagicCardDAOImpl implements MagicCardDAO {
         return imageArray;
     }
 
+    /**
+     * Cards inserted into or deleted from All_Cards while the ids were being loaded
+     */
+    private static final class CardIdsChange {
+
+        private final Collection<Integer> multiverseIds;
+        private final boolean inDatabase;
+
+        private CardIdsChange( Collection<Integer> multiverseIds, boolean inDatabase ) {
+            this.multiverseIds = multiverseIds;
+            this.inDatabase = inDatabase;
+        }
+    }
 }
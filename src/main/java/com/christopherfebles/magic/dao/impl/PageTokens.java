@@ -0,0 +1,61 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.apache.commons.lang3.Validate;
+
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * Continuation tokens for keyset pagination, shared by every SearchDAO implementation so their tokens are interchangeable.
+ *
+ * @see com.christopherfebles.magic.dao.SearchDAO#getPageAfterTokenWithSearchParameters(String, int, java.util.List)
+ * @author Christopher Febles
+ *
+ */
+final class PageTokens {
+
+    private static final String PAGE_TOKEN_SEPARATOR = ":";
+
+    private PageTokens() {
+        // Static utility class
+    }
+
+    /**
+     * Create a continuation token from the last card on a page.
+     *
+     * @param lastCard
+     *            The last card on the current page
+     * @return An opaque String holding the card's sort key
+     */
+    static String encode( MagicCard lastCard ) {
+        String seekKey = lastCard.getMultiverseId() + PAGE_TOKEN_SEPARATOR + lastCard.getName();
+        return DatatypeConverter.printBase64Binary( seekKey.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Read the sort key back out of a continuation token.
+     *
+     * @param pageToken
+     *            A token created by {@link #encode(MagicCard)}
+     * @return A two element array of the multiverse id and the name
+     * @throws IllegalArgumentException
+     *             If pageToken was not created by {@link #encode(MagicCard)}
+     */
+    static String[] decode( String pageToken ) {
+
+        String seekKey;
+        try {
+            seekKey = new String( DatatypeConverter.parseBase64Binary( pageToken ), StandardCharsets.UTF_8 );
+        } catch ( IllegalArgumentException e ) {
+            throw new IllegalArgumentException( "Invalid page token: " + pageToken, e );
+        }
+
+        String[] seekValues = seekKey.split( PAGE_TOKEN_SEPARATOR, 2 );
+        Validate.isTrue( seekValues.length == 2 && seekValues[0].matches( "-?\\d+" ), "Invalid page token: %s", pageToken );
+
+        return seekValues;
+    }
+}
@@ -1,9 +1,9 @@
 package com.christopherfebles.magic.dao.impl;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -12,15 +12,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.core.namedparam.SqlParameterSource;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.christopherfebles.magic.dao.MagicCardHandler;
 import com.christopherfebles.magic.dao.SearchDAO;
 import com.christopherfebles.magic.dao.mapper.MagicCardRowMapper;
 import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.result.FacetedSearchResult;
+import com.christopherfebles.magic.dao.result.SearchFacets;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.dao.result.SearchResult;
 import com.christopherfebles.magic.model.MagicCard;
 
 import static com.christopherfebles.magic.dao.MagicDAOConstants.*;
@@ -30,14 +37,20 @@ public class SearchDAOImpl implements SearchDAO {
 
     private static final Logger LOG = LoggerFactory.getLogger( SearchDAOImpl.class );
 
-    private static final String DEFAULT_ORDER_BY_CLAUSE = " order by " + ALL_CARDS_PREFIX + "name, " + ALL_CARDS_PREFIX + "multiverse_id ";
     private static final int DEFAULT_PAGE_SIZE = 10;
 
-    private NamedParameterJdbcTemplate jdbcTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcTemplate streamingJdbcTemplate;
+    private TransactionTemplate transactionTemplate;
 
     @Autowired
     public void setDataSource( DataSource dataSource ) {
-        jdbcTemplate = new NamedParameterJdbcTemplate( dataSource );
+        jdbcTemplate = new JdbcTemplate( dataSource );
+        transactionTemplate = new TransactionTemplate( new DataSourceTransactionManager( dataSource ) );
+
+        // MySQL streams rows one at a time, instead of reading the whole result, only for this fetch size
+        streamingJdbcTemplate = new JdbcTemplate( dataSource );
+        streamingJdbcTemplate.setFetchSize( Integer.MIN_VALUE );
     }
 
     @Override
@@ -65,26 +78,199 @@ public class SearchDAOImpl implements SearchDAO {
         return this.getPageWithSearchParametersAndPageSize( -1, -1, searchParams );
     }
 
+    @Override
+    public int streamAllWithSearchParameters( List<SearchParameter> searchParams, final MagicCardHandler handler ) {
+
+        Validate.notNull( handler, "MagicCardHandler cannot be null." );
+
+        String query = SearchQuery.forSearchParameters( searchParams ).getSelectQuery();
+        LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+
+        final MagicCardRowMapper rowMapper = new MagicCardRowMapper();
+        final int[] cardsHandled = new int[1];
+        try {
+            streamingJdbcTemplate.query( query, SearchQuery.getParameterValues( searchParams ), new RowCallbackHandler() {
+                @Override
+                public void processRow( ResultSet rs ) throws SQLException {
+                    handler.processCard( rowMapper.mapRow( rs, cardsHandled[0]++ ) );
+                }
+            } );
+        } catch ( DataAccessException e ) {
+            LOG.error( "Unexpected error when accessing database.", e );
+            return -1;
+        }
+
+        return cardsHandled[0];
+    }
+
     @Override
     public List<MagicCard> getPageWithSearchParametersAndPageSize( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
 
-        String query = "Select " + CARD_SELECT_COLUMNS + this.generateSQLWithSearchParameters( searchParams );
+        SearchQuery searchQuery = SearchQuery.forSearchParameters( searchParams );
 
+        String query;
+        Object[] parameters;
         if ( pageNumber > 0 ) {
             int limit = pageSize;
             int offset = ( limit * ( pageNumber - 1 ) );
 
-            query += " limit " + limit + " offset " + offset;
+            query = searchQuery.getPageQuery();
+            parameters = SearchQuery.getParameterValues( searchParams, limit, offset );
+        } else {
+            query = searchQuery.getSelectQuery();
+            parameters = SearchQuery.getParameterValues( searchParams );
+        }
+        LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+
+        return this.loadCardsWithSQLQuery( query, parameters );
+    }
+
+    @Override
+    public SearchPage getPageAfterTokenWithSearchParameters( String pageToken, int pageSize, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        SearchQuery searchQuery = SearchQuery.forSearchParameters( searchParams );
+
+        // Load one extra card to find out if there is another page
+        String query;
+        Object[] parameters;
+        if ( pageToken != null ) {
+            String[] seekKey = PageTokens.decode( pageToken );
+            Integer seekMultiverseId = Integer.valueOf( seekKey[0] );
+            String seekName = seekKey[1];
+
+            query = searchQuery.getSeekQuery();
+            parameters = SearchQuery.getParameterValues( searchParams, seekName, seekName, seekMultiverseId, pageSize + 1 );
+        } else {
+            query = searchQuery.getPageQuery();
+            parameters = SearchQuery.getParameterValues( searchParams, pageSize + 1, 0 );
         }
         LOG.debug( DATABASE_QUERY_LOG_MSG, query );
 
-        Map<String, String> parameters = new HashMap<>();
-        for ( SearchParameter parm : searchParams ) {
-            parameters.put( parm.getParameterName(), parm.getSearchText() );
+        List<MagicCard> cards = this.loadCardsWithSQLQuery( query, parameters );
+        if ( cards == null ) {
+            return null;
         }
 
-        SqlParameterSource paramSource = new MapSqlParameterSource( parameters );
-        return this.loadCardsWithSQLQuery( query, paramSource );
+        String nextPageToken = null;
+        if ( cards.size() > pageSize ) {
+            cards = new ArrayList<>( cards.subList( 0, pageSize ) );
+            nextPageToken = PageTokens.encode( cards.get( pageSize - 1 ) );
+        }
+
+        return new SearchPage( cards, nextPageToken );
+    }
+
+    @Override
+    public SearchResult getSearchResultWithSearchParameters( final int pageNumber, final int pageSize, final List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        final String query = SearchQuery.forSearchParameters( searchParams ).getCountedPageQuery();
+        final Object[] parameters = SearchQuery.getParameterValues( searchParams, pageSize, pageSize * ( pageNumber - 1 ) );
+
+        try {
+            // FOUND_ROWS() must run on the same connection as the search
+            return transactionTemplate.execute( new TransactionCallback<SearchResult>() {
+                @Override
+                public SearchResult doInTransaction( TransactionStatus status ) {
+
+                    LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+                    List<MagicCard> cards = jdbcTemplate.query( query, parameters, new MagicCardRowMapper() );
+
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, SearchQuery.FOUND_ROWS_QUERY );
+                    int totalResults = jdbcTemplate.queryForObject( SearchQuery.FOUND_ROWS_QUERY, Integer.class );
+
+                    return new SearchResult( cards, totalResults, pageNumber, pageSize );
+                }
+            } );
+        } catch ( DataAccessException e ) {
+            LOG.error( "Unexpected error when accessing database.", e );
+            return null;
+        }
+    }
+
+    @Override
+    public FacetedSearchResult getFacetedSearchResultWithSearchParameters( final int pageNumber, final int pageSize,
+            final List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        final SearchQuery searchQuery = SearchQuery.forSearchParameters( searchParams );
+        final Object[] parameters = SearchQuery.getParameterValues( searchParams, pageSize, pageSize * ( pageNumber - 1 ) );
+        final Object[] facetParameters = SearchQuery.getParameterValues( searchParams );
+
+        try {
+            // FOUND_ROWS() must run on the same connection as the search
+            return transactionTemplate.execute( new TransactionCallback<FacetedSearchResult>() {
+                @Override
+                public FacetedSearchResult doInTransaction( TransactionStatus status ) {
+
+                    LOG.debug( DATABASE_QUERY_LOG_MSG, searchQuery.getCountedPageQuery() );
+                    List<MagicCard> cards = jdbcTemplate.query( searchQuery.getCountedPageQuery(), parameters, new MagicCardRowMapper() );
+
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, SearchQuery.FOUND_ROWS_QUERY );
+                    int totalResults = jdbcTemplate.queryForObject( SearchQuery.FOUND_ROWS_QUERY, Integer.class );
+
+                    final SearchFacets.Builder facets = new SearchFacets.Builder();
+                    LOG.debug( DATABASE_QUERY_LOG_MSG, searchQuery.getFacetQuery() );
+                    jdbcTemplate.query( searchQuery.getFacetQuery(), facetParameters, new RowCallbackHandler() {
+                        @Override
+                        public void processRow( ResultSet rs ) throws SQLException {
+                            addFacetCount( facets, rs.getString( "facet" ), rs.getString( "facet_value" ), rs.getInt( "facet_count" ) );
+                        }
+                    } );
+
+                    return new FacetedSearchResult( cards, totalResults, pageNumber, pageSize, facets.build() );
+                }
+            } );
+        } catch ( DataAccessException e ) {
+            LOG.error( "Unexpected error when accessing database.", e );
+            return null;
+        }
+    }
+
+    private static void addFacetCount( SearchFacets.Builder facets, String facet, String value, int count ) {
+
+        if ( value == null ) {
+            // Cards with no value for this facet, such as a card with no types
+            return;
+        }
+
+        switch ( facet ) {
+            case SearchQuery.COLOR_MASK_FACET:
+                facets.addColorMask( Integer.parseInt( value ), count );
+                break;
+            case SearchQuery.TYPE_NAME_FACET:
+                facets.addTypeName( value, count );
+                break;
+            case SearchQuery.EXPANSION_FACET:
+                facets.addExpansion( value, count );
+                break;
+            case SearchQuery.RARITY_FACET:
+                facets.addRarity( value, count );
+                break;
+            case SearchQuery.LANGUAGE_FACET:
+                facets.addLanguage( value, count );
+                break;
+            default:
+                throw new IllegalArgumentException( "Unknown facet " + facet );
+        }
+    }
+
+    @Override
+    public List<MagicCard> getPageByRelevanceWithSearchParameters( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
+
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
+
+        String query = SearchQuery.forSearchParameters( searchParams ).getRelevancePageQuery();
+        LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+
+        return this.loadCardsWithSQLQuery( query, SearchQuery.getRelevancePageParameterValues( searchParams, pageSize, pageSize * ( pageNumber - 1 ) ) );
     }
 
     @Override
@@ -115,82 +301,83 @@ public class SearchDAOImpl implements SearchDAO {
     @Override
     public List<MagicCard> getPageByNameWithSearchParametersAndPageSize( int pageNumber, int pageSize, List<SearchParameter> searchParams ) {
 
-        String query = "Select group_concat(" + ALL_CARDS_PREFIX + "multiverse_id) " + this.generateSQLWithSearchParameters( searchParams );
-
-        // Remove order by clause
-        query = query.replace( DEFAULT_ORDER_BY_CLAUSE, "" );
-
-        // Add group by clause
-        query += " Group By " + ALL_CARDS_PREFIX + "name ";
-
-        // Re-add order by clause
-        query += DEFAULT_ORDER_BY_CLAUSE;
+        SearchQuery searchQuery = SearchQuery.forSearchParameters( searchParams );
 
+        String query;
+        Object[] parameters;
         if ( pageNumber > 0 ) {
             int limit = pageSize;
             int offset = ( limit * ( pageNumber - 1 ) );
 
-            query += " limit " + limit + " offset " + offset;
+            query = searchQuery.getPageByNameQuery();
+            parameters = SearchQuery.getPageByNameParameterValues( searchParams, limit, offset );
+        } else {
+            // Every name is included, so there is nothing to page
+            query = searchQuery.getSelectQuery();
+            parameters = SearchQuery.getParameterValues( searchParams );
         }
         LOG.debug( DATABASE_QUERY_LOG_MSG, query );
 
-        Map<String, String> parameters = new HashMap<>();
-        for ( SearchParameter parm : searchParams ) {
-            parameters.put( parm.getParameterName(), parm.getSearchText() );
-        }
+        return this.loadCardsWithSQLQuery( query, parameters );
+    }
 
-        SqlParameterSource paramSource = new MapSqlParameterSource( parameters );
-        SqlRowSet rowSet = jdbcTemplate.queryForRowSet( query, paramSource );
-
-        String inClause = null;
-        while ( rowSet.next() ) {
-            String result = rowSet.getString( 1 );
-            if ( inClause == null ) {
-                inClause = result;
-            } else {
-                inClause += "," + result;
-            }
-        }
-        if ( inClause == null ) {
-            // No cards exist for the given search
-            return new ArrayList<>();
-        }
-        inClause = inClause.replace( ",,", "," );
-        if ( inClause.endsWith( "," ) ) {
-            inClause = inClause.substring( 0, inClause.length() - 1 );
-        }
+    @Override
+    public SearchResult getSearchResultByNameWithSearchParameters( final int pageNumber, final int pageSize, final List<SearchParameter> searchParams ) {
 
-        query = "Select " + CARD_SELECT_COLUMNS + " From " + ALL_CARDS_TABLE + " Where " + ALL_CARDS_PREFIX + "multiverse_id in ( " + inClause + " )";
-        LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+        Validate.isTrue( pageNumber > 0, "The first page is page one." );
+        Validate.isTrue( pageSize > 0, "pageSize must be positive." );
 
-        return this.loadCardsWithSQLQuery( query, null );
+        final SearchQuery searchQuery = SearchQuery.forSearchParameters( searchParams );
+
+        try {
+            // FOUND_ROWS() must run on the same connection as the search
+            return transactionTemplate.execute( new TransactionCallback<SearchResult>() {
+                @Override
+                public SearchResult doInTransaction( TransactionStatus status ) {
+
+                    // Page over the names first, counting every name as we go
+                    String query = searchQuery.getCountedNamePageQuery();
+                    LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+                    List<String> names = jdbcTemplate.queryForList( query, String.class,
+                            SearchQuery.getParameterValues( searchParams, pageSize, pageSize * ( pageNumber - 1 ) ) );
+
+                    LOG.trace( DATABASE_QUERY_LOG_MSG, SearchQuery.FOUND_ROWS_QUERY );
+                    int totalNames = jdbcTemplate.queryForObject( SearchQuery.FOUND_ROWS_QUERY, Integer.class );
+
+                    // Then load every matching card with those names
+                    List<MagicCard> cards = new ArrayList<>();
+                    if ( !names.isEmpty() ) {
+                        query = searchQuery.getCardsWithNamesQuery( names.size() );
+                        LOG.debug( DATABASE_QUERY_LOG_MSG, query );
+                        cards = jdbcTemplate.query( query, SearchQuery.getParameterValues( searchParams, names.toArray() ), new MagicCardRowMapper() );
+                    }
+
+                    return new SearchResult( cards, totalNames, pageNumber, pageSize );
+                }
+            } );
+        } catch ( DataAccessException e ) {
+            LOG.error( "Unexpected error when accessing database.", e );
+            return null;
+        }
     }
 
     @Override
     public int numberOfUniqueNamesWithSearchParameters( List<SearchParameter> searchParams ) {
-        return this.getCountWithCustomQueryAndSearchParameters( "Select Count(distinct " + ALL_CARDS_PREFIX + "name) ", searchParams );
+        return this.getCountWithCustomQueryAndSearchParameters( SearchQuery.forSearchParameters( searchParams ).getUniqueNameCountQuery(), searchParams );
     }
 
     @Override
     public int numberOfResultsWithSearchParameters( List<SearchParameter> searchParams ) {
-        return this.getCountWithCustomQueryAndSearchParameters( "Select Count(*) ", searchParams );
+        return this.getCountWithCustomQueryAndSearchParameters( SearchQuery.forSearchParameters( searchParams ).getCountQuery(), searchParams );
     }
 
-    private int getCountWithCustomQueryAndSearchParameters( String selectClause, List<SearchParameter> searchParams ) {
+    private int getCountWithCustomQueryAndSearchParameters( String query, List<SearchParameter> searchParams ) {
 
-        String query = selectClause + this.generateSQLWithSearchParameters( searchParams );
-
-        Map<String, String> parameters = new HashMap<>();
-        for ( SearchParameter parm : searchParams ) {
-            parameters.put( parm.getParameterName(), parm.getSearchText() );
-        }
-
-        SqlParameterSource paramSource = new MapSqlParameterSource( parameters );
         int numCards = -1;
 
         try {
             LOG.debug( DATABASE_QUERY_LOG_MSG, query );
-            numCards = jdbcTemplate.queryForObject( query, paramSource, Integer.class );
+            numCards = jdbcTemplate.queryForObject( query, Integer.class, SearchQuery.getParameterValues( searchParams ) );
         } catch ( DataAccessException e ) {
             LOG.error( "Unexpected error when accessing database.", e );
             numCards = -1;
@@ -200,50 +387,6 @@ public class SearchDAOImpl implements SearchDAO {
 
     }
 
-    /**
-     * Generate SQL based on the search options provided.
-     * 
-     * @param searchParams
-     *            The list of search parameters to convert to SQL
-     * @return A partial (FROM, WHERE, and DEFAULT_ORDER_BY_CLAUSE) SQL statement, parameterized by name
-     */
-    private String generateSQLWithSearchParameters( List<SearchParameter> searchParams ) {
-
-        String fromClause = " From " + ALL_CARDS_TABLE + " ";
-
-        String whereClause = "";
-        boolean addWhere = true;
-
-        for ( SearchParameter parm : searchParams ) {
-
-            if ( addWhere ) {
-                whereClause += " Where ";
-                addWhere = false;
-            } else if ( parm.isAnd() ) {
-                whereClause += " And ";
-            } else {
-                whereClause += " Or ";
-            }
-
-            if ( parm.getFieldName().getTablePrefix().equals( ALL_CARDS_PREFIX ) ) {
-                // MySQL LIKE has same performance as = when no % is present in parameter
-                whereClause += " " + parm.getFieldName().getColumnName() + " like :" + parm.getParameterName();
-            } else if ( parm.getFieldName().getTablePrefix().equals( CARD_TYPE_PREFIX ) || parm.getFieldName().getTablePrefix().equals( MY_CARDS_PREFIX ) ) {
-                // Instead of a join, add subqueries for simplicity
-                // All tables will join by multiverse_id
-                whereClause += ALL_CARDS_PREFIX + "multiverse_id in " + "( Select " + parm.getFieldName().getTablePrefix() + "multiverse_id " + "From "
-                        + parm.getFieldName().getTableName();
-
-                if ( parm.getFieldName().getTablePrefix().equals( CARD_TYPE_PREFIX ) ) {
-                    whereClause += "Where " + parm.getFieldName().getColumnName() + " like :" + parm.getParameterName();
-                }
-                whereClause += " ) ";
-            }
-        }
-
-        return fromClause + whereClause + DEFAULT_ORDER_BY_CLAUSE;
-    }
-
     @Override
     public int numberOfResultsPerPage() {
         return DEFAULT_PAGE_SIZE;
@@ -254,17 +397,17 @@ public class SearchDAOImpl implements SearchDAO {
      * 
      * @param query
      *            The query to run against the databasse
-     * @param paramSource
-     *            Parameters for the given query, or null if no parameters required
+     * @param parameters
+     *            Positional parameters for the given query
      * @return A list of results, or null if an error occurred
      */
-    private List<MagicCard> loadCardsWithSQLQuery( String query, SqlParameterSource paramSource ) {
+    private List<MagicCard> loadCardsWithSQLQuery( String query, Object[] parameters ) {
 
         List<MagicCard> allCards = null;
 
         try {
             LOG.trace( DATABASE_QUERY_LOG_MSG, query );
-            allCards = jdbcTemplate.query( query, paramSource, new MagicCardRowMapper() );
+            allCards = jdbcTemplate.query( query, parameters, new MagicCardRowMapper() );
         } catch ( DataAccessException e ) {
             LOG.error( "Unexpected error when accessing database.", e );
             allCards = null;
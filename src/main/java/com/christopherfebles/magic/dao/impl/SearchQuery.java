@@ -0,0 +1,522 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.enums.Color;
+
+import static com.christopherfebles.magic.dao.MagicDAOConstants.*;
+
+/**
+ * The SQL for every kind of search over a single shape of search parameters.<br>
+ * <br>
+ * The shape of a search is its sequence of fields and And/Or operators, whether each type search uses wildcards, and how many color masks
+ * each color search matches. Searches with the same shape share the same SQL text, with values bound by position, so each shape is only
+ * compiled once. Use {@link #forSearchParameters(List)} to get the compiled query, then {@link #getParameterValues(List, Object...)} to get
+ * the values to bind for a particular search.
+ *
+ * @author Christopher Febles
+ *
+ */
+final class SearchQuery {
+
+    private static final String DEFAULT_ORDER_BY_CLAUSE = " order by " + ALL_CARDS_PREFIX + "name, " + ALL_CARDS_PREFIX + "multiverse_id ";
+
+    /**
+     * Matches every card after (name, multiverse_id) in DEFAULT_ORDER_BY_CLAUSE order, bound as (name, name, multiverse_id).<br>
+     * <br>
+     * Written as a range on name, so MySQL can seek the name index (which implicitly ends in multiverse_id) instead of scanning earlier rows.
+     */
+    private static final String SEEK_CONDITION = "( " + ALL_CARDS_PREFIX + "name >= ? And ( " + ALL_CARDS_PREFIX + "name > ? Or " + ALL_CARDS_PREFIX
+            + "multiverse_id > ? ) ) ";
+
+    private static final String PAGED_NAMES_ALIAS = "paged_names";
+    private static final String PAGED_CARDS_ALIAS = "paged_cards";
+    private static final String JOIN_ALIAS_PREFIX = "j";
+    private static final String RELEVANCE_ALIAS = "relevance";
+    private static final char[] LIKE_WILDCARDS = { '%', '_' };
+
+    private static final int ALL_COLORS_MASK = Color.getMask( Arrays.asList( Color.values() ) );
+
+    /**
+     * No card has this color mask, so searching for it matches nothing
+     */
+    private static final int NO_COLOR_MASK = -1;
+
+    private static final String NAMES_PLACEHOLDER = "{names}";
+
+    private static final String FACET_MATCHES_ALIAS = "facet_matches";
+    private static final String FACET_TYPES_ALIAS = "facet_types";
+
+    /**
+     * The facets counted by {@link #getFacetQuery()}, as returned in its facet column
+     */
+    static final String COLOR_MASK_FACET = "color_mask";
+    static final String TYPE_NAME_FACET = "type_name";
+    static final String EXPANSION_FACET = "expansion";
+    static final String RARITY_FACET = "rarity";
+    static final String LANGUAGE_FACET = "language";
+
+    /**
+     * Loads the number of rows the last SQL_CALC_FOUND_ROWS query would have returned without a limit. Must run on the same connection.
+     */
+    static final String FOUND_ROWS_QUERY = "Select FOUND_ROWS()";
+
+    /**
+     * The number of shapes kept in the cache. Beyond this, new shapes are compiled for every search.
+     */
+    private static final int MAX_CACHED_SHAPES = 1000;
+
+    private static final ConcurrentMap<String, SearchQuery> CACHE = new ConcurrentHashMap<>();
+
+    private final String selectQuery;
+    private final String pageQuery;
+    private final String seekQuery;
+    private final String pageByNameQuery;
+    private final String countQuery;
+    private final String uniqueNameCountQuery;
+    private final String countedPageQuery;
+    private final String countedNamePageQuery;
+    private final String cardsWithNamesQuery;
+    private final String relevancePageQuery;
+    private final String facetQuery;
+
+    private SearchQuery( List<SearchParameter> searchParams ) {
+
+        boolean useJoins = canUseJoins( searchParams );
+
+        String joins = "";
+        String conditions = "";
+        String relevance = "";
+        int joinCount = 0;
+
+        for ( SearchParameter parm : searchParams ) {
+
+            FieldName fieldName = parm.getFieldName();
+
+            if ( fieldName.isFullText() ) {
+                relevance += ( relevance.isEmpty() ? "" : " + " ) + getMatchClause( RELEVANCE_ALIAS + "." + getUnprefixedColumnName( fieldName ) );
+            }
+
+            if ( useJoins && isJoinable( parm ) ) {
+                // Inner joins filter exactly like And conditions, but let MySQL start from the (type_name, multiverse_id) index
+                // Card_Types is unique on (multiverse_id, type_name), so an exact match never duplicates a card
+                String alias = JOIN_ALIAS_PREFIX + joinCount++;
+                if ( fieldName.getTablePrefix().equals( CARD_TYPE_PREFIX ) ) {
+                    joins += " Join " + CARD_TYPE_TABLE_NO_ALIAS + alias + " On " + alias + ".multiverse_id = " + ALL_CARDS_PREFIX
+                            + "multiverse_id And " + alias + ".type_name = ? ";
+                } else if ( fieldName.isFullText() ) {
+                    // Joined, MySQL can drive the search from the FULLTEXT index
+                    joins += " Join " + CARD_TEXT_TABLE_NO_ALIAS + alias + " On " + alias + ".multiverse_id = " + ALL_CARDS_PREFIX
+                            + "multiverse_id And " + getMatchClause( alias + "." + getUnprefixedColumnName( fieldName ) ) + " ";
+                } else {
+                    joins += " Join " + MY_CARDS_TABLE_NO_ALIAS + alias + " On " + alias + ".multiverse_id = " + ALL_CARDS_PREFIX + "multiverse_id ";
+                }
+                continue;
+            }
+
+            if ( !conditions.isEmpty() ) {
+                conditions += parm.isAnd() ? " And " : " Or ";
+            }
+
+            if ( fieldName == FieldName.COLORS_EXACTLY ) {
+                conditions += " " + fieldName.getColumnName() + " = ? ";
+            } else if ( fieldName.isColorMask() ) {
+                // Bit arithmetic on the column cannot use its index, so list every mask that matches instead
+                conditions += " " + fieldName.getColumnName() + " in ( " + getPlaceholders( getMatchingColorMasks( parm ).size() ) + " ) ";
+            } else if ( fieldName.getTablePrefix().equals( ALL_CARDS_PREFIX ) ) {
+                // MySQL LIKE has same performance as = when no % is present in parameter
+                conditions += " " + fieldName.getColumnName() + " like ? ";
+            } else if ( fieldName.getTablePrefix().equals( CARD_TYPE_PREFIX ) ) {
+                // Correlated on the unique (multiverse_id, type_name) key, so each card is a single index lookup
+                conditions += " Exists ( Select 1 From " + fieldName.getTableName() + " Where " + CARD_TYPE_PREFIX + "multiverse_id = " + ALL_CARDS_PREFIX
+                        + "multiverse_id And " + fieldName.getColumnName() + ( isExactMatch( parm ) ? " = ? " : " like ? " ) + " ) ";
+            } else if ( fieldName.getTablePrefix().equals( MY_CARDS_PREFIX ) ) {
+                conditions += " Exists ( Select 1 From " + fieldName.getTableName() + " Where " + fieldName.getColumnName() + " = " + ALL_CARDS_PREFIX
+                        + "multiverse_id ) ";
+            } else if ( fieldName.isFullText() ) {
+                conditions += " Exists ( Select 1 From " + fieldName.getTableName() + " Where " + CARD_TEXT_PREFIX + "multiverse_id = " + ALL_CARDS_PREFIX
+                        + "multiverse_id And " + getMatchClause( fieldName.getColumnName() ) + " ) ";
+            }
+
+
+        }
+
+        String fromClause = " From " + ALL_CARDS_TABLE + joins;
+        String fromWhereClause = fromClause + ( conditions.isEmpty() ? "" : " Where " + conditions );
+
+        this.selectQuery = "Select " + CARD_SELECT_COLUMNS + fromWhereClause + DEFAULT_ORDER_BY_CLAUSE;
+        this.countQuery = "Select Count(*) " + fromWhereClause;
+        this.uniqueNameCountQuery = "Select Count(distinct " + ALL_CARDS_PREFIX + "name) " + fromWhereClause;
+
+        // The user's conditions may contain Or, so they must be grouped before adding the seek condition
+        String seekFromWhereClause = fromClause + " Where " + ( conditions.isEmpty() ? SEEK_CONDITION : "( " + conditions + " ) And " + SEEK_CONDITION );
+
+        if ( joins.isEmpty() ) {
+            this.pageQuery = selectQuery + " limit ? offset ? ";
+            this.seekQuery = "Select " + CARD_SELECT_COLUMNS + seekFromWhereClause + DEFAULT_ORDER_BY_CLAUSE + " limit ? ";
+        } else {
+            this.pageQuery = getDeferredPageQuery( fromWhereClause + DEFAULT_ORDER_BY_CLAUSE + " limit ? offset ? " );
+            this.seekQuery = getDeferredPageQuery( seekFromWhereClause + DEFAULT_ORDER_BY_CLAUSE + " limit ? " );
+        }
+
+        // Page over the distinct names in a derived table, then join back to load every matching card with those names
+        // The derived table comes first, so its values are bound before those of the outer query
+        // STRAIGHT_JOIN keeps MySQL from starting the outer query at a joined table, which would read every match to find the few with those names
+        this.pageByNameQuery = "Select STRAIGHT_JOIN " + CARD_SELECT_COLUMNS + " From ( Select " + ALL_CARDS_PREFIX + "name" + fromWhereClause
+                + " Group By " + ALL_CARDS_PREFIX + "name Order By " + ALL_CARDS_PREFIX + "name limit ? offset ? ) " + PAGED_NAMES_ALIAS + " Join "
+                + ALL_CARDS_TABLE + " On " + ALL_CARDS_PREFIX + "name = " + PAGED_NAMES_ALIAS + ".name " + joins
+                + ( conditions.isEmpty() ? "" : " Where " + conditions ) + DEFAULT_ORDER_BY_CLAUSE;
+
+        // MySQL counts every matching row while running these, for FOUND_ROWS_QUERY
+        this.countedPageQuery = "Select SQL_CALC_FOUND_ROWS " + CARD_SELECT_COLUMNS + fromWhereClause + DEFAULT_ORDER_BY_CLAUSE + " limit ? offset ? ";
+        this.countedNamePageQuery = "Select SQL_CALC_FOUND_ROWS " + ALL_CARDS_PREFIX + "name" + fromWhereClause + " Group By " + ALL_CARDS_PREFIX
+                + "name Order By " + ALL_CARDS_PREFIX + "name limit ? offset ? ";
+        this.cardsWithNamesQuery = "Select STRAIGHT_JOIN " + CARD_SELECT_COLUMNS + fromClause + " Where "
+                + ( conditions.isEmpty() ? "" : "( " + conditions + " ) And " ) + ALL_CARDS_PREFIX + "name in ( " + NAMES_PLACEHOLDER + " ) "
+                + DEFAULT_ORDER_BY_CLAUSE;
+
+        // The matching cards are read once into a derived table, then each is counted once per facet by joining a row for each facet name
+        // Type names come from a join that only matches the type_name facet row, so other facets still count each card once
+        this.facetQuery = "Select facets.facet, Case facets.facet When '" + COLOR_MASK_FACET + "' Then " + FACET_MATCHES_ALIAS + ".color_mask When '"
+                + TYPE_NAME_FACET + "' Then " + FACET_TYPES_ALIAS + ".type_name When '" + EXPANSION_FACET + "' Then " + FACET_MATCHES_ALIAS
+                + ".expansion When '" + RARITY_FACET + "' Then " + FACET_MATCHES_ALIAS + ".rarity Else " + FACET_MATCHES_ALIAS
+                + ".language End facet_value, Count(*) facet_count From ( Select " + ALL_CARDS_PREFIX + "multiverse_id, " + ALL_CARDS_PREFIX + "color_mask, "
+                + ALL_CARDS_PREFIX + "expansion, " + ALL_CARDS_PREFIX + "rarity, " + ALL_CARDS_PREFIX + "language" + fromWhereClause + " ) "
+                + FACET_MATCHES_ALIAS + " Cross Join ( Select '" + COLOR_MASK_FACET + "' facet Union All Select '" + TYPE_NAME_FACET
+                + "' Union All Select '" + EXPANSION_FACET + "' Union All Select '" + RARITY_FACET + "' Union All Select '" + LANGUAGE_FACET
+                + "' ) facets Left Join " + CARD_TYPE_TABLE_NO_ALIAS + FACET_TYPES_ALIAS + " On facets.facet = '" + TYPE_NAME_FACET + "' And "
+                + FACET_TYPES_ALIAS + ".multiverse_id = " + FACET_MATCHES_ALIAS + ".multiverse_id Group By facets.facet, facet_value ";
+
+        // Full-text matches are scored again for ordering, from a separate join so it works whether or not the conditions were joined
+        if ( relevance.isEmpty() ) {
+            this.relevancePageQuery = pageQuery;
+        } else {
+            this.relevancePageQuery = "Select " + CARD_SELECT_COLUMNS + fromClause + " Left Join " + CARD_TEXT_TABLE_NO_ALIAS + RELEVANCE_ALIAS + " On "
+                    + RELEVANCE_ALIAS + ".multiverse_id = " + ALL_CARDS_PREFIX + "multiverse_id " + ( conditions.isEmpty() ? "" : " Where " + conditions )
+                    + " order by ( " + relevance + " ) desc, " + ALL_CARDS_PREFIX + "name, " + ALL_CARDS_PREFIX + "multiverse_id limit ? offset ? ";
+        }
+    }
+
+    /**
+     * Sort and page just the multiverse ids of matching cards, then load the whole of each card on the page.<br>
+     * <br>
+     * Once a search is joined, MySQL may start from a joined table instead of the name index, and then has to sort every match. Sorting
+     * only the ids keeps that sort small, rather than sorting every matching card with all its text.
+     *
+     * @param pagedFromClause
+     *            The From clause of the page, through its order, limit and offset
+     */
+    private static String getDeferredPageQuery( String pagedFromClause ) {
+        return "Select " + CARD_SELECT_COLUMNS + " From ( Select " + ALL_CARDS_PREFIX + "multiverse_id" + pagedFromClause + " ) " + PAGED_CARDS_ALIAS
+                + " Join " + ALL_CARDS_TABLE + " On " + ALL_CARDS_PREFIX + "multiverse_id = " + PAGED_CARDS_ALIAS + ".multiverse_id" + DEFAULT_ORDER_BY_CLAUSE;
+    }
+
+    /**
+     * Get the compiled query for the shape of the given search parameters, compiling it if this shape has not been seen before.
+     *
+     * @param searchParams
+     *            The search parameters to compile
+     * @return The compiled query, shared with every other search of the same shape
+     */
+    static SearchQuery forSearchParameters( List<SearchParameter> searchParams ) {
+
+        String shape = getShape( searchParams );
+
+        SearchQuery query = CACHE.get( shape );
+        if ( query == null ) {
+            query = new SearchQuery( searchParams );
+            if ( CACHE.size() < MAX_CACHED_SHAPES ) {
+                SearchQuery existing = CACHE.putIfAbsent( shape, query );
+                if ( existing != null ) {
+                    query = existing;
+                }
+            }
+        }
+
+        return query;
+    }
+
+    /**
+     * Get the cache key for the given search parameters: every field and operator, in order, ignoring search values.
+     */
+    private static String getShape( List<SearchParameter> searchParams ) {
+
+        StringBuilder shape = new StringBuilder();
+        for ( SearchParameter parm : searchParams ) {
+            shape.append( parm.isAnd() ? '&' : '|' ).append( parm.getFieldName().name() );
+            if ( parm.getFieldName().getTablePrefix().equals( CARD_TYPE_PREFIX ) ) {
+                shape.append( isExactMatch( parm ) ? '=' : '~' );
+            } else if ( parm.getFieldName() == FieldName.COLORS_INCLUDING || parm.getFieldName() == FieldName.COLORS_AT_MOST ) {
+                shape.append( getMatchingColorMasks( parm ).size() );
+            }
+        }
+
+        return shape.toString();
+    }
+
+    /**
+     * Get the values to bind to the conditions of this query, in order.<br>
+     * <br>
+     * Not every field binds a value. For example, an OWNED search only checks for existence.
+     *
+     * @param searchParams
+     *            The search parameters this query was compiled from, or any with the same shape
+     * @param trailingValues
+     *            Values for any parameters that follow the conditions, such as limit and offset
+     * @return All values to bind to this query
+     */
+    static Object[] getParameterValues( List<SearchParameter> searchParams, Object... trailingValues ) {
+
+        List<Object> values = getConditionValues( searchParams );
+        values.addAll( Arrays.asList( trailingValues ) );
+
+        return values.toArray();
+    }
+
+    /**
+     * Get the values for the joins, followed by the values for the Where clause, matching their order in the SQL.
+     */
+    private static List<Object> getConditionValues( List<SearchParameter> searchParams ) {
+
+        boolean useJoins = canUseJoins( searchParams );
+
+        List<Object> joinValues = new ArrayList<>();
+        List<Object> whereValues = new ArrayList<>();
+        for ( SearchParameter parm : searchParams ) {
+            if ( parm.getFieldName().getTablePrefix().equals( MY_CARDS_PREFIX ) ) {
+                continue;
+            }
+
+            if ( useJoins && isJoinable( parm ) ) {
+                joinValues.add( parm.getSearchText() );
+            } else if ( parm.getFieldName() == FieldName.COLORS_INCLUDING || parm.getFieldName() == FieldName.COLORS_AT_MOST ) {
+                whereValues.addAll( getMatchingColorMasks( parm ) );
+            } else {
+                whereValues.add( parm.getSearchText() );
+            }
+        }
+
+        joinValues.addAll( whereValues );
+        return joinValues;
+    }
+
+    /**
+     * Get the values to bind to {@link #getRelevancePageQuery()}, which scores every full-text value again after the conditions.
+     *
+     * @param searchParams
+     *            The search parameters this query was compiled from, or any with the same shape
+     * @param limit
+     *            The number of cards on the page
+     * @param offset
+     *            The number of cards before the page
+     * @return All values to bind to the query
+     */
+    static Object[] getRelevancePageParameterValues( List<SearchParameter> searchParams, int limit, int offset ) {
+
+        List<Object> values = getConditionValues( searchParams );
+        for ( SearchParameter parm : searchParams ) {
+            if ( parm.getFieldName().isFullText() ) {
+                values.add( parm.getSearchText() );
+            }
+        }
+        values.add( limit );
+        values.add( offset );
+
+        return values.toArray();
+    }
+
+    /**
+     * Get every color mask matched by a COLORS_INCLUDING or COLORS_AT_MOST search. There are only 32 color masks, so they are simply tested
+     * in turn.
+     *
+     * @return The matching masks, in order, or only {@link #NO_COLOR_MASK} if none match
+     */
+    private static List<Integer> getMatchingColorMasks( SearchParameter parm ) {
+
+        FieldName fieldName = parm.getFieldName();
+        int mask = Integer.parseInt( parm.getSearchText() );
+
+        List<Integer> masks = new ArrayList<>();
+        for ( int cardMask = 0; cardMask <= ALL_COLORS_MASK; cardMask++ ) {
+            if ( fieldName == FieldName.COLORS_INCLUDING ? ( cardMask | mask ) == cardMask : ( cardMask & ~mask ) == 0 ) {
+                masks.add( cardMask );
+            }
+        }
+
+        if ( masks.isEmpty() ) {
+            masks.add( NO_COLOR_MASK );
+        }
+
+        return masks;
+    }
+
+    private static String getMatchClause( String column ) {
+        return "Match( " + column + " ) Against( ? In Boolean Mode )";
+    }
+
+    private static String getUnprefixedColumnName( FieldName fieldName ) {
+        return fieldName.getColumnName().substring( fieldName.getTablePrefix().length() );
+    }
+
+    /**
+     * A filter can only become an inner join when every condition is required, that is, when there are no Or conditions.
+     */
+    private static boolean canUseJoins( List<SearchParameter> searchParams ) {
+
+        // The operator of the first parameter is never used
+        for ( int i = 1; i < searchParams.size(); i++ ) {
+            if ( searchParams.get( i ).isOr() ) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Exact type matches, owned cards and card text match at most one row per card, so they can be joined without duplicating results.
+     */
+    private static boolean isJoinable( SearchParameter parm ) {
+
+        String tablePrefix = parm.getFieldName().getTablePrefix();
+        return tablePrefix.equals( MY_CARDS_PREFIX ) || tablePrefix.equals( CARD_TEXT_PREFIX )
+                || ( tablePrefix.equals( CARD_TYPE_PREFIX ) && isExactMatch( parm ) );
+    }
+
+    /**
+     * @return True if the search text of the given parameter contains no LIKE wildcards
+     */
+    private static boolean isExactMatch( SearchParameter parm ) {
+        return StringUtils.containsNone( parm.getSearchText(), LIKE_WILDCARDS );
+    }
+
+    /**
+     * @return The query to load every matching card. Bind with {@link #getParameterValues(List, Object...)}.
+     */
+    String getSelectQuery() {
+        return selectQuery;
+    }
+
+    /**
+     * @return The query to load a page of matching cards. Bind with limit and offset as trailing values.
+     */
+    String getPageQuery() {
+        return pageQuery;
+    }
+
+    /**
+     * @return The query to load the cards after a given card. Bind with name, name, multiverse_id, and limit as trailing values.
+     */
+    String getSeekQuery() {
+        return seekQuery;
+    }
+
+    /**
+     * @return The query to load every matching card for a page of names. Bind with {@link #getPageByNameParameterValues(List, int, int)}.
+     */
+    String getPageByNameQuery() {
+        return pageByNameQuery;
+    }
+
+    /**
+     * @return The query to count matching cards. Bind with {@link #getParameterValues(List, Object...)}.
+     */
+    String getCountQuery() {
+        return countQuery;
+    }
+
+    /**
+     * @return The query to count the distinct names of matching cards. Bind with {@link #getParameterValues(List, Object...)}.
+     */
+    String getUniqueNameCountQuery() {
+        return uniqueNameCountQuery;
+    }
+
+    /**
+     * @return The query to load a page of matching cards, while counting all matching cards for {@link #FOUND_ROWS_QUERY}. Bind with limit and
+     *         offset as trailing values.
+     */
+    String getCountedPageQuery() {
+        return countedPageQuery;
+    }
+
+    /**
+     * @return The query to load a page of distinct names of matching cards, while counting all distinct names for {@link #FOUND_ROWS_QUERY}. Bind
+     *         with limit and offset as trailing values.
+     */
+    String getCountedNamePageQuery() {
+        return countedNamePageQuery;
+    }
+
+    /**
+     * @return The query to load a page of matching cards, the best full-text matches first, then by name. Bind with
+     *         {@link #getRelevancePageParameterValues(List, int, int)}.
+     */
+    String getRelevancePageQuery() {
+        return relevancePageQuery;
+    }
+
+    /**
+     * @return The query to count matching cards by each facet value, returning facet, facet_value and facet_count columns. Bind with
+     *         {@link #getParameterValues(List, Object...)}.
+     */
+    String getFacetQuery() {
+        return facetQuery;
+    }
+
+    /**
+     * Get the query to load every matching card with one of the given number of names.
+     *
+     * @param numberOfNames
+     *            The number of names to bind, at least one
+     * @return The query to load matching cards by name. Bind with the names as trailing values.
+     */
+    String getCardsWithNamesQuery( int numberOfNames ) {
+
+        return cardsWithNamesQuery.replace( NAMES_PLACEHOLDER, getPlaceholders( numberOfNames ) );
+    }
+
+    /**
+     * @return The given number of comma separated placeholders, at least one
+     */
+    private static String getPlaceholders( int count ) {
+
+        StringBuilder placeholders = new StringBuilder( "?" );
+        for ( int i = 1; i < count; i++ ) {
+            placeholders.append( ", ?" );
+        }
+
+        return placeholders.toString();
+    }
+
+    /**
+     * Get the values to bind to {@link #getPageByNameQuery()}, which applies the conditions twice.
+     *
+     * @param searchParams
+     *            The search parameters this query was compiled from, or any with the same shape
+     * @param limit
+     *            The number of names on the page
+     * @param offset
+     *            The number of names before the page
+     * @return All values to bind to the query
+     */
+    static Object[] getPageByNameParameterValues( List<SearchParameter> searchParams, int limit, int offset ) {
+
+        List<Object> conditionValues = getConditionValues( searchParams );
+
+        List<Object> values = new ArrayList<>( conditionValues );
+        values.add( limit );
+        values.add( offset );
+        values.addAll( conditionValues );
+
+        return values.toArray();
+    }
+}
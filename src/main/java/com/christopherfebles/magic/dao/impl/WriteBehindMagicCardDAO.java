@@ -0,0 +1,421 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.christopherfebles.magic.dao.MagicCardDAO;
+import com.christopherfebles.magic.dao.result.MultiverseIdSet;
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * Optional write-behind buffer in front of the owned card methods of another MagicCardDAO.<br>
+ * <br>
+ * Increments and decrements are merged per multiverse id in memory, and written to My_Cards as a single batch with
+ * {@link MagicCardDAO#adjustOwnedCardCounts(Map)} once {@code maxPendingUpdates} updates are buffered, or every {@code flushIntervalMillis}, whichever
+ * comes first. Reads of owned counts include buffered updates. All other methods are passed through to the wrapped DAO.<br>
+ * <br>
+ * This class is not a Spring component. To use it, declare it as the primary MagicCardDAO bean with {@code destroy-method="close"}, wrapping the
+ * MagicCardDAOImpl bean. A JVM shutdown hook flushes any remaining updates if {@link #close()} is never called. Once closed, updates are written
+ * immediately.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class WriteBehindMagicCardDAO implements MagicCardDAO {
+
+    private static final Logger LOG = LoggerFactory.getLogger( WriteBehindMagicCardDAO.class );
+
+    private final MagicCardDAO delegate;
+    private final int maxPendingUpdates;
+
+    /**
+     * Buffered owned count changes, by multiverse id
+     */
+    private final ConcurrentMap<Integer, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingUpdates = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * Readers share this lock, so they never see a batch after it has left {@link #pendingDeltas} but before it has been committed.
+     */
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private final ScheduledExecutorService flushExecutor;
+    private final Thread shutdownHook;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set( false );
+            try {
+                flush();
+            } catch ( RuntimeException e ) {
+                LOG.error( "Unexpected error flushing owned card updates.", e );
+            }
+        }
+    };
+
+    /**
+     * Wrap the given DAO with a write-behind buffer for owned card updates.
+     *
+     * @param delegate
+     *            The DAO that owned card updates are eventually written to
+     * @param maxPendingUpdates
+     *            The number of buffered updates that triggers a flush
+     * @param flushIntervalMillis
+     *            The maximum time, in milliseconds, an update stays buffered
+     */
+    public WriteBehindMagicCardDAO( MagicCardDAO delegate, int maxPendingUpdates, long flushIntervalMillis ) {
+
+        Validate.notNull( delegate, "delegate cannot be null." );
+        Validate.isTrue( maxPendingUpdates > 0, "maxPendingUpdates must be positive." );
+        Validate.isTrue( flushIntervalMillis > 0, "flushIntervalMillis must be positive." );
+
+        this.delegate = delegate;
+        this.maxPendingUpdates = maxPendingUpdates;
+
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable runnable ) {
+                Thread thread = new Thread( runnable, "WriteBehindMagicCardDAO-flush" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        this.flushExecutor.scheduleWithFixedDelay( flushTask, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS );
+
+        this.shutdownHook = new Thread( "WriteBehindMagicCardDAO-shutdown" ) {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook( shutdownHook );
+    }
+
+    /**
+     * Synchronously write all buffered owned card updates to the wrapped DAO.
+     */
+    public void flush() {
+
+        flushLock.writeLock().lock();
+        try {
+            Map<Integer, Integer> batch = new HashMap<>();
+            for ( Integer multiverseId : pendingDeltas.keySet() ) {
+                Integer delta = pendingDeltas.remove( multiverseId );
+                if ( delta != null ) {
+                    batch.put( multiverseId, delta );
+                }
+            }
+            pendingUpdates.set( 0 );
+
+            if ( batch.isEmpty() ) {
+                return;
+            }
+
+            LOG.trace( "Flushing {} owned card updates.", batch.size() );
+            if ( !delegate.adjustOwnedCardCounts( batch ) ) {
+                LOG.warn( "Batch of {} owned card updates failed. Retrying each card individually.", batch.size() );
+                this.flushIndividually( batch );
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write each update separately, so that a single invalid card cannot block every other update.
+     *
+     * @param batch
+     *            The updates from a failed batch
+     */
+    private void flushIndividually( Map<Integer, Integer> batch ) {
+
+        for ( Map.Entry<Integer, Integer> delta : batch.entrySet() ) {
+            try {
+                delegate.adjustOwnedCardCount( delta.getKey(), delta.getValue() );
+            } catch ( DataIntegrityViolationException e ) {
+                LOG.error( "Discarding owned card update of {} for multiverse_id {}", delta.getValue(), delta.getKey(), e );
+            } catch ( DataAccessException e ) {
+                LOG.error( "Error writing owned card update for multiverse_id {}. Update will be retried.", delta.getKey(), e );
+                this.mergeDelta( delta.getKey(), delta.getValue() );
+            }
+        }
+    }
+
+    /**
+     * Stop the flush timer and write all buffered updates. Use as the Spring destroy-method.
+     */
+    public void close() {
+
+        flushExecutor.shutdown();
+        this.flush();
+
+        try {
+            Runtime.getRuntime().removeShutdownHook( shutdownHook );
+        } catch ( IllegalStateException e ) {
+            // The JVM is already shutting down, and the hook will run (harmlessly) on its own
+            LOG.trace( "Shutdown in progress, shutdown hook not removed." );
+        }
+    }
+
+    /**
+     * Add the given delta to the buffered updates for the given card, without locking.
+     */
+    private void mergeDelta( Integer multiverseId, int delta ) {
+        while ( !this.replaceDelta( multiverseId, pendingDeltas.get( multiverseId ), delta ) ) {
+            // Another update changed the buffered delta first, so merge with its result instead
+        }
+    }
+
+    /**
+     * Add the given delta to the buffered delta for the given card, only if the buffered delta is still the given one.
+     *
+     * @return False if another update changed the buffered delta first
+     */
+    private boolean replaceDelta( Integer multiverseId, Integer current, int delta ) {
+
+        if ( current == null ) {
+            return pendingDeltas.putIfAbsent( multiverseId, delta ) == null;
+        }
+
+        int merged = current + delta;
+        return merged == 0 ? pendingDeltas.remove( multiverseId, current ) : pendingDeltas.replace( multiverseId, current, merged );
+    }
+
+    private boolean bufferDelta( Integer multiverseId, int delta ) {
+
+        Validate.notNull( multiverseId, "multiverseId cannot be null." );
+
+        if ( delta != 0 ) {
+            this.mergeDelta( multiverseId, delta );
+            this.countBufferedUpdate();
+        }
+
+        return true;
+    }
+
+    /**
+     * Count a newly buffered update, and start a flush if enough are waiting. Must not be called holding the read lock, as a flush takes the write
+     * lock.
+     */
+    private void countBufferedUpdate() {
+
+        if ( flushExecutor.isShutdown() ) {
+            // Closed, so there is no timer left to write this update later
+            this.flush();
+        } else if ( pendingUpdates.incrementAndGet() >= maxPendingUpdates && flushScheduled.compareAndSet( false, true ) ) {
+            try {
+                flushExecutor.execute( flushTask );
+            } catch ( RejectedExecutionException e ) {
+                // Closed since the check above
+                flushTask.run();
+            }
+        }
+    }
+
+    /*********** Buffered Owned Card methods ***********/
+
+    @Override
+    public int numberOfOwnedCard( Integer multiverseId ) {
+
+        flushLock.readLock().lock();
+        try {
+            Integer pending = pendingDeltas.get( multiverseId );
+            int numOwned = delegate.numberOfOwnedCard( multiverseId );
+            if ( pending != null ) {
+                numOwned += pending;
+            }
+            return Math.max( numOwned, 0 );
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isCardOwned( Integer multiverseId ) {
+        return this.numberOfOwnedCard( multiverseId ) > 0;
+    }
+
+    @Override
+    public boolean incrementOwnedCard( Integer multiverseId ) {
+        return this.bufferDelta( multiverseId, 1 );
+    }
+
+    @Override
+    public boolean addOwnedCard( Integer multiverseId ) {
+        return this.incrementOwnedCard( multiverseId );
+    }
+
+    /**
+     * Checks for an owned copy and buffers the decrement as one step, so concurrent decrements of a card with one copy left succeed only once.
+     */
+    @Override
+    public boolean decrementOwnedCard( Integer multiverseId ) {
+
+        Validate.notNull( multiverseId, "multiverseId cannot be null." );
+
+        flushLock.readLock().lock();
+        try {
+            // Every write to My_Cards through this DAO takes the write lock, so the stored count cannot change until the read lock is released
+            int numOwned = delegate.numberOfOwnedCard( multiverseId );
+
+            Integer pending;
+            do {
+                pending = pendingDeltas.get( multiverseId );
+                if ( numOwned + ( pending == null ? 0 : pending ) <= 0 ) {
+                    // Match MagicCardDAOImpl, which reports failure when no copies are owned
+                    return false;
+                }
+            } while ( !this.replaceDelta( multiverseId, pending, -1 ) );
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        this.countBufferedUpdate();
+
+        return true;
+    }
+
+    @Override
+    public boolean adjustOwnedCardCount( Integer multiverseId, int delta ) {
+        return this.bufferDelta( multiverseId, delta );
+    }
+
+    @Override
+    public boolean adjustOwnedCardCounts( Map<Integer, Integer> deltas ) {
+
+        Validate.notNull( deltas, "deltas cannot be null." );
+
+        for ( Map.Entry<Integer, Integer> delta : deltas.entrySet() ) {
+            if ( delta.getValue() != null ) {
+                this.bufferDelta( delta.getKey(), delta.getValue() );
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int updateOwnedCardCount( Integer multiverseId, Integer newCardCount ) {
+
+        flushLock.writeLock().lock();
+        try {
+            // The new count replaces any buffered changes
+            pendingDeltas.remove( multiverseId );
+            return delegate.updateOwnedCardCount( multiverseId, newCardCount );
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeOwnedCardById( Integer multiverseId ) {
+
+        flushLock.writeLock().lock();
+        try {
+            pendingDeltas.remove( multiverseId );
+            return delegate.removeOwnedCardById( multiverseId );
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int numberOfCardsOwned() {
+        this.flush();
+        return delegate.numberOfCardsOwned();
+    }
+
+    @Override
+    public List<MagicCard> getOwnedCards() {
+        this.flush();
+        return delegate.getOwnedCards();
+    }
+
+    /*********** Pass-through methods ***********/
+
+    @Override
+    public int numberOfCardsInDatabase() {
+        return delegate.numberOfCardsInDatabase();
+    }
+
+    @Override
+    public boolean addCardToDatabase( MagicCard card ) {
+        return delegate.addCardToDatabase( card );
+    }
+
+    @Override
+    public boolean saveCardToDatabase( MagicCard card ) {
+        return delegate.saveCardToDatabase( card );
+    }
+
+    @Override
+    public Map<Integer, Boolean> addCardsToDatabase( Collection<MagicCard> cards ) {
+        return delegate.addCardsToDatabase( cards );
+    }
+
+    @Override
+    public Map<Integer, Boolean> saveCardsToDatabase( Collection<MagicCard> cards ) {
+        return delegate.saveCardsToDatabase( cards );
+    }
+
+    @Override
+    public MagicCard getCardFromDatabaseById( Integer multiverseId ) {
+        return delegate.getCardFromDatabaseById( multiverseId );
+    }
+
+    @Override
+    public Map<Integer, MagicCard> getCardsFromDatabaseByIds( Collection<Integer> multiverseIds ) {
+        return delegate.getCardsFromDatabaseByIds( multiverseIds );
+    }
+
+    @Override
+    public boolean isCardInDatabase( Integer multiverseId ) {
+        return delegate.isCardInDatabase( multiverseId );
+    }
+
+    @Override
+    public boolean removeCardFromDatabaseById( Integer multiverseId ) {
+        return delegate.removeCardFromDatabaseById( multiverseId );
+    }
+
+    @Override
+    public int getHighestMultiverseId() {
+        return delegate.getHighestMultiverseId();
+    }
+
+    @Override
+    public List<Integer> getAllMultiverseIds() {
+        return delegate.getAllMultiverseIds();
+    }
+
+    @Override
+    public MultiverseIdSet getMultiverseIdSet() {
+        return delegate.getMultiverseIdSet();
+    }
+
+    @Override
+    public byte[] getCardImageById( Integer multiverseId ) {
+        return delegate.getCardImageById( multiverseId );
+    }
+
+}
@@ -1,10 +1,14 @@
 package com.christopherfebles.magic.dao.parameter;
 
+import java.util.Collection;
+
+import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import com.christopherfebles.magic.enums.Color;
 import com.christopherfebles.magic.enums.DatabaseSearchable;
 
 import static com.christopherfebles.magic.dao.MagicDAOConstants.*;
@@ -62,6 +66,45 @@ public class SearchParameter {
         this( fieldName, searchObj.getDatabaseSearchText(), isAnd );
     }
 
+    /**
+     * Create a new AND SearchParameter matching a set of colors.
+     * 
+     * @see FieldName#COLORS_EXACTLY
+     * @see FieldName#COLORS_INCLUDING
+     * @see FieldName#COLORS_AT_MOST
+     * 
+     * @param fieldName
+     *            One of the color mask FieldNames
+     * @param colors
+     *            The colors to match
+     * @throws IllegalArgumentException
+     *             If fieldName is not a color mask FieldName
+     */
+    public SearchParameter( FieldName fieldName, Collection<Color> colors ) {
+        this( fieldName, colors, true );
+    }
+
+    /**
+     * Create a new AND/OR SearchParameter matching a set of colors.
+     * 
+     * @see FieldName#COLORS_EXACTLY
+     * @see FieldName#COLORS_INCLUDING
+     * @see FieldName#COLORS_AT_MOST
+     * 
+     * @param fieldName
+     *            One of the color mask FieldNames
+     * @param colors
+     *            The colors to match
+     * @param isAnd
+     *            True for AND, False for OR
+     * @throws IllegalArgumentException
+     *             If fieldName is not a color mask FieldName
+     */
+    public SearchParameter( FieldName fieldName, Collection<Color> colors, boolean isAnd ) {
+        this( fieldName, String.valueOf( Color.getMask( colors ) ), isAnd );
+        Validate.isTrue( fieldName.isColorMask(), "FieldName %s does not search by color mask", fieldName );
+    }
+
     /**
      * Create a new AND SearchParameter with a provided search string.
      * 
@@ -205,7 +248,32 @@ public class SearchParameter {
     public enum FieldName {
 
         COLOR( ALL_CARDS_PREFIX + "color" ), NAME( ALL_CARDS_PREFIX + "name" ), TYPE( CARD_TYPE_PREFIX + "type_name" ), SUBTYPE( CARD_TYPE_PREFIX + "type_name" ), LANGUAGE(
-                ALL_CARDS_PREFIX + "language" ), EXPANSION( ALL_CARDS_PREFIX + "expansion" ), OWNED( MY_CARDS_PREFIX + "multiverse_id" );
+                ALL_CARDS_PREFIX + "language" ), EXPANSION( ALL_CARDS_PREFIX + "expansion" ), OWNED( MY_CARDS_PREFIX + "multiverse_id" ),
+
+        /**
+         * Cards with exactly the given colors. An empty list of colors matches colorless cards.
+         */
+        COLORS_EXACTLY( ALL_CARDS_PREFIX + "color_mask" ),
+
+        /**
+         * Cards with at least the given colors, and possibly others.
+         */
+        COLORS_INCLUDING( ALL_CARDS_PREFIX + "color_mask" ),
+
+        /**
+         * Cards with no colors other than the given colors, including colorless cards.
+         */
+        COLORS_AT_MOST( ALL_CARDS_PREFIX + "color_mask" ),
+
+        /**
+         * Full-text search of the rules text, using MySQL boolean mode syntax, such as "+flying -haste" or "draw*".
+         */
+        TEXT( CARD_TEXT_PREFIX + "text" ),
+
+        /**
+         * Full-text search of the flavor text, using MySQL boolean mode syntax.
+         */
+        FLAVOR_TEXT( CARD_TEXT_PREFIX + "flavor_text" );
 
         private String columnName;
 
@@ -236,6 +304,20 @@ public class SearchParameter {
             this.columnName = columnName;
         }
 
+        /**
+         * @return True if this FieldName is searched with a color mask, rather than with text
+         */
+        public boolean isColorMask() {
+            return this == COLORS_EXACTLY || this == COLORS_INCLUDING || this == COLORS_AT_MOST;
+        }
+
+        /**
+         * @return True if this FieldName is searched with MySQL full-text search, rather than LIKE
+         */
+        public boolean isFullText() {
+            return this.getTablePrefix().equals( CARD_TEXT_PREFIX );
+        }
+
         /**
          * Get the table to which this FieldName's column belongs to.<br>
          * <br>
@@ -250,6 +332,8 @@ public class SearchParameter {
                 tableName = CARD_TYPE_TABLE;
             } else if ( this.getColumnName().startsWith( MY_CARDS_PREFIX ) ) {
                 tableName = MY_CARDS_TABLE;
+            } else if ( this.getColumnName().startsWith( CARD_TEXT_PREFIX ) ) {
+                tableName = CARD_TEXT_TABLE;
             }
 
             return tableName;
@@ -270,6 +354,8 @@ public class SearchParameter {
                 prefix = CARD_TYPE_PREFIX;
             } else if ( this.getTableName().equals( MY_CARDS_TABLE ) ) {
                 prefix = MY_CARDS_PREFIX;
+            } else if ( this.getTableName().equals( CARD_TEXT_TABLE ) ) {
+                prefix = CARD_TEXT_PREFIX;
             }
 
             return prefix;
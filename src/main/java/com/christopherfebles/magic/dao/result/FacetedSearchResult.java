@@ -0,0 +1,44 @@
+package com.christopherfebles.magic.dao.result;
+
+import java.util.List;
+
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * A numbered page of search results, together with the total size of the search and the facet counts across every page.
+ *
+ * @see com.christopherfebles.magic.dao.SearchDAO#getFacetedSearchResultWithSearchParameters(int, int, List)
+ * @author Christopher Febles
+ *
+ */
+public class FacetedSearchResult extends SearchResult {
+
+    private final SearchFacets facets;
+
+    /**
+     * Create a new page of search results
+     *
+     * @param cards
+     *            The cards on this page
+     * @param totalResults
+     *            The number of results across all pages
+     * @param pageNumber
+     *            The number of this page, starting from one
+     * @param pageSize
+     *            The maximum number of results on a page
+     * @param facets
+     *            The facet counts across all pages
+     */
+    public FacetedSearchResult( List<MagicCard> cards, int totalResults, int pageNumber, int pageSize, SearchFacets facets ) {
+        super( cards, totalResults, pageNumber, pageSize );
+        this.facets = facets;
+    }
+
+    /**
+     * @return The number of matching cards with each color, type, subtype, expansion, rarity and language, across all pages
+     */
+    public SearchFacets getFacets() {
+        return facets;
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.christopherfebles.magic.dao.result;
+
+import java.util.BitSet;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An immutable set of multiverse ids, stored as a bitmap of one bit per possible id.<br>
+ * <br>
+ * Multiverse ids are small and dense, so the whole catalog fits in a few dozen kilobytes, instead of an Integer object per id. Lookups take constant
+ * time, and set operations work a word of 64 ids at a time. The rare id at or above {@value #MAX_BITMAP_ID} is kept in a sorted set instead, so
+ * that a single large id cannot grow the bitmap to hundreds of megabytes.
+ *
+ * @see com.christopherfebles.magic.dao.MagicCardDAO#getMultiverseIdSet()
+ * @author Christopher Febles
+ *
+ */
+public class MultiverseIdSet {
+
+    /**
+     * Ids below this are stored in the bitmap, which is then at most two megabytes
+     */
+    public static final int MAX_BITMAP_ID = 1 << 24;
+
+    private final BitSet ids;
+    private final NavigableSet<Integer> largeIds;
+    private final int size;
+
+    private MultiverseIdSet( BitSet ids, NavigableSet<Integer> largeIds ) {
+        this.ids = ids;
+        this.largeIds = largeIds;
+        this.size = ids.cardinality() + largeIds.size();
+    }
+
+    /**
+     * Create a set of every id in the given range
+     *
+     * @param fromId
+     *            The lowest id in the set
+     * @param toId
+     *            The highest id in the set, below {@link #MAX_BITMAP_ID}
+     * @return A new set, empty if toId is less than fromId
+     */
+    public static MultiverseIdSet range( int fromId, int toId ) {
+
+        Validate.isTrue( fromId >= 0, "fromId cannot be negative." );
+        Validate.isTrue( toId < MAX_BITMAP_ID, "toId must be less than %d.", MAX_BITMAP_ID );
+
+        BitSet ids = new BitSet();
+        if ( toId >= fromId ) {
+            ids.set( fromId, toId + 1 );
+        }
+
+        return new MultiverseIdSet( ids, new TreeSet<Integer>() );
+    }
+
+    /**
+     * @param multiverseId
+     *            Any id
+     * @return True if the id is in this set
+     */
+    public boolean contains( int multiverseId ) {
+        if ( multiverseId >= MAX_BITMAP_ID ) {
+            return largeIds.contains( multiverseId );
+        }
+        return multiverseId >= 0 && ids.get( multiverseId );
+    }
+
+    /**
+     * @return The number of ids in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The highest id in this set, or -1 if it is empty
+     */
+    public int getHighestId() {
+        return largeIds.isEmpty() ? ids.length() - 1 : largeIds.last();
+    }
+
+    /**
+     * Iterate over this set in ascending order:
+     * {@code for ( int id = set.nextId( 0 ); id >= 0; id = set.nextId( id + 1 ) )}
+     *
+     * @param fromId
+     *            The lowest id to return
+     * @return The lowest id in this set at or above fromId, or -1 if there is none
+     */
+    public int nextId( int fromId ) {
+
+        if ( fromId < MAX_BITMAP_ID ) {
+            int retVal = ids.nextSetBit( Math.max( fromId, 0 ) );
+            if ( retVal >= 0 ) {
+                return retVal;
+            }
+        }
+
+        Integer retVal = largeIds.ceiling( fromId );
+        return retVal == null ? -1 : retVal;
+    }
+
+    /**
+     * @return Every id in this set, in ascending order
+     */
+    public int[] toArray() {
+
+        int[] retVal = new int[size];
+        int i = 0;
+        for ( int id = ids.nextSetBit( 0 ); id >= 0; id = ids.nextSetBit( id + 1 ) ) {
+            retVal[i++] = id;
+        }
+        for ( Integer id : largeIds ) {
+            retVal[i++] = id;
+        }
+
+        return retVal;
+    }
+
+    /**
+     * @param other
+     *            Another set
+     * @return A new set of the ids in both sets
+     */
+    public MultiverseIdSet and( MultiverseIdSet other ) {
+        BitSet retVal = (BitSet) ids.clone();
+        retVal.and( other.ids );
+        TreeSet<Integer> retValLarge = new TreeSet<>( largeIds );
+        retValLarge.retainAll( other.largeIds );
+        return new MultiverseIdSet( retVal, retValLarge );
+    }
+
+    /**
+     * @param other
+     *            Another set
+     * @return A new set of the ids in either set
+     */
+    public MultiverseIdSet or( MultiverseIdSet other ) {
+        BitSet retVal = (BitSet) ids.clone();
+        retVal.or( other.ids );
+        TreeSet<Integer> retValLarge = new TreeSet<>( largeIds );
+        retValLarge.addAll( other.largeIds );
+        return new MultiverseIdSet( retVal, retValLarge );
+    }
+
+    /**
+     * @param other
+     *            Another set
+     * @return A new set of the ids in this set but not in the other
+     */
+    public MultiverseIdSet andNot( MultiverseIdSet other ) {
+        BitSet retVal = (BitSet) ids.clone();
+        retVal.andNot( other.ids );
+        TreeSet<Integer> retValLarge = new TreeSet<>( largeIds );
+        retValLarge.removeAll( other.largeIds );
+        return new MultiverseIdSet( retVal, retValLarge );
+    }
+
+    /**
+     * Find the ids in a range that are not in this set, such as the cards missing below {@link #getHighestId()}
+     *
+     * @param fromId
+     *            The lowest id to check
+     * @param toId
+     *            The highest id to check, below {@link #MAX_BITMAP_ID}
+     * @return A new set of the ids in the range that are not in this set
+     */
+    public MultiverseIdSet missingInRange( int fromId, int toId ) {
+        return range( fromId, toId ).andNot( this );
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( !( o instanceof MultiverseIdSet ) ) {
+            return false;
+        }
+        MultiverseIdSet other = (MultiverseIdSet) o;
+
+        return ids.equals( other.ids ) && largeIds.equals( other.largeIds );
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * ids.hashCode() + largeIds.hashCode();
+    }
+
+    /**
+     * The size and highest id only, as the ids themselves may number in the hundreds of thousands.
+     */
+    @Override
+    public String toString() {
+        return "MultiverseIdSet[size=" + size + ",highestId=" + this.getHighestId() + "]";
+    }
+
+    /**
+     * Collects ids, in any order, for a new MultiverseIdSet.
+     */
+    public static class Builder {
+
+        private final BitSet ids = new BitSet();
+        private final TreeSet<Integer> largeIds = new TreeSet<>();
+
+        /**
+         * @param multiverseId
+         *            A non-negative id to add. Duplicates are ignored.
+         * @return This builder
+         */
+        public Builder add( int multiverseId ) {
+            Validate.isTrue( multiverseId >= 0, "multiverseId cannot be negative." );
+            if ( multiverseId < MAX_BITMAP_ID ) {
+                ids.set( multiverseId );
+            } else {
+                largeIds.add( multiverseId );
+            }
+            return this;
+        }
+
+        public MultiverseIdSet build() {
+            return new MultiverseIdSet( (BitSet) ids.clone(), new TreeSet<>( largeIds ) );
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.christopherfebles.magic.dao.result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.christopherfebles.magic.enums.Color;
+import com.christopherfebles.magic.enums.Language;
+import com.christopherfebles.magic.enums.SubType;
+import com.christopherfebles.magic.enums.SuperType;
+import com.christopherfebles.magic.enums.Type;
+
+/**
+ * The number of cards matching a search with each color, type, subtype, expansion, rarity and language, for narrowing the search further.<br>
+ * <br>
+ * Each map holds only the values of at least one matching card, ordered by count, highest first, then by value. A card with several colors or types
+ * is counted under each of them, and colorless cards are counted under {@link Color#COLORLESS}.
+ *
+ * @see com.christopherfebles.magic.dao.SearchDAO#getFacetedSearchResultWithSearchParameters(int, int, List)
+ * @author Christopher Febles
+ *
+ */
+public class SearchFacets {
+
+    private static final Color[] MASK_COLORS = { Color.WHITE, Color.BLUE, Color.BLACK, Color.RED, Color.GREEN };
+
+    private final Map<Color, Integer> colors;
+    private final Map<Type, Integer> types;
+    private final Map<SubType, Integer> subTypes;
+    private final Map<String, Integer> expansions;
+    private final Map<String, Integer> rarities;
+    private final Map<Language, Integer> languages;
+
+    private SearchFacets( Builder builder ) {
+        this.colors = sortByCount( builder.colors );
+        this.types = sortByCount( builder.types );
+        this.subTypes = sortByCount( builder.subTypes );
+        this.expansions = sortByCount( builder.expansions );
+        this.rarities = sortByCount( builder.rarities );
+        this.languages = sortByCount( builder.languages );
+    }
+
+    /**
+     * @return The number of matching cards of each color
+     */
+    public Map<Color, Integer> getColors() {
+        return colors;
+    }
+
+    /**
+     * @return The number of matching cards of each Type
+     */
+    public Map<Type, Integer> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return The number of matching cards of each SubType
+     */
+    public Map<SubType, Integer> getSubTypes() {
+        return subTypes;
+    }
+
+    /**
+     * @return The number of matching cards in each expansion
+     */
+    public Map<String, Integer> getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * @return The number of matching cards of each rarity
+     */
+    public Map<String, Integer> getRarities() {
+        return rarities;
+    }
+
+    /**
+     * @return The number of matching cards in each language
+     */
+    public Map<Language, Integer> getLanguages() {
+        return languages;
+    }
+
+    private static <K> Map<K, Integer> sortByCount( Map<K, Integer> counts ) {
+
+        List<Map.Entry<K, Integer>> entries = new ArrayList<>( counts.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<K, Integer>>() {
+            @Override
+            public int compare( Map.Entry<K, Integer> first, Map.Entry<K, Integer> second ) {
+                int retVal = second.getValue().compareTo( first.getValue() );
+                return retVal != 0 ? retVal : first.getKey().toString().compareTo( second.getKey().toString() );
+            }
+        } );
+
+        Map<K, Integer> retVal = new LinkedHashMap<>();
+        for ( Map.Entry<K, Integer> entry : entries ) {
+            retVal.put( entry.getKey(), entry.getValue() );
+        }
+
+        return Collections.unmodifiableMap( retVal );
+    }
+
+    @Override
+    /**
+     * String generated via Reflection.
+     */
+    public String toString() {
+        return ReflectionToStringBuilder.toString( this, ToStringStyle.MULTI_LINE_STYLE );
+    }
+
+    /**
+     * Adds up the counts for each facet, as read from the database or an index. Counts for the same value are added together.
+     */
+    public static class Builder {
+
+        private final Map<Color, Integer> colors = new EnumMap<>( Color.class );
+        private final Map<Type, Integer> types = new EnumMap<>( Type.class );
+        private final Map<SubType, Integer> subTypes = new HashMap<>();
+        private final Map<String, Integer> expansions = new HashMap<>();
+        private final Map<String, Integer> rarities = new HashMap<>();
+        private final Map<Language, Integer> languages = new EnumMap<>( Language.class );
+
+        /**
+         * Count cards with the given combination of colors
+         *
+         * @param colorMask
+         *            The colors of the cards, as in {@link Color#getMask(java.util.Collection)}
+         * @param count
+         *            The number of cards
+         * @return This builder
+         */
+        public Builder addColorMask( int colorMask, int count ) {
+
+            if ( colorMask == 0 ) {
+                add( colors, Color.COLORLESS, count );
+            }
+            for ( Color color : MASK_COLORS ) {
+                if ( ( colorMask & color.getMask() ) != 0 ) {
+                    add( colors, color, count );
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Count cards with the given entry in Card_Types. SuperTypes are not counted.
+         *
+         * @param typeName
+         *            A Type or SubType, as stored in the database
+         * @param count
+         *            The number of cards
+         * @return This builder
+         */
+        public Builder addTypeName( String typeName, int count ) {
+
+            if ( Type.contains( typeName ) ) {
+                add( types, Type.valueOf( typeName.toUpperCase() ), count );
+            } else if ( !SuperType.contains( typeName ) ) {
+                add( subTypes, new SubType( typeName ), count );
+            }
+
+            return this;
+        }
+
+        /**
+         * Count cards in the given expansion
+         *
+         * @param expansion
+         *            The expansion, as stored in the database
+         * @param count
+         *            The number of cards
+         * @return This builder
+         */
+        public Builder addExpansion( String expansion, int count ) {
+            add( expansions, expansion, count );
+            return this;
+        }
+
+        /**
+         * Count cards of the given rarity
+         *
+         * @param rarity
+         *            The rarity, as stored in the database
+         * @param count
+         *            The number of cards
+         * @return This builder
+         */
+        public Builder addRarity( String rarity, int count ) {
+            add( rarities, rarity, count );
+            return this;
+        }
+
+        /**
+         * Count cards in the given language. Unrecognized languages are not counted.
+         *
+         * @param language
+         *            The language, as stored in the database
+         * @param count
+         *            The number of cards
+         * @return This builder
+         */
+        public Builder addLanguage( String language, int count ) {
+            add( languages, Language.getLanguageByValue( language ), count );
+            return this;
+        }
+
+        public SearchFacets build() {
+            return new SearchFacets( this );
+        }
+
+        private static <K> void add( Map<K, Integer> counts, K key, int count ) {
+
+            if ( key == null || count <= 0 ) {
+                return;
+            }
+
+            Integer existing = counts.get( key );
+            counts.put( key, existing == null ? count : existing + count );
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.christopherfebles.magic.dao.result;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * A single page of search results, loaded with a continuation token rather than a page number.<br>
+ * <br>
+ * Pass {@link #getNextPageToken()} back to the same search to load the following page.
+ * 
+ * @see com.christopherfebles.magic.dao.SearchDAO#getPageAfterTokenWithSearchParameters(String, int, List)
+ * @author Christopher Febles
+ *
+ */
+public class SearchPage {
+
+    private final List<MagicCard> cards;
+    private final String nextPageToken;
+
+    /**
+     * Create a new page of search results
+     * 
+     * @param cards
+     *            The cards on this page
+     * @param nextPageToken
+     *            The token to load the following page, or null if this is the last page
+     */
+    public SearchPage( List<MagicCard> cards, String nextPageToken ) {
+        this.cards = Collections.unmodifiableList( cards );
+        this.nextPageToken = nextPageToken;
+    }
+
+    /**
+     * @return The cards on this page, in search order
+     */
+    public List<MagicCard> getCards() {
+        return cards;
+    }
+
+    /**
+     * Get the opaque token used to load the page after this one.
+     * 
+     * @return The continuation token, or null if this is the last page
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    /**
+     * @return True if another page of results follows this one
+     */
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+
+    @Override
+    /**
+     * String generated via Reflection.
+     */
+    public String toString() {
+        return ReflectionToStringBuilder.toString( this, ToStringStyle.MULTI_LINE_STYLE );
+    }
+
+}
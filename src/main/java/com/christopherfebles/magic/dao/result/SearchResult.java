@@ -0,0 +1,92 @@
+package com.christopherfebles.magic.dao.result;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.christopherfebles.magic.model.MagicCard;
+
+/**
+ * A numbered page of search results, together with the total size of the search.
+ *
+ * @see com.christopherfebles.magic.dao.SearchDAO#getSearchResultWithSearchParameters(int, int, List)
+ * @see com.christopherfebles.magic.dao.SearchDAO#getSearchResultByNameWithSearchParameters(int, int, List)
+ * @author Christopher Febles
+ *
+ */
+public class SearchResult {
+
+    private final List<MagicCard> cards;
+    private final int totalResults;
+    private final int pageNumber;
+    private final int pageSize;
+
+    /**
+     * Create a new page of search results
+     *
+     * @param cards
+     *            The cards on this page
+     * @param totalResults
+     *            The number of results across all pages
+     * @param pageNumber
+     *            The number of this page, starting from one
+     * @param pageSize
+     *            The maximum number of results on a page
+     */
+    public SearchResult( List<MagicCard> cards, int totalResults, int pageNumber, int pageSize ) {
+        this.cards = Collections.unmodifiableList( cards );
+        this.totalResults = totalResults;
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return The cards on this page, in search order
+     */
+    public List<MagicCard> getCards() {
+        return cards;
+    }
+
+    /**
+     * Get the number of results across all pages.<br>
+     * <br>
+     * For searches grouped by name, this is the number of unique names, not the number of cards.
+     *
+     * @return The total number of results
+     */
+    public int getTotalResults() {
+        return totalResults;
+    }
+
+    /**
+     * @return The number of this page, starting from one
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    /**
+     * @return The maximum number of results on a page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return The number of pages needed to show all results
+     */
+    public int getPageCount() {
+        return ( totalResults + pageSize - 1 ) / pageSize;
+    }
+
+    @Override
+    /**
+     * String generated via Reflection.
+     */
+    public String toString() {
+        return ReflectionToStringBuilder.toString( this, ToStringStyle.MULTI_LINE_STYLE );
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Result objects returned by data access searches.
+ */
+package com.christopherfebles.magic.dao.result;
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.christopherfebles.magic.enums;
 
+import java.util.Collection;
+
 import org.springframework.util.StringUtils;
 
 /**
@@ -10,18 +12,20 @@ import org.springframework.util.StringUtils;
  */
 public enum Color implements DatabaseSearchable {
 
-    WHITE( "W" ),
-    BLACK( "B" ),
-    RED( "R" ),
-    BLUE( "U" ),
-    GREEN( "G" ),
-    COLORLESS( "C" ),
-    VARIABLE_COLORLESS( "X" );
+    WHITE( "W", 1 ),
+    BLACK( "B", 4 ),
+    RED( "R", 8 ),
+    BLUE( "U", 2 ),
+    GREEN( "G", 16 ),
+    COLORLESS( "C", 0 ),
+    VARIABLE_COLORLESS( "X", 0 );
 
     private final String colorValue;
+    private final int mask;
 
-    private Color( String color ) {
+    private Color( String color, int mask ) {
         this.colorValue = color;
+        this.mask = mask;
     }
 
     /**
@@ -33,6 +37,35 @@ public enum Color implements DatabaseSearchable {
         return colorValue;
     }
 
+    /**
+     * Gets the bit representing this Color in a color mask.<br>
+     * <br>
+     * The bits are W=1, U=2, B=4, R=8 and G=16. Colorless has no bit, so a colorless card has a mask of zero.
+     * 
+     * @return The bit for this Color, or zero if colorless
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Combine the given Colors into a single color mask.
+     * 
+     * @see #getMask()
+     * @param colors
+     *            The Colors to combine
+     * @return The bitwise OR of the masks of every given Color
+     */
+    public static int getMask( Collection<Color> colors ) {
+
+        int colorMask = 0;
+        for ( Color color : colors ) {
+            colorMask |= color.getMask();
+        }
+
+        return colorMask;
+    }
+
     /**
      * Get the Color object corresponding to the given single character value.<br>
      * <br>
@@ -0,0 +1,72 @@
+package com.christopherfebles.magic.index;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The terms of one card, in order, for each {@link IndexedField}.
+ *
+ * @author Christopher Febles
+ *
+ */
+final class CardDocument {
+
+    private final int multiverseId;
+    private final Map<IndexedField, List<String>> terms = new EnumMap<>( IndexedField.class );
+
+    /**
+     * Tokenize a card.
+     *
+     * @param multiverseId
+     *            The id of the card
+     * @param fieldValues
+     *            The text of each field, null values are treated as empty
+     */
+    CardDocument( int multiverseId, Map<IndexedField, String> fieldValues ) {
+        this.multiverseId = multiverseId;
+        for ( IndexedField field : IndexedField.values() ) {
+            terms.put( field, CardTokenizer.tokenize( fieldValues.get( field ) ) );
+        }
+    }
+
+    int getMultiverseId() {
+        return multiverseId;
+    }
+
+    /**
+     * @return The terms in the given field, in order
+     */
+    List<String> getTerms( IndexedField field ) {
+        return terms.get( field );
+    }
+
+    /**
+     * @return True if the given terms appear consecutively, in order, in the given field
+     */
+    boolean matchesPhrase( IndexedField field, List<String> phrase ) {
+
+        List<String> fieldTerms = terms.get( field );
+        for ( int start = 0; start + phrase.size() <= fieldTerms.size(); start++ ) {
+            if ( fieldTerms.subList( start, start + phrase.size() ).equals( phrase ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return True if any term in the given field starts with the given prefix
+     */
+    boolean matchesPrefix( IndexedField field, String prefix ) {
+
+        for ( String term : terms.get( field ) ) {
+            if ( term.startsWith( prefix ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package com.christopherfebles.magic.index;
+
+import static com.christopherfebles.magic.dao.MagicDAOConstants.ALL_CARDS_TABLE_NO_ALIAS;
+import static com.christopherfebles.magic.dao.MagicDAOConstants.DATABASE_QUERY_LOG_MSG;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.christopherfebles.magic.dao.ChangedCardLoader;
+
+/**
+ * Loads card names, for the lookups that hold every card name in memory.
+ *
+ * @param <T>
+ *            What is built from the names
+ * @author Christopher Febles
+ *
+ */
+abstract class CardNameLoader<T> extends ChangedCardLoader<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( CardNameLoader.class );
+
+    private static final String ALL_NAMES_QUERY = "Select multiverse_id, name From" + ALL_CARDS_TABLE_NO_ALIAS;
+    private static final String NAMES_BY_ID_QUERY = ALL_NAMES_QUERY + "Where multiverse_id in (:multiverseIds)";
+
+    /**
+     * @param dataSource
+     *            The database holding the catalog
+     */
+    protected CardNameLoader( DataSource dataSource ) {
+        super( dataSource );
+    }
+
+    /**
+     * Load every card name from the database.
+     *
+     * @return Every card name, mapped to its multiverse ids in no particular order
+     */
+    protected final Map<String, List<Integer>> loadAllNames() {
+
+        final Map<String, List<Integer>> retVal = new HashMap<>();
+
+        LOG.debug( DATABASE_QUERY_LOG_MSG, ALL_NAMES_QUERY );
+        this.getStreamingJdbcTemplate().query( ALL_NAMES_QUERY, new RowCallbackHandler() {
+            @Override
+            public void processRow( ResultSet rs ) throws SQLException {
+                CardNameLoader.addPrinting( retVal, rs.getString( "name" ), rs.getInt( "multiverse_id" ) );
+            }
+        } );
+
+        return retVal;
+    }
+
+    /**
+     * Load the names of the given cards from the database.
+     *
+     * @param multiverseIds
+     *            The cards to load
+     * @return Every given id, mapped to the name of the card or null if it is no longer in the database
+     */
+    protected final Map<Integer, String> loadNames( List<Integer> multiverseIds ) {
+
+        final Map<Integer, String> retVal = new HashMap<>();
+        for ( Integer multiverseId : multiverseIds ) {
+            retVal.put( multiverseId, null );
+        }
+
+        this.queryByIds( NAMES_BY_ID_QUERY, multiverseIds, new RowCallbackHandler() {
+            @Override
+            public void processRow( ResultSet rs ) throws SQLException {
+                retVal.put( rs.getInt( "multiverse_id" ), rs.getString( "name" ) );
+            }
+        } );
+
+        return retVal;
+    }
+
+    static void addPrinting( Map<String, List<Integer>> printingsByName, String name, int multiverseId ) {
+        List<Integer> multiverseIds = printingsByName.get( name );
+        if ( multiverseIds == null ) {
+            multiverseIds = new ArrayList<>( 1 );
+            printingsByName.put( name, multiverseIds );
+        }
+        multiverseIds.add( multiverseId );
+    }
+}
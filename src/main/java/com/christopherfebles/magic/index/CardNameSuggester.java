@@ -0,0 +1,339 @@
+package com.christopherfebles.magic.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Completes partial card names from memory, for search boxes that would otherwise query the database on every keystroke.<br>
+ * <br>
+ * Every distinct card name is held in one sorted array, so the names starting with a prefix are one contiguous range, found with two binary searches.
+ * A range maximum table over the print count of each name then gives the most printed names in that range in order, without reading the rest of the
+ * range. A suggestion costs O(log n + k log k), however many names match.<br>
+ * <br>
+ * The names are loaded on the first suggestion. Cards reported as changed by MagicCardDAO are reloaded by id on the next suggestion, and merged into
+ * the names already held, without reading the rest of All_Cards again.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class CardNameSuggester extends CardNameLoader<CardNameSuggester.NameTable> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( CardNameSuggester.class );
+
+    /**
+     * Create a new suggester over the given database. Nothing is loaded until the first suggestion.
+     *
+     * @param dataSource
+     *            The database holding the catalog
+     */
+    public CardNameSuggester( DataSource dataSource ) {
+        super( dataSource );
+    }
+
+    /**
+     * Get the most printed card names starting with the given text, ignoring case.
+     *
+     * @param prefix
+     *            The start of a card name, such as "fir"
+     * @param maxSuggestions
+     *            The maximum number of names to return
+     * @return Up to maxSuggestions names, most printed first, then in name order. Empty for an empty prefix, or null if the names could not be
+     *         loaded.
+     */
+    public List<NameSuggestion> suggest( String prefix, int maxSuggestions ) {
+
+        Validate.isTrue( maxSuggestions > 0, "At least one suggestion must be requested." );
+
+        if ( StringUtils.isEmpty( prefix ) ) {
+            return new ArrayList<>();
+        }
+
+        NameTable currentNames = this.getLoaded();
+        if ( currentNames == null ) {
+            return null;
+        }
+
+        return currentNames.suggest( CardTokenizer.normalize( prefix ), maxSuggestions );
+    }
+
+    @Override
+    protected NameTable loadAll() {
+
+        NameTable retVal = new NameTable( NameTable.toArrays( this.loadAllNames() ) );
+        LOG.info( "Loaded {} card names for suggestions.", retVal.size() );
+
+        return retVal;
+    }
+
+    @Override
+    protected NameTable loadChanges( NameTable current, List<Integer> multiverseIds ) {
+        return current.withChanges( this.loadNames( multiverseIds ) );
+    }
+
+    /**
+     * An immutable, sorted table of card names and their printings.
+     */
+    static final class NameTable {
+
+        private final String[] keys;
+        private final String[] names;
+        private final int[][] multiverseIds;
+
+        // bestInRange[j][i] is the index of the most printed name in keys[i] to keys[i + 2^j - 1]
+        private final int[][] bestInRange;
+
+        // Every multiverse id in ascending order, with the index of its name, to find the old name of a changed card
+        private final int[] sortedIds;
+        private final int[] nameIndexOfId;
+
+        /**
+         * @param printingsByName
+         *            Every card name, mapped to its multiverse ids in any order
+         */
+        private NameTable( Map<String, int[]> printingsByName ) {
+
+            List<String> sortedNames = new ArrayList<>( printingsByName.keySet() );
+            Collections.sort( sortedNames, new Comparator<String>() {
+                @Override
+                public int compare( String first, String second ) {
+                    int retVal = CardTokenizer.normalize( first ).compareTo( CardTokenizer.normalize( second ) );
+                    return retVal != 0 ? retVal : first.compareTo( second );
+                }
+            } );
+
+            int size = sortedNames.size();
+            keys = new String[size];
+            names = new String[size];
+            multiverseIds = new int[size][];
+
+            int idCount = 0;
+            for ( int x = 0; x < size; x++ ) {
+                names[x] = sortedNames.get( x );
+                keys[x] = CardTokenizer.normalize( names[x] );
+
+                multiverseIds[x] = printingsByName.get( names[x] );
+                Arrays.sort( multiverseIds[x] );
+                idCount += multiverseIds[x].length;
+            }
+
+            bestInRange = this.buildBestInRange();
+
+            long[] idAndName = new long[idCount];
+            int next = 0;
+            for ( int x = 0; x < size; x++ ) {
+                for ( int multiverseId : multiverseIds[x] ) {
+                    idAndName[next++] = ( (long) multiverseId << 32 ) | x;
+                }
+            }
+            Arrays.sort( idAndName );
+            sortedIds = new int[idCount];
+            nameIndexOfId = new int[idCount];
+            for ( int x = 0; x < idCount; x++ ) {
+                sortedIds[x] = (int) ( idAndName[x] >>> 32 );
+                nameIndexOfId[x] = (int) idAndName[x];
+            }
+        }
+
+        private static Map<String, int[]> toArrays( Map<String, ? extends Collection<Integer>> printingsByName ) {
+
+            Map<String, int[]> retVal = new HashMap<>();
+            for ( Map.Entry<String, ? extends Collection<Integer>> entry : printingsByName.entrySet() ) {
+                int[] printings = new int[entry.getValue().size()];
+                int x = 0;
+                for ( Integer multiverseId : entry.getValue() ) {
+                    printings[x++] = multiverseId;
+                }
+                retVal.put( entry.getKey(), printings );
+            }
+
+            return retVal;
+        }
+
+        private int[][] buildBestInRange() {
+
+            int levels = 1;
+            while ( ( 1 << levels ) <= keys.length ) {
+                levels++;
+            }
+
+            int[][] retVal = new int[levels][];
+            retVal[0] = new int[keys.length];
+            for ( int x = 0; x < keys.length; x++ ) {
+                retVal[0][x] = x;
+            }
+            for ( int level = 1; level < levels; level++ ) {
+                int half = 1 << ( level - 1 );
+                retVal[level] = new int[keys.length - ( 1 << level ) + 1];
+                for ( int x = 0; x < retVal[level].length; x++ ) {
+                    retVal[level][x] = this.better( retVal[level - 1][x], retVal[level - 1][x + half] );
+                }
+            }
+
+            return retVal;
+        }
+
+        /**
+         * @return The more printed of two names, or the first in name order if they are printed equally
+         */
+        private int better( int first, int second ) {
+            if ( multiverseIds[first].length != multiverseIds[second].length ) {
+                return multiverseIds[first].length > multiverseIds[second].length ? first : second;
+            }
+            return Math.min( first, second );
+        }
+
+        /**
+         * @return The most printed name in keys[from] to keys[to], inclusive
+         */
+        private int best( int from, int to ) {
+            int level = 31 - Integer.numberOfLeadingZeros( to - from + 1 );
+            return this.better( bestInRange[level][from], bestInRange[level][to - ( 1 << level ) + 1] );
+        }
+
+        private int size() {
+            return keys.length;
+        }
+
+        private List<NameSuggestion> suggest( String prefix, int maxSuggestions ) {
+
+            List<NameSuggestion> retVal = new ArrayList<>();
+
+            int from = this.lowerBound( prefix );
+            int to = this.lowerBound( prefix + Character.MAX_VALUE ) - 1;
+            if ( from > to ) {
+                return retVal;
+            }
+
+            // Take the best name in a range, then split the range around it, keeping the ranges ordered by their best name
+            PriorityQueue<int[]> ranges = new PriorityQueue<>( maxSuggestions * 2 + 1, new Comparator<int[]>() {
+                @Override
+                public int compare( int[] first, int[] second ) {
+                    return first[2] == second[2] ? 0 : ( NameTable.this.better( first[2], second[2] ) == first[2] ? -1 : 1 );
+                }
+            } );
+            ranges.add( new int[] { from, to, this.best( from, to ) } );
+
+            while ( retVal.size() < maxSuggestions && !ranges.isEmpty() ) {
+                int[] range = ranges.poll();
+                int best = range[2];
+
+                List<Integer> printings = new ArrayList<>( multiverseIds[best].length );
+                for ( int multiverseId : multiverseIds[best] ) {
+                    printings.add( multiverseId );
+                }
+                retVal.add( new NameSuggestion( names[best], printings ) );
+
+                if ( range[0] < best ) {
+                    ranges.add( new int[] { range[0], best - 1, this.best( range[0], best - 1 ) } );
+                }
+                if ( best < range[1] ) {
+                    ranges.add( new int[] { best + 1, range[1], this.best( best + 1, range[1] ) } );
+                }
+            }
+
+            return retVal;
+        }
+
+        /**
+         * @return The index of the first key not less than the given key
+         */
+        private int lowerBound( String key ) {
+            int low = 0;
+            int high = keys.length;
+            while ( low < high ) {
+                int middle = ( low + high ) >>> 1;
+                if ( keys[middle].compareTo( key ) < 0 ) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Merge changed cards into a copy of this table.
+         *
+         * @param changedNames
+         *            Changed multiverse ids, mapped to their new name or null if they were removed
+         * @return A new table with the changes applied
+         */
+        private NameTable withChanges( Map<Integer, String> changedNames ) {
+
+            // Only the names a changed card moved from or to need new printings
+            Map<String, TreeSet<Integer>> changedPrintings = new HashMap<>();
+            for ( Map.Entry<Integer, String> change : changedNames.entrySet() ) {
+                int idIndex = Arrays.binarySearch( sortedIds, change.getKey() );
+                if ( idIndex >= 0 ) {
+                    this.getPrintings( changedPrintings, nameIndexOfId[idIndex] ).remove( change.getKey() );
+                }
+            }
+            for ( Map.Entry<Integer, String> change : changedNames.entrySet() ) {
+                if ( change.getValue() != null ) {
+                    TreeSet<Integer> printings = changedPrintings.get( change.getValue() );
+                    if ( printings == null ) {
+                        int nameIndex = this.indexOf( change.getValue() );
+                        printings = nameIndex >= 0 ? this.getPrintings( changedPrintings, nameIndex ) : new TreeSet<Integer>();
+                        changedPrintings.put( change.getValue(), printings );
+                    }
+                    printings.add( change.getKey() );
+                }
+            }
+
+            // Unchanged names keep their sorted printings
+            Map<String, int[]> printingsByName = new HashMap<>();
+            for ( int x = 0; x < names.length; x++ ) {
+                printingsByName.put( names[x], multiverseIds[x] );
+            }
+            for ( Map.Entry<String, int[]> entry : NameTable.toArrays( changedPrintings ).entrySet() ) {
+                if ( entry.getValue().length == 0 ) {
+                    printingsByName.remove( entry.getKey() );
+                } else {
+                    printingsByName.put( entry.getKey(), entry.getValue() );
+                }
+            }
+
+            return new NameTable( printingsByName );
+        }
+
+        /**
+         * @return The index of the given name, or -1 if it is not in this table
+         */
+        private int indexOf( String name ) {
+            String key = CardTokenizer.normalize( name );
+            for ( int x = this.lowerBound( key ); x < keys.length && keys[x].equals( key ); x++ ) {
+                if ( names[x].equals( name ) ) {
+                    return x;
+                }
+            }
+            return -1;
+        }
+
+        private TreeSet<Integer> getPrintings( Map<String, TreeSet<Integer>> changedPrintings, int nameIndex ) {
+            TreeSet<Integer> retVal = changedPrintings.get( names[nameIndex] );
+            if ( retVal == null ) {
+                retVal = new TreeSet<>();
+                for ( int multiverseId : multiverseIds[nameIndex] ) {
+                    retVal.add( multiverseId );
+                }
+                changedPrintings.put( names[nameIndex], retVal );
+            }
+            return retVal;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.christopherfebles.magic.index;
+
+import static com.christopherfebles.magic.dao.MagicDAOConstants.ALL_CARDS_TABLE_NO_ALIAS;
+import static com.christopherfebles.magic.dao.MagicDAOConstants.DATABASE_QUERY_LOG_MSG;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.christopherfebles.magic.dao.ChangedCardLoader;
+import com.christopherfebles.magic.dao.result.MultiverseIdSet;
+
+/**
+ * An inverted index over the name, rules text and flavor text of every card, answering phrase and prefix searches without the database.<br>
+ * <br>
+ * The index is built on the first search, from one pass over All_Cards read as a stream, so the whole table is never held in memory at once. Cards
+ * reported as changed by MagicCardDAO are reloaded on the next search and held beside the index, replacing the indexed copy. Once more than
+ * {@value ChangedCardLoader#MAX_CHANGED_CARDS} cards have changed, the index is rebuilt instead.<br>
+ * <br>
+ * Text is split into terms by {@link CardTokenizer}, so mana symbols such as {2/W} can be searched for directly. Searches ignore case.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class CardTextIndex extends ChangedCardLoader<CardTextIndex.IndexState> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( CardTextIndex.class );
+
+    private static final String SELECT_COLUMNS = "Select multiverse_id, name, text, flavor_text From" + ALL_CARDS_TABLE_NO_ALIAS;
+    private static final String ALL_CARDS_QUERY = SELECT_COLUMNS + "order by multiverse_id";
+    private static final String CARDS_BY_ID_QUERY = SELECT_COLUMNS + "Where multiverse_id in (:multiverseIds)";
+
+    /**
+     * Create a new index over the given database. Nothing is loaded until the first search.
+     *
+     * @param dataSource
+     *            The database holding the catalog
+     */
+    public CardTextIndex( DataSource dataSource ) {
+        super( dataSource );
+    }
+
+    /**
+     * Find every card with the given words consecutively, in order, in the given field.
+     *
+     * @param field
+     *            The field to search
+     * @param phrase
+     *            The words to find, such as "draw a card" or "{T}: add {G}"
+     * @return The multiverse ids of every matching card in ascending order, or null if the index could not be loaded
+     */
+    public List<Integer> searchPhrase( IndexedField field, String phrase ) {
+
+        List<String> terms = CardTokenizer.tokenize( phrase );
+        if ( terms.isEmpty() ) {
+            return new ArrayList<>();
+        }
+
+        IndexState currentState = this.getLoaded();
+        if ( currentState == null ) {
+            return null;
+        }
+
+        MultiverseIdSet.Builder changedMatches = new MultiverseIdSet.Builder();
+        for ( Map.Entry<Integer, CardDocument> change : currentState.changedCards.entrySet() ) {
+            if ( change.getValue() != null && change.getValue().matchesPhrase( field, terms ) ) {
+                changedMatches.add( change.getKey() );
+            }
+        }
+
+        return currentState.toList( currentState.segment.searchPhrase( field, terms ), changedMatches.build() );
+    }
+
+    /**
+     * Find every card with a word starting with the given prefix in the given field.
+     *
+     * @param field
+     *            The field to search
+     * @param prefix
+     *            The start of a word, such as "enchant"
+     * @return The multiverse ids of every matching card in ascending order, or null if the index could not be loaded
+     */
+    public List<Integer> searchPrefix( IndexedField field, String prefix ) {
+
+        if ( StringUtils.isBlank( prefix ) ) {
+            return new ArrayList<>();
+        }
+        String term = CardTokenizer.normalize( prefix.trim() );
+
+        IndexState currentState = this.getLoaded();
+        if ( currentState == null ) {
+            return null;
+        }
+
+        MultiverseIdSet.Builder changedMatches = new MultiverseIdSet.Builder();
+        for ( Map.Entry<Integer, CardDocument> change : currentState.changedCards.entrySet() ) {
+            if ( change.getValue() != null && change.getValue().matchesPrefix( field, term ) ) {
+                changedMatches.add( change.getKey() );
+            }
+        }
+
+        return currentState.toList( currentState.segment.searchPrefix( field, term ), changedMatches.build() );
+    }
+
+    @Override
+    protected IndexState loadAll() {
+
+        final IndexSegment.Builder builder = new IndexSegment.Builder();
+
+        LOG.debug( DATABASE_QUERY_LOG_MSG, ALL_CARDS_QUERY );
+        this.getStreamingJdbcTemplate().query( ALL_CARDS_QUERY, new RowCallbackHandler() {
+            @Override
+            public void processRow( ResultSet rs ) throws SQLException {
+                builder.add( CardTextIndex.toDocument( rs ) );
+            }
+        } );
+
+        IndexSegment segment = builder.build();
+        LOG.info( "Indexed the text of {} cards.", segment.getDocumentCount() );
+
+        return new IndexState( segment, Collections.<Integer, CardDocument> emptyMap() );
+    }
+
+    /**
+     * Load the given cards, and hold them beside the index. A card no longer in the database is held as null.
+     */
+    @Override
+    protected IndexState loadChanges( IndexState current, List<Integer> multiverseIds ) {
+
+        final Map<Integer, CardDocument> changedCards = new HashMap<>( current.changedCards );
+        for ( Integer multiverseId : multiverseIds ) {
+            changedCards.put( multiverseId, null );
+        }
+
+        this.queryByIds( CARDS_BY_ID_QUERY, multiverseIds, new RowCallbackHandler() {
+            @Override
+            public void processRow( ResultSet rs ) throws SQLException {
+                CardDocument document = CardTextIndex.toDocument( rs );
+                changedCards.put( document.getMultiverseId(), document );
+            }
+        } );
+
+        return new IndexState( current.segment, Collections.unmodifiableMap( changedCards ) );
+    }
+
+    @Override
+    protected int countHeldChanges( IndexState current ) {
+        return current.changedCards.size();
+    }
+
+    private static CardDocument toDocument( ResultSet rs ) throws SQLException {
+
+        Map<IndexedField, String> fieldValues = new EnumMap<>( IndexedField.class );
+        for ( IndexedField field : IndexedField.values() ) {
+            fieldValues.put( field, rs.getString( field.getColumnName() ) );
+        }
+
+        return new CardDocument( rs.getInt( "multiverse_id" ), fieldValues );
+    }
+
+    /**
+     * The indexed cards, and the cards changed since they were indexed. A null changed card has been removed.
+     */
+    static final class IndexState {
+
+        private final IndexSegment segment;
+        private final Map<Integer, CardDocument> changedCards;
+        private final MultiverseIdSet changedIds;
+
+        private IndexState( IndexSegment segment, Map<Integer, CardDocument> changedCards ) {
+            this.segment = segment;
+            this.changedCards = changedCards;
+
+            MultiverseIdSet.Builder builder = new MultiverseIdSet.Builder();
+            for ( Integer multiverseId : changedCards.keySet() ) {
+                builder.add( multiverseId );
+            }
+            changedIds = builder.build();
+        }
+
+        /**
+         * Replace the indexed copies of changed cards with their current matches.
+         *
+         * @param indexedMatches
+         *            The matching cards in the index
+         * @param changedMatches
+         *            The matching changed cards
+         * @return Every matching card in ascending order
+         */
+        private List<Integer> toList( MultiverseIdSet indexedMatches, MultiverseIdSet changedMatches ) {
+
+            MultiverseIdSet matches = changedIds.isEmpty() ? indexedMatches : indexedMatches.andNot( changedIds ).or( changedMatches );
+
+            List<Integer> retVal = new ArrayList<>( matches.size() );
+            for ( int multiverseId : matches.toArray() ) {
+                retVal.add( multiverseId );
+            }
+
+            return retVal;
+        }
+    }
+}
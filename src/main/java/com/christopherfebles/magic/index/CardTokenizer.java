@@ -0,0 +1,65 @@
+package com.christopherfebles.magic.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits card names and rules text into the terms held by a {@link CardTextIndex}.<br>
+ * <br>
+ * Besides plain words, rules text has tokens that a general purpose tokenizer would break apart:
+ * <ul>
+ * <li>Mana and tap symbols, such as {R}, {2/W} or {T}, are kept whole</li>
+ * <li>Power/toughness changes, such as +1/+1 or -2/-0, are kept whole</li>
+ * <li>Hyphenated and possessive words, such as non-Human or opponent's, are kept whole</li>
+ * </ul>
+ * Every term is lower case, so searches ignore case.
+ * 
+ * @author Christopher Febles
+ *
+ */
+public final class CardTokenizer {
+
+    private static final Pattern TOKEN_PATTERN = Pattern.compile( "\\{[^{}\\s]+\\}" // Mana symbols
+            + "|[+-]?[0-9X*]+/[+-]?[0-9X*]+" // Power/toughness
+            + "|[\\p{L}\\p{N}]+(?:['\\u2019-][\\p{L}\\p{N}]+)*" ); // Words
+
+    private CardTokenizer() {
+        // Static utility class
+    }
+
+    /**
+     * Split the given text into terms, in order.
+     * 
+     * @param text
+     *            The text to split, may be null
+     * @return The terms in the given text, empty if there are none
+     */
+    public static List<String> tokenize( String text ) {
+
+        List<String> terms = new ArrayList<>();
+        if ( text == null ) {
+            return terms;
+        }
+
+        Matcher matcher = TOKEN_PATTERN.matcher( text );
+        while ( matcher.find() ) {
+            terms.add( normalize( matcher.group() ) );
+        }
+
+        return terms;
+    }
+
+    /**
+     * Normalize a term, or the start of a term, the same way as {@link #tokenize(String)}.
+     * 
+     * @param term
+     *            The term to normalize
+     * @return The normalized term
+     */
+    public static String normalize( String term ) {
+        return term.toLowerCase( Locale.ENGLISH );
+    }
+}
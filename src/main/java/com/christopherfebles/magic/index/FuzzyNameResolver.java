@@ -0,0 +1,386 @@
+package com.christopherfebles.magic.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.christopherfebles.magic.dao.ChangedCardLoader;
+
+/**
+ * Finds the card names closest to a misspelled name, such as one read from a scanned card.<br>
+ * <br>
+ * Every distinct card name is indexed by its trigrams, the runs of three characters in the name. Each character inserted, removed or replaced in a
+ * name changes at most three of its trigrams, so a name within a given edit distance must share most of its trigrams with the searched name. Only
+ * the names sharing enough trigrams are compared character by character, so a lookup reads a small part of the catalog, however large it grows.
+ * A name too short for that bound to hold, which may share no trigram at all with a match, is instead compared with every name of a close enough
+ * length.<br>
+ * <br>
+ * The names are loaded on the first lookup, from one pass over All_Cards read as a stream. Cards reported as changed by MagicCardDAO are reloaded on
+ * the next lookup and indexed beside the rest, replacing their old names. Once more than {@value ChangedCardLoader#MAX_CHANGED_CARDS} cards have
+ * changed, every name is loaded again instead.
+ *
+ * @author Christopher Febles
+ *
+ */
+public class FuzzyNameResolver extends CardNameLoader<FuzzyNameResolver.IndexState> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( FuzzyNameResolver.class );
+
+    // Names are padded so that their first and last characters begin and end trigrams of their own
+    private static final String PADDING = "  ";
+
+    /**
+     * Create a new resolver over the given database. Nothing is loaded until the first lookup.
+     *
+     * @param dataSource
+     *            The database holding the catalog
+     */
+    public FuzzyNameResolver( DataSource dataSource ) {
+        super( dataSource );
+    }
+
+    /**
+     * Find the card names closest to the given name, ignoring case.
+     *
+     * @param name
+     *            The name to look up, possibly misspelled
+     * @param maxEditDistance
+     *            The maximum number of characters inserted, removed or replaced between the given name and a match
+     * @param maxResults
+     *            The maximum number of matches to return
+     * @return Up to maxResults matches, closest first, then most printed, then in name order. Null if the names could not be loaded.
+     */
+    public List<NameMatch> resolve( String name, int maxEditDistance, int maxResults ) {
+
+        Validate.isTrue( maxEditDistance >= 0, "The maximum edit distance cannot be negative." );
+        Validate.isTrue( maxResults > 0, "At least one result must be requested." );
+
+        if ( StringUtils.isBlank( name ) ) {
+            return new ArrayList<>();
+        }
+
+        IndexState currentState = this.getLoaded();
+        if ( currentState == null ) {
+            return null;
+        }
+
+        return currentState.resolve( CardTokenizer.normalize( name.trim() ), maxEditDistance, maxResults );
+    }
+
+    @Override
+    protected IndexState loadAll() {
+
+        IndexState retVal = new IndexState( new TrigramIndex( this.loadAllNames() ), Collections.<Integer, String> emptyMap() );
+        LOG.info( "Indexed {} card names for fuzzy lookup.", retVal.index.names.length );
+
+        return retVal;
+    }
+
+    @Override
+    protected IndexState loadChanges( IndexState current, List<Integer> multiverseIds ) {
+
+        Map<Integer, String> changedNames = new HashMap<>( current.changedNames );
+        changedNames.putAll( this.loadNames( multiverseIds ) );
+
+        return new IndexState( current.index, Collections.unmodifiableMap( changedNames ) );
+    }
+
+    @Override
+    protected int countHeldChanges( IndexState current ) {
+        return current.changedNames.size();
+    }
+
+    /**
+     * @return The distinct trigrams of the given normalized name
+     */
+    static Set<String> trigrams( String key ) {
+
+        String padded = PADDING + key + PADDING;
+        Set<String> retVal = new LinkedHashSet<>();
+        for ( int x = 0; x + 3 <= padded.length(); x++ ) {
+            retVal.add( padded.substring( x, x + 3 ) );
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Get the edit distance between two strings, giving up once it is certain to exceed a maximum.
+     *
+     * @return The edit distance, or maxDistance + 1 if it is greater than maxDistance
+     */
+    static int editDistance( String first, String second, int maxDistance ) {
+
+        if ( Math.abs( first.length() - second.length() ) > maxDistance ) {
+            return maxDistance + 1;
+        }
+
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for ( int y = 0; y <= second.length(); y++ ) {
+            previous[y] = y;
+        }
+
+        for ( int x = 1; x <= first.length(); x++ ) {
+            current[0] = x;
+            int rowMinimum = current[0];
+            for ( int y = 1; y <= second.length(); y++ ) {
+                int replace = previous[y - 1] + ( first.charAt( x - 1 ) == second.charAt( y - 1 ) ? 0 : 1 );
+                current[y] = Math.min( replace, Math.min( previous[y], current[y - 1] ) + 1 );
+                rowMinimum = Math.min( rowMinimum, current[y] );
+            }
+            if ( rowMinimum > maxDistance ) {
+                // Every later row is at least this distance
+                return maxDistance + 1;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return Math.min( previous[second.length()], maxDistance + 1 );
+    }
+
+    /**
+     * The indexed names, and the names of the cards changed since they were indexed. A null changed name has been removed.
+     */
+    static final class IndexState {
+
+        private final TrigramIndex index;
+        private final Map<Integer, String> changedNames;
+        private final TrigramIndex changedIndex;
+
+        private IndexState( TrigramIndex index, Map<Integer, String> changedNames ) {
+            this.index = index;
+            this.changedNames = changedNames;
+
+            Map<String, List<Integer>> changedPrintings = new HashMap<>();
+            for ( Map.Entry<Integer, String> change : changedNames.entrySet() ) {
+                if ( change.getValue() != null ) {
+                    CardNameLoader.addPrinting( changedPrintings, change.getValue(), change.getKey() );
+                }
+            }
+            changedIndex = new TrigramIndex( changedPrintings );
+        }
+
+        private List<NameMatch> resolve( String key, int maxEditDistance, int maxResults ) {
+
+            // Changed cards are dropped from their indexed name, and added under their current one
+            Map<String, Candidate> candidatesByName = new HashMap<>();
+            for ( Candidate candidate : index.findCandidates( key, maxEditDistance ) ) {
+                candidate.multiverseIds.removeAll( changedNames.keySet() );
+                if ( !candidate.multiverseIds.isEmpty() ) {
+                    candidatesByName.put( candidate.name, candidate );
+                }
+            }
+            for ( Candidate candidate : changedIndex.findCandidates( key, maxEditDistance ) ) {
+                Candidate indexed = candidatesByName.get( candidate.name );
+                if ( indexed == null ) {
+                    candidatesByName.put( candidate.name, candidate );
+                } else {
+                    indexed.multiverseIds.addAll( candidate.multiverseIds );
+                }
+            }
+
+            List<Candidate> candidates = new ArrayList<>( candidatesByName.values() );
+            Collections.sort( candidates, new Comparator<Candidate>() {
+                @Override
+                public int compare( Candidate first, Candidate second ) {
+                    if ( first.distance != second.distance ) {
+                        return first.distance < second.distance ? -1 : 1;
+                    }
+                    if ( first.multiverseIds.size() != second.multiverseIds.size() ) {
+                        return first.multiverseIds.size() > second.multiverseIds.size() ? -1 : 1;
+                    }
+                    return first.name.compareTo( second.name );
+                }
+            } );
+
+            List<NameMatch> retVal = new ArrayList<>();
+            for ( Candidate candidate : candidates.subList( 0, Math.min( maxResults, candidates.size() ) ) ) {
+                retVal.add( new NameMatch( candidate.name, new ArrayList<>( candidate.multiverseIds ), candidate.distance ) );
+            }
+
+            return retVal;
+        }
+    }
+
+    /**
+     * A name within the edit distance of a lookup, with its printings in ascending order.
+     */
+    private static final class Candidate {
+
+        private final String name;
+        private final int distance;
+        private final SortedSet<Integer> multiverseIds = new TreeSet<>();
+
+        private Candidate( String name, int distance, int[] multiverseIds ) {
+            this.name = name;
+            this.distance = distance;
+            for ( int multiverseId : multiverseIds ) {
+                this.multiverseIds.add( multiverseId );
+            }
+        }
+    }
+
+    /**
+     * An immutable trigram index over a set of distinct card names.
+     */
+    private static final class TrigramIndex {
+
+        private final String[] names;
+        private final String[] keys;
+        private final int[][] multiverseIds;
+
+        // The indexes of every name, in order of key length
+        private final int[] namesByLength;
+
+        // Each trigram, mapped to the indexes of the names containing it in ascending order
+        private final Map<String, int[]> postings = new HashMap<>();
+
+        private TrigramIndex( Map<String, List<Integer>> printingsByName ) {
+
+            names = printingsByName.keySet().toArray( new String[printingsByName.size()] );
+            Arrays.sort( names );
+            keys = new String[names.length];
+            multiverseIds = new int[names.length][];
+
+            Map<String, List<Integer>> namesByTrigram = new HashMap<>();
+            for ( int x = 0; x < names.length; x++ ) {
+                keys[x] = CardTokenizer.normalize( names[x] );
+
+                List<Integer> printings = printingsByName.get( names[x] );
+                multiverseIds[x] = new int[printings.size()];
+                for ( int y = 0; y < multiverseIds[x].length; y++ ) {
+                    multiverseIds[x][y] = printings.get( y );
+                }
+                Arrays.sort( multiverseIds[x] );
+
+                for ( String trigram : FuzzyNameResolver.trigrams( keys[x] ) ) {
+                    List<Integer> nameIndexes = namesByTrigram.get( trigram );
+                    if ( nameIndexes == null ) {
+                        nameIndexes = new ArrayList<>();
+                        namesByTrigram.put( trigram, nameIndexes );
+                    }
+                    nameIndexes.add( x );
+                }
+            }
+
+            for ( Map.Entry<String, List<Integer>> entry : namesByTrigram.entrySet() ) {
+                int[] nameIndexes = new int[entry.getValue().size()];
+                for ( int x = 0; x < nameIndexes.length; x++ ) {
+                    nameIndexes[x] = entry.getValue().get( x );
+                }
+                postings.put( entry.getKey(), nameIndexes );
+            }
+
+            Integer[] sortedByLength = new Integer[names.length];
+            for ( int x = 0; x < sortedByLength.length; x++ ) {
+                sortedByLength[x] = x;
+            }
+            Arrays.sort( sortedByLength, new Comparator<Integer>() {
+                @Override
+                public int compare( Integer first, Integer second ) {
+                    return Integer.compare( keys[first].length(), keys[second].length() );
+                }
+            } );
+            namesByLength = new int[sortedByLength.length];
+            for ( int x = 0; x < namesByLength.length; x++ ) {
+                namesByLength[x] = sortedByLength[x];
+            }
+        }
+
+        /**
+         * @return Every name within maxEditDistance of the searched name, in no particular order
+         */
+        private List<Candidate> findCandidates( String key, int maxEditDistance ) {
+
+            // Each edit removes at most three trigrams from the searched name, so closer names share at least this many
+            Set<String> searchTrigrams = FuzzyNameResolver.trigrams( key );
+            int minimumShared = searchTrigrams.size() - 3 * maxEditDistance;
+
+            List<Candidate> retVal = new ArrayList<>();
+            if ( minimumShared > 0 ) {
+                for ( Map.Entry<Integer, int[]> entry : this.countSharedTrigrams( searchTrigrams ).entrySet() ) {
+                    if ( entry.getValue()[0] >= minimumShared ) {
+                        this.addIfClose( key, entry.getKey(), maxEditDistance, retVal );
+                    }
+                }
+            } else {
+                // A match may share no trigram with a name this short, so compare every name within maxEditDistance of its length
+                int end = this.firstWithLength( key.length() + maxEditDistance + 1 );
+                for ( int x = this.firstWithLength( key.length() - maxEditDistance ); x < end; x++ ) {
+                    this.addIfClose( key, namesByLength[x], maxEditDistance, retVal );
+                }
+            }
+
+            return retVal;
+        }
+
+        /**
+         * @return The index of every name sharing a trigram with the searched name, mapped to the number of trigrams it shares
+         */
+        private Map<Integer, int[]> countSharedTrigrams( Set<String> searchTrigrams ) {
+
+            Map<Integer, int[]> retVal = new HashMap<>();
+            for ( String trigram : searchTrigrams ) {
+                int[] nameIndexes = postings.get( trigram );
+                if ( nameIndexes == null ) {
+                    continue;
+                }
+                for ( int nameIndex : nameIndexes ) {
+                    int[] count = retVal.get( nameIndex );
+                    if ( count == null ) {
+                        count = new int[1];
+                        retVal.put( nameIndex, count );
+                    }
+                    count[0]++;
+                }
+            }
+
+            return retVal;
+        }
+
+        private void addIfClose( String key, int nameIndex, int maxEditDistance, List<Candidate> candidates ) {
+            int distance = FuzzyNameResolver.editDistance( key, keys[nameIndex], maxEditDistance );
+            if ( distance <= maxEditDistance ) {
+                candidates.add( new Candidate( names[nameIndex], distance, multiverseIds[nameIndex] ) );
+            }
+        }
+
+        /**
+         * @return The position in namesByLength of the first name with a key at least the given length long
+         */
+        private int firstWithLength( int length ) {
+
+            int low = 0;
+            int high = namesByLength.length;
+            while ( low < high ) {
+                int middle = ( low + high ) >>> 1;
+                if ( keys[namesByLength[middle]].length() < length ) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+    }
+}
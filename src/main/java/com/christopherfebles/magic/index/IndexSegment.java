@@ -0,0 +1,208 @@
+package com.christopherfebles.magic.index;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.Validate;
+
+import com.christopherfebles.magic.dao.result.MultiverseIdSet;
+
+/**
+ * An immutable inverted index: for each {@link IndexedField}, every term mapped to the {@link PostingList} of cards containing it.<br>
+ * <br>
+ * Terms are held in sorted order, so every term starting with a prefix is found with one range scan.
+ *
+ * @author Christopher Febles
+ *
+ */
+final class IndexSegment {
+
+    private final Map<IndexedField, NavigableMap<String, PostingList>> terms;
+    private final int documentCount;
+
+    private IndexSegment( Map<IndexedField, NavigableMap<String, PostingList>> terms, int documentCount ) {
+        this.terms = terms;
+        this.documentCount = documentCount;
+    }
+
+    /**
+     * @return The number of cards in this segment
+     */
+    int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Find every card with the given terms consecutively, in order, in the given field.
+     *
+     * @param field
+     *            The field to search
+     * @param phrase
+     *            The normalized terms to find, at least one
+     * @return The ids of every matching card
+     */
+    MultiverseIdSet searchPhrase( IndexedField field, List<String> phrase ) {
+
+        Validate.notEmpty( phrase );
+
+        MultiverseIdSet.Builder results = new MultiverseIdSet.Builder();
+
+        NavigableMap<String, PostingList> fieldTerms = terms.get( field );
+        PostingList.Reader[] readers = new PostingList.Reader[phrase.size()];
+        for ( int x = 0; x < phrase.size(); x++ ) {
+            PostingList postings = fieldTerms.get( phrase.get( x ) );
+            if ( postings == null ) {
+                // A term no card contains
+                return results.build();
+            }
+            readers[x] = postings.reader();
+            if ( !readers[x].next() ) {
+                return results.build();
+            }
+        }
+
+        // Advance every list to the same card, skipping any card missing a term
+        int target = readers[0].getDocument();
+        while ( true ) {
+            boolean aligned = true;
+            for ( PostingList.Reader reader : readers ) {
+                if ( !reader.advanceTo( target ) ) {
+                    return results.build();
+                }
+                if ( reader.getDocument() > target ) {
+                    target = reader.getDocument();
+                    aligned = false;
+                }
+            }
+
+            if ( aligned ) {
+                if ( IndexSegment.isPhraseAtCurrentDocument( readers ) ) {
+                    results.add( target );
+                }
+                if ( !readers[0].next() ) {
+                    return results.build();
+                }
+                target = readers[0].getDocument();
+            }
+        }
+    }
+
+    private static boolean isPhraseAtCurrentDocument( PostingList.Reader[] readers ) {
+
+        for ( int x = 0; x < readers[0].getPositionCount(); x++ ) {
+            int start = readers[0].getPosition( x );
+            boolean found = true;
+            for ( int y = 1; y < readers.length && found; y++ ) {
+                found = readers[y].hasPosition( start + y );
+            }
+            if ( found ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Find every card with a term starting with the given prefix in the given field.
+     *
+     * @param field
+     *            The field to search
+     * @param prefix
+     *            The normalized prefix to find
+     * @return The ids of every matching card
+     */
+    MultiverseIdSet searchPrefix( IndexedField field, String prefix ) {
+
+        MultiverseIdSet.Builder results = new MultiverseIdSet.Builder();
+        for ( Map.Entry<String, PostingList> entry : terms.get( field ).tailMap( prefix, true ).entrySet() ) {
+            if ( !entry.getKey().startsWith( prefix ) ) {
+                break;
+            }
+
+            PostingList.Reader reader = entry.getValue().reader();
+            while ( reader.next() ) {
+                results.add( reader.getDocument() );
+            }
+        }
+
+        return results.build();
+    }
+
+    /**
+     * Builds an IndexSegment from cards added in ascending id order.
+     */
+    static final class Builder {
+
+        private final Map<IndexedField, TreeMap<String, PostingList.Builder>> terms = new EnumMap<>( IndexedField.class );
+        private int documentCount;
+        private int lastMultiverseId = -1;
+
+        Builder() {
+            for ( IndexedField field : IndexedField.values() ) {
+                terms.put( field, new TreeMap<String, PostingList.Builder>() );
+            }
+        }
+
+        /**
+         * Add a card to the index.
+         *
+         * @param document
+         *            The card to add, with an id greater than every card already added
+         */
+        void add( CardDocument document ) {
+
+            Validate.isTrue( document.getMultiverseId() > lastMultiverseId, "Cards must be added in ascending multiverse id order." );
+
+            for ( IndexedField field : IndexedField.values() ) {
+                Map<String, List<Integer>> positionsByTerm = new HashMap<>();
+                List<String> fieldTerms = document.getTerms( field );
+                for ( int position = 0; position < fieldTerms.size(); position++ ) {
+                    List<Integer> positions = positionsByTerm.get( fieldTerms.get( position ) );
+                    if ( positions == null ) {
+                        positions = new ArrayList<>( 2 );
+                        positionsByTerm.put( fieldTerms.get( position ), positions );
+                    }
+                    positions.add( position );
+                }
+
+                TreeMap<String, PostingList.Builder> fieldPostings = terms.get( field );
+                for ( Map.Entry<String, List<Integer>> entry : positionsByTerm.entrySet() ) {
+                    PostingList.Builder postings = fieldPostings.get( entry.getKey() );
+                    if ( postings == null ) {
+                        postings = new PostingList.Builder();
+                        fieldPostings.put( entry.getKey(), postings );
+                    }
+
+                    int[] positions = new int[entry.getValue().size()];
+                    for ( int x = 0; x < positions.length; x++ ) {
+                        positions[x] = entry.getValue().get( x );
+                    }
+                    postings.add( document.getMultiverseId(), positions, positions.length );
+                }
+            }
+
+            lastMultiverseId = document.getMultiverseId();
+            documentCount++;
+        }
+
+        IndexSegment build() {
+
+            Map<IndexedField, NavigableMap<String, PostingList>> builtTerms = new EnumMap<>( IndexedField.class );
+            for ( Map.Entry<IndexedField, TreeMap<String, PostingList.Builder>> field : terms.entrySet() ) {
+                NavigableMap<String, PostingList> fieldTerms = new TreeMap<>();
+                for ( Map.Entry<String, PostingList.Builder> term : field.getValue().entrySet() ) {
+                    fieldTerms.put( term.getKey(), term.getValue().build() );
+                }
+                builtTerms.put( field.getKey(), fieldTerms );
+            }
+
+            return new IndexSegment( builtTerms, documentCount );
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.christopherfebles.magic.index;
+
+/**
+ * The All_Cards columns held in a {@link CardTextIndex}.
+ * 
+ * @author Christopher Febles
+ *
+ */
+public enum IndexedField {
+
+    NAME( "name" ),
+    TEXT( "text" ),
+    FLAVOR_TEXT( "flavor_text" );
+
+    private final String columnName;
+
+    private IndexedField( String columnName ) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * @return The All_Cards column holding this field, without a table alias
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+}
@@ -0,0 +1,67 @@
+package com.christopherfebles.magic.index;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A card name close to a misspelled name, with every printing of the card.
+ *
+ * @see FuzzyNameResolver#resolve(String, int, int)
+ * @author Christopher Febles
+ *
+ */
+public class NameMatch {
+
+    private final String name;
+    private final List<Integer> multiverseIds;
+    private final int editDistance;
+
+    /**
+     * Create a new match
+     *
+     * @param name
+     *            The card name
+     * @param multiverseIds
+     *            The multiverse id of every printing of the card, in ascending order
+     * @param editDistance
+     *            The number of characters inserted, removed or replaced to turn the searched name into this name, ignoring case
+     */
+    public NameMatch( String name, List<Integer> multiverseIds, int editDistance ) {
+        this.name = name;
+        this.multiverseIds = Collections.unmodifiableList( multiverseIds );
+        this.editDistance = editDistance;
+    }
+
+    /**
+     * @return The card name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The multiverse id of every printing of the card, in ascending order
+     */
+    public List<Integer> getMultiverseIds() {
+        return multiverseIds;
+    }
+
+    /**
+     * @return The number of characters inserted, removed or replaced to turn the searched name into this name, ignoring case
+     */
+    public int getEditDistance() {
+        return editDistance;
+    }
+
+    @Override
+    /**
+     * String generated via Reflection.
+     */
+    public String toString() {
+        return ReflectionToStringBuilder.toString( this, ToStringStyle.MULTI_LINE_STYLE );
+    }
+
+}
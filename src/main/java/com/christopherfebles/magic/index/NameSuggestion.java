@@ -0,0 +1,63 @@
+package com.christopherfebles.magic.index;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A card name completing a prefix, with every printing of the card.
+ *
+ * @see CardNameSuggester#suggest(String, int)
+ * @author Christopher Febles
+ *
+ */
+public class NameSuggestion {
+
+    private final String name;
+    private final List<Integer> multiverseIds;
+
+    /**
+     * Create a new suggestion
+     *
+     * @param name
+     *            The card name
+     * @param multiverseIds
+     *            The multiverse id of every printing of the card, in ascending order
+     */
+    public NameSuggestion( String name, List<Integer> multiverseIds ) {
+        this.name = name;
+        this.multiverseIds = Collections.unmodifiableList( multiverseIds );
+    }
+
+    /**
+     * @return The card name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The multiverse id of every printing of the card, in ascending order
+     */
+    public List<Integer> getMultiverseIds() {
+        return multiverseIds;
+    }
+
+    /**
+     * @return The number of printings of the card
+     */
+    public int getPrintCount() {
+        return multiverseIds.size();
+    }
+
+    @Override
+    /**
+     * String generated via Reflection.
+     */
+    public String toString() {
+        return ReflectionToStringBuilder.toString( this, ToStringStyle.MULTI_LINE_STYLE );
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.christopherfebles.magic.index;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The documents containing one term, with the positions of the term in each document.<br>
+ * <br>
+ * Documents are stored in ascending order as a compressed byte array. Each document is written as the difference from the previous document id, the
+ * number of positions, then each position as the difference from the previous position, all as variable length integers. Most differences fit in a
+ * single byte.
+ *
+ * @author Christopher Febles
+ *
+ */
+final class PostingList {
+
+    private final byte[] data;
+    private final int documentCount;
+
+    private PostingList( byte[] data, int documentCount ) {
+        this.data = data;
+        this.documentCount = documentCount;
+    }
+
+    /**
+     * @return The number of documents containing this term
+     */
+    int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * @return A new reader, positioned before the first document
+     */
+    Reader reader() {
+        return new Reader( data );
+    }
+
+    /**
+     * Writes a PostingList, one document at a time, in ascending document order.
+     */
+    static final class Builder {
+
+        private byte[] data = new byte[16];
+        private int length;
+        private int documentCount;
+        private int lastDocument;
+
+        /**
+         * Add a document to the end of this list
+         *
+         * @param document
+         *            The document id, greater than every document already added
+         * @param positions
+         *            The positions of the term in the document, in ascending order
+         * @param positionCount
+         *            The number of positions to read from the positions array
+         */
+        void add( int document, int[] positions, int positionCount ) {
+
+            Validate.isTrue( documentCount == 0 || document > lastDocument, "Documents must be added in ascending order." );
+
+            this.writeVarInt( document - lastDocument );
+            this.writeVarInt( positionCount );
+            int lastPosition = 0;
+            for ( int x = 0; x < positionCount; x++ ) {
+                this.writeVarInt( positions[x] - lastPosition );
+                lastPosition = positions[x];
+            }
+
+            lastDocument = document;
+            documentCount++;
+        }
+
+        PostingList build() {
+            return new PostingList( Arrays.copyOf( data, length ), documentCount );
+        }
+
+        private void writeVarInt( int value ) {
+
+            if ( length + 5 > data.length ) {
+                data = Arrays.copyOf( data, data.length * 2 );
+            }
+
+            // Seven bits at a time, low bits first, with the high bit set on every byte but the last
+            int remaining = value;
+            while ( ( remaining & ~0x7F ) != 0 ) {
+                data[length++] = (byte) ( ( remaining & 0x7F ) | 0x80 );
+                remaining >>>= 7;
+            }
+            data[length++] = (byte) remaining;
+        }
+    }
+
+    /**
+     * Reads a PostingList one document at a time. Call {@link #next()} before reading the first document.
+     */
+    static final class Reader {
+
+        private final byte[] data;
+        private int offset;
+        private int document;
+        private int[] positions = new int[4];
+        private int positionCount;
+
+        private Reader( byte[] data ) {
+            this.data = data;
+        }
+
+        /**
+         * Move to the next document
+         *
+         * @return False if there are no more documents
+         */
+        boolean next() {
+
+            if ( offset >= data.length ) {
+                return false;
+            }
+
+            document += this.readVarInt();
+            positionCount = this.readVarInt();
+            if ( positionCount > positions.length ) {
+                positions = new int[positionCount];
+            }
+
+            int position = 0;
+            for ( int x = 0; x < positionCount; x++ ) {
+                position += this.readVarInt();
+                positions[x] = position;
+            }
+
+            return true;
+        }
+
+        /**
+         * Move forward to the first document at or after the given document
+         *
+         * @param target
+         *            The document to find
+         * @return False if there are no more documents
+         */
+        boolean advanceTo( int target ) {
+            while ( document < target ) {
+                if ( !this.next() ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int getDocument() {
+            return document;
+        }
+
+        int getPositionCount() {
+            return positionCount;
+        }
+
+        /**
+         * @return True if the term appears at the given position in the current document
+         */
+        boolean hasPosition( int position ) {
+            return Arrays.binarySearch( positions, 0, positionCount, position ) >= 0;
+        }
+
+        int getPosition( int index ) {
+            return positions[index];
+        }
+
+        private int readVarInt() {
+
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= ( b & 0x7F ) << shift;
+                shift += 7;
+            } while ( ( b & 0x80 ) != 0 );
+
+            return value;
+        }
+    }
+}
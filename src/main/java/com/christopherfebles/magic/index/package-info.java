@@ -0,0 +1,4 @@
+/**
+ * In-memory text indexes over the card catalog, answering searches without the database.
+ */
+package com.christopherfebles.magic.index;
\ No newline at end of file
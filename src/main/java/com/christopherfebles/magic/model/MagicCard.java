@@ -94,6 +94,59 @@ public class MagicCard implements Comparable<MagicCard> {
         this.setExpansion( expansion );
     }
 
+    /**
+     * Create a deep copy of the given card. Changes to the copy, including to its lists, Mana and card image, do not affect the original.
+     * 
+     * @param card
+     *            The MagicCard to copy
+     */
+    public MagicCard( MagicCard card ) {
+
+        this.multiverseId = card.multiverseId;
+        this.name = card.name;
+
+        this.colors = copyOf( card.colors );
+        if ( card.manaCost != null ) {
+            this.manaCost = new ArrayList<>( card.manaCost.size() );
+            for ( Mana mana : card.manaCost ) {
+                this.manaCost.add( mana == null ? null : new Mana( mana ) );
+            }
+        }
+        this.convertedCost = card.convertedCost;
+
+        this.superTypes = copyOf( card.superTypes );
+        this.types = copyOf( card.types );
+        if ( card.subTypes != null ) {
+            this.subTypes = new ArrayList<>( card.subTypes.size() );
+            for ( SubType subType : card.subTypes ) {
+                this.subTypes.add( subType == null ? null : new SubType( subType.getType() ) );
+            }
+        }
+        this.type = card.type;
+
+        this.text = card.text;
+        this.flavorText = card.flavorText;
+
+        this.power = card.power;
+        this.toughness = card.toughness;
+
+        this.expansion = card.expansion;
+        this.rarity = card.rarity;
+        this.artist = card.artist;
+
+        this.number = card.number;
+        this.watermark = card.watermark;
+        this.language = card.language;
+
+        this.colorString = card.colorString;
+        this.manaCostString = card.manaCostString;
+        this.cardImageArray = ArrayUtils.clone( card.cardImageArray );
+    }
+
+    private static <T> List<T> copyOf( List<T> list ) {
+        return list == null ? null : new ArrayList<>( list );
+    }
+
     /**
      * Reset all the fields of this card to the values in the given card
      * 
@@ -414,6 +467,16 @@ public class MagicCard implements Comparable<MagicCard> {
         return colorString;
     }
 
+    /**
+     * Get the colors of this card as a bitmask, as stored in the database for color searches.
+     * 
+     * @see Color#getMask()
+     * @return The combined mask of this card's colors, zero if colorless
+     */
+    public int getColorMask() {
+        return Color.getMask( colors );
+    }
+
     protected void setColors( List<Color> colors ) {
         this.colors = colors;
     }
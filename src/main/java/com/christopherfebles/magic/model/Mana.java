@@ -28,6 +28,18 @@ public class Mana {
         this.setPhyrexian( false );
     }
 
+    /**
+     * Create a copy of the given Mana, with its own list of colors
+     * 
+     * @param mana
+     *            The Mana to copy
+     */
+    public Mana( Mana mana ) {
+        this.colors = mana.colors == null ? null : new ArrayList<>( mana.colors );
+        this.costValue = mana.costValue;
+        this.isPhyrexian = mana.isPhyrexian;
+    }
+
     /**
      * Phyrexian mana can be paid with either the color or 2 life.
      * 
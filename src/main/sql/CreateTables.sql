@@ -2,6 +2,7 @@ Create Table if not exists MagicDB.All_Cards (
   multiverse_id int not null primary key,
   name varchar( 255 ) not null,
   color varchar( 10 ) not null,
+  color_mask tinyint unsigned not null DEFAULT 0,
   cost varchar( 80 ) not null,
   converted_cost int null,
   types varchar( 80 ) not null,
@@ -21,6 +22,7 @@ Create Table if not exists MagicDB.All_Cards (
   touched_by_updater timestamp not null DEFAULT 0,
   KEY name (name),
   KEY color (color),
+  KEY color_mask (color_mask),
   KEY types (types),
   KEY language (language),
   KEY created (created),
@@ -28,6 +30,26 @@ Create Table if not exists MagicDB.All_Cards (
   KEY data_updated (data_updated)
 );
 
+/*  Upgrade All_Cards tables created before color_mask existed: add the column, then derive it from the color string.
+    Bits are W=1, U=2, B=4, R=8, G=16, matching Color.getMask()
+*/
+SET @add_color_mask = ( Select Count(*) = 0 From information_schema.columns
+    Where table_schema = 'MagicDB' And table_name = 'All_Cards' And column_name = 'color_mask' );
+
+SET @upgrade_sql = IF( @add_color_mask,
+    'Alter Table MagicDB.All_Cards Add Column color_mask tinyint unsigned not null DEFAULT 0 After color, Add Key color_mask (color_mask)',
+    'Select 1' );
+PREPARE upgrade_statement FROM @upgrade_sql;
+EXECUTE upgrade_statement;
+DEALLOCATE PREPARE upgrade_statement;
+
+SET @upgrade_sql = IF( @add_color_mask,
+    'Update MagicDB.All_Cards Set color_mask = ( color like ''%W%'' ) + 2 * ( color like ''%U%'' ) + 4 * ( color like ''%B%'' ) + 8 * ( color like ''%R%'' ) + 16 * ( color like ''%G%'' )',
+    'Select 1' );
+PREPARE upgrade_statement FROM @upgrade_sql;
+EXECUTE upgrade_statement;
+DEALLOCATE PREPARE upgrade_statement;
+
 DROP TRIGGER IF EXISTS MagicDB.allcards_set_created_trigger;
 CREATE TRIGGER MagicDB.allcards_set_created_trigger BEFORE INSERT ON MagicDB.All_Cards
     FOR EACH ROW SET NEW.created = now();
@@ -48,10 +70,58 @@ Create Table if not exists MagicDB.Card_Types (
   created timestamp not null DEFAULT 0,
   updated timestamp not null DEFAULT now() ON UPDATE now(),
   foreign key (multiverse_id) references All_Cards(multiverse_id) on delete cascade,
-  key type_name (type_name),
+  key type_name (type_name, multiverse_id),
   unique key unique_composite_index (multiverse_id, type_name)
 );
 
+/*  Upgrade Card_Types tables created when the type_name key was on type_name alone: declare it on (type_name, multiverse_id), which type
+    searches join on. InnoDB already appended the clustering key, so this rebuilds the key without changing what it holds.
+*/
+SET @has_type_name_key = ( Select Count(*) > 0 From information_schema.statistics
+    Where table_schema = 'MagicDB' And table_name = 'Card_Types' And index_name = 'type_name' );
+SET @type_name_key_has_id = ( Select Count(*) > 0 From information_schema.statistics
+    Where table_schema = 'MagicDB' And table_name = 'Card_Types' And index_name = 'type_name' And seq_in_index = 2 And column_name = 'multiverse_id' );
+
+SET @upgrade_sql = IF( @type_name_key_has_id,
+    'Select 1',
+    CONCAT( 'Alter Table MagicDB.Card_Types ', IF( @has_type_name_key, 'Drop Key type_name, ', '' ), 'Add Key type_name (type_name, multiverse_id)' ) );
+PREPARE upgrade_statement FROM @upgrade_sql;
+EXECUTE upgrade_statement;
+DEALLOCATE PREPARE upgrade_statement;
+
 DROP TRIGGER IF EXISTS MagicDB.cardtypes_set_created_trigger;
 CREATE TRIGGER MagicDB.cardtypes_set_created_trigger BEFORE INSERT ON MagicDB.Card_Types
-    FOR EACH ROW SET NEW.created = now();
\ No newline at end of file
+    FOR EACH ROW SET NEW.created = now();
+/*  InnoDB in MySQL 5.5 has no FULLTEXT indexes, so rules and flavor text are copied to this MyISAM table for full-text search.
+    The triggers below keep it in sync with All_Cards. MyISAM ignores transactions, so text saved by a rolled back transaction stays here
+    until that card is next saved.
+*/
+SET @create_card_text = ( Select Count(*) = 0 From information_schema.tables
+    Where table_schema = 'MagicDB' And table_name = 'Card_Text' );
+
+Create Table if not exists MagicDB.Card_Text (
+  multiverse_id int not null primary key,
+  text varchar( 2048 ) null,
+  flavor_text varchar( 2048 ) null,
+  FULLTEXT KEY text_fulltext (text),
+  FULLTEXT KEY flavor_text_fulltext (flavor_text)
+) ENGINE=MyISAM;
+
+SET @upgrade_sql = IF( @create_card_text,
+    'Insert Into MagicDB.Card_Text ( multiverse_id, text, flavor_text ) Select multiverse_id, text, flavor_text From MagicDB.All_Cards',
+    'Select 1' );
+PREPARE upgrade_statement FROM @upgrade_sql;
+EXECUTE upgrade_statement;
+DEALLOCATE PREPARE upgrade_statement;
+
+DROP TRIGGER IF EXISTS MagicDB.allcards_insert_text_trigger;
+CREATE TRIGGER MagicDB.allcards_insert_text_trigger AFTER INSERT ON MagicDB.All_Cards
+    FOR EACH ROW REPLACE INTO MagicDB.Card_Text ( multiverse_id, text, flavor_text ) VALUES ( NEW.multiverse_id, NEW.text, NEW.flavor_text );
+
+DROP TRIGGER IF EXISTS MagicDB.allcards_update_text_trigger;
+CREATE TRIGGER MagicDB.allcards_update_text_trigger AFTER UPDATE ON MagicDB.All_Cards
+    FOR EACH ROW REPLACE INTO MagicDB.Card_Text ( multiverse_id, text, flavor_text ) VALUES ( NEW.multiverse_id, NEW.text, NEW.flavor_text );
+
+DROP TRIGGER IF EXISTS MagicDB.allcards_delete_text_trigger;
+CREATE TRIGGER MagicDB.allcards_delete_text_trigger AFTER DELETE ON MagicDB.All_Cards
+    FOR EACH ROW DELETE FROM MagicDB.Card_Text WHERE multiverse_id = OLD.multiverse_id;
@@ -1 +0,0 @@
-SET SESSION group_concat_max_len = 1000000;
\ No newline at end of file
@@ -0,0 +1,263 @@
+package com.christopherfebles.magic.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import com.christopherfebles.magic.dao.impl.AsyncMagicDAO;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.dao.result.SearchResult;
+import com.christopherfebles.magic.enums.SubType;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class AsyncMagicDAOTest extends DAOTester {
+
+    @Autowired
+    private SearchDAO searchDAO;
+
+    @Autowired
+    private SubTypeDAO subTypeDAO;
+
+    @Autowired
+    private ExpansionDAO expansionDAO;
+
+    @Test
+    public void sameResultsAsDAOTest() throws InterruptedException, ExecutionException {
+        AsyncMagicDAO asyncDAO = new AsyncMagicDAO( searchDAO, subTypeDAO, expansionDAO, 3 );
+
+        try {
+            List<SearchParameter> searchParams = new ArrayList<>();
+            searchParams.add( new SearchParameter( FieldName.NAME, "Island" ) );
+
+            //Start every query before waiting on any of them
+            ListenableFuture<SearchResult> result = asyncDAO.getSearchResultWithSearchParameters( 1, 10, searchParams );
+            ListenableFuture<Integer> count = asyncDAO.numberOfResultsWithSearchParameters( searchParams );
+            ListenableFuture<List<SubType>> subTypes = asyncDAO.getAllSubTypes();
+            ListenableFuture<List<String>> expansions = asyncDAO.getAllExpansions();
+            ListenableFuture<List<MagicCard>> byName = asyncDAO.getPageByNameWithSearchParametersAndPageSize( 1, 10, searchParams );
+            ListenableFuture<List<MagicCard>> all = asyncDAO.getAllWithSearchParameters( searchParams );
+
+            SearchResult expected = searchDAO.getSearchResultWithSearchParameters( 1, 10, searchParams );
+            assertEquals( expected.getTotalResults(), result.get().getTotalResults() );
+            assertEquals( expected.getCards(), result.get().getCards() );
+            assertEquals( searchDAO.numberOfResultsWithSearchParameters( searchParams ), count.get().intValue() );
+            assertEquals( subTypeDAO.getAllSubTypes(), subTypes.get() );
+            assertEquals( expansionDAO.getAllExpansions(), expansions.get() );
+            assertEquals( searchDAO.getPageByNameWithSearchParametersAndPageSize( 1, 10, searchParams ), byName.get() );
+            assertEquals( searchDAO.getAllWithSearchParameters( searchParams ), all.get() );
+        } finally {
+            asyncDAO.close();
+        }
+    }
+
+    @Test
+    public void concurrencyLimitTest() throws InterruptedException, ExecutionException {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        ExpansionDAO slowExpansionDAO = new ExpansionDAO() {
+            @Override
+            public List<String> getAllExpansions() {
+                int nowRunning = running.incrementAndGet();
+                synchronized ( maxRunning ) {
+                    maxRunning.set( Math.max( maxRunning.get(), nowRunning ) );
+                }
+                try {
+                    Thread.sleep( 20 );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+                return Collections.singletonList( "Limited Edition Alpha" );
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        AsyncMagicDAO asyncDAO = new AsyncMagicDAO( searchDAO, subTypeDAO, slowExpansionDAO, executor, 2 );
+
+        try {
+            List<ListenableFuture<List<String>>> futures = new ArrayList<>();
+            for ( int i = 0; i < 16; i++ ) {
+                futures.add( asyncDAO.getAllExpansions() );
+            }
+            for ( ListenableFuture<List<String>> future : futures ) {
+                assertEquals( Collections.singletonList( "Limited Edition Alpha" ), future.get() );
+            }
+
+            assertTrue( maxRunning.get() <= 2 );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executorNeverWaitsTest() throws InterruptedException, ExecutionException {
+        final AtomicInteger handedOver = new AtomicInteger();
+        final AtomicInteger maxHandedOver = new AtomicInteger();
+
+        ExpansionDAO slowExpansionDAO = new ExpansionDAO() {
+            @Override
+            public List<String> getAllExpansions() {
+                try {
+                    Thread.sleep( 20 );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    handedOver.decrementAndGet();
+                }
+                return Collections.singletonList( "Limited Edition Alpha" );
+            }
+        };
+
+        //Count the queries handed to the Executor that have not finished; any over the limit would sit on one of its threads waiting for a permit
+        final ExecutorService pool = Executors.newFixedThreadPool( 8 );
+        Executor countingExecutor = new Executor() {
+            @Override
+            public void execute( Runnable command ) {
+                int nowHandedOver = handedOver.incrementAndGet();
+                synchronized ( maxHandedOver ) {
+                    maxHandedOver.set( Math.max( maxHandedOver.get(), nowHandedOver ) );
+                }
+                pool.execute( command );
+            }
+        };
+        AsyncMagicDAO asyncDAO = new AsyncMagicDAO( searchDAO, subTypeDAO, slowExpansionDAO, countingExecutor, 2 );
+
+        try {
+            List<ListenableFuture<List<String>>> futures = new ArrayList<>();
+            for ( int i = 0; i < 16; i++ ) {
+                futures.add( asyncDAO.getAllExpansions() );
+            }
+            for ( ListenableFuture<List<String>> future : futures ) {
+                assertEquals( Collections.singletonList( "Limited Edition Alpha" ), future.get() );
+            }
+
+            assertTrue( "The Executor held " + maxHandedOver.get() + " queries at once.", maxHandedOver.get() <= 2 );
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closeCancelsWaitingQueriesTest() throws Exception {
+        final CountDownLatch queryStarted = new CountDownLatch( 1 );
+        final CountDownLatch finishQuery = new CountDownLatch( 1 );
+        AsyncMagicDAO asyncDAO = new AsyncMagicDAO( searchDAO, subTypeDAO, this.getBlockingExpansionDAO( queryStarted, finishQuery ), 1 );
+
+        try {
+            ListenableFuture<List<String>> running = asyncDAO.getAllExpansions();
+            assertTrue( queryStarted.await( 30, TimeUnit.SECONDS ) );
+            List<ListenableFuture<List<String>>> waiting = new ArrayList<>();
+            for ( int i = 0; i < 3; i++ ) {
+                waiting.add( asyncDAO.getAllExpansions() );
+            }
+
+            asyncDAO.close();
+            for ( ListenableFuture<List<String>> future : waiting ) {
+                assertTrue( future.isCancelled() );
+            }
+            assertTrue( asyncDAO.getAllExpansions().isCancelled() );
+
+            //The running query is allowed to finish
+            finishQuery.countDown();
+            assertEquals( Collections.singletonList( "Limited Edition Alpha" ), running.get( 30, TimeUnit.SECONDS ) );
+        } finally {
+            finishQuery.countDown();
+            asyncDAO.close();
+        }
+    }
+
+    @Test
+    public void rejectedQueriesCancelledTest() throws Exception {
+        final CountDownLatch queryStarted = new CountDownLatch( 1 );
+        final CountDownLatch finishQuery = new CountDownLatch( 1 );
+
+        //Accepts the first query only, as an Executor shut down once it started would
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+        final AtomicInteger accepted = new AtomicInteger();
+        Executor rejectingExecutor = new Executor() {
+            @Override
+            public void execute( Runnable command ) {
+                if ( accepted.incrementAndGet() > 1 ) {
+                    throw new RejectedExecutionException( "Shut down." );
+                }
+                pool.execute( command );
+            }
+        };
+        AsyncMagicDAO asyncDAO = new AsyncMagicDAO( searchDAO, subTypeDAO, this.getBlockingExpansionDAO( queryStarted, finishQuery ), rejectingExecutor, 1 );
+
+        try {
+            ListenableFuture<List<String>> running = asyncDAO.getAllExpansions();
+            assertTrue( queryStarted.await( 30, TimeUnit.SECONDS ) );
+            List<ListenableFuture<List<String>>> waiting = new ArrayList<>();
+            for ( int i = 0; i < 3; i++ ) {
+                waiting.add( asyncDAO.getAllExpansions() );
+            }
+
+            //The next waiting query is rejected when the running one finishes, and every waiting query is cancelled
+            finishQuery.countDown();
+            assertEquals( Collections.singletonList( "Limited Edition Alpha" ), running.get( 30, TimeUnit.SECONDS ) );
+            for ( ListenableFuture<List<String>> future : waiting ) {
+                try {
+                    future.get( 30, TimeUnit.SECONDS );
+                    fail( "A rejected query completed." );
+                } catch ( CancellationException e ) {
+                    //Expected
+                } catch ( TimeoutException e ) {
+                    fail( "A rejected query was left waiting." );
+                }
+            }
+
+            //Rejected again, but the caller gets a cancelled future instead of the exception
+            assertTrue( asyncDAO.getAllExpansions().isCancelled() );
+        } finally {
+            finishQuery.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * An ExpansionDAO whose queries count down queryStarted, then wait for finishQuery
+     */
+    private ExpansionDAO getBlockingExpansionDAO( final CountDownLatch queryStarted, final CountDownLatch finishQuery ) {
+        return new ExpansionDAO() {
+            @Override
+            public List<String> getAllExpansions() {
+                queryStarted.countDown();
+                try {
+                    finishQuery.await();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+                return Collections.singletonList( "Limited Edition Alpha" );
+            }
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package com.christopherfebles.magic.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.impl.CachingMagicCardDAO;
+import com.christopherfebles.magic.dao.impl.MagicCardDAOImpl;
+import com.christopherfebles.magic.enums.Type;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class CachingMagicCardDAOTest extends DAOTester {
+
+    private static final int TEST_MULTIVERSE_ID = 999401;
+
+    @Autowired
+    private MagicCardDAOImpl cardDAOImpl;
+
+    private CachingMagicCardDAO cachingDAO;
+
+    @Test
+    public void readThroughTest() {
+        MagicCard first = cachingDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID );
+        assertSameCard( cardDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID ), first );
+        assertEquals( 1, cachingDAO.getMissCount() );
+
+        MagicCard second = cachingDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID );
+        assertSameCard( first, second );
+        assertEquals( 1, cachingDAO.getHitCount() );
+        assertTrue( cachingDAO.isCardInDatabase( VALID_MULTIVERSE_ID ) );
+
+        //Changes to a returned card do not reach the cache
+        assertNotSame( first, second );
+        second.setName( "Changed" );
+        second.getTypes().clear();
+        assertSameCard( first, cachingDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID ) );
+
+        //Missing cards are not cached
+        assertNull( cachingDAO.getCardFromDatabaseById( INVALID_MULTIVERSE_ID ) );
+        assertEquals( 1, cachingDAO.size() );
+    }
+
+    @Test
+    public void invalidationTest() {
+        MagicCard card = new MagicCard( TEST_MULTIVERSE_ID, "Cache Test", "1R", Type.INSTANT.toString(), "Test Expansion" );
+        try {
+            assertTrue( cachingDAO.addCardToDatabase( card ) );
+            assertEquals( "Cache Test", cachingDAO.getCardFromDatabaseById( TEST_MULTIVERSE_ID ).getName() );
+
+            //Written through the cache
+            card.setName( "Cache Test Renamed" );
+            assertTrue( cachingDAO.saveCardToDatabase( card ) );
+            assertEquals( "Cache Test Renamed", cachingDAO.getCardFromDatabaseById( TEST_MULTIVERSE_ID ).getName() );
+
+            //Written directly, and reported to the listener
+            card.setName( "Cache Test Direct" );
+            assertTrue( cardDAOImpl.saveCardToDatabase( card ) );
+            assertEquals( "Cache Test Direct", cachingDAO.getCardFromDatabaseById( TEST_MULTIVERSE_ID ).getName() );
+
+            assertTrue( cachingDAO.removeCardFromDatabaseById( TEST_MULTIVERSE_ID ) );
+            assertNull( cachingDAO.getCardFromDatabaseById( TEST_MULTIVERSE_ID ) );
+            assertFalse( cachingDAO.isCardInDatabase( TEST_MULTIVERSE_ID ) );
+        } finally {
+            cardDAO.removeCardFromDatabaseById( TEST_MULTIVERSE_ID );
+        }
+    }
+
+    @Test
+    public void bulkReadTest() {
+        cachingDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID );
+
+        Map<Integer, MagicCard> cards = cachingDAO.getCardsFromDatabaseByIds(
+                Arrays.asList( OWNED_CARD_MULTIVERSE_ID, INVALID_MULTIVERSE_ID, VALID_MULTIVERSE_ID ) );
+        assertEquals( Arrays.asList( OWNED_CARD_MULTIVERSE_ID, VALID_MULTIVERSE_ID ), new ArrayList<>( cards.keySet() ) );
+        assertEquals( 1, cachingDAO.getHitCount() );
+        assertEquals( 3, cachingDAO.getMissCount() );
+
+        //Both cards are now cached
+        cachingDAO.getCardsFromDatabaseByIds( Arrays.asList( VALID_MULTIVERSE_ID, OWNED_CARD_MULTIVERSE_ID ) );
+        assertEquals( 3, cachingDAO.getHitCount() );
+        assertEquals( 2, cachingDAO.size() );
+    }
+
+    @Test
+    public void evictionTest() {
+        CachingMagicCardDAO smallDAO = new CachingMagicCardDAO( cardDAO, 1 );
+
+        smallDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID );
+        smallDAO.getCardFromDatabaseById( OWNED_CARD_MULTIVERSE_ID );
+        assertEquals( 1, smallDAO.size() );
+
+        smallDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID );
+        assertEquals( 0, smallDAO.getHitCount() );
+        assertEquals( 3, smallDAO.getMissCount() );
+
+        smallDAO.clear();
+        assertEquals( 0, smallDAO.size() );
+    }
+
+    private void assertSameCard( MagicCard expected, MagicCard actual ) {
+        assertEquals( expected.getMultiverseId(), actual.getMultiverseId() );
+        assertEquals( expected.getName(), actual.getName() );
+        assertEquals( expected.getManaCostString(), actual.getManaCostString() );
+        assertEquals( expected.getType(), actual.getType() );
+        assertEquals( expected.getExpansion(), actual.getExpansion() );
+        assertEquals( expected.getLanguage(), actual.getLanguage() );
+    }
+
+    @Override
+    protected void additionalSetUp() {
+        cachingDAO = new CachingMagicCardDAO( cardDAOImpl, 10 );
+        cardDAOImpl.addChangeListeners( Collections.<MagicCardChangeListener> singletonList( cachingDAO ) );
+    }
+
+    @Override
+    protected void additionalCleanUp() {
+        cardDAOImpl.removeChangeListener( cachingDAO );
+    }
+}
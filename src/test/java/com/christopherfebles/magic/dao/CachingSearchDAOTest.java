@@ -0,0 +1,200 @@
+package com.christopherfebles.magic.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.impl.CachingSearchDAO;
+import com.christopherfebles.magic.dao.impl.MagicCardDAOImpl;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.dao.result.SearchResult;
+import com.christopherfebles.magic.enums.Color;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class CachingSearchDAOTest extends DAOTester {
+
+    protected static boolean cachingSearchDAOTesterInitializationComplete = false;
+
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    @Autowired
+    private SearchDAO searchDAO;
+
+    @Autowired
+    private MagicCardDAOImpl cardDAOImpl;
+
+    @Test
+    public void hitAndMissTest() {
+        CachingSearchDAO cachingDAO = new CachingSearchDAO( searchDAO, cardDAOImpl, 10, ONE_HOUR );
+
+        List<MagicCard> firstPage = cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        assertEquals( searchDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() ), firstPage );
+        assertEquals( 0, cachingDAO.getHitCount() );
+        assertEquals( 1, cachingDAO.getMissCount() );
+
+        //Equal parameters in new instances are the same search
+        assertEquals( firstPage, cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() ) );
+        assertEquals( 1, cachingDAO.getHitCount() );
+
+        //A different page, page size or method is a different search
+        cachingDAO.getPageWithSearchParametersAndPageSize( 2, 5, this.getIslandSearch() );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 6, this.getIslandSearch() );
+        cachingDAO.getPageByNameWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        assertEquals( 1, cachingDAO.getHitCount() );
+        assertEquals( 4, cachingDAO.getMissCount() );
+        assertEquals( 0.2, cachingDAO.getHitRate(), 0.0001 );
+
+        //A different AND/OR is a different search
+        List<SearchParameter> orSearch = this.getIslandSearch();
+        orSearch.get( 1 ).setAnd( false );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, orSearch );
+        assertEquals( 5, cachingDAO.getMissCount() );
+
+        int count = cachingDAO.numberOfResultsWithSearchParameters( this.getIslandSearch() );
+        assertEquals( searchDAO.numberOfResultsWithSearchParameters( this.getIslandSearch() ), count );
+        assertEquals( count, cachingDAO.numberOfResultsWithSearchParameters( this.getIslandSearch() ) );
+        assertEquals( 2, cachingDAO.getHitCount() );
+    }
+
+    @Test
+    public void equivalentSearchTest() {
+        CachingSearchDAO cachingDAO = new CachingSearchDAO( searchDAO, cardDAOImpl, 10, ONE_HOUR );
+
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        assertEquals( 1, cachingDAO.getMissCount() );
+
+        //The same And-term in another order is the same search
+        List<SearchParameter> reversedSearch = this.getIslandSearch();
+        Collections.reverse( reversedSearch );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, reversedSearch );
+        assertEquals( 1, cachingDAO.getHitCount() );
+
+        //The operator of the first parameter is never used
+        List<SearchParameter> firstOrSearch = this.getIslandSearch();
+        firstOrSearch.get( 0 ).setAnd( false );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, firstOrSearch );
+        assertEquals( 2, cachingDAO.getHitCount() );
+
+        //Moving a parameter across an Or is a different search
+        List<SearchParameter> orSearch = this.getIslandSearch();
+        orSearch.add( new SearchParameter( FieldName.NAME, "Swamp" ) );
+        orSearch.get( 2 ).setAnd( false );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, orSearch );
+        List<SearchParameter> movedSearch = new ArrayList<>( Arrays.asList( orSearch.get( 1 ), orSearch.get( 2 ), orSearch.get( 0 ) ) );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, movedSearch );
+        assertEquals( 2, cachingDAO.getHitCount() );
+        assertEquals( 3, cachingDAO.getMissCount() );
+    }
+
+    @Test
+    public void catalogVersionTest() {
+        CachingSearchDAO cachingDAO = new CachingSearchDAO( searchDAO, cardDAOImpl, 10, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+
+        SearchResult before = cachingDAO.getSearchResultWithSearchParameters( 1, 5, this.getIslandSearch() );
+        assertEquals( before.getCards(), cachingDAO.getSearchResultWithSearchParameters( 1, 5, this.getIslandSearch() ).getCards() );
+        assertEquals( 1, cachingDAO.getHitCount() );
+
+        long version = cardDAOImpl.getCatalogVersion();
+        try {
+            assertTrue( cardDAO.incrementOwnedCard( VALID_MULTIVERSE_ID ) );
+            assertTrue( cardDAOImpl.getCatalogVersion() > version );
+
+            cachingDAO.getSearchResultWithSearchParameters( 1, 5, this.getIslandSearch() );
+            assertEquals( 1, cachingDAO.getHitCount() );
+            assertEquals( 2, cachingDAO.getMissCount() );
+        } finally {
+            //Reset Test
+            cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+    }
+
+    @Test
+    public void copiedResultsTest() {
+        CachingSearchDAO cachingDAO = new CachingSearchDAO( searchDAO, cardDAOImpl, 10, ONE_HOUR );
+
+        //Neither the caller that loaded a result nor any later caller can change what is cached
+        List<MagicCard> firstPage = cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        String name = firstPage.get( 0 ).getName();
+        firstPage.get( 0 ).setName( "Changed by first caller" );
+
+        List<MagicCard> secondPage = cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        assertEquals( name, secondPage.get( 0 ).getName() );
+        secondPage.get( 0 ).setName( "Changed by second caller" );
+        secondPage.clear();
+
+        List<MagicCard> thirdPage = cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        assertEquals( 5, thirdPage.size() );
+        assertEquals( name, thirdPage.get( 0 ).getName() );
+
+        SearchResult result = cachingDAO.getSearchResultWithSearchParameters( 1, 5, this.getIslandSearch() );
+        result.getCards().get( 0 ).setName( "Changed in result" );
+        SearchResult cachedResult = cachingDAO.getSearchResultWithSearchParameters( 1, 5, this.getIslandSearch() );
+        assertEquals( name, cachedResult.getCards().get( 0 ).getName() );
+        assertEquals( result.getTotalResults(), cachedResult.getTotalResults() );
+        assertEquals( 3, cachingDAO.getHitCount() );
+    }
+
+    @Test
+    public void evictionTest() {
+        CachingSearchDAO cachingDAO = new CachingSearchDAO( searchDAO, cardDAOImpl, 2, ONE_HOUR );
+
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 2, 5, this.getIslandSearch() );
+        //Use page 1, so page 2 is the least recently used
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 3, 5, this.getIslandSearch() );
+        assertEquals( 2, cachingDAO.size() );
+
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        assertEquals( 2, cachingDAO.getHitCount() );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 2, 5, this.getIslandSearch() );
+        assertEquals( 4, cachingDAO.getMissCount() );
+
+        cachingDAO.clear();
+        assertEquals( 0, cachingDAO.size() );
+    }
+
+    @Test
+    public void timeToLiveTest() throws InterruptedException {
+        CachingSearchDAO cachingDAO = new CachingSearchDAO( searchDAO, cardDAOImpl, 10, 1 );
+
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        Thread.sleep( 5 );
+        cachingDAO.getPageWithSearchParametersAndPageSize( 1, 5, this.getIslandSearch() );
+        assertEquals( 0, cachingDAO.getHitCount() );
+        assertEquals( 2, cachingDAO.getMissCount() );
+    }
+
+    private List<SearchParameter> getIslandSearch() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Island" ) );
+        searchParams.add( new SearchParameter( FieldName.COLOR, Color.COLORLESS ) );
+        return searchParams;
+    }
+
+    @Override
+    protected void additionalSetUp() {
+
+        if ( !cachingSearchDAOTesterInitializationComplete ) {
+            super.addAllIslands();
+            cachingSearchDAOTesterInitializationComplete = true;
+        }
+    }
+}
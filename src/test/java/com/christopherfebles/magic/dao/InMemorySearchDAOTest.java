@@ -0,0 +1,216 @@
+package com.christopherfebles.magic.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.impl.InMemorySearchDAO;
+import com.christopherfebles.magic.dao.impl.MagicCardDAOImpl;
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.dao.result.SearchFacets;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.enums.Color;
+import com.christopherfebles.magic.enums.Language;
+import com.christopherfebles.magic.enums.SubType;
+import com.christopherfebles.magic.enums.Type;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class InMemorySearchDAOTest extends DAOTester {
+
+    private static final int CHANGED_PALADIN_ID = 999401;
+    private static final int CHANGED_FIREBALL_ID = 999402;
+
+    protected static boolean inMemorySearchDAOTesterInitializationComplete = false;
+
+    @Autowired
+    private SearchDAO searchDAO;
+
+    @Autowired
+    private MagicCardDAOImpl cardDAOImpl;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private InMemorySearchDAO inMemorySearchDAO;
+
+    @Test
+    public void sameResultsAsDatabaseTest() {
+        List<SearchParameter> paladins = new ArrayList<>();
+        paladins.add( new SearchParameter( FieldName.NAME, "%Paladin%" ) );
+        paladins.add( new SearchParameter( FieldName.COLOR, Color.WHITE ) );
+        paladins.add( new SearchParameter( FieldName.TYPE, Type.CREATURE ) );
+        paladins.add( new SearchParameter( FieldName.SUBTYPE, new SubType( "Human" ) ) );
+        assertSameResults( paladins );
+
+        List<SearchParameter> fireballsOrIslands = new ArrayList<>();
+        fireballsOrIslands.add( new SearchParameter( FieldName.NAME, "fireball" ) );
+        fireballsOrIslands.add( new SearchParameter( FieldName.LANGUAGE, Language.ENGLISH ) );
+        fireballsOrIslands.add( new SearchParameter( FieldName.NAME, "Island%", false ) );
+        assertSameResults( fireballsOrIslands );
+
+        List<SearchParameter> atMostRed = new ArrayList<>();
+        atMostRed.add( new SearchParameter( FieldName.COLORS_AT_MOST, Collections.singletonList( Color.RED ) ) );
+        assertSameResults( atMostRed );
+
+        List<SearchParameter> owned = new ArrayList<>();
+        owned.add( new SearchParameter( FieldName.OWNED, "" ) );
+        assertSameResults( owned );
+
+        assertSameResults( new ArrayList<SearchParameter>() );
+    }
+
+    @Test
+    public void pageAfterTokenTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+
+        //Tokens from either implementation continue in the other
+        SearchPage firstPage = searchDAO.getPageAfterTokenWithSearchParameters( null, 5, searchParams );
+        assertEquals( firstPage.getCards(), inMemorySearchDAO.getPageAfterTokenWithSearchParameters( null, 5, searchParams ).getCards() );
+        assertEquals( searchDAO.getPageAfterTokenWithSearchParameters( firstPage.getNextPageToken(), 5, searchParams ).getCards(),
+                inMemorySearchDAO.getPageAfterTokenWithSearchParameters( firstPage.getNextPageToken(), 5, searchParams ).getCards() );
+    }
+
+    @Test
+    public void copiedCardsTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+
+        //Changing a returned card changes neither the catalog nor its indexes
+        List<MagicCard> firstPage = inMemorySearchDAO.getPageWithSearchParametersAndPageSize( 1, 5, searchParams );
+        String name = firstPage.get( 0 ).getName();
+        firstPage.get( 0 ).setName( "Changed by first caller" );
+        inMemorySearchDAO.getPageByNameWithSearchParametersAndPageSize( 1, 1, searchParams ).get( 0 ).setName( "Changed by name" );
+        inMemorySearchDAO.streamAllWithSearchParameters( searchParams, new MagicCardHandler() {
+            @Override
+            public void processCard( MagicCard card ) {
+                card.setName( "Changed by handler" );
+            }
+        } );
+
+        assertEquals( name, inMemorySearchDAO.getPageWithSearchParametersAndPageSize( 1, 5, searchParams ).get( 0 ).getName() );
+        assertSameResults( searchParams );
+    }
+
+    @Test
+    public void reloadOnChangeTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.OWNED, "" ) );
+        int numOwned = inMemorySearchDAO.numberOfResultsWithSearchParameters( searchParams );
+        assertFalse( cardDAO.isCardOwned( VALID_MULTIVERSE_ID ) );
+
+        try {
+            assertTrue( cardDAO.incrementOwnedCard( VALID_MULTIVERSE_ID ) );
+            assertEquals( numOwned + 1, inMemorySearchDAO.numberOfResultsWithSearchParameters( searchParams ) );
+        } finally {
+            //Reset Test
+            cardDAO.removeOwnedCardById( VALID_MULTIVERSE_ID );
+        }
+        assertEquals( numOwned, inMemorySearchDAO.numberOfResultsWithSearchParameters( searchParams ) );
+    }
+
+    @Test
+    public void changedCardsTest() {
+        List<SearchParameter> paladins = new ArrayList<>();
+        paladins.add( new SearchParameter( FieldName.NAME, "%Paladin%" ) );
+        paladins.add( new SearchParameter( FieldName.SUBTYPE, new SubType( "Human" ) ) );
+
+        List<SearchParameter> fireballs = new ArrayList<>();
+        fireballs.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+
+        List<SearchParameter> owned = new ArrayList<>();
+        owned.add( new SearchParameter( FieldName.OWNED, "" ) );
+
+        MagicCard paladin = new MagicCard( CHANGED_PALADIN_ID, "Changed Paladin", "1W", Type.CREATURE + Type.TYPE_SEPARATOR_WITH_SPACES + "Human Knight",
+                "Magic 2012" );
+        MagicCard fireball = new MagicCard( CHANGED_FIREBALL_ID, "Fireball", "XR", Type.SORCERY.toString(), "Magic 2012" );
+
+        try {
+            //Load the catalog before the cards exist, so they are merged in as changes
+            assertSameResults( paladins );
+            assertTrue( cardDAO.addCardToDatabase( paladin ) );
+            assertTrue( cardDAO.addCardToDatabase( fireball ) );
+            assertSameResults( paladins );
+            assertSameResults( fireballs );
+            assertSameResults( owned );
+
+            //A renamed card moves to its new place in name order, and keeps its types
+            paladin.setName( "Zealous Paladin" );
+            assertTrue( cardDAO.addCardToDatabase( paladin ) );
+            assertTrue( cardDAO.removeCardFromDatabaseById( CHANGED_FIREBALL_ID ) );
+            assertSameResults( paladins );
+            assertSameResults( fireballs );
+            assertSameResults( new ArrayList<SearchParameter>() );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( CHANGED_PALADIN_ID );
+            cardDAO.removeCardFromDatabaseById( CHANGED_FIREBALL_ID );
+        }
+        assertSameResults( paladins );
+    }
+
+    private void assertSameResults( List<SearchParameter> searchParams ) {
+        assertEquals( searchDAO.getAllWithSearchParameters( searchParams ), inMemorySearchDAO.getAllWithSearchParameters( searchParams ) );
+
+        final List<MagicCard> streamedCards = new ArrayList<>();
+        inMemorySearchDAO.streamAllWithSearchParameters( searchParams, new MagicCardHandler() {
+            @Override
+            public void processCard( MagicCard card ) {
+                streamedCards.add( card );
+            }
+        } );
+        assertEquals( searchDAO.getAllWithSearchParameters( searchParams ), streamedCards );
+        assertEquals( searchDAO.getPageWithSearchParametersAndPageSize( 2, 3, searchParams ),
+                inMemorySearchDAO.getPageWithSearchParametersAndPageSize( 2, 3, searchParams ) );
+        assertEquals( searchDAO.getPageByNameWithSearchParametersAndPageSize( 2, 3, searchParams ),
+                inMemorySearchDAO.getPageByNameWithSearchParametersAndPageSize( 2, 3, searchParams ) );
+        assertEquals( searchDAO.numberOfResultsWithSearchParameters( searchParams ), inMemorySearchDAO.numberOfResultsWithSearchParameters( searchParams ) );
+        assertEquals( searchDAO.numberOfUniqueNamesWithSearchParameters( searchParams ),
+                inMemorySearchDAO.numberOfUniqueNamesWithSearchParameters( searchParams ) );
+
+        SearchFacets facets = searchDAO.getFacetedSearchResultWithSearchParameters( 1, 3, searchParams ).getFacets();
+        SearchFacets inMemoryFacets = inMemorySearchDAO.getFacetedSearchResultWithSearchParameters( 1, 3, searchParams ).getFacets();
+        assertEquals( facets.getColors(), inMemoryFacets.getColors() );
+        assertEquals( facets.getTypes(), inMemoryFacets.getTypes() );
+        assertEquals( facets.getSubTypes(), inMemoryFacets.getSubTypes() );
+        assertEquals( facets.getExpansions(), inMemoryFacets.getExpansions() );
+        assertEquals( facets.getRarities(), inMemoryFacets.getRarities() );
+        assertEquals( facets.getLanguages(), inMemoryFacets.getLanguages() );
+    }
+
+    @Override
+    protected void additionalSetUp() {
+
+        if ( !inMemorySearchDAOTesterInitializationComplete ) {
+            super.addAllIslands();
+            super.addPaladins();
+            super.addFireballs();
+            inMemorySearchDAOTesterInitializationComplete = true;
+        }
+
+        inMemorySearchDAO = new InMemorySearchDAO( dataSource );
+        cardDAOImpl.addChangeListeners( Collections.<MagicCardChangeListener> singletonList( inMemorySearchDAO ) );
+    }
+
+    @Override
+    protected void additionalCleanUp() {
+        cardDAOImpl.removeChangeListener( inMemorySearchDAO );
+    }
+}
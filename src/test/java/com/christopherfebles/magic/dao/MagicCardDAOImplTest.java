@@ -2,26 +2,63 @@ package com.christopherfebles.magic.dao;
 
 import static org.junit.Assert.*;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import com.christopherfebles.magic.dao.impl.MagicCardDAOImpl;
+import com.christopherfebles.magic.dao.result.MultiverseIdSet;
+import com.christopherfebles.magic.enums.CardType;
+import com.christopherfebles.magic.enums.Language;
+import com.christopherfebles.magic.enums.SubType;
+import com.christopherfebles.magic.enums.Type;
 import com.christopherfebles.magic.model.MagicCard;
 import com.christopherfebles.magic.testsupport.DAOTester;
 import com.christopherfebles.magic.testsupport.UnitTest;
 
+import static com.christopherfebles.magic.dao.MagicDAOConstants.*;
+
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
 @Category( UnitTest.class )
 public class MagicCardDAOImplTest extends DAOTester {
     
     private static final Logger LOG = LoggerFactory.getLogger( MagicCardDAOImplTest.class );
+
+    @Autowired
+    private DataSource dataSource;
     
     @Test
     public void updateOwnedCardCountPositiveTest() {
@@ -79,6 +116,235 @@ public class MagicCardDAOImplTest extends DAOTester {
         assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
     }
     
+    @Test
+    public void decrementUnownedCardTest() {
+        assertFalse( cardDAO.isCardOwned( VALID_MULTIVERSE_ID ) );
+        
+        assertFalse( cardDAO.decrementOwnedCard( VALID_MULTIVERSE_ID ) );
+        assertEquals( 0, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+    
+    @Test
+    public void adjustOwnedCardCountsTest() {
+        int numOwned = cardDAO.numberOfOwnedCard( OWNED_CARD_MULTIVERSE_ID );
+        assertTrue( numOwned > 0 );
+        
+        //Add copies of an unowned card, and remove every copy of an owned card
+        Map<Integer, Integer> deltas = new HashMap<>();
+        deltas.put( VALID_MULTIVERSE_ID, 3 );
+        deltas.put( OWNED_CARD_MULTIVERSE_ID, -numOwned );
+        assertTrue( cardDAO.adjustOwnedCardCounts( deltas ) );
+        
+        assertEquals( 3, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+        assertFalse( cardDAO.isCardOwned( OWNED_CARD_MULTIVERSE_ID ) );
+        
+        //Reset Test
+        deltas.put( VALID_MULTIVERSE_ID, -3 );
+        deltas.put( OWNED_CARD_MULTIVERSE_ID, numOwned );
+        assertTrue( cardDAO.adjustOwnedCardCounts( deltas ) );
+        
+        assertFalse( cardDAO.isCardOwned( VALID_MULTIVERSE_ID ) );
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( OWNED_CARD_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void ownedCountsAfterWritesTest() {
+        //Load the owned counts before writing, and check them against the database
+        int numCardsOwned = cardDAO.numberOfCardsOwned();
+        assertEquals( cardDAO.getOwnedCards().size(), numCardsOwned );
+        int numOwned = cardDAO.numberOfOwnedCard( OWNED_CARD_MULTIVERSE_ID );
+
+        try {
+            assertTrue( cardDAO.adjustOwnedCardCount( VALID_MULTIVERSE_ID, 2 ) );
+            assertEquals( 2, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+            assertEquals( numCardsOwned + 1, cardDAO.numberOfCardsOwned() );
+
+            assertTrue( cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, 7 ) > 0 );
+            assertEquals( 7, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+
+            assertTrue( cardDAO.adjustOwnedCardCount( VALID_MULTIVERSE_ID, -10 ) );
+            assertFalse( cardDAO.isCardOwned( VALID_MULTIVERSE_ID ) );
+
+            assertTrue( cardDAO.removeOwnedCardById( OWNED_CARD_MULTIVERSE_ID ) );
+            assertFalse( cardDAO.isCardOwned( OWNED_CARD_MULTIVERSE_ID ) );
+            assertEquals( numCardsOwned - 1, cardDAO.numberOfCardsOwned() );
+            assertEquals( cardDAO.getOwnedCards().size(), cardDAO.numberOfCardsOwned() );
+        } finally {
+            //Reset Test
+            cardDAO.removeOwnedCardById( VALID_MULTIVERSE_ID );
+            cardDAO.updateOwnedCardCount( OWNED_CARD_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( OWNED_CARD_MULTIVERSE_ID ) );
+        assertEquals( numCardsOwned, cardDAO.numberOfCardsOwned() );
+    }
+
+    @Test
+    public void incrementOwnedCardConcurrentTest() throws Exception {
+        int numThreads = 4;
+        final int incrementsPerThread = 25;
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+        
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for ( int thread = 0; thread < numThreads; thread++ ) {
+            tasks.add( new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    boolean success = true;
+                    for ( int x = 0; x < incrementsPerThread; x++ ) {
+                        success &= cardDAO.incrementOwnedCard( VALID_MULTIVERSE_ID );
+                    }
+                    return success;
+                }
+            } );
+        }
+        try {
+            for ( Future<Boolean> result : executor.invokeAll( tasks ) ) {
+                assertTrue( result.get() );
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        //No increments may be lost
+        assertEquals( numOwned + numThreads * incrementsPerThread, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+        
+        //Reset Test
+        assertTrue( cardDAO.adjustOwnedCardCount( VALID_MULTIVERSE_ID, -numThreads * incrementsPerThread ) );
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+    
+    @Test
+    public void ownedCountsLoadedDuringWritesTest() throws Exception {
+        final int numThreads = 4;
+        final int incrementsPerThread = 10;
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+        int numCardsOwned = cardDAO.numberOfCardsOwned();
+
+        for ( int round = 0; round < 5; round++ ) {
+            //A new DAO has not loaded its owned counts yet, so its first reads race the increments
+            final MagicCardDAOImpl racingDAO = new MagicCardDAOImpl();
+            racingDAO.setDataSource( dataSource );
+            final CountDownLatch start = new CountDownLatch( 1 );
+            final AtomicBoolean writing = new AtomicBoolean( true );
+
+            ExecutorService executor = Executors.newFixedThreadPool( numThreads + 1 );
+            try {
+                List<Future<Boolean>> writers = new ArrayList<>();
+                for ( int thread = 0; thread < numThreads; thread++ ) {
+                    writers.add( executor.submit( new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws InterruptedException {
+                            start.await();
+                            boolean success = true;
+                            for ( int x = 0; x < incrementsPerThread; x++ ) {
+                                success &= racingDAO.incrementOwnedCard( VALID_MULTIVERSE_ID );
+                                Thread.sleep( 1 );
+                            }
+                            return success;
+                        }
+                    } ) );
+                }
+                Future<Integer> reader = executor.submit( new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws InterruptedException {
+                        start.await();
+                        int reads = 0;
+                        while ( writing.get() ) {
+                            racingDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+                            reads++;
+                        }
+                        return reads;
+                    }
+                } );
+
+                start.countDown();
+                for ( Future<Boolean> writer : writers ) {
+                    assertTrue( writer.get() );
+                }
+                writing.set( false );
+                reader.get();
+            } finally {
+                executor.shutdown();
+            }
+
+            try {
+                //Whether the counts were loaded before, during or after the increments, none may be lost or counted twice
+                int expected = numOwned + numThreads * incrementsPerThread;
+                MagicCardDAOImpl freshDAO = new MagicCardDAOImpl();
+                freshDAO.setDataSource( dataSource );
+                assertEquals( expected, freshDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+                assertEquals( expected, racingDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+                assertEquals( numCardsOwned + ( numOwned == 0 ? 1 : 0 ), racingDAO.numberOfCardsOwned() );
+            } finally {
+                //Reset Test, through the DAO that made the increments
+                racingDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+            }
+            assertEquals( numOwned, racingDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void ownedCountsWritesDuringLoadTest() throws Exception {
+        final int numThreads = 4;
+        final int incrementsPerThread = 10;
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+        int numCardsOwned = cardDAO.numberOfCardsOwned();
+        int expected = numOwned + numThreads * incrementsPerThread;
+
+        //Hold the first load after it has read one row, so every increment commits after its snapshot was taken
+        CountDownLatch firstRowRead = new CountDownLatch( 1 );
+        CountDownLatch resumeLoad = new CountDownLatch( 1 );
+        final MagicCardDAOImpl racingDAO = new MagicCardDAOImpl();
+        racingDAO.setDataSource( this.getPausingDataSource( "Select multiverse_id, count from", firstRowRead, resumeLoad ) );
+
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads + 1 );
+        try {
+            Future<Integer> firstRead = executor.submit( new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return racingDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+                }
+            } );
+            assertTrue( firstRowRead.await( 30, TimeUnit.SECONDS ) );
+
+            //Writers are not blocked by the load
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for ( int thread = 0; thread < numThreads; thread++ ) {
+                tasks.add( new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        boolean success = true;
+                        for ( int x = 0; x < incrementsPerThread; x++ ) {
+                            success &= racingDAO.incrementOwnedCard( VALID_MULTIVERSE_ID );
+                        }
+                        return success;
+                    }
+                } );
+            }
+            for ( Future<Boolean> result : executor.invokeAll( tasks, 60, TimeUnit.SECONDS ) ) {
+                assertTrue( result.get() );
+            }
+
+            //Other readers query the database until the load is done
+            assertEquals( expected, racingDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+
+            //The increments are added to the loaded counts once, as they were not in the snapshot
+            resumeLoad.countDown();
+            assertEquals( expected, firstRead.get().intValue() );
+            assertEquals( expected, racingDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+            assertEquals( numCardsOwned + ( numOwned == 0 ? 1 : 0 ), racingDAO.numberOfCardsOwned() );
+        } finally {
+            resumeLoad.countDown();
+            executor.shutdown();
+
+            //Reset Test, through the DAO that made the increments
+            racingDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, racingDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+
     @Test
     public void isCardOwnedWithOwnedCardTest() {
         assertTrue( cardDAO.isCardOwned( OWNED_CARD_MULTIVERSE_ID ) );
@@ -110,6 +376,80 @@ public class MagicCardDAOImplTest extends DAOTester {
         assertFalse( cardDAO.isCardInDatabase( INVALID_MULTIVERSE_ID ) );
     }
     
+    @Test
+    public void isCardInDatabaseAfterWritesTest() {
+        //Load the ids before writing
+        assertFalse( cardDAO.isCardInDatabase( TEMPORARY_MULTIVERSE_ID ) );
+        assertFalse( cardDAO.isCardInDatabase( TEMPORARY_MULTIVERSE_ID - 1 ) );
+
+        MagicCard card = new MagicCard( TEMPORARY_MULTIVERSE_ID, "Temporary", "1", Type.ARTIFACT.toString(), "Test Expansion" );
+        MagicCard otherCard = new MagicCard( TEMPORARY_MULTIVERSE_ID - 1, "Temporary", "1", Type.ARTIFACT.toString(), "Test Expansion" );
+        try {
+            assertTrue( cardDAO.addCardToDatabase( card ) );
+            assertTrue( cardDAO.isCardInDatabase( TEMPORARY_MULTIVERSE_ID ) );
+
+            assertTrue( cardDAO.addCardsToDatabase( Collections.singletonList( otherCard ) ).get( otherCard.getMultiverseId() ) );
+            assertTrue( cardDAO.isCardInDatabase( otherCard.getMultiverseId() ) );
+
+            assertTrue( cardDAO.removeCardFromDatabaseById( TEMPORARY_MULTIVERSE_ID ) );
+            assertFalse( cardDAO.isCardInDatabase( TEMPORARY_MULTIVERSE_ID ) );
+            assertTrue( cardDAO.isCardInDatabase( otherCard.getMultiverseId() ) );
+        } finally {
+            cardDAO.removeCardFromDatabaseById( TEMPORARY_MULTIVERSE_ID );
+            cardDAO.removeCardFromDatabaseById( otherCard.getMultiverseId() );
+        }
+        assertFalse( cardDAO.isCardInDatabase( otherCard.getMultiverseId() ) );
+    }
+
+    @Test
+    public void isCardInDatabaseWritesDuringLoadTest() throws Exception {
+        //Hold the first load after it has read one row, so every write below is made while it is loading
+        CountDownLatch firstRowRead = new CountDownLatch( 1 );
+        CountDownLatch resumeLoad = new CountDownLatch( 1 );
+        final MagicCardDAOImpl racingDAO = new MagicCardDAOImpl();
+        racingDAO.setDataSource( this.getPausingDataSource( "Select multiverse_id from", firstRowRead, resumeLoad ) );
+
+        final MagicCard card = new MagicCard( TEMPORARY_MULTIVERSE_ID, "Temporary", "1", Type.ARTIFACT.toString(), "Test Expansion" );
+        final MagicCard otherCard = new MagicCard( TEMPORARY_MULTIVERSE_ID - 1, "Temporary", "1", Type.ARTIFACT.toString(), "Test Expansion" );
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try {
+            Future<Boolean> firstRead = executor.submit( new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return racingDAO.isCardInDatabase( VALID_MULTIVERSE_ID );
+                }
+            } );
+            assertTrue( firstRowRead.await( 30, TimeUnit.SECONDS ) );
+
+            //Writers are not blocked by the load
+            Future<Boolean> writes = executor.submit( new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return racingDAO.addCardToDatabase( card ) && racingDAO.addCardToDatabase( otherCard )
+                            && racingDAO.removeCardFromDatabaseById( otherCard.getMultiverseId() );
+                }
+            } );
+            assertTrue( writes.get( 30, TimeUnit.SECONDS ) );
+
+            //Other callers query the database until the load is done
+            assertTrue( racingDAO.isCardInDatabase( TEMPORARY_MULTIVERSE_ID ) );
+            assertFalse( racingDAO.isCardInDatabase( otherCard.getMultiverseId() ) );
+
+            //The writes are applied to the loaded ids, in order
+            resumeLoad.countDown();
+            assertTrue( firstRead.get( 30, TimeUnit.SECONDS ) );
+            assertTrue( racingDAO.isCardInDatabase( TEMPORARY_MULTIVERSE_ID ) );
+            assertFalse( racingDAO.isCardInDatabase( otherCard.getMultiverseId() ) );
+        } finally {
+            resumeLoad.countDown();
+            executor.shutdown();
+
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( TEMPORARY_MULTIVERSE_ID );
+            cardDAO.removeCardFromDatabaseById( otherCard.getMultiverseId() );
+        }
+    }
+
     @Test
     public void getCardByIdTestWithValidId() {
         MagicCard card = cardDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID );
@@ -125,6 +465,40 @@ public class MagicCardDAOImplTest extends DAOTester {
         assertNull( card );
     }
     
+    @Test
+    public void getCardsByIdsTest() {
+        List<Integer> multiverseIds = new ArrayList<>( cardDAO.getAllMultiverseIds() );
+        Collections.reverse( multiverseIds );
+        multiverseIds.add( 1, INVALID_MULTIVERSE_ID );
+        multiverseIds.add( VALID_MULTIVERSE_ID );
+
+        Map<Integer, MagicCard> cards = cardDAO.getCardsFromDatabaseByIds( multiverseIds );
+
+        //Requested order, without missing or duplicate ids
+        List<Integer> expectedIds = new ArrayList<>( new LinkedHashSet<>( multiverseIds ) );
+        expectedIds.remove( Integer.valueOf( INVALID_MULTIVERSE_ID ) );
+        assertEquals( expectedIds, new ArrayList<>( cards.keySet() ) );
+
+        MagicCard card = cards.get( VALID_MULTIVERSE_ID );
+        assertEquals( cardDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID ).getName(), card.getName() );
+        assertEquals( cardDAO.getCardFromDatabaseById( VALID_MULTIVERSE_ID ).getType(), card.getType() );
+
+        assertTrue( cardDAO.getCardsFromDatabaseByIds( new ArrayList<Integer>() ).isEmpty() );
+    }
+    
+    @Test
+    public void getMultiverseIdSetTest() {
+        List<Integer> expected = cardDAO.getAllMultiverseIds();
+        MultiverseIdSet ids = cardDAO.getMultiverseIdSet();
+
+        assertEquals( expected.size(), ids.size() );
+        for ( Integer multiverseId : expected ) {
+            assertTrue( ids.contains( multiverseId ) );
+        }
+        assertEquals( cardDAO.getHighestMultiverseId(), ids.getHighestId() );
+        assertFalse( ids.contains( INVALID_MULTIVERSE_ID ) );
+    }
+    
     @Test
     public void numberOfCardsOwnedTest() {
         int numCards = cardDAO.numberOfCardsOwned();
@@ -180,4 +554,262 @@ public class MagicCardDAOImplTest extends DAOTester {
         //Remove new card
         assertTrue( cardDAO.removeCardFromDatabaseById( TEMPORARY_MULTIVERSE_ID ) );
     }
+    
+    @Test
+    public void addCardsToDatabaseTest() {
+        List<MagicCard> cards = new ArrayList<>();
+        for ( int x = 1; x <= 3; x++ ) {
+            MagicCard card = new MagicCard( TEMPORARY_MULTIVERSE_ID - x, "Batch Goblin " + x, "1R",
+                    Type.CREATURE.toString() + CardType.TYPE_SEPARATOR_WITH_SPACES + "Goblin", "Batch Test Expansion" );
+            card.setLanguage( Language.ENGLISH );
+            cards.add( card );
+        }
+        
+        //Save cards
+        Map<Integer, Boolean> results = cardDAO.addCardsToDatabase( cards );
+        assertEquals( cards.size(), results.size() );
+        
+        for ( MagicCard card : cards ) {
+            assertTrue( results.get( card.getMultiverseId() ) );
+            
+            //Reload card, including types
+            MagicCard newCard = cardDAO.getCardFromDatabaseById( card.getMultiverseId() );
+            assertEquals( card.getName(), newCard.getName() );
+            assertTrue( newCard.getSubTypes().contains( new SubType( "Goblin" ) ) );
+        }
+        
+        //Saving the same cards again updates them in place
+        results = cardDAO.saveCardsToDatabase( cards );
+        for ( MagicCard card : cards ) {
+            assertTrue( results.get( card.getMultiverseId() ) );
+            
+            //Remove new card
+            assertTrue( cardDAO.removeCardFromDatabaseById( card.getMultiverseId() ) );
+        }
+    }
+
+    @Test
+    public void addCardsToDatabaseFailedChunkTest() {
+        List<MagicCard> cards = new ArrayList<>();
+        for ( int x = 1; x <= 2; x++ ) {
+            MagicCard card = new MagicCard( TEMPORARY_MULTIVERSE_ID - x, "Batch Goblin " + x, "1R",
+                    Type.CREATURE.toString() + CardType.TYPE_SEPARATOR_WITH_SPACES + "Goblin", "Batch Test Expansion" );
+            card.setLanguage( Language.ENGLISH );
+            cards.add( card );
+        }
+
+        //The Card_Types batch fails after every card has been written to All_Cards
+        MagicCardDAOImpl failingDAO = new MagicCardDAOImpl();
+        failingDAO.setDataSource( this.getFailingDataSource( "Insert Into " + CARD_TYPE_TABLE_NO_ALIAS ) );
+
+        try {
+            //Results are per chunk, so every card is reported as unsuccessful, and none is saved
+            Map<Integer, Boolean> results = failingDAO.addCardsToDatabase( cards );
+            assertEquals( cards.size(), results.size() );
+            for ( MagicCard card : cards ) {
+                assertFalse( results.get( card.getMultiverseId() ) );
+                assertNull( cardDAO.getCardFromDatabaseById( card.getMultiverseId() ) );
+                assertFalse( failingDAO.isCardInDatabase( card.getMultiverseId() ) );
+            }
+        } finally {
+            //Reset Test
+            for ( MagicCard card : cards ) {
+                cardDAO.removeCardFromDatabaseById( card.getMultiverseId() );
+            }
+        }
+    }
+
+    @Test
+    public void addCardToDatabaseConcurrentTest() throws Exception {
+        final int numThreads = 2;
+
+        final MagicCard sharedCard = new MagicCard( TEMPORARY_MULTIVERSE_ID - 100, "Concurrent Goblin", "R",
+                Type.CREATURE.toString() + CardType.TYPE_SEPARATOR_WITH_SPACES + "Goblin", "Concurrent Test Expansion" );
+        sharedCard.setLanguage( Language.ENGLISH );
+        final List<MagicCard> cards = new ArrayList<>();
+        for ( int x = 1; x <= numThreads; x++ ) {
+            MagicCard card = new MagicCard( TEMPORARY_MULTIVERSE_ID - 100 - x, "Concurrent Goblin " + x, "R",
+                    Type.CREATURE.toString() + CardType.TYPE_SEPARATOR_WITH_SPACES + "Goblin", "Concurrent Test Expansion" );
+            card.setLanguage( Language.ENGLISH );
+            cards.add( card );
+        }
+
+        //Each save waits inside its transaction, after writing its card, until every thread's save has got that far.
+        //Saves serialized by a lock could never all get there at once, so the first would time out.
+        CountDownLatch savesInTransaction = new CountDownLatch( numThreads );
+        AtomicInteger timedOutWaits = new AtomicInteger();
+        final MagicCardDAOImpl overlappingDAO = new MagicCardDAOImpl();
+        overlappingDAO.setDataSource( this.getWaitingDataSource( "Insert Into " + ALL_CARDS_TABLE_NO_ALIAS, savesInTransaction, timedOutWaits ) );
+
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for ( final MagicCard card : cards ) {
+                results.add( executor.submit( new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        //Then save the same card from every thread
+                        return overlappingDAO.addCardToDatabase( card ) && overlappingDAO.addCardToDatabase( sharedCard );
+                    }
+                } ) );
+            }
+            for ( Future<Boolean> result : results ) {
+                assertTrue( result.get() );
+            }
+
+            assertEquals( 0, timedOutWaits.get() );
+            for ( MagicCard card : cards ) {
+                assertTrue( overlappingDAO.isCardInDatabase( card.getMultiverseId() ) );
+            }
+            assertTrue( overlappingDAO.isCardInDatabase( sharedCard.getMultiverseId() ) );
+        } finally {
+            executor.shutdown();
+
+            //Remove new cards
+            for ( MagicCard card : cards ) {
+                cardDAO.removeCardFromDatabaseById( card.getMultiverseId() );
+            }
+            cardDAO.removeCardFromDatabaseById( sharedCard.getMultiverseId() );
+        }
+    }
+
+    /**
+     * Get a DataSource on which every update starting with the given text, made inside a transaction, then waits for the latch to reach zero.
+     * 
+     * @param updateStart
+     *            The start of the updates to wait after
+     * @param latch
+     *            Counted down by each of those updates, then awaited
+     * @param timedOutWaits
+     *            Incremented when the latch did not reach zero in time
+     */
+    private DataSource getWaitingDataSource( final String updateStart, final CountDownLatch latch, final AtomicInteger timedOutWaits ) {
+        return new DelegatingDataSource( dataSource ) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                final Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                        final Object retVal = invokeOn( connection, method, args );
+                        if ( !method.getName().equals( "prepareStatement" ) || !( (String) args[0] ).startsWith( updateStart ) ) {
+                            return retVal;
+                        }
+
+                        return Proxy.newProxyInstance( PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                                new InvocationHandler() {
+                                    @Override
+                                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                                        Object result = invokeOn( retVal, method, args );
+                                        if ( method.getName().equals( "executeUpdate" ) && !connection.getAutoCommit() ) {
+                                            latch.countDown();
+                                            if ( !latch.await( 30, TimeUnit.SECONDS ) ) {
+                                                timedOutWaits.incrementAndGet();
+                                            }
+                                        }
+                                        return result;
+                                    }
+                                } );
+                    }
+                } );
+            }
+        };
+    }
+
+    /**
+     * Get a DataSource on which every batch of updates starting with the given text fails.
+     * 
+     * @param updateStart
+     *            The start of the updates to fail
+     */
+    private DataSource getFailingDataSource( final String updateStart ) {
+        return new DelegatingDataSource( dataSource ) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                final Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                        final Object retVal = invokeOn( connection, method, args );
+                        if ( !method.getName().equals( "prepareStatement" ) || !( (String) args[0] ).startsWith( updateStart ) ) {
+                            return retVal;
+                        }
+
+                        return Proxy.newProxyInstance( PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                                new InvocationHandler() {
+                                    @Override
+                                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                                        if ( method.getName().equals( "executeBatch" ) ) {
+                                            throw new SQLException( "Failing batch for test" );
+                                        }
+                                        return invokeOn( retVal, method, args );
+                                    }
+                                } );
+                    }
+                } );
+            }
+        };
+    }
+
+    /**
+     * Get a DataSource that pauses the first query starting with the given text, once its first row has been read.
+     * 
+     * @param queryStart
+     *            The start of the query to pause
+     * @param firstRowRead
+     *            Counted down when the query is paused
+     * @param resume
+     *            Awaited before the query continues
+     */
+    private DataSource getPausingDataSource( final String queryStart, final CountDownLatch firstRowRead, final CountDownLatch resume ) {
+        return new DelegatingDataSource( dataSource ) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                final Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                        Object retVal = invokeOn( connection, method, args );
+                        if ( retVal instanceof Statement && method.getName().equals( "createStatement" ) ) {
+                            return pauseQuery( (Statement) retVal, queryStart, firstRowRead, resume );
+                        }
+                        return retVal;
+                    }
+                } );
+            }
+        };
+    }
+
+    private static Statement pauseQuery( final Statement statement, final String queryStart, final CountDownLatch firstRowRead,
+            final CountDownLatch resume ) {
+        return (Statement) Proxy.newProxyInstance( Statement.class.getClassLoader(), new Class<?>[] { Statement.class }, new InvocationHandler() {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                final Object retVal = invokeOn( statement, method, args );
+                if ( !method.getName().equals( "executeQuery" ) || !( (String) args[0] ).startsWith( queryStart ) || firstRowRead.getCount() == 0 ) {
+                    return retVal;
+                }
+
+                final AtomicInteger rowsRequested = new AtomicInteger();
+                return Proxy.newProxyInstance( ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                        if ( method.getName().equals( "next" ) && rowsRequested.incrementAndGet() == 2 ) {
+                            firstRowRead.countDown();
+                            resume.await();
+                        }
+                        return invokeOn( retVal, method, args );
+                    }
+                } );
+            }
+        } );
+    }
+
+    private static Object invokeOn( Object target, Method method, Object[] args ) throws Throwable {
+        try {
+            return method.invoke( target, args );
+        } catch ( InvocationTargetException e ) {
+            throw e.getCause();
+        }
+    }
 }
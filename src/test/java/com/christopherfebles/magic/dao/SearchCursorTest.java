@@ -0,0 +1,144 @@
+package com.christopherfebles.magic.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class SearchCursorTest extends DAOTester {
+
+    protected static boolean searchCursorTesterInitializationComplete = false;
+
+    private static final int CHUNK_SIZE = 7;
+
+    @Autowired
+    private SearchDAO searchDAO;
+
+    private ExecutorService executor;
+
+    @Test
+    public void forwardTest() {
+        List<SearchParameter> searchParams = this.getFireballSearch();
+        List<MagicCard> expected = searchDAO.getAllWithSearchParameters( searchParams );
+        assertTrue( expected.size() > CHUNK_SIZE * 3 );
+
+        SearchCursor cursor = new SearchCursor( searchDAO, searchParams, CHUNK_SIZE, executor );
+        assertFalse( cursor.hasPrevious() );
+
+        List<MagicCard> actual = new ArrayList<>();
+        while ( cursor.hasNext() ) {
+            assertEquals( actual.size(), cursor.nextIndex() );
+            actual.add( cursor.next() );
+        }
+        assertEquals( this.getIds( expected ), this.getIds( actual ) );
+
+        try {
+            cursor.next();
+            fail( "Expected NoSuchElementException" );
+        } catch ( NoSuchElementException e ) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void backwardTest() {
+        List<SearchParameter> searchParams = this.getFireballSearch();
+        List<Integer> expected = this.getIds( searchDAO.getAllWithSearchParameters( searchParams ) );
+
+        SearchCursor cursor = new SearchCursor( searchDAO, searchParams, CHUNK_SIZE, executor );
+        while ( cursor.hasNext() ) {
+            cursor.next();
+        }
+
+        // Walking back to the start reloads chunks evicted on the way forward
+        List<Integer> actual = new ArrayList<>();
+        while ( cursor.hasPrevious() ) {
+            assertEquals( expected.size() - actual.size() - 1, cursor.previousIndex() );
+            actual.add( 0, cursor.previous().getMultiverseId() );
+        }
+        assertEquals( expected, actual );
+        assertEquals( 0, cursor.nextIndex() );
+    }
+
+    @Test
+    public void backAndForthAcrossChunksTest() {
+        List<SearchParameter> searchParams = this.getFireballSearch();
+        List<Integer> expected = this.getIds( searchDAO.getAllWithSearchParameters( searchParams ) );
+
+        SearchCursor cursor = new SearchCursor( searchDAO, searchParams, CHUNK_SIZE, executor );
+        for ( int i = 0; i < CHUNK_SIZE; i++ ) {
+            cursor.next();
+        }
+
+        assertEquals( expected.get( CHUNK_SIZE ), cursor.next().getMultiverseId() );
+        assertEquals( expected.get( CHUNK_SIZE ), cursor.previous().getMultiverseId() );
+        assertEquals( expected.get( CHUNK_SIZE - 1 ), cursor.previous().getMultiverseId() );
+        assertEquals( expected.get( CHUNK_SIZE - 1 ), cursor.next().getMultiverseId() );
+    }
+
+    @Test
+    public void emptySearchTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "No such card" ) );
+
+        SearchCursor cursor = new SearchCursor( searchDAO, searchParams, CHUNK_SIZE, executor );
+        assertFalse( cursor.hasNext() );
+        assertFalse( cursor.hasPrevious() );
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void removeTest() {
+        SearchCursor cursor = new SearchCursor( searchDAO, this.getFireballSearch(), CHUNK_SIZE, executor );
+        cursor.next();
+        cursor.remove();
+    }
+
+    private List<SearchParameter> getFireballSearch() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+        return searchParams;
+    }
+
+    private List<Integer> getIds( List<MagicCard> cards ) {
+        List<Integer> retVal = new ArrayList<>();
+        for ( MagicCard card : cards ) {
+            retVal.add( card.getMultiverseId() );
+        }
+        return retVal;
+    }
+
+    @Override
+    protected void additionalSetUp() {
+
+        if ( !searchCursorTesterInitializationComplete ) {
+            super.addFireballs();
+            searchCursorTesterInitializationComplete = true;
+        }
+
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void additionalCleanUp() {
+        executor.shutdownNow();
+    }
+}
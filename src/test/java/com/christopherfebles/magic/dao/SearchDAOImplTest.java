@@ -3,6 +3,8 @@ package com.christopherfebles.magic.dao;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -18,6 +20,10 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import com.christopherfebles.magic.dao.parameter.SearchParameter;
 import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.dao.result.FacetedSearchResult;
+import com.christopherfebles.magic.dao.result.SearchFacets;
+import com.christopherfebles.magic.dao.result.SearchPage;
+import com.christopherfebles.magic.dao.result.SearchResult;
 import com.christopherfebles.magic.enums.Color;
 import com.christopherfebles.magic.enums.Language;
 import com.christopherfebles.magic.enums.SubType;
@@ -34,6 +40,7 @@ public class SearchDAOImplTest extends DAOTester {
     private static final Logger LOG = LoggerFactory.getLogger( SearchDAOImplTest.class );
     
     protected static final int OWNED_FIREBALL_ID = 221550;
+    private static final int FULL_TEXT_DRAKE_ID = 999001;
     
     @Autowired
     private SearchDAO searchDAO;
@@ -136,6 +143,65 @@ public class SearchDAOImplTest extends DAOTester {
         assertEquals( 10, uniqueNames.size() );
     }
     
+    @Test
+    public void getPageByNameWithSearchParametersPagingTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "%Paladin%" ) );
+        searchParams.add( new SearchParameter( FieldName.COLOR, Color.WHITE ) );
+        searchParams.add( new SearchParameter( FieldName.TYPE, Type.CREATURE ) );
+        searchParams.add( new SearchParameter( FieldName.SUBTYPE, new SubType( "Human" ) ) );
+
+        //Page through 12 unique names, 5 at a time
+        Set<String> uniqueNames = new HashSet<>();
+        int numCards = 0;
+        for ( int page = 1; page <= 3; page++ ) {
+            List<MagicCard> groupedCards = searchDAO.getPageByNameWithSearchParametersAndPageSize( page, 5, searchParams );
+
+            Set<String> pageNames = new HashSet<>();
+            for( MagicCard card : groupedCards ) {
+                pageNames.add( card.getName() );
+            }
+            assertEquals( page < 3 ? 5 : 2, pageNames.size() );
+
+            //No name appears on more than one page
+            assertTrue( Collections.disjoint( uniqueNames, pageNames ) );
+            uniqueNames.addAll( pageNames );
+            numCards += groupedCards.size();
+        }
+
+        assertEquals( 12, uniqueNames.size() );
+        assertEquals( searchDAO.numberOfResultsWithSearchParameters( searchParams ), numCards );
+        assertTrue( searchDAO.getPageByNameWithSearchParametersAndPageSize( 4, 5, searchParams ).isEmpty() );
+    }
+
+    @Test
+    public void getSearchResultByNameWithSearchParametersTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "%Paladin%" ) );
+        searchParams.add( new SearchParameter( FieldName.COLOR, Color.WHITE ) );
+        searchParams.add( new SearchParameter( FieldName.TYPE, Type.CREATURE ) );
+        searchParams.add( new SearchParameter( FieldName.SUBTYPE, new SubType( "Human" ) ) );
+
+        //20 total, 12 unique names
+        int numCards = 0;
+        for ( int page = 1; page <= 3; page++ ) {
+            SearchResult result = searchDAO.getSearchResultByNameWithSearchParameters( page, 5, searchParams );
+            assertEquals( 12, result.getTotalResults() );
+            assertEquals( 3, result.getPageCount() );
+
+            //Same cards as the page without a count
+            assertEquals( new HashSet<>( searchDAO.getPageByNameWithSearchParametersAndPageSize( page, 5, searchParams ) ),
+                    new HashSet<>( result.getCards() ) );
+            numCards += result.getCards().size();
+        }
+        assertEquals( 20, numCards );
+
+        //Past the last page
+        SearchResult result = searchDAO.getSearchResultByNameWithSearchParameters( 4, 5, searchParams );
+        assertTrue( result.getCards().isEmpty() );
+        assertEquals( 12, result.getTotalResults() );
+    }
+
     @Test
     public void numberOfUniqueNamesWithSearchParametersTest() {
         List<SearchParameter> searchParams = new ArrayList<>();
@@ -204,6 +270,120 @@ public class SearchDAOImplTest extends DAOTester {
         assertEquals( expectedResultCount, actualResultCount );
     }
     
+    @Test
+    public void getSearchResultWithSearchParametersTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+
+        SearchResult result = searchDAO.getSearchResultWithSearchParameters( 2, 10, searchParams );
+
+        assertEquals( 55, result.getTotalResults() );
+        assertEquals( 6, result.getPageCount() );
+        assertEquals( 2, result.getPageNumber() );
+        assertEquals( searchDAO.getPageWithSearchParametersAndPageSize( 2, 10, searchParams ), result.getCards() );
+
+        //The last page is partially filled
+        result = searchDAO.getSearchResultWithSearchParameters( 6, 10, searchParams );
+        assertEquals( 5, result.getCards().size() );
+        assertEquals( 55, result.getTotalResults() );
+    }
+
+    @Test
+    public void streamAllWithSearchParametersTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "%Paladin%" ) );
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball", false ) );
+
+        final List<MagicCard> streamedCards = new ArrayList<>();
+        int cardsHandled = searchDAO.streamAllWithSearchParameters( searchParams, new MagicCardHandler() {
+            @Override
+            public void processCard( MagicCard card ) {
+                streamedCards.add( card );
+            }
+        } );
+
+        assertEquals( searchDAO.getAllWithSearchParameters( searchParams ), streamedCards );
+        assertEquals( streamedCards.size(), cardsHandled );
+    }
+
+    @Test
+    public void getFacetedSearchResultWithSearchParametersTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "%Paladin%" ) );
+
+        FacetedSearchResult result = searchDAO.getFacetedSearchResultWithSearchParameters( 1, 5, searchParams );
+        int total = searchDAO.numberOfResultsWithSearchParameters( searchParams );
+        assertEquals( total, result.getTotalResults() );
+        assertEquals( searchDAO.getPageWithSearchParametersAndPageSize( 1, 5, searchParams ), result.getCards() );
+
+        SearchFacets facets = result.getFacets();
+        assertEquals( Integer.valueOf( total ), facets.getTypes().get( Type.CREATURE ) );
+        assertEquals( Integer.valueOf( total ), facets.getSubTypes().get( new SubType( "Knight" ) ) );
+        assertEquals( Integer.valueOf( total ), facets.getColors().get( Color.WHITE ) );
+
+        //Each count matches a search narrowed to that value
+        searchParams.add( new SearchParameter( FieldName.LANGUAGE, Language.ENGLISH ) );
+        assertEquals( Integer.valueOf( searchDAO.numberOfResultsWithSearchParameters( searchParams ) ), facets.getLanguages().get( Language.ENGLISH ) );
+        searchParams.set( 1, new SearchParameter( FieldName.COLOR, Color.RED ) );
+        assertEquals( Integer.valueOf( searchDAO.numberOfResultsWithSearchParameters( searchParams ) ), facets.getColors().get( Color.RED ) );
+        searchParams.set( 1, new SearchParameter( FieldName.EXPANSION, "Magic 2014 Core Set" ) );
+        assertEquals( Integer.valueOf( searchDAO.numberOfResultsWithSearchParameters( searchParams ) ), facets.getExpansions().get( "Magic 2014 Core Set" ) );
+
+        int expansionTotal = 0;
+        for ( Integer count : facets.getExpansions().values() ) {
+            expansionTotal += count;
+        }
+        assertEquals( total, expansionTotal );
+    }
+
+    @Test
+    public void getPageAfterTokenWithSearchParametersTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+
+        List<MagicCard> allFireballs = searchDAO.getAllWithSearchParameters( searchParams );
+
+        //Page through all results with continuation tokens
+        List<MagicCard> pagedFireballs = new ArrayList<>();
+        SearchPage page = searchDAO.getPageAfterTokenWithSearchParameters( null, 10, searchParams );
+        pagedFireballs.addAll( page.getCards() );
+        while ( page.hasNextPage() ) {
+            assertEquals( 10, page.getCards().size() );
+            page = searchDAO.getPageAfterTokenWithSearchParameters( page.getNextPageToken(), 10, searchParams );
+            pagedFireballs.addAll( page.getCards() );
+        }
+
+        //Same cards, same order as an unpaged search
+        assertEquals( allFireballs, pagedFireballs );
+    }
+
+    @Test
+    public void getPageAfterTokenWithOrSearchParametersTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+        searchParams.add( new SearchParameter( FieldName.NAME, "%Paladin%", false ) );
+
+        int expectedResultCount = searchDAO.numberOfResultsWithSearchParameters( searchParams );
+
+        int actualResultCount = 0;
+        String pageToken = null;
+        do {
+            SearchPage page = searchDAO.getPageAfterTokenWithSearchParameters( pageToken, 7, searchParams );
+            actualResultCount += page.getCards().size();
+            pageToken = page.getNextPageToken();
+        } while ( pageToken != null );
+
+        assertEquals( expectedResultCount, actualResultCount );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void getPageAfterInvalidTokenTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+
+        searchDAO.getPageAfterTokenWithSearchParameters( "not a token", 10, searchParams );
+    }
+
     @Test
     public void numberOfResultsWithSearchParametersCompleteParametersTest() {
         List<SearchParameter> searchParams = new ArrayList<>();
@@ -264,6 +444,84 @@ public class SearchDAOImplTest extends DAOTester {
         }
     }
     
+    @Test
+    public void getAllByColorMaskTest() {
+        List<SearchParameter> likeParams = new ArrayList<>();
+        likeParams.add( new SearchParameter( FieldName.COLOR, Color.WHITE ) );
+
+        //Including white matches the same cards as the color string search
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.COLORS_INCLUDING, Collections.singletonList( Color.WHITE ) ) );
+        assertEquals( searchDAO.getAllWithSearchParameters( likeParams ), searchDAO.getAllWithSearchParameters( searchParams ) );
+
+        //No colors exactly matches colorless cards
+        searchParams.clear();
+        searchParams.add( new SearchParameter( FieldName.COLORS_EXACTLY, Collections.<Color> emptyList() ) );
+        List<MagicCard> cardList = searchDAO.getAllWithSearchParameters( searchParams );
+        assertFalse( cardList.isEmpty() );
+        for ( MagicCard card : cardList ) {
+            assertEquals( 0, card.getColorMask() );
+        }
+
+        //At most red matches red and colorless cards, but no others
+        searchParams.clear();
+        searchParams.add( new SearchParameter( FieldName.COLORS_AT_MOST, Collections.singletonList( Color.RED ) ) );
+        cardList = searchDAO.getAllWithSearchParameters( searchParams );
+        boolean foundRed = false;
+        boolean foundColorless = false;
+        for ( MagicCard card : cardList ) {
+            assertEquals( 0, card.getColorMask() & ~Color.RED.getMask() );
+            foundRed |= card.getColors().contains( Color.RED );
+            foundColorless |= card.getColorMask() == 0;
+        }
+        assertTrue( foundRed );
+        assertTrue( foundColorless );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void colorsWithTextFieldNameTest() {
+        new SearchParameter( FieldName.NAME, Collections.singletonList( Color.WHITE ) );
+    }
+    
+    @Test
+    public void fullTextSearchTest() {
+        MagicCard drawDrake = new MagicCard( FULL_TEXT_DRAKE_ID, "Zephyr Drake", "1U", Type.CREATURE + Type.TYPE_SEPARATOR_WITH_SPACES + "Drake", "Magic 2012" );
+        drawDrake.setText( "Flying. Whenever this creature attacks, draw a card." );
+        drawDrake.setFlavorText( "Ancient winds carry it home." );
+        MagicCard plainDrake = new MagicCard( FULL_TEXT_DRAKE_ID + 1, "Azure Drake", "3U", Type.CREATURE + Type.TYPE_SEPARATOR_WITH_SPACES + "Drake",
+                "Magic 2012" );
+        plainDrake.setText( "Flying" );
+
+        try {
+            assertTrue( cardDAO.addCardToDatabase( drawDrake ) );
+            assertTrue( cardDAO.addCardToDatabase( plainDrake ) );
+
+            List<SearchParameter> searchParams = new ArrayList<>();
+            searchParams.add( new SearchParameter( FieldName.TEXT, "+flying +draw" ) );
+            assertEquals( Collections.singletonList( drawDrake ), searchDAO.getAllWithSearchParameters( searchParams ) );
+
+            //Or conditions use a subquery instead of a join
+            searchParams.add( new SearchParameter( FieldName.NAME, "Azure Drake", false ) );
+            assertEquals( 2, searchDAO.numberOfResultsWithSearchParameters( searchParams ) );
+
+            searchParams.clear();
+            searchParams.add( new SearchParameter( FieldName.FLAVOR_TEXT, "ancient" ) );
+            searchParams.add( new SearchParameter( FieldName.SUBTYPE, new SubType( "Drake" ) ) );
+            assertEquals( Collections.singletonList( drawDrake ), searchDAO.getAllWithSearchParameters( searchParams ) );
+
+            //Both match, but the card matching more words comes first, ahead of name order
+            searchParams.clear();
+            searchParams.add( new SearchParameter( FieldName.TEXT, "flying draw" ) );
+            searchParams.add( new SearchParameter( FieldName.NAME, "%Drake" ) );
+            assertEquals( Arrays.asList( plainDrake, drawDrake ), searchDAO.getPageWithSearchParametersAndPageSize( 1, 2, searchParams ) );
+            assertEquals( Arrays.asList( drawDrake, plainDrake ), searchDAO.getPageByRelevanceWithSearchParameters( 1, 2, searchParams ) );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( drawDrake.getMultiverseId() );
+            cardDAO.removeCardFromDatabaseById( plainDrake.getMultiverseId() );
+        }
+    }
+    
     protected static boolean searchDAOTesterInitializationComplete = false;
     @Override
     public void additionalSetUp() {
@@ -0,0 +1,238 @@
+package com.christopherfebles.magic.dao;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.impl.WriteBehindMagicCardDAO;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class WriteBehindMagicCardDAOTest extends DAOTester {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    @Test
+    public void bufferedIncrementTest() {
+        WriteBehindMagicCardDAO writeBehindDAO = new WriteBehindMagicCardDAO( cardDAO, 1000, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+
+        try {
+            for ( int i = 0; i < 10; i++ ) {
+                assertTrue( writeBehindDAO.incrementOwnedCard( VALID_MULTIVERSE_ID ) );
+            }
+            assertTrue( writeBehindDAO.decrementOwnedCard( VALID_MULTIVERSE_ID ) );
+
+            //Buffered changes are visible through the buffer, but not yet written
+            assertEquals( numOwned + 9, writeBehindDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+            assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+
+            writeBehindDAO.flush();
+            assertEquals( numOwned + 9, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+            assertEquals( numOwned + 9, writeBehindDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+        } finally {
+            writeBehindDAO.close();
+
+            //Reset Test
+            cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void bufferedDecrementTest() {
+        WriteBehindMagicCardDAO writeBehindDAO = new WriteBehindMagicCardDAO( cardDAO, 1000, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( OWNED_CARD_MULTIVERSE_ID );
+        assertTrue( numOwned > 0 );
+
+        try {
+            for ( int i = 0; i < numOwned; i++ ) {
+                assertTrue( writeBehindDAO.decrementOwnedCard( OWNED_CARD_MULTIVERSE_ID ) );
+            }
+            assertFalse( writeBehindDAO.isCardOwned( OWNED_CARD_MULTIVERSE_ID ) );
+            assertFalse( writeBehindDAO.decrementOwnedCard( OWNED_CARD_MULTIVERSE_ID ) );
+
+            //Closing flushes any remaining updates
+            writeBehindDAO.close();
+            assertFalse( cardDAO.isCardOwned( OWNED_CARD_MULTIVERSE_ID ) );
+        } finally {
+            writeBehindDAO.close();
+
+            //Reset Test
+            cardDAO.updateOwnedCardCount( OWNED_CARD_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( OWNED_CARD_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void concurrentDecrementTest() throws Exception {
+        //Slow down reads of the stored count, so that every decrement reads it before any of them is buffered
+        MagicCardDAO slowDAO = (MagicCardDAO) Proxy.newProxyInstance( MagicCardDAO.class.getClassLoader(), new Class<?>[] { MagicCardDAO.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                        if ( method.getName().equals( "numberOfOwnedCard" ) ) {
+                            Thread.sleep( 50 );
+                        }
+                        try {
+                            return method.invoke( cardDAO, args );
+                        } catch ( InvocationTargetException e ) {
+                            throw e.getCause();
+                        }
+                    }
+                } );
+        WriteBehindMagicCardDAO writeBehindDAO = new WriteBehindMagicCardDAO( slowDAO, 1000, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+        int numThreads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+        try {
+            assertEquals( 1, cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, 1 ) );
+
+            //Start every decrement at once, so the ownership checks race
+            final CountDownLatch start = new CountDownLatch( 1 );
+            final WriteBehindMagicCardDAO dao = writeBehindDAO;
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for ( int thread = 0; thread < numThreads; thread++ ) {
+                tasks.add( new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        start.await();
+                        return dao.decrementOwnedCard( VALID_MULTIVERSE_ID );
+                    }
+                } );
+            }
+            List<Future<Boolean>> results = new ArrayList<>();
+            for ( Callable<Boolean> task : tasks ) {
+                results.add( executor.submit( task ) );
+            }
+            start.countDown();
+
+            //Only one copy was owned, so only one decrement succeeds
+            int successes = 0;
+            for ( Future<Boolean> result : results ) {
+                if ( result.get() ) {
+                    successes++;
+                }
+            }
+            assertEquals( 1, successes );
+            assertFalse( writeBehindDAO.isCardOwned( VALID_MULTIVERSE_ID ) );
+
+            writeBehindDAO.flush();
+            assertFalse( cardDAO.isCardOwned( VALID_MULTIVERSE_ID ) );
+        } finally {
+            executor.shutdown();
+            writeBehindDAO.close();
+
+            //Reset Test
+            cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void updateOwnedCardCountDiscardsBufferTest() {
+        WriteBehindMagicCardDAO writeBehindDAO = new WriteBehindMagicCardDAO( cardDAO, 1000, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+
+        try {
+            writeBehindDAO.incrementOwnedCard( VALID_MULTIVERSE_ID );
+            writeBehindDAO.incrementOwnedCard( VALID_MULTIVERSE_ID );
+            assertEquals( 1, writeBehindDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, 5 ) );
+
+            writeBehindDAO.flush();
+            assertEquals( 5, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+        } finally {
+            writeBehindDAO.close();
+
+            //Reset Test
+            cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void flushOnMaxPendingUpdatesTest() throws InterruptedException {
+        WriteBehindMagicCardDAO writeBehindDAO = new WriteBehindMagicCardDAO( cardDAO, 5, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+
+        try {
+            for ( int i = 0; i < 5; i++ ) {
+                writeBehindDAO.incrementOwnedCard( VALID_MULTIVERSE_ID );
+            }
+
+            //The flush runs in the background, so wait for it
+            for ( int i = 0; i < 50 && cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) != numOwned + 5; i++ ) {
+                Thread.sleep( 100 );
+            }
+            assertEquals( numOwned + 5, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+        } finally {
+            writeBehindDAO.close();
+
+            //Reset Test
+            cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void updateAfterCloseTest() {
+        WriteBehindMagicCardDAO writeBehindDAO = new WriteBehindMagicCardDAO( cardDAO, 2, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+
+        try {
+            writeBehindDAO.close();
+
+            //Updates after closing, including enough to reach maxPendingUpdates, are written immediately
+            for ( int i = 0; i < 3; i++ ) {
+                assertTrue( writeBehindDAO.incrementOwnedCard( VALID_MULTIVERSE_ID ) );
+                assertEquals( numOwned + i + 1, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+            }
+        } finally {
+            //Reset Test
+            cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+
+    @Test
+    public void invalidCardDoesNotBlockFlushTest() {
+        WriteBehindMagicCardDAO writeBehindDAO = new WriteBehindMagicCardDAO( cardDAO, 1000, ONE_HOUR );
+        int numOwned = cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID );
+
+        try {
+            //TEMPORARY_MULTIVERSE_ID is not in All_Cards, so it cannot be written to My_Cards
+            writeBehindDAO.incrementOwnedCard( TEMPORARY_MULTIVERSE_ID );
+            writeBehindDAO.incrementOwnedCard( VALID_MULTIVERSE_ID );
+
+            writeBehindDAO.flush();
+            assertEquals( numOwned + 1, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+            assertFalse( writeBehindDAO.isCardOwned( TEMPORARY_MULTIVERSE_ID ) );
+        } finally {
+            writeBehindDAO.close();
+
+            //Reset Test
+            cardDAO.updateOwnedCardCount( VALID_MULTIVERSE_ID, numOwned );
+        }
+        assertEquals( numOwned, cardDAO.numberOfOwnedCard( VALID_MULTIVERSE_ID ) );
+    }
+}
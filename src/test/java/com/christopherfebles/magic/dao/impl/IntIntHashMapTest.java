@@ -0,0 +1,88 @@
+package com.christopherfebles.magic.dao.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@Category( UnitTest.class )
+public class IntIntHashMapTest {
+
+    @Test
+    public void putGetRemoveTest() {
+        IntIntHashMap map = new IntIntHashMap();
+        assertTrue( map.isEmpty() );
+        assertEquals( 0, map.get( 600 ) );
+        assertFalse( map.containsKey( 600 ) );
+
+        map.put( 600, 4 );
+        map.put( 0, 1 );
+        map.put( 600, 5 );
+        assertEquals( 2, map.size() );
+        assertEquals( 5, map.get( 600 ) );
+        assertEquals( 1, map.get( 0 ) );
+        assertTrue( map.containsKey( 0 ) );
+
+        assertTrue( map.remove( 600 ) );
+        assertFalse( map.remove( 600 ) );
+        assertEquals( 0, map.get( 600 ) );
+        assertEquals( 1, map.size() );
+
+        //Negative keys are never stored
+        assertEquals( 0, map.get( -1 ) );
+        assertFalse( map.containsKey( -1 ) );
+        assertFalse( map.remove( -1 ) );
+        assertEquals( 1, map.size() );
+    }
+
+    @Test
+    public void addTest() {
+        IntIntHashMap map = new IntIntHashMap();
+
+        assertEquals( 3, map.add( 600, 3 ) );
+        assertEquals( 2, map.add( 600, -1 ) );
+        assertEquals( 0, map.add( 600, -2 ) );
+        assertFalse( map.containsKey( 600 ) );
+
+        //A removal added before the addition it follows, as when concurrent writes finish out of order
+        assertEquals( -1, map.add( 373723, -1 ) );
+        assertTrue( map.containsKey( 373723 ) );
+        assertEquals( 0, map.add( 373723, 1 ) );
+        assertTrue( map.isEmpty() );
+
+        map.put( 600, Integer.MAX_VALUE - 1 );
+        assertEquals( Integer.MAX_VALUE, map.add( 600, 5 ) );
+    }
+
+    @Test
+    public void matchesHashMapTest() {
+        IntIntHashMap map = new IntIntHashMap( 4 );
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random( 600 );
+
+        //Consecutive and scattered ids, with enough removes to exercise the probe run shifts
+        for ( int i = 0; i < 50000; i++ ) {
+            int key = random.nextBoolean() ? random.nextInt( 2000 ) : random.nextInt( Integer.MAX_VALUE );
+            if ( random.nextInt( 3 ) == 0 ) {
+                assertEquals( expected.remove( key ) != null, map.remove( key ) );
+            } else {
+                map.put( key, i );
+                expected.put( key, i );
+            }
+        }
+
+        assertEquals( expected.size(), map.size() );
+        for ( Map.Entry<Integer, Integer> entry : expected.entrySet() ) {
+            assertEquals( entry.getValue().intValue(), map.get( entry.getKey() ) );
+        }
+        for ( int key = 0; key < 2000; key++ ) {
+            assertEquals( expected.containsKey( key ), map.containsKey( key ) );
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.christopherfebles.magic.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.enums.SubType;
+import com.christopherfebles.magic.enums.Type;
+
+import static com.christopherfebles.magic.dao.MagicDAOConstants.*;
+
+/**
+ * Times the count and page queries of SearchDAOImpl for type and owned filters, against a generated catalog in the test database.<br>
+ * <br>
+ * This is not a test, and is not run by the build. Run its main method with the test classpath, before and after changing {@link SearchQuery},
+ * to compare the query plans. The generated catalog is removed again when it finishes.<br>
+ * <br>
+ * Roughly half of the generated cards are creatures, and their subtypes range from dense (Human) to sparse (Kithkin). Which plan is fastest for
+ * a page of joined type filters depends on how many cards match, not only on the shape of the search: walking the name index finds a dense
+ * match quickly, but reads most of the catalog to find a sparse one.
+ *
+ * @author Christopher Febles
+ *
+ */
+public final class SearchQueryBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger( SearchQueryBenchmark.class );
+
+    private static final int FIRST_MULTIVERSE_ID = 900000000;
+    private static final int CARD_COUNT = 30000;
+    private static final int PAGE_NUMBER = 11;
+    private static final int PAGE_SIZE = 10;
+    private static final int WARMUP_RUNS = 5;
+    private static final int TIMED_RUNS = 21;
+
+    private SearchQueryBenchmark() {
+    }
+
+    public static void main( String[] args ) {
+
+        try ( ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext( "applicationContext-test.xml" ) ) {
+            DataSource dataSource = context.getBean( "dataSource", DataSource.class );
+            JdbcTemplate jdbcTemplate = new JdbcTemplate( dataSource );
+
+            SearchDAOImpl searchDAO = new SearchDAOImpl();
+            searchDAO.setDataSource( dataSource );
+
+            addCatalog( jdbcTemplate );
+            try {
+                for ( Map.Entry<String, List<SearchParameter>> search : getSearches().entrySet() ) {
+                    timeSearch( searchDAO, search.getKey(), search.getValue() );
+                }
+            } finally {
+                removeCatalog( jdbcTemplate );
+            }
+        }
+    }
+
+    private static Map<String, List<SearchParameter>> getSearches() {
+
+        SearchParameter creature = new SearchParameter( FieldName.TYPE, Type.CREATURE );
+        SearchParameter human = new SearchParameter( FieldName.SUBTYPE, new SubType( "Human" ) );
+        SearchParameter soldier = new SearchParameter( FieldName.SUBTYPE, new SubType( "Soldier" ) );
+        SearchParameter kithkin = new SearchParameter( FieldName.SUBTYPE, new SubType( "Kithkin" ) );
+        SearchParameter owned = new SearchParameter( FieldName.OWNED, "" );
+
+        Map<String, List<SearchParameter>> retVal = new LinkedHashMap<>();
+        retVal.put( "Creature", Arrays.asList( creature ) );
+        retVal.put( "Creature+Human", Arrays.asList( creature, human ) );
+        retVal.put( "Creature+Human+owned", Arrays.asList( creature, human, owned ) );
+        retVal.put( "Human+Soldier", Arrays.asList( human, soldier ) );
+        retVal.put( "Creature+Kithkin", Arrays.asList( creature, kithkin ) );
+
+        return retVal;
+    }
+
+    private static void timeSearch( final SearchDAOImpl searchDAO, String name, final List<SearchParameter> searchParams ) {
+
+        int count = searchDAO.numberOfResultsWithSearchParameters( searchParams );
+
+        double countTime = time( new Runnable() {
+            @Override
+            public void run() {
+                searchDAO.numberOfResultsWithSearchParameters( searchParams );
+            }
+        } );
+        double pageTime = time( new Runnable() {
+            @Override
+            public void run() {
+                searchDAO.getPageWithSearchParametersAndPageSize( PAGE_NUMBER, PAGE_SIZE, searchParams );
+            }
+        } );
+
+        LOG.info( String.format( "%-22s %6d matches   count %7.1f ms   page %7.1f ms", name, count, countTime, pageTime ) );
+    }
+
+    /**
+     * @return The median time of the given query in milliseconds, after warming up
+     */
+    private static double time( Runnable query ) {
+
+        for ( int x = 0; x < WARMUP_RUNS; x++ ) {
+            query.run();
+        }
+
+        long[] times = new long[TIMED_RUNS];
+        for ( int x = 0; x < TIMED_RUNS; x++ ) {
+            long start = System.nanoTime();
+            query.run();
+            times[x] = System.nanoTime() - start;
+        }
+        Arrays.sort( times );
+
+        return times[TIMED_RUNS / 2] / 1000000.0;
+    }
+
+    /**
+     * Add a catalog with roughly the type and ownership density of a real collection, from a fixed seed so every run matches.
+     */
+    private static void addCatalog( JdbcTemplate jdbcTemplate ) {
+
+        Random random = new Random( 42 );
+        List<Object[]> cards = new ArrayList<>();
+        List<Object[]> cardTypes = new ArrayList<>();
+        List<Object[]> ownedCards = new ArrayList<>();
+
+        for ( int multiverseId = FIRST_MULTIVERSE_ID; multiverseId < FIRST_MULTIVERSE_ID + CARD_COUNT; multiverseId++ ) {
+            StringBuilder name = new StringBuilder();
+            for ( int x = 0; x < 12; x++ ) {
+                name.append( (char) ( 'a' + random.nextInt( 26 ) ) );
+            }
+            cards.add( new Object[] { multiverseId, name.toString() } );
+
+            if ( random.nextBoolean() ) {
+                cardTypes.add( new Object[] { multiverseId, "Creature" } );
+
+                //Overlapping ranges, so that some Humans are also Soldiers
+                int subType = random.nextInt( 1000 );
+                if ( subType < 170 ) {
+                    cardTypes.add( new Object[] { multiverseId, "Human" } );
+                }
+                if ( subType >= 120 && subType < 220 ) {
+                    cardTypes.add( new Object[] { multiverseId, "Soldier" } );
+                }
+                if ( subType >= 900 && subType < 907 ) {
+                    cardTypes.add( new Object[] { multiverseId, "Kithkin" } );
+                }
+            } else {
+                cardTypes.add( new Object[] { multiverseId, random.nextBoolean() ? "Instant" : "Land" } );
+            }
+
+            if ( random.nextInt( 10 ) == 0 ) {
+                ownedCards.add( new Object[] { multiverseId, 1 } );
+            }
+        }
+
+        jdbcTemplate.batchUpdate( "Insert Into" + ALL_CARDS_TABLE_NO_ALIAS
+                + "( multiverse_id, name, color, cost, types, expansion ) Values ( ?, ?, 'R', '{R}', 'Benchmark', 'Benchmark' )", cards );
+        jdbcTemplate.batchUpdate( "Insert Into" + CARD_TYPE_TABLE_NO_ALIAS + "( multiverse_id, type_name ) Values ( ?, ? )", cardTypes );
+        jdbcTemplate.batchUpdate( "Insert Into" + MY_CARDS_TABLE_NO_ALIAS + "( multiverse_id, count ) Values ( ?, ? )", ownedCards );
+
+        //Refresh the index statistics, so that MySQL plans for the generated catalog
+        jdbcTemplate.execute( "Analyze Table" + ALL_CARDS_TABLE_NO_ALIAS + "," + CARD_TYPE_TABLE_NO_ALIAS + "," + MY_CARDS_TABLE_NO_ALIAS );
+    }
+
+    private static void removeCatalog( JdbcTemplate jdbcTemplate ) {
+
+        Object[] range = { FIRST_MULTIVERSE_ID, FIRST_MULTIVERSE_ID + CARD_COUNT };
+        jdbcTemplate.update( "Delete From" + MY_CARDS_TABLE_NO_ALIAS + "Where multiverse_id >= ? And multiverse_id < ?", range );
+        jdbcTemplate.update( "Delete From" + ALL_CARDS_TABLE_NO_ALIAS + "Where multiverse_id >= ? And multiverse_id < ?", range );
+    }
+}
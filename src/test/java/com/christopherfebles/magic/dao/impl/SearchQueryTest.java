@@ -0,0 +1,153 @@
+package com.christopherfebles.magic.dao.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.christopherfebles.magic.dao.parameter.SearchParameter;
+import com.christopherfebles.magic.dao.parameter.SearchParameter.FieldName;
+import com.christopherfebles.magic.enums.Color;
+import com.christopherfebles.magic.enums.Language;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+import static com.christopherfebles.magic.dao.MagicDAOConstants.*;
+
+@Category( UnitTest.class )
+public class SearchQueryTest {
+
+    @Test
+    public void sameShapeSharesQueryTest() {
+        List<SearchParameter> fireballs = new ArrayList<>();
+        fireballs.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+        fireballs.add( new SearchParameter( FieldName.LANGUAGE, Language.ENGLISH ) );
+
+        List<SearchParameter> islands = new ArrayList<>();
+        islands.add( new SearchParameter( FieldName.NAME, "Island" ) );
+        islands.add( new SearchParameter( FieldName.LANGUAGE, Language.ENGLISH ) );
+
+        assertSame( SearchQuery.forSearchParameters( fireballs ), SearchQuery.forSearchParameters( islands ) );
+        assertArrayEquals( new Object[] { "Island", Language.ENGLISH.getDatabaseSearchText() }, SearchQuery.getParameterValues( islands ) );
+    }
+
+    @Test
+    public void differentShapeDifferentQueryTest() {
+        List<SearchParameter> andSearch = new ArrayList<>();
+        andSearch.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+        andSearch.add( new SearchParameter( FieldName.NAME, "Island" ) );
+
+        List<SearchParameter> orSearch = new ArrayList<>();
+        orSearch.add( new SearchParameter( FieldName.NAME, "Fireball" ) );
+        orSearch.add( new SearchParameter( FieldName.NAME, "Island", false ) );
+
+        assertNotEquals( SearchQuery.forSearchParameters( andSearch ).getSelectQuery(), SearchQuery.forSearchParameters( orSearch ).getSelectQuery() );
+    }
+
+    @Test
+    public void parameterValuesTest() {
+        List<SearchParameter> searchParams = new ArrayList<>();
+        searchParams.add( new SearchParameter( FieldName.NAME, "Island" ) );
+        searchParams.add( new SearchParameter( FieldName.OWNED, "" ) );
+
+        //OWNED binds no value
+        assertArrayEquals( new Object[] { "Island", 10, 20 }, SearchQuery.getParameterValues( searchParams, 10, 20 ) );
+        assertArrayEquals( new Object[] { "Island", 10, 20, "Island" }, SearchQuery.getPageByNameParameterValues( searchParams, 10, 20 ) );
+
+        //Every bound value has a placeholder
+        SearchQuery searchQuery = SearchQuery.forSearchParameters( searchParams );
+        assertEquals( 3, countPlaceholders( searchQuery.getPageQuery() ) );
+        assertEquals( 4, countPlaceholders( searchQuery.getPageByNameQuery() ) );
+        assertEquals( 5, countPlaceholders( searchQuery.getSeekQuery() ) );
+    }
+
+    @Test
+    public void typeJoinParameterValuesTest() {
+        List<SearchParameter> andSearch = new ArrayList<>();
+        andSearch.add( new SearchParameter( FieldName.NAME, "Grizzly%" ) );
+        andSearch.add( new SearchParameter( FieldName.TYPE, "Creature" ) );
+        andSearch.add( new SearchParameter( FieldName.SUBTYPE, "Bear" ) );
+
+        //Exact type matches are joined, so their values come before the Where clause
+        assertArrayEquals( new Object[] { "Creature", "Bear", "Grizzly%", 10, 20 }, SearchQuery.getParameterValues( andSearch, 10, 20 ) );
+        assertTrue( SearchQuery.forSearchParameters( andSearch ).getSelectQuery().contains( " Join " ) );
+
+        List<SearchParameter> orSearch = new ArrayList<>();
+        orSearch.add( new SearchParameter( FieldName.NAME, "Grizzly%" ) );
+        orSearch.add( new SearchParameter( FieldName.TYPE, "Creature", false ) );
+
+        //An Or search cannot be joined, so values stay in parameter order
+        assertArrayEquals( new Object[] { "Grizzly%", "Creature" }, SearchQuery.getParameterValues( orSearch ) );
+        assertFalse( SearchQuery.forSearchParameters( orSearch ).getSelectQuery().contains( " Join " ) );
+
+        List<SearchParameter> wildcardSearch = new ArrayList<>();
+        wildcardSearch.add( new SearchParameter( FieldName.NAME, "Grizzly%" ) );
+        wildcardSearch.add( new SearchParameter( FieldName.TYPE, "Creat%" ) );
+
+        //Wildcard type matches are a different shape from exact ones
+        assertNotSame( SearchQuery.forSearchParameters( andSearch.subList( 0, 2 ) ), SearchQuery.forSearchParameters( wildcardSearch ) );
+        assertArrayEquals( new Object[] { "Grizzly%", "Creat%" }, SearchQuery.getParameterValues( wildcardSearch ) );
+    }
+
+    @Test
+    public void joinedPageSortsOnlyIdsTest() {
+        List<SearchParameter> joinedSearch = new ArrayList<>();
+        joinedSearch.add( new SearchParameter( FieldName.TYPE, "Creature" ) );
+        joinedSearch.add( new SearchParameter( FieldName.SUBTYPE, "Human" ) );
+        joinedSearch.add( new SearchParameter( FieldName.LANGUAGE, Language.ENGLISH ) );
+
+        //A joined page is sorted as ids, then whole cards are loaded for just that page
+        SearchQuery searchQuery = SearchQuery.forSearchParameters( joinedSearch );
+        String idPage = "Select " + CARD_SELECT_COLUMNS + " From ( Select " + ALL_CARDS_PREFIX + "multiverse_id From";
+        assertTrue( searchQuery.getPageQuery().startsWith( idPage ) );
+        assertTrue( searchQuery.getSeekQuery().startsWith( idPage ) );
+        assertEquals( 5, countPlaceholders( searchQuery.getPageQuery() ) );
+        assertEquals( 7, countPlaceholders( searchQuery.getSeekQuery() ) );
+        assertTrue( searchQuery.getPageByNameQuery().startsWith( "Select STRAIGHT_JOIN " ) );
+
+        List<SearchParameter> unjoinedSearch = new ArrayList<>();
+        unjoinedSearch.add( new SearchParameter( FieldName.NAME, "Grizzly%" ) );
+        unjoinedSearch.add( new SearchParameter( FieldName.LANGUAGE, Language.ENGLISH ) );
+
+        //Without joins, MySQL already reads the page from the name index
+        searchQuery = SearchQuery.forSearchParameters( unjoinedSearch );
+        assertEquals( searchQuery.getSelectQuery() + " limit ? offset ? ", searchQuery.getPageQuery() );
+        assertFalse( searchQuery.getSeekQuery().startsWith( idPage ) );
+    }
+
+    @Test
+    public void colorMaskListTest() {
+        List<SearchParameter> includingWhiteAndBlue = new ArrayList<>();
+        includingWhiteAndBlue.add( new SearchParameter( FieldName.COLORS_INCLUDING, Arrays.asList( Color.WHITE, Color.BLUE ) ) );
+
+        //Every mask with both the white and blue bits, so the color_mask index can be used
+        SearchQuery searchQuery = SearchQuery.forSearchParameters( includingWhiteAndBlue );
+        assertTrue( searchQuery.getSelectQuery().contains( ALL_CARDS_PREFIX + "color_mask in ( ?, ?, ?, ?, ?, ?, ?, ? ) " ) );
+        assertArrayEquals( new Object[] { 3, 7, 11, 15, 19, 23, 27, 31 }, SearchQuery.getParameterValues( includingWhiteAndBlue ) );
+
+        List<SearchParameter> atMostRed = new ArrayList<>();
+        atMostRed.add( new SearchParameter( FieldName.NAME, "Goblin%" ) );
+        atMostRed.add( new SearchParameter( FieldName.COLORS_AT_MOST, Collections.singletonList( Color.RED ) ) );
+
+        //Colorless or red only
+        searchQuery = SearchQuery.forSearchParameters( atMostRed );
+        assertTrue( searchQuery.getSelectQuery().contains( ALL_CARDS_PREFIX + "color_mask in ( ?, ? ) " ) );
+        assertArrayEquals( new Object[] { "Goblin%", 0, 8, 10, 20 }, SearchQuery.getParameterValues( atMostRed, 10, 20 ) );
+        assertEquals( 5, countPlaceholders( searchQuery.getPageQuery() ) );
+
+        //The number of masks is part of the shape
+        List<SearchParameter> atMostRedAndGreen = new ArrayList<>();
+        atMostRedAndGreen.add( new SearchParameter( FieldName.NAME, "Goblin%" ) );
+        atMostRedAndGreen.add( new SearchParameter( FieldName.COLORS_AT_MOST, Arrays.asList( Color.RED, Color.GREEN ) ) );
+        assertNotSame( searchQuery, SearchQuery.forSearchParameters( atMostRedAndGreen ) );
+        assertEquals( 5, SearchQuery.getParameterValues( atMostRedAndGreen ).length );
+    }
+
+    private static int countPlaceholders( String query ) {
+        return query.length() - query.replace( "?", "" ).length();
+    }
+}
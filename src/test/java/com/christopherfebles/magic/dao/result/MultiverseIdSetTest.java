@@ -0,0 +1,66 @@
+package com.christopherfebles.magic.dao.result;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@Category( UnitTest.class )
+public class MultiverseIdSetTest {
+
+    @Test
+    public void builderTest() {
+        MultiverseIdSet ids = new MultiverseIdSet.Builder().add( 600 ).add( 3 ).add( 197 ).add( 3 ).build();
+
+        assertEquals( 3, ids.size() );
+        assertFalse( ids.isEmpty() );
+        assertEquals( 600, ids.getHighestId() );
+        assertArrayEquals( new int[] { 3, 197, 600 }, ids.toArray() );
+
+        assertTrue( ids.contains( 197 ) );
+        assertFalse( ids.contains( 198 ) );
+        assertFalse( ids.contains( -1 ) );
+
+        assertEquals( 197, ids.nextId( 4 ) );
+        assertEquals( -1, ids.nextId( 601 ) );
+
+        MultiverseIdSet empty = new MultiverseIdSet.Builder().build();
+        assertTrue( empty.isEmpty() );
+        assertEquals( -1, empty.getHighestId() );
+    }
+
+    @Test
+    public void setOperationsTest() {
+        MultiverseIdSet first = new MultiverseIdSet.Builder().add( 1 ).add( 2 ).add( 5 ).build();
+        MultiverseIdSet second = new MultiverseIdSet.Builder().add( 2 ).add( 5 ).add( 7 ).build();
+
+        assertArrayEquals( new int[] { 2, 5 }, first.and( second ).toArray() );
+        assertArrayEquals( new int[] { 1, 2, 5, 7 }, first.or( second ).toArray() );
+        assertArrayEquals( new int[] { 1 }, first.andNot( second ).toArray() );
+
+        //Operations return new sets
+        assertArrayEquals( new int[] { 1, 2, 5 }, first.toArray() );
+
+        assertArrayEquals( new int[] { 3, 4 }, first.missingInRange( 1, first.getHighestId() ).toArray() );
+        assertEquals( MultiverseIdSet.range( 1, 7 ), first.or( second ).or( first.or( second ).missingInRange( 1, 7 ) ) );
+        assertTrue( MultiverseIdSet.range( 5, 4 ).isEmpty() );
+    }
+
+    @Test
+    public void largeIdTest() {
+        MultiverseIdSet ids = new MultiverseIdSet.Builder().add( 5 ).add( Integer.MAX_VALUE ).build();
+
+        assertEquals( 2, ids.size() );
+        assertTrue( ids.contains( Integer.MAX_VALUE ) );
+        assertEquals( Integer.MAX_VALUE, ids.getHighestId() );
+        assertEquals( Integer.MAX_VALUE, ids.nextId( 6 ) );
+        assertArrayEquals( new int[] { 5, Integer.MAX_VALUE }, ids.toArray() );
+
+        MultiverseIdSet other = new MultiverseIdSet.Builder().add( Integer.MAX_VALUE ).build();
+        assertArrayEquals( new int[] { Integer.MAX_VALUE }, ids.and( other ).toArray() );
+        assertArrayEquals( new int[] { 5 }, ids.andNot( other ).toArray() );
+        assertArrayEquals( new int[] { 1, 2, 3, 4 }, ids.missingInRange( 1, 5 ).toArray() );
+    }
+}
@@ -0,0 +1,111 @@
+package com.christopherfebles.magic.index;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.MagicCardChangeListener;
+import com.christopherfebles.magic.dao.impl.MagicCardDAOImpl;
+import com.christopherfebles.magic.enums.Type;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class CardNameSuggesterTest extends DAOTester {
+
+    private static final int FIRST_SUGGESTION_ID = 999201;
+
+    protected static boolean cardNameSuggesterTesterInitializationComplete = false;
+
+    @Autowired
+    private MagicCardDAOImpl cardDAOImpl;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private CardNameSuggester cardNameSuggester;
+
+    @Test
+    public void suggestTest() {
+        List<NameSuggestion> suggestions = cardNameSuggester.suggest( "FIRE", 1 );
+        assertEquals( 1, suggestions.size() );
+        assertEquals( "Fireball", suggestions.get( 0 ).getName() );
+        assertTrue( suggestions.get( 0 ).getMultiverseIds().contains( 197 ) );
+
+        assertTrue( cardNameSuggester.suggest( "Firebally", 5 ).isEmpty() );
+        assertTrue( cardNameSuggester.suggest( "", 5 ).isEmpty() );
+    }
+
+    @Test
+    public void incrementalUpdateTest() {
+        MagicCard alpha = new MagicCard( FIRST_SUGGESTION_ID, "Suggestion Alpha", "R", Type.INSTANT.toString(), "Magic 2012" );
+        MagicCard alphaReprint = new MagicCard( FIRST_SUGGESTION_ID + 1, "Suggestion Alpha", "R", Type.INSTANT.toString(), "Magic 2013" );
+        MagicCard beta = new MagicCard( FIRST_SUGGESTION_ID + 2, "Suggestion Beta", "R", Type.INSTANT.toString(), "Magic 2012" );
+
+        try {
+            assertTrue( cardNameSuggester.suggest( "suggestion", 5 ).isEmpty() );
+            assertTrue( cardDAO.addCardToDatabase( alpha ) );
+            assertTrue( cardDAO.addCardToDatabase( alphaReprint ) );
+            assertTrue( cardDAO.addCardToDatabase( beta ) );
+
+            //Most printed first
+            List<NameSuggestion> suggestions = cardNameSuggester.suggest( "suggestion", 5 );
+            assertEquals( 2, suggestions.size() );
+            assertEquals( "Suggestion Alpha", suggestions.get( 0 ).getName() );
+            assertEquals( Arrays.asList( FIRST_SUGGESTION_ID, FIRST_SUGGESTION_ID + 1 ), suggestions.get( 0 ).getMultiverseIds() );
+            assertEquals( "Suggestion Beta", suggestions.get( 1 ).getName() );
+            assertEquals( 1, cardNameSuggester.suggest( "suggestion", 1 ).size() );
+
+            //A renamed card moves to its new name
+            alphaReprint.setName( "Suggestion Beta" );
+            assertTrue( cardDAO.addCardToDatabase( alphaReprint ) );
+            assertTrue( cardDAO.removeCardFromDatabaseById( FIRST_SUGGESTION_ID ) );
+            suggestions = cardNameSuggester.suggest( "suggestion", 5 );
+            assertEquals( 1, suggestions.size() );
+            assertEquals( "Suggestion Beta", suggestions.get( 0 ).getName() );
+            assertEquals( Arrays.asList( FIRST_SUGGESTION_ID + 1, FIRST_SUGGESTION_ID + 2 ), suggestions.get( 0 ).getMultiverseIds() );
+
+            //The same names once loaded again in full
+            cardNameSuggester.rebuild();
+            assertEquals( Arrays.asList( FIRST_SUGGESTION_ID + 1, FIRST_SUGGESTION_ID + 2 ),
+                    cardNameSuggester.suggest( "suggestion", 5 ).get( 0 ).getMultiverseIds() );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( FIRST_SUGGESTION_ID );
+            cardDAO.removeCardFromDatabaseById( FIRST_SUGGESTION_ID + 1 );
+            cardDAO.removeCardFromDatabaseById( FIRST_SUGGESTION_ID + 2 );
+        }
+        assertTrue( cardNameSuggester.suggest( "suggestion", 5 ).isEmpty() );
+    }
+
+    @Override
+    protected void additionalSetUp() {
+
+        if ( !cardNameSuggesterTesterInitializationComplete ) {
+            super.addFireballs();
+            cardNameSuggesterTesterInitializationComplete = true;
+        }
+
+        cardNameSuggester = new CardNameSuggester( dataSource );
+        cardDAOImpl.addChangeListeners( Collections.<MagicCardChangeListener> singletonList( cardNameSuggester ) );
+    }
+
+    @Override
+    protected void additionalCleanUp() {
+        cardDAOImpl.removeChangeListener( cardNameSuggester );
+    }
+}
@@ -0,0 +1,118 @@
+package com.christopherfebles.magic.index;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.MagicCardChangeListener;
+import com.christopherfebles.magic.dao.impl.MagicCardDAOImpl;
+import com.christopherfebles.magic.enums.Type;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class CardTextIndexTest extends DAOTester {
+
+    private static final int SPARK_ID = 999101;
+    private static final int KNIGHT_ID = 999102;
+
+    @Autowired
+    private MagicCardDAOImpl cardDAOImpl;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private CardTextIndex cardTextIndex;
+
+    @Test
+    public void phraseAndPrefixTest() {
+        MagicCard spark = new MagicCard( SPARK_ID, "Index Spark", "R", Type.INSTANT.toString(), "Magic 2012" );
+        spark.setText( "Index Spark deals 2 damage to target creature. Draw a card." );
+        spark.setFlavorText( "Sparks fly." );
+        MagicCard knight = new MagicCard( KNIGHT_ID, "Index Knight", "{2/W}", Type.CREATURE.toString(), "Magic 2012" );
+        knight.setText( "{2/W}, {T}: Target creature gets +1/+1 until end of turn. Draw cards." );
+
+        try {
+            //Build the index before the cards exist, so they are picked up as changes
+            assertTrue( cardTextIndex.searchPhrase( IndexedField.TEXT, "index spark deals" ).isEmpty() );
+            assertTrue( cardDAO.addCardToDatabase( spark ) );
+            assertTrue( cardDAO.addCardToDatabase( knight ) );
+
+            assertEquals( Collections.singletonList( SPARK_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "Draw a card" ) );
+            assertEquals( Collections.singletonList( KNIGHT_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "{2/W}, {T}:" ) );
+            assertEquals( Collections.singletonList( KNIGHT_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "gets +1/+1" ) );
+            assertEquals( Arrays.asList( SPARK_ID, KNIGHT_ID ), cardTextIndex.searchPrefix( IndexedField.NAME, "Inde" ) );
+            assertEquals( Collections.singletonList( SPARK_ID ), cardTextIndex.searchPrefix( IndexedField.FLAVOR_TEXT, "spark" ) );
+
+            //The same results once the changes are built into the index
+            cardTextIndex.rebuild();
+            assertEquals( Collections.singletonList( SPARK_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "Draw a card" ) );
+            assertEquals( Collections.singletonList( KNIGHT_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "{2/W}, {T}:" ) );
+            assertEquals( Arrays.asList( SPARK_ID, KNIGHT_ID ), cardTextIndex.searchPrefix( IndexedField.NAME, "Inde" ) );
+            assertTrue( cardTextIndex.searchPhrase( IndexedField.TEXT, "card draw" ).isEmpty() );
+
+            //Updated and removed cards replace the indexed copy
+            spark.setText( "Index Spark deals 3 damage to any target." );
+            assertTrue( cardDAO.addCardToDatabase( spark ) );
+            assertTrue( cardDAO.removeCardFromDatabaseById( KNIGHT_ID ) );
+            assertTrue( cardTextIndex.searchPhrase( IndexedField.TEXT, "draw a card" ).isEmpty() );
+            assertEquals( Collections.singletonList( SPARK_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "any target" ) );
+            assertEquals( Collections.singletonList( SPARK_ID ), cardTextIndex.searchPrefix( IndexedField.NAME, "index" ) );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( SPARK_ID );
+            cardDAO.removeCardFromDatabaseById( KNIGHT_ID );
+        }
+    }
+
+    @Test
+    public void largeMultiverseIdTest() {
+        MagicCard spark = new MagicCard( SPARK_ID, "Index Spark", "R", Type.INSTANT.toString(), "Magic 2012" );
+        spark.setText( "Index Spark deals 2 damage to target creature." );
+        MagicCard largeSpark = new MagicCard( TEMPORARY_MULTIVERSE_ID, "Index Spark", "R", Type.INSTANT.toString(), "Magic 2012" );
+        largeSpark.setText( "Index Spark deals 2 damage to target creature." );
+
+        try {
+            assertTrue( cardTextIndex.searchPrefix( IndexedField.NAME, "index" ).isEmpty() );
+            assertTrue( cardDAO.addCardToDatabase( spark ) );
+            assertTrue( cardDAO.addCardToDatabase( largeSpark ) );
+
+            //An id near Integer.MAX_VALUE is found as a change, and once built into the index
+            assertEquals( Arrays.asList( SPARK_ID, TEMPORARY_MULTIVERSE_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "deals 2 damage" ) );
+            cardTextIndex.rebuild();
+            assertEquals( Arrays.asList( SPARK_ID, TEMPORARY_MULTIVERSE_ID ), cardTextIndex.searchPhrase( IndexedField.TEXT, "deals 2 damage" ) );
+            assertEquals( Arrays.asList( SPARK_ID, TEMPORARY_MULTIVERSE_ID ), cardTextIndex.searchPrefix( IndexedField.NAME, "index" ) );
+
+            assertTrue( cardDAO.removeCardFromDatabaseById( TEMPORARY_MULTIVERSE_ID ) );
+            assertEquals( Collections.singletonList( SPARK_ID ), cardTextIndex.searchPrefix( IndexedField.NAME, "index" ) );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( SPARK_ID );
+            cardDAO.removeCardFromDatabaseById( TEMPORARY_MULTIVERSE_ID );
+        }
+    }
+
+    @Override
+    protected void additionalSetUp() {
+        cardTextIndex = new CardTextIndex( dataSource );
+        cardDAOImpl.addChangeListeners( Collections.<MagicCardChangeListener> singletonList( cardTextIndex ) );
+    }
+
+    @Override
+    protected void additionalCleanUp() {
+        cardDAOImpl.removeChangeListener( cardTextIndex );
+    }
+}
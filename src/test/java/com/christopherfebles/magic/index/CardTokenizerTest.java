@@ -0,0 +1,28 @@
+package com.christopherfebles.magic.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@Category( UnitTest.class )
+public class CardTokenizerTest {
+
+    @Test
+    public void testTokenize() {
+        assertEquals( Arrays.asList( "{2/w}", "{t}", "target", "non-human", "creature", "gets", "+1/+1", "until", "end", "of", "turn" ),
+                CardTokenizer.tokenize( "{2/W}, {T}: Target non-Human creature gets +1/+1 until end of turn." ) );
+        assertEquals( Arrays.asList( "each", "opponent's", "hand" ), CardTokenizer.tokenize( "Each opponent's hand" ) );
+    }
+
+    @Test
+    public void testTokenizeNull() {
+        assertTrue( CardTokenizer.tokenize( null ).isEmpty() );
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.christopherfebles.magic.index;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.christopherfebles.magic.dao.MagicCardChangeListener;
+import com.christopherfebles.magic.dao.impl.MagicCardDAOImpl;
+import com.christopherfebles.magic.enums.Type;
+import com.christopherfebles.magic.model.MagicCard;
+import com.christopherfebles.magic.testsupport.DAOTester;
+import com.christopherfebles.magic.testsupport.UnitTest;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration( locations = { "classpath:/applicationContext-test.xml" } )
+@Category( UnitTest.class )
+public class FuzzyNameResolverTest extends DAOTester {
+
+    private static final int FUZZY_TEST_ID = 999301;
+    private static final int SHORT_NAME_TEST_ID = 999302;
+
+    protected static boolean fuzzyNameResolverTesterInitializationComplete = false;
+
+    @Autowired
+    private MagicCardDAOImpl cardDAOImpl;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private FuzzyNameResolver fuzzyNameResolver;
+
+    @Test
+    public void editDistanceTest() {
+        assertEquals( 0, FuzzyNameResolver.editDistance( "fireball", "fireball", 2 ) );
+        assertEquals( 1, FuzzyNameResolver.editDistance( "flreball", "fireball", 2 ) );
+        assertEquals( 2, FuzzyNameResolver.editDistance( "fireba1", "fireball", 2 ) );
+        assertEquals( 2, FuzzyNameResolver.editDistance( "firebolt", "fireball", 2 ) );
+        assertEquals( 3, FuzzyNameResolver.editDistance( "firebolts", "fireball", 2 ) );
+        assertEquals( 3, FuzzyNameResolver.editDistance( "fire", "fireball", 2 ) );
+    }
+
+    @Test
+    public void resolveTest() {
+        List<NameMatch> matches = fuzzyNameResolver.resolve( "Flreba1l", 2, 5 );
+        assertFalse( matches.isEmpty() );
+        assertEquals( "Fireball", matches.get( 0 ).getName() );
+        assertEquals( 2, matches.get( 0 ).getEditDistance() );
+        assertTrue( matches.get( 0 ).getMultiverseIds().contains( 197 ) );
+
+        //Closest first
+        matches = fuzzyNameResolver.resolve( "Silverblade Paladn", 2, 5 );
+        assertEquals( "Silverblade Paladin", matches.get( 0 ).getName() );
+        assertEquals( 1, matches.get( 0 ).getEditDistance() );
+
+        assertTrue( fuzzyNameResolver.resolve( "Fireball", 0, 5 ).get( 0 ).getEditDistance() == 0 );
+        assertTrue( fuzzyNameResolver.resolve( "Lightning Bolt Of Doom", 2, 5 ).isEmpty() );
+    }
+
+    @Test
+    public void reloadOnChangeTest() {
+        MagicCard card = new MagicCard( FUZZY_TEST_ID, "Quixotic Zephyrwing", "U", Type.INSTANT.toString(), "Magic 2012" );
+
+        try {
+            assertTrue( fuzzyNameResolver.resolve( "Quixotic Zephyrwlng", 1, 5 ).isEmpty() );
+            assertTrue( cardDAO.addCardToDatabase( card ) );
+            assertEquals( Collections.singletonList( FUZZY_TEST_ID ), fuzzyNameResolver.resolve( "Quixotic Zephyrwlng", 1, 5 ).get( 0 )
+                    .getMultiverseIds() );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( FUZZY_TEST_ID );
+        }
+        assertTrue( fuzzyNameResolver.resolve( "Quixotic Zephyrwlng", 1, 5 ).isEmpty() );
+    }
+
+    @Test
+    public void renamedCardTest() {
+        MagicCard card = new MagicCard( FUZZY_TEST_ID, "Quixotic Zephyrwing", "U", Type.INSTANT.toString(), "Magic 2012" );
+
+        try {
+            assertTrue( cardDAO.addCardToDatabase( card ) );
+            assertEquals( "Quixotic Zephyrwing", fuzzyNameResolver.resolve( "Quixotic Zephyrwlng", 1, 5 ).get( 0 ).getName() );
+
+            //A changed card moves to its new name, beside the indexed printings of that name
+            card.setName( "Fireball" );
+            assertTrue( cardDAO.addCardToDatabase( card ) );
+            assertTrue( fuzzyNameResolver.resolve( "Quixotic Zephyrwlng", 1, 5 ).isEmpty() );
+            List<Integer> fireballs = fuzzyNameResolver.resolve( "Fireball", 0, 5 ).get( 0 ).getMultiverseIds();
+            assertTrue( fireballs.contains( 197 ) );
+            assertEquals( Integer.valueOf( FUZZY_TEST_ID ), fireballs.get( fireballs.size() - 1 ) );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( FUZZY_TEST_ID );
+        }
+        assertFalse( fuzzyNameResolver.resolve( "Fireball", 0, 5 ).get( 0 ).getMultiverseIds().contains( FUZZY_TEST_ID ) );
+    }
+
+    @Test
+    public void shortNameTest() {
+        MagicCard card = new MagicCard( SHORT_NAME_TEST_ID, "Zap", "R", Type.INSTANT.toString(), "Magic 2012" );
+
+        try {
+            assertTrue( cardDAO.addCardToDatabase( card ) );
+
+            //Two letters replaced, so no trigram of the name is left
+            List<NameMatch> matches = fuzzyNameResolver.resolve( "Xay", 2, 50 );
+            boolean found = false;
+            for ( NameMatch match : matches ) {
+                found |= match.getName().equals( "Zap" ) && match.getEditDistance() == 2;
+            }
+            assertTrue( found );
+            assertTrue( fuzzyNameResolver.resolve( "Xay", 1, 50 ).isEmpty() );
+        } finally {
+            //Reset Test
+            cardDAO.removeCardFromDatabaseById( SHORT_NAME_TEST_ID );
+        }
+    }
+
+    @Override
+    protected void additionalSetUp() {
+
+        if ( !fuzzyNameResolverTesterInitializationComplete ) {
+            super.addFireballs();
+            super.addPaladins();
+            fuzzyNameResolverTesterInitializationComplete = true;
+        }
+
+        fuzzyNameResolver = new FuzzyNameResolver( dataSource );
+        cardDAOImpl.addChangeListeners( Collections.<MagicCardChangeListener> singletonList( fuzzyNameResolver ) );
+    }
+
+    @Override
+    protected void additionalCleanUp() {
+        cardDAOImpl.removeChangeListener( fuzzyNameResolver );
+    }
+}
@@ -114,4 +114,43 @@ public class MagicCardTest {
                     mana.toString().equals( "RP" ));
         }
     }
+
+    @Test
+    public void testGetColorMask() {
+        MagicCard card = new MagicCard();
+
+        card.setManaCostWithString( "2{W/U}B" );
+        assertEquals( Color.WHITE.getMask() | Color.BLUE.getMask() | Color.BLACK.getMask(), card.getColorMask() );
+
+        card.setManaCostWithString( "X" );
+        assertEquals( 0, card.getColorMask() );
+    }
+
+    @Test
+    public void testCopyConstructor() {
+        MagicCard card = new MagicCard( 1, "Fireball", "XR", "Sorcery", "Limited Edition Alpha" );
+        card.setCardImageArray( new byte[] { 1, 2, 3 } );
+
+        MagicCard copy = new MagicCard( card );
+        assertEquals( card.getMultiverseId(), copy.getMultiverseId() );
+        assertEquals( card.getName(), copy.getName() );
+        assertEquals( card.getManaCostString(), copy.getManaCostString() );
+        assertEquals( card.getColorsString(), copy.getColorsString() );
+        assertEquals( card.getType(), copy.getType() );
+        assertEquals( card.getExpansion(), copy.getExpansion() );
+        assertArrayEquals( card.getCardImageArray(), copy.getCardImageArray() );
+
+        copy.setName( "Firebolt" );
+        copy.addColor( Color.BLUE );
+        copy.getManaCost().get( 1 ).addColor( Color.GREEN );
+        copy.setTypes( "Instant" );
+        copy.getCardImageArray()[0] = 9;
+
+        assertEquals( "Fireball", card.getName() );
+        assertEquals( "R", card.getColorsString() );
+        assertEquals( "XR", card.getManaCostString() );
+        assertEquals( "R", card.getManaCost().get( 1 ).toString() );
+        assertEquals( Type.SORCERY.toString(), card.getType() );
+        assertEquals( 1, card.getCardImageArray()[0] );
+    }
 }